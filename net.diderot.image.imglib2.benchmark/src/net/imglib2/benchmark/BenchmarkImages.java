@@ -0,0 +1,92 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.benchmark;
+
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.IterableInterval;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * Helpers shared by the benchmarks.
+ */
+final class BenchmarkImages
+{
+	private BenchmarkImages()
+	{}
+
+	/** Fills an image with reproducible pseudo-random values in [0, 128). */
+	static < T extends RealType< T > > void fill( final IterableInterval< T > img )
+	{
+		final Random random = new Random( 42 );
+		final Cursor< T > c = img.cursor();
+		while ( c.hasNext() )
+			c.next().setReal( random.nextInt( 128 ) );
+	}
+
+	/** Sums all values of an image using a cursor. */
+	static < T extends RealType< T > > double sum( final Cursor< T > c )
+	{
+		double sum = 0;
+		while ( c.hasNext() )
+			sum += c.next().getRealDouble();
+		return sum;
+	}
+
+	/** Sums all values and coordinates of an image using a localizing cursor. */
+	static < T extends RealType< T > > double sumLocalized( final Cursor< T > c )
+	{
+		double sum = 0;
+		while ( c.hasNext() )
+		{
+			sum += c.next().getRealDouble();
+			sum += c.getLongPosition( 0 );
+		}
+		return sum;
+	}
+
+	/** Creates reproducible pseudo-random positions within the given dimensions. */
+	static long[][] randomPositions( final long[] dimensions, final int count )
+	{
+		final Random random = new Random( 7 );
+		final long[][] positions = new long[ count ][ dimensions.length ];
+		for ( int i = 0; i < count; i++ )
+			for ( int d = 0; d < dimensions.length; d++ )
+				positions[ i ][ d ] = ( long ) ( random.nextDouble() * dimensions[ d ] );
+		return positions;
+	}
+
+}
@@ -0,0 +1,153 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The measured average time per operation of one benchmark, with a 99.9%
+ * confidence interval.
+ */
+public class BenchmarkResult
+{
+	private static final String HEADER = "benchmark,samples,score,error,unit";
+
+	private final String name;
+
+	private final int samples;
+
+	private final double score;
+
+	private final double error;
+
+	public BenchmarkResult( final String name, final int samples, final double score, final double error )
+	{
+		this.name = name;
+		this.samples = samples;
+		this.score = score;
+		this.error = error;
+	}
+
+	public String getName()
+	{
+		return name;
+	}
+
+	public int getSamples()
+	{
+		return samples;
+	}
+
+	/** Gets the mean time per operation, in nanoseconds. */
+	public double getScore()
+	{
+		return score;
+	}
+
+	/** Gets the half-width of the 99.9% confidence interval of the score. */
+	public double getError()
+	{
+		return error;
+	}
+
+	/**
+	 * Returns true if the confidence intervals of this and another result do
+	 * not overlap, i.e., the difference between them is significant.
+	 */
+	public boolean differsFrom( final BenchmarkResult other )
+	{
+		final double e1 = Double.isNaN( error ) ? 0 : error;
+		final double e2 = Double.isNaN( other.error ) ? 0 : other.error;
+		return Math.abs( score - other.score ) > e1 + e2;
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format( Locale.ROOT, "%-60s %4d %14.3f +- %12.3f ns/op", name, samples, score, error );
+	}
+
+	// -- report files --
+
+	/** Writes results to a CSV report file. */
+	public static void write( final List< BenchmarkResult > results, final File file ) throws IOException
+	{
+		final PrintWriter out = new PrintWriter( file, "UTF-8" );
+		try
+		{
+			out.println( HEADER );
+			for ( final BenchmarkResult r : results )
+				out.println( String.format( Locale.ROOT, "\"%s\",%d,%.6f,%.6f,ns/op", r.name, r.samples, r.score, r.error ) );
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+
+	/** Reads results from a CSV report file, indexed by benchmark name. */
+	public static Map< String, BenchmarkResult > read( final File file ) throws IOException
+	{
+		final Map< String, BenchmarkResult > results = new LinkedHashMap< String, BenchmarkResult >();
+		final BufferedReader in = new BufferedReader( new FileReader( file ) );
+		try
+		{
+			String line = in.readLine();
+			if ( !HEADER.equals( line ) )
+				throw new IOException( "Not a benchmark report: " + file );
+			while ( ( line = in.readLine() ) != null )
+			{
+				final int quote = line.lastIndexOf( '"' );
+				final String name = line.substring( 1, quote );
+				final String[] fields = line.substring( quote + 2 ).split( "," );
+				results.put( name, new BenchmarkResult( name, Integer.parseInt( fields[ 0 ] ), Double.parseDouble( fields[ 1 ] ), Double.parseDouble( fields[ 2 ] ) ) );
+			}
+		}
+		finally
+		{
+			in.close();
+		}
+		return results;
+	}
+
+}
@@ -0,0 +1,150 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+import org.openjdk.jmh.util.Statistics;
+
+/**
+ * Runs the JMH benchmarks of this module and reports the average time per
+ * operation, optionally saving the results to a report file and comparing
+ * them against an earlier one.
+ * <p>
+ * Every benchmark runs in a JVM of its own, forked as given by the
+ * {@link Fork} annotation of its class, with the warmup and measurement
+ * iterations given by the annotations of the class unless overridden. The
+ * score is the mean time per operation over all measurement iterations, with
+ * a 99.9% confidence interval.
+ * <p>
+ * Usage: {@code BenchmarkRunner [-f forks] [-wi n] [-i n] [-r ms]
+ * [-o report.csv] [-b baseline.csv] [regex...]}, where the optional regular
+ * expressions select the benchmarks to run by name.
+ */
+public class BenchmarkRunner
+{
+	public static void main( final String[] args ) throws IOException, RunnerException
+	{
+		final ChainedOptionsBuilder options = new OptionsBuilder();
+		File output = null, baseline = null;
+		for ( int i = 0; i < args.length; i++ )
+		{
+			if ( args[ i ].equals( "-f" ) )
+				options.forks( Integer.parseInt( args[ ++i ] ) );
+			else if ( args[ i ].equals( "-wi" ) )
+				options.warmupIterations( Integer.parseInt( args[ ++i ] ) );
+			else if ( args[ i ].equals( "-i" ) )
+			{
+				final int iterations = Integer.parseInt( args[ ++i ] );
+				if ( iterations < 1 )
+					throw new IllegalArgumentException( "At least one measurement iteration is required" );
+				options.measurementIterations( iterations );
+			}
+			else if ( args[ i ].equals( "-r" ) )
+			{
+				final TimeValue time = TimeValue.milliseconds( Long.parseLong( args[ ++i ] ) );
+				options.warmupTime( time ).measurementTime( time );
+			}
+			else if ( args[ i ].equals( "-o" ) )
+				output = new File( args[ ++i ] );
+			else if ( args[ i ].equals( "-b" ) )
+				baseline = new File( args[ ++i ] );
+			else
+				options.include( args[ i ] );
+		}
+
+		final Collection< RunResult > runs = new Runner( options.build() ).run();
+		final List< BenchmarkResult > results = new ArrayList< BenchmarkResult >( runs.size() );
+		for ( final RunResult run : runs )
+			results.add( result( run ) );
+
+		if ( output != null )
+			BenchmarkResult.write( results, output );
+		if ( baseline != null )
+			compare( results, BenchmarkResult.read( baseline ) );
+	}
+
+	// -- helpers --
+
+	/**
+	 * Converts the result of a JMH run, naming it by the simple name of the
+	 * benchmark class, the method and the parameter values.
+	 */
+	private static BenchmarkResult result( final RunResult run )
+	{
+		final BenchmarkParams params = run.getParams();
+		final String prefix = BenchmarkRunner.class.getPackage().getName() + ".";
+		final StringBuilder name = new StringBuilder( params.getBenchmark().substring( prefix.length() ) );
+		String separator = ":";
+		for ( final String key : params.getParamsKeys() )
+		{
+			name.append( separator ).append( key ).append( '=' ).append( params.getParam( key ) );
+			separator = ",";
+		}
+		final Statistics statistics = run.getPrimaryResult().getStatistics();
+		final double error = statistics.getN() < 2 ? Double.NaN : statistics.getMeanErrorAt( 0.999 );
+		return new BenchmarkResult( name.toString(), ( int ) statistics.getN(), statistics.getMean(), error );
+	}
+
+	private static void compare( final List< BenchmarkResult > results, final Map< String, BenchmarkResult > baseline )
+	{
+		System.out.println();
+		System.out.println( String.format( Locale.ROOT, "%-60s %14s %14s %8s", "Benchmark", "Baseline", "Current", "Ratio" ) );
+		for ( final BenchmarkResult current : results )
+		{
+			final BenchmarkResult old = baseline.get( current.getName() );
+			if ( old == null )
+				continue;
+			final double ratio = current.getScore() / old.getScore();
+			final String flag = !current.differsFrom( old ) ? "" : ratio > 1 ? "  SLOWER" : "  FASTER";
+			System.out.println( String.format( Locale.ROOT, "%-60s %14.3f %14.3f %8.3f%s", current.getName(), old.getScore(), current.getScore(), ratio, flag ) );
+		}
+	}
+
+}
@@ -0,0 +1,131 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.img.cell.CellImg;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks traversal of a {@link CellImg} with a {@code CellCursor}, a
+ * {@code CellLocalizingCursor} and a {@code CellRandomAccess}, the latter both
+ * in raster order and at random positions, for several cell sizes.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS )
+@Measurement( iterations = 10, time = 500, timeUnit = TimeUnit.MILLISECONDS )
+@Fork( 1 )
+public class CellImgBenchmark
+{
+	@Param( { "32", "128" } )
+	public String cellSize;
+
+	private static final long SIDE = 1000;
+
+	private static final int RANDOM_POSITIONS = 100000;
+
+	private CellImg< FloatType, ?, ? > img;
+
+	private long[][] positions;
+
+	@Setup
+	public void setup()
+	{
+		img = new CellImgFactory< FloatType >( Integer.parseInt( cellSize ) ).create( new long[] { SIDE, SIDE }, new FloatType() );
+		BenchmarkImages.fill( img );
+		positions = BenchmarkImages.randomPositions( new long[] { SIDE, SIDE }, RANDOM_POSITIONS );
+	}
+
+	@Benchmark
+	public double cursor()
+	{
+		return BenchmarkImages.sum( img.cursor() );
+	}
+
+	@Benchmark
+	public double localizingCursor()
+	{
+		return BenchmarkImages.sumLocalized( img.localizingCursor() );
+	}
+
+	@Benchmark
+	public double randomAccessSequential()
+	{
+		final RandomAccess< FloatType > ra = img.randomAccess();
+		double sum = 0;
+		for ( long y = 0; y < SIDE; y++ )
+		{
+			ra.setPosition( 0, 0 );
+			ra.setPosition( y, 1 );
+			for ( long x = 0; x < SIDE; x++ )
+			{
+				sum += ra.get().getRealDouble();
+				ra.fwd( 0 );
+			}
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public double randomAccessRandom()
+	{
+		final RandomAccess< FloatType > ra = img.randomAccess();
+		double sum = 0;
+		for ( final long[] position : positions )
+		{
+			ra.setPosition( position );
+			sum += ra.get().getRealDouble();
+		}
+		return sum;
+	}
+
+}
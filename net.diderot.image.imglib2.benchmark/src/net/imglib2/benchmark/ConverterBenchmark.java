@@ -0,0 +1,140 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.converter.Converter;
+import net.imglib2.converter.RealFloatConverter;
+import net.imglib2.converter.read.ConvertedIterableInterval;
+import net.imglib2.converter.read.ConvertedRandomAccessibleInterval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.ShortType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the read-only converted views of {@code net.imglib2.converter.read}
+ * by converting images of several {@link NativeType}s to {@link FloatType}.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS )
+@Measurement( iterations = 10, time = 500, timeUnit = TimeUnit.MILLISECONDS )
+@Fork( 1 )
+public class ConverterBenchmark
+{
+	@Param( { "UnsignedByteType", "ShortType", "UnsignedShortType", "IntType", "FloatType", "DoubleType" } )
+	public String type;
+
+	private static final long SIDE = 1000;
+
+	private ConvertedIterableInterval< ?, FloatType > iterable;
+
+	private ConvertedRandomAccessibleInterval< ?, FloatType > accessible;
+
+	@Setup
+	public void setup()
+	{
+		if ( type.equals( "UnsignedByteType" ) )
+			setup( new UnsignedByteType() );
+		else if ( type.equals( "ShortType" ) )
+			setup( new ShortType() );
+		else if ( type.equals( "UnsignedShortType" ) )
+			setup( new UnsignedShortType() );
+		else if ( type.equals( "IntType" ) )
+			setup( new IntType() );
+		else if ( type.equals( "FloatType" ) )
+			setup( new FloatType() );
+		else if ( type.equals( "DoubleType" ) )
+			setup( new DoubleType() );
+		else
+			throw new IllegalArgumentException( "Unsupported type: " + type );
+	}
+
+	private < T extends RealType< T > & NativeType< T > > void setup( final T t )
+	{
+		final ArrayImg< T, ? > img = new ArrayImgFactory< T >().create( new long[] { SIDE, SIDE }, t );
+		BenchmarkImages.fill( img );
+		final Converter< T, FloatType > converter = new RealFloatConverter< T >();
+		iterable = new ConvertedIterableInterval< T, FloatType >( img, converter, new FloatType() );
+		accessible = new ConvertedRandomAccessibleInterval< T, FloatType >( img, converter, new FloatType() );
+	}
+
+	@Benchmark
+	public double cursor()
+	{
+		return BenchmarkImages.sum( iterable.cursor() );
+	}
+
+	@Benchmark
+	public double randomAccess()
+	{
+		final RandomAccess< FloatType > ra = accessible.randomAccess();
+		double sum = 0;
+		for ( long y = 0; y < SIDE; y++ )
+		{
+			ra.setPosition( 0, 0 );
+			ra.setPosition( y, 1 );
+			for ( long x = 0; x < SIDE; x++ )
+			{
+				sum += ra.get().getRealDouble();
+				ra.fwd( 0 );
+			}
+		}
+		return sum;
+	}
+
+}
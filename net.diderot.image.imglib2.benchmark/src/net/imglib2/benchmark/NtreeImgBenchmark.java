@@ -0,0 +1,129 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.NativeImgFactory;
+import net.imglib2.img.sparse.ArrayNtreeImg;
+import net.imglib2.img.sparse.ArrayNtreeImgFactory;
+import net.imglib2.img.sparse.NtreeImg;
+import net.imglib2.img.sparse.NtreeImgFactory;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks traversal of a {@link NtreeImg} or {@link ArrayNtreeImg} with an
+ * {@code NtreeCursor} and an {@code NtreeRandomAccess}. The image consists of
+ * uniform blocks, which is the case the sparse representation is meant for.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS )
+@Measurement( iterations = 10, time = 500, timeUnit = TimeUnit.MILLISECONDS )
+@Fork( 1 )
+public class NtreeImgBenchmark
+{
+	@Param( { "8", "64" } )
+	public String blockSize;
+
+	@Param( { "ntree", "arrayNtree" } )
+	public String container;
+
+	private static final long SIDE = 512;
+
+	private Img< UnsignedByteType > img;
+
+	@Setup
+	public void setup()
+	{
+		final int block = Integer.parseInt( blockSize );
+		final NativeImgFactory< UnsignedByteType > factory = container.equals( "ntree" ) ? new NtreeImgFactory< UnsignedByteType >() : new ArrayNtreeImgFactory< UnsignedByteType >();
+		img = factory.create( new long[] { SIDE, SIDE }, new UnsignedByteType() );
+		final Cursor< UnsignedByteType > c = img.localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			final long bx = c.getLongPosition( 0 ) / block, by = c.getLongPosition( 1 ) / block;
+			c.get().set( ( int ) ( ( bx * 31 + by * 17 ) & 0x7f ) );
+		}
+	}
+
+	@Benchmark
+	public double cursor()
+	{
+		return BenchmarkImages.sum( img.cursor() );
+	}
+
+	@Benchmark
+	public double localizingCursor()
+	{
+		return BenchmarkImages.sumLocalized( img.localizingCursor() );
+	}
+
+	@Benchmark
+	public double randomAccess()
+	{
+		final RandomAccess< UnsignedByteType > ra = img.randomAccess();
+		double sum = 0;
+		for ( long y = 0; y < SIDE; y++ )
+		{
+			ra.setPosition( 0, 0 );
+			ra.setPosition( y, 1 );
+			for ( long x = 0; x < SIDE; x++ )
+			{
+				sum += ra.get().getRealDouble();
+				ra.fwd( 0 );
+			}
+		}
+		return sum;
+	}
+
+}
@@ -0,0 +1,118 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks traversal of {@link PlanarImg}s of one, two and three
+ * dimensions, which use the 1D, 2D and n-dimensional {@code PlanarCursor}
+ * implementations respectively.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS )
+@Measurement( iterations = 10, time = 500, timeUnit = TimeUnit.MILLISECONDS )
+@Fork( 1 )
+public class PlanarImgBenchmark
+{
+	@Param( { "1000000" } )
+	public String size;
+
+	private PlanarImg< FloatType, ? > img1d, img2d, img3d;
+
+	@Setup
+	public void setup()
+	{
+		final long n = Long.parseLong( size );
+		final long side2 = ( long ) Math.sqrt( n );
+		final long side3 = ( long ) Math.cbrt( n );
+		final PlanarImgFactory< FloatType > factory = new PlanarImgFactory< FloatType >();
+		img1d = factory.create( new long[] { n }, new FloatType() );
+		img2d = factory.create( new long[] { side2, side2 }, new FloatType() );
+		img3d = factory.create( new long[] { side3, side3, side3 }, new FloatType() );
+		BenchmarkImages.fill( img1d );
+		BenchmarkImages.fill( img2d );
+		BenchmarkImages.fill( img3d );
+	}
+
+	@Benchmark
+	public double cursor1d()
+	{
+		return BenchmarkImages.sum( img1d.cursor() );
+	}
+
+	@Benchmark
+	public double cursor2d()
+	{
+		return BenchmarkImages.sum( img2d.cursor() );
+	}
+
+	@Benchmark
+	public double cursor3d()
+	{
+		return BenchmarkImages.sum( img3d.cursor() );
+	}
+
+	@Benchmark
+	public double localizingCursor2d()
+	{
+		return BenchmarkImages.sumLocalized( img2d.localizingCursor() );
+	}
+
+	@Benchmark
+	public double localizingCursor3d()
+	{
+		return BenchmarkImages.sumLocalized( img3d.localizingCursor() );
+	}
+
+}
@@ -0,0 +1,148 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks access through {@link Views}: iterating an interval view, a
+ * subsampled view, and summing 3x3 neighborhoods over each of the out-of-bounds
+ * extensions, so that every access near the border goes through the
+ * out-of-bounds strategy.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS )
+@Measurement( iterations = 10, time = 500, timeUnit = TimeUnit.MILLISECONDS )
+@Fork( 1 )
+public class ViewsBenchmark
+{
+	private static final long SIDE = 512;
+
+	private ArrayImg< FloatType, ? > img;
+
+	@Setup
+	public void setup()
+	{
+		img = new ArrayImgFactory< FloatType >().create( new long[] { SIDE, SIDE }, new FloatType() );
+		BenchmarkImages.fill( img );
+	}
+
+	@Benchmark
+	public double interval()
+	{
+		final FinalInterval inner = new FinalInterval( new long[] { 1, 1 }, new long[] { SIDE - 2, SIDE - 2 } );
+		return BenchmarkImages.sum( Views.iterable( Views.interval( img, inner ) ).cursor() );
+	}
+
+	@Benchmark
+	public double subsample()
+	{
+		return BenchmarkImages.sum( Views.iterable( Views.subsample( img, 2 ) ).cursor() );
+	}
+
+	@Benchmark
+	public double extendBorder()
+	{
+		return neighborhoodSum( Views.extendBorder( img ) );
+	}
+
+	@Benchmark
+	public double extendMirrorSingle()
+	{
+		return neighborhoodSum( Views.extendMirrorSingle( img ) );
+	}
+
+	@Benchmark
+	public double extendPeriodic()
+	{
+		return neighborhoodSum( Views.extendPeriodic( img ) );
+	}
+
+	@Benchmark
+	public double extendZero()
+	{
+		return neighborhoodSum( Views.extendZero( img ) );
+	}
+
+	/** Sums the 3x3 neighborhood of every pixel of the image. */
+	private double neighborhoodSum( final RandomAccessible< FloatType > source )
+	{
+		final RandomAccess< FloatType > ra = source.randomAccess();
+		final Cursor< FloatType > c = img.localizingCursor();
+		double sum = 0;
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			ra.setPosition( c );
+			ra.move( -1, 0 );
+			ra.move( -1, 1 );
+			for ( int y = 0; y < 3; y++ )
+			{
+				for ( int x = 0; x < 3; x++ )
+				{
+					sum += ra.get().getRealDouble();
+					ra.fwd( 0 );
+				}
+				ra.move( -3, 0 );
+				ra.fwd( 1 );
+			}
+		}
+		return sum;
+	}
+
+}
@@ -0,0 +1,568 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A KDTree whose nodes are stored implicitly in flat arrays, as a compact
+ * alternative to {@link KDTree} for large point clouds.
+ * <p>
+ * The tree is balanced: the node splitting the elements {@code [i, j]} is the
+ * median element at index {@code k = i + (j - i) / 2}, its left subtree holds
+ * the elements {@code [i, k - 1]} and its right subtree {@code [k + 1, j]}.
+ * The split dimension cycles through the dimensions with increasing depth, as
+ * in {@link KDTree}. Hence no child references are needed: the coordinates of
+ * all nodes live in one {@code double[]} (node {@code k} at offset
+ * {@code k * n}), and the values in one array, both in node order.
+ * </p>
+ * <p>
+ * Construction partitions the coordinates in place around the median of each
+ * range; large ranges are built in parallel on a {@link ForkJoinPool}.
+ * </p>
+ * <p>
+ * Use {@code NearestNeighborSearchOnFlatKDTree},
+ * {@code KNearestNeighborSearchOnFlatKDTree} and
+ * {@code RadiusNeighborSearchOnFlatKDTree} to query the tree.
+ * </p>
+ */
+public class FlatKDTree< T > implements EuclideanSpace, IterableRealInterval< T >
+{
+	/**
+	 * Ranges with at least this many elements are split into parallel tasks
+	 * during construction.
+	 */
+	private static final int PARALLEL_THRESHOLD = 1 << 14;
+
+	/**
+	 * the number of dimensions.
+	 */
+	final protected int n;
+
+	/**
+	 * the number of nodes in the tree.
+	 */
+	final protected int size;
+
+	/**
+	 * coordinates of all nodes, in node order.
+	 */
+	final protected double[] positions;
+
+	/**
+	 * values of all nodes, in node order.
+	 */
+	final protected Object[] values;
+
+	/**
+	 * minimum of each dimension.
+	 */
+	final protected double[] min;
+
+	/**
+	 * maximum of each dimension.
+	 */
+	final protected double[] max;
+
+	/**
+	 * Construct a tree from the elements in the given lists, using the common
+	 * {@link ForkJoinPool}.
+	 *
+	 * <p>
+	 * Note that the constructor can be called with the same list for both
+	 * {@code values == positions} if {@code T extends RealLocalizable}.
+	 * </p>
+	 *
+	 * @param values
+	 *            a list of values
+	 * @param positions
+	 *            a list of positions corresponding to the values
+	 */
+	public < L extends RealLocalizable > FlatKDTree( final List< T > values, final List< L > positions )
+	{
+		this( values.toArray(), flatten( positions ), positions.get( 0 ).numDimensions(), ForkJoinPool.commonPool() );
+	}
+
+	/**
+	 * Construct a tree from values and their coordinates, given as a flat
+	 * array.
+	 *
+	 * @param values
+	 *            the values. The tree takes ownership of the array and reorders
+	 *            it.
+	 * @param positions
+	 *            the coordinates, {@code numDimensions} per value. The tree
+	 *            takes ownership of the array and reorders it.
+	 * @param numDimensions
+	 *            the number of dimensions
+	 * @param pool
+	 *            the pool on which to build the tree
+	 */
+	public FlatKDTree( final Object[] values, final double[] positions, final int numDimensions, final ForkJoinPool pool )
+	{
+		if ( numDimensions < 1 || positions.length != ( long ) values.length * numDimensions )
+			throw new IllegalArgumentException( "Expected " + numDimensions + " coordinates for each of " + values.length + " values, but got " + positions.length );
+		this.n = numDimensions;
+		this.size = values.length;
+		this.positions = positions;
+		this.values = values;
+
+		this.min = new double[ n ];
+		this.max = new double[ n ];
+		for ( int d = 0; d < n; ++d )
+		{
+			min[ d ] = Double.MAX_VALUE;
+			max[ d ] = -Double.MAX_VALUE;
+		}
+		for ( int i = 0, o = 0; i < size; ++i )
+		{
+			for ( int d = 0; d < n; ++d, ++o )
+			{
+				final double x = positions[ o ];
+				if ( x < min[ d ] )
+					min[ d ] = x;
+				if ( x > max[ d ] )
+					max[ d ] = x;
+			}
+		}
+
+		if ( size > PARALLEL_THRESHOLD )
+			pool.invoke( new BuildTask( 0, size - 1, 0 ) );
+		else
+			build( 0, size - 1, 0 );
+	}
+
+	private static < L extends RealLocalizable > double[] flatten( final List< L > positions )
+	{
+		final int n = positions.get( 0 ).numDimensions();
+		final double[] flat = new double[ positions.size() * n ];
+		final double[] tmp = new double[ n ];
+		int o = 0;
+		for ( final L position : positions )
+		{
+			if ( position.numDimensions() != n )
+				throw new IllegalArgumentException( "Positions of differing dimensionality" );
+			position.localize( tmp );
+			System.arraycopy( tmp, 0, flat, o, n );
+			o += n;
+		}
+		return flat;
+	}
+
+	// -- FlatKDTree methods --
+
+	/**
+	 * Gets the number of nodes, as an int.
+	 */
+	public int numNodes()
+	{
+		return size;
+	}
+
+	/**
+	 * Gets the coordinate of a node.
+	 *
+	 * @param node
+	 *            the node index
+	 * @param d
+	 *            the dimension
+	 */
+	public double getCoordinate( final int node, final int d )
+	{
+		return positions[ node * n + d ];
+	}
+
+	/**
+	 * Gets the value of a node.
+	 *
+	 * @param node
+	 *            the node index
+	 */
+	@SuppressWarnings( "unchecked" )
+	public T getValue( final int node )
+	{
+		return ( T ) values[ node ];
+	}
+
+	/**
+	 * Gets the squared Euclidean distance between a node and a position.
+	 */
+	public double squDistance( final int node, final double[] pos )
+	{
+		double sum = 0;
+		for ( int d = 0, o = node * n; d < n; ++d, ++o )
+		{
+			final double diff = pos[ d ] - positions[ o ];
+			sum += diff * diff;
+		}
+		return sum;
+	}
+
+	/**
+	 * Gets the coordinates of all nodes, {@link #numDimensions()} per node, in
+	 * node order. The array must not be modified.
+	 */
+	public double[] getPositions()
+	{
+		return positions;
+	}
+
+	/**
+	 * Gets a {@link RealLocalizable} {@link Sampler} for the given node.
+	 */
+	public Node node( final int node )
+	{
+		return new Node( node );
+	}
+
+	// -- EuclideanSpace methods --
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	// -- RealInterval methods --
+
+	@Override
+	public double realMin( final int d )
+	{
+		return min[ d ];
+	}
+
+	@Override
+	public void realMin( final double[] m )
+	{
+		for ( int d = 0; d < n; ++d )
+			m[ d ] = min[ d ];
+	}
+
+	@Override
+	public void realMin( final RealPositionable m )
+	{
+		m.setPosition( min );
+	}
+
+	@Override
+	public double realMax( final int d )
+	{
+		return max[ d ];
+	}
+
+	@Override
+	public void realMax( final double[] m )
+	{
+		for ( int d = 0; d < n; ++d )
+			m[ d ] = max[ d ];
+	}
+
+	@Override
+	public void realMax( final RealPositionable m )
+	{
+		m.setPosition( max );
+	}
+
+	// -- IterableRealInterval methods --
+
+	@Override
+	public long size()
+	{
+		return size;
+	}
+
+	@Override
+	public Object iterationOrder()
+	{
+		return this; // iteration order is only compatible with ourselves
+	}
+
+	@Override
+	public T firstElement()
+	{
+		return getValue( 0 );
+	}
+
+	@Override
+	public FlatKDTreeCursor cursor()
+	{
+		return new FlatKDTreeCursor();
+	}
+
+	@Override
+	public FlatKDTreeCursor localizingCursor()
+	{
+		return cursor();
+	}
+
+	@Override
+	public FlatKDTreeCursor iterator()
+	{
+		return cursor();
+	}
+
+	// -- Helper methods --
+
+	/**
+	 * Arranges the elements {@code [i, j]} as the subtree whose root splits
+	 * dimension {@code d}.
+	 */
+	private void build( int i, final int j, int d )
+	{
+		// NB: Loop on the right subtree rather than recursing.
+		while ( j > i )
+		{
+			final int k = i + ( j - i ) / 2;
+			select( i, j, k, d );
+			d = ( d + 1 == n ) ? 0 : d + 1;
+			build( i, k - 1, d );
+			i = k + 1;
+		}
+	}
+
+	/**
+	 * Partially sorts the elements {@code [i, j]} such that element {@code k}
+	 * is the one which would be there if they were sorted along dimension
+	 * {@code d}, with no larger elements before and no smaller ones after it.
+	 */
+	private void select( int i, int j, final int k, final int d )
+	{
+		// NB: Wirth's selection; equal elements are split evenly between both
+		// partitions, so many duplicate coordinates do not degrade it.
+		while ( j > i )
+		{
+			final double pivot = coord( k, d );
+			int l = i, r = j;
+			do
+			{
+				while ( coord( l, d ) < pivot )
+					++l;
+				while ( pivot < coord( r, d ) )
+					--r;
+				if ( l <= r )
+					swap( l++, r-- );
+			}
+			while ( l <= r );
+			if ( r < k )
+				i = l;
+			if ( k < l )
+				j = r;
+		}
+	}
+
+	private double coord( final int node, final int d )
+	{
+		return positions[ node * n + d ];
+	}
+
+	private void swap( final int a, final int b )
+	{
+		if ( a == b )
+			return;
+		for ( int d = 0, oa = a * n, ob = b * n; d < n; ++d, ++oa, ++ob )
+		{
+			final double t = positions[ oa ];
+			positions[ oa ] = positions[ ob ];
+			positions[ ob ] = t;
+		}
+		final Object t = values[ a ];
+		values[ a ] = values[ b ];
+		values[ b ] = t;
+	}
+
+	// -- Helper classes --
+
+	/** Builds a subtree, forking the two halves of large ranges. */
+	private class BuildTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final int i, j, d;
+
+		private BuildTask( final int i, final int j, final int d )
+		{
+			this.i = i;
+			this.j = j;
+			this.d = d;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if ( j - i < PARALLEL_THRESHOLD )
+			{
+				build( i, j, d );
+				return;
+			}
+			final int k = i + ( j - i ) / 2;
+			select( i, j, k, d );
+			final int dChild = ( d + 1 == n ) ? 0 : d + 1;
+			invokeAll( new BuildTask( i, k - 1, dChild ), new BuildTask( k + 1, j, dChild ) );
+		}
+	}
+
+	/**
+	 * A node of the tree, as a {@link RealLocalizable} {@link Sampler}.
+	 */
+	public class Node implements RealLocalizable, Sampler< T >
+	{
+		protected int index;
+
+		protected Node( final int index )
+		{
+			this.index = index;
+		}
+
+		/** Gets the index of this node. */
+		public int getIndex()
+		{
+			return index;
+		}
+
+		@Override
+		public int numDimensions()
+		{
+			return n;
+		}
+
+		@Override
+		public void localize( final float[] position )
+		{
+			for ( int d = 0, o = index * n; d < n; ++d, ++o )
+				position[ d ] = ( float ) positions[ o ];
+		}
+
+		@Override
+		public void localize( final double[] position )
+		{
+			System.arraycopy( positions, index * n, position, 0, n );
+		}
+
+		@Override
+		public float getFloatPosition( final int d )
+		{
+			return ( float ) positions[ index * n + d ];
+		}
+
+		@Override
+		public double getDoublePosition( final int d )
+		{
+			return positions[ index * n + d ];
+		}
+
+		@Override
+		public T get()
+		{
+			return getValue( index );
+		}
+
+		@Override
+		public Node copy()
+		{
+			return new Node( index );
+		}
+
+		@Override
+		public String toString()
+		{
+			return "node " + index + " | " + get();
+		}
+	}
+
+	/**
+	 * Iterates the nodes in node order.
+	 */
+	public final class FlatKDTreeCursor extends Node implements RealCursor< T >
+	{
+		private FlatKDTreeCursor()
+		{
+			super( -1 );
+		}
+
+		@Override
+		public FlatKDTreeCursor copy()
+		{
+			final FlatKDTreeCursor copy = new FlatKDTreeCursor();
+			copy.index = index;
+			return copy;
+		}
+
+		@Override
+		public FlatKDTreeCursor copyCursor()
+		{
+			return copy();
+		}
+
+		@Override
+		public void jumpFwd( final long steps )
+		{
+			index += steps;
+		}
+
+		@Override
+		public void fwd()
+		{
+			++index;
+		}
+
+		@Override
+		public void reset()
+		{
+			index = -1;
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return index < size - 1;
+		}
+
+		@Override
+		public T next()
+		{
+			fwd();
+			return get();
+		}
+
+		@Override
+		public void remove()
+		{
+			// NB: no action.
+		}
+	}
+
+}
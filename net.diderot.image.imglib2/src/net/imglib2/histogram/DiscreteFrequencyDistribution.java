@@ -168,6 +168,50 @@ public class DiscreteFrequencyDistribution implements Img< LongType >
 		totalValues--;
 	}
 
+	/**
+	 * Adds the frequency counts of another distribution with the same
+	 * dimensions to this one.
+	 */
+	public void add( final DiscreteFrequencyDistribution other )
+	{
+		for ( int d = 0; d < numDimensions(); d++ )
+		{
+			if ( dimension( d ) != other.dimension( d ) ) { throw new IllegalArgumentException( "distributions have different dimensions" ); }
+		}
+		final Cursor< LongType > cursor = counts.localizingCursor();
+		final RandomAccess< LongType > otherAccess = other.counts.randomAccess();
+		while ( cursor.hasNext() )
+		{
+			cursor.fwd();
+			otherAccess.setPosition( cursor );
+			cursor.get().set( cursor.get().get() + otherAccess.get().get() );
+		}
+		totalValues += other.totalValues;
+	}
+
+	/**
+	 * Adds an array of frequency counts to this distribution. The counts are
+	 * given in flat order, i.e., with the first dimension varying fastest.
+	 */
+	public void add( final long[] binCounts )
+	{
+		if ( binCounts.length < size() ) { throw new IllegalArgumentException( "too few bin counts" ); }
+		final long[] position = new long[ numDimensions() ];
+		final Cursor< LongType > cursor = counts.localizingCursor();
+		while ( cursor.hasNext() )
+		{
+			final LongType count = cursor.next();
+			cursor.localize( position );
+			long index = 0;
+			for ( int d = numDimensions() - 1; d >= 0; d-- )
+			{
+				index = index * dimension( d ) + position[ d ];
+			}
+			count.set( count.get() + binCounts[ ( int ) index ] );
+			totalValues += binCounts[ ( int ) index ];
+		}
+	}
+
 	/**
 	 * Returns the total number of values counted by this distribution.
 	 */
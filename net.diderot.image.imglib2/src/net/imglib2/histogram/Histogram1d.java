@@ -34,10 +34,13 @@
 
 package net.imglib2.histogram;
 
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
 
 import net.imglib2.Cursor;
 import net.imglib2.Interval;
+import net.imglib2.IterableInterval;
 import net.imglib2.Positionable;
 import net.imglib2.RandomAccess;
 import net.imglib2.RealPositionable;
@@ -425,6 +428,62 @@ public class Histogram1d< T > implements Img< LongType >
 		init( data );
 	}
 
+	/**
+	 * Counts the data contained in the given interval in parallel. The interval
+	 * is divided into one slice per task; each task counts its slice into a
+	 * private array of bin counts, and the arrays are then summed into this
+	 * histogram.
+	 * 
+	 * @param data
+	 *            The total data to count
+	 * @param service
+	 *            The executor on which to run the tasks, or null to count on
+	 *            the calling thread
+	 * @param numTasks
+	 *            The number of slices to count in parallel
+	 */
+	public void countData( final IterableInterval< T > data, final ExecutorService service, final int numTasks )
+	{
+		reset();
+		if ( data.size() == 0 )
+			return;
+		firstValue = data.firstElement();
+		final long[] counts = new ParallelBinCounter< T >( Collections.singletonList( mapper ) ).count( Collections.singletonList( data ), service, numTasks );
+		add( counts, counts[ counts.length - 1 ] );
+	}
+
+	/**
+	 * Adds primitive bin counts, such as those accumulated privately by a
+	 * worker thread, to this histogram.
+	 * 
+	 * @param binCounts
+	 *            The counts to add, indexed by bin position
+	 * @param ignored
+	 *            The number of values which could not be mapped to any bin
+	 */
+	public void add( final long[] binCounts, final long ignored )
+	{
+		distrib.add( binCounts );
+		ignoredCount += ignored;
+	}
+
+	/**
+	 * Adds the counts of another histogram with the same bin mapping to this
+	 * one. Together with {@link #Histogram1d(Histogram1d)}, this allows
+	 * histograms of parts of some data to be counted independently (e.g., by
+	 * different threads) and combined afterwards.
+	 * 
+	 * @param other
+	 *            The histogram whose counts to add
+	 */
+	public void add( final Histogram1d< T > other )
+	{
+		distrib.add( other.distrib );
+		ignoredCount += other.ignoredCount;
+		if ( firstValue == null )
+			firstValue = other.firstValue;
+	}
+
 	/**
 	 * Counts additional data contained in a given iterable collection. One can
 	 * use this to update an existing histogram with a subset of values.
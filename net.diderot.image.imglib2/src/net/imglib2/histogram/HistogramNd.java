@@ -37,9 +37,11 @@ package net.imglib2.histogram;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 import net.imglib2.Cursor;
 import net.imglib2.Interval;
+import net.imglib2.IterableInterval;
 import net.imglib2.Positionable;
 import net.imglib2.RandomAccess;
 import net.imglib2.RealPositionable;
@@ -112,7 +114,7 @@ public class HistogramNd< T > implements Img< LongType >
 	public HistogramNd( final HistogramNd< T > other )
 	{
 		final List< BinMapper1d< T >> mappersCopy = new ArrayList< BinMapper1d< T >>();
-		for ( final BinMapper1d< T > m : mappers )
+		for ( final BinMapper1d< T > m : other.mappers )
 		{
 			mappersCopy.add( m.copy() );
 		}
@@ -756,6 +758,45 @@ public class HistogramNd< T > implements Img< LongType >
 		init( data );
 	}
 
+	/**
+	 * Counts the data contained in the given intervals in parallel. The
+	 * intervals, which must share the same iteration order, each supply the
+	 * values of one dimension. They are divided into one slice per task; each
+	 * task counts its slice into a private array of bin counts, and the arrays
+	 * are then summed into this histogram.
+	 * 
+	 * @param data
+	 *            The total data to count, one interval per dimension
+	 * @param service
+	 *            The executor on which to run the tasks, or null to count on
+	 *            the calling thread
+	 * @param numTasks
+	 *            The number of slices to count in parallel
+	 */
+	public void countData( final List< ? extends IterableInterval< T >> data, final ExecutorService service, final int numTasks )
+	{
+		if ( data.size() != mappers.size() ) { throw new IllegalArgumentException( "one data source is required per dimension" ); }
+		reset();
+		final long[] counts = new ParallelBinCounter< T >( mappers ).count( data, service, numTasks );
+		distrib.add( counts );
+		ignoredCount += counts[ counts.length - 1 ];
+	}
+
+	/**
+	 * Adds the counts of another histogram with the same bin mappings to this
+	 * one. Together with {@link #HistogramNd(HistogramNd)}, this allows
+	 * histograms of parts of some data to be counted independently (e.g., by
+	 * different threads) and combined afterwards.
+	 * 
+	 * @param other
+	 *            The histogram whose counts to add
+	 */
+	public void add( final HistogramNd< T > other )
+	{
+		distrib.add( other.distrib );
+		ignoredCount += other.ignoredCount;
+	}
+
 	/**
 	 * Counts additional data contained in a given iterable collection. One can
 	 * use this to update an existing histogram with a subset of values.
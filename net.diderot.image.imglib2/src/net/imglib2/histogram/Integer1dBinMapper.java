@@ -100,7 +100,15 @@ public class Integer1dBinMapper< T extends IntegerType< T >> implements
 	@Override
 	public long map( final T value )
 	{
-		final long val = value.getIntegerLong();
+		return map( value.getIntegerLong() );
+	}
+
+	/**
+	 * Converts a primitive data value to a long index within the bin
+	 * distribution, exactly as {@link #map(IntegerType)} does for typed values.
+	 */
+	public long map( final long val )
+	{
 		long pos;
 		if ( val >= minVal && val <= maxVal )
 		{
@@ -0,0 +1,218 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.histogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+import net.imglib2.Cursor;
+import net.imglib2.IterableInterval;
+import net.imglib2.type.numeric.IntegerType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.util.SliceTasks;
+
+/**
+ * Counts values into bins over slices of a set of {@link IterableInterval}s in
+ * parallel. Each task fills a private primitive {@code long[]} histogram for
+ * its slice, and the histograms are summed once all tasks are done, so merging
+ * costs O(bins) per task rather than synchronizing on every value.
+ * <p>
+ * {@link Real1dBinMapper}s and {@link Integer1dBinMapper}s are called through
+ * their primitive {@code map} methods.
+ */
+final class ParallelBinCounter< T >
+{
+
+	private static final int GENERIC = 0, REAL = 1, INTEGER = 2;
+
+	private final List< BinMapper1d< T >> mappers;
+
+	private final int[] kinds;
+
+	private final long[] binCounts;
+
+	private final int totalBins;
+
+	ParallelBinCounter( final List< BinMapper1d< T >> mappers )
+	{
+		this.mappers = mappers;
+		kinds = new int[ mappers.size() ];
+		binCounts = new long[ mappers.size() ];
+		long total = 1;
+		for ( int d = 0; d < kinds.length; d++ )
+		{
+			final BinMapper1d< T > mapper = mappers.get( d );
+			if ( mapper instanceof Real1dBinMapper )
+				kinds[ d ] = REAL;
+			else if ( mapper instanceof Integer1dBinMapper )
+				kinds[ d ] = INTEGER;
+			else
+				kinds[ d ] = GENERIC;
+			binCounts[ d ] = mapper.getBinCount();
+			total *= binCounts[ d ];
+		}
+		if ( total >= Integer.MAX_VALUE ) { throw new IllegalArgumentException( "too many bins for parallel counting" ); }
+		totalBins = ( int ) total;
+	}
+
+	/**
+	 * Counts the values of the given data sources, which must have the same
+	 * iteration order. The i-th values of all sources together form the i-th
+	 * n-dimensional value.
+	 * 
+	 * @param data
+	 *            One data source per bin mapper
+	 * @param service
+	 *            The executor on which to run the counting tasks, or null to
+	 *            count on the calling thread only; the calling thread counts
+	 *            one slice, and any slice not yet started, itself
+	 * @param numTasks
+	 *            The number of slices to count in parallel
+	 * @return The bin counts in flat order (first dimension varying fastest),
+	 *         followed by the number of ignored values
+	 */
+	long[] count( final List< ? extends IterableInterval< T >> data, final ExecutorService service, final int numTasks )
+	{
+		long size = Long.MAX_VALUE;
+		for ( final IterableInterval< T > source : data )
+			size = Math.min( size, source.size() );
+
+		final int tasks = ( service == null ) ? 1 : ( int ) Math.max( 1, Math.min( numTasks, size ) );
+		if ( tasks == 1 )
+			return countSlice( data, 0, size );
+
+		final List< Callable< long[] >> slices = new ArrayList< Callable< long[] >>( tasks );
+		for ( int t = 0; t < tasks; t++ )
+		{
+			final long start = size * t / tasks;
+			final long end = size * ( t + 1 ) / tasks;
+			slices.add( new Callable< long[] >()
+			{
+				@Override
+				public long[] call()
+				{
+					return countSlice( data, start, end - start );
+				}
+			} );
+		}
+
+		final long[] result = new long[ totalBins + 1 ];
+		for ( final long[] counts : SliceTasks.invokeAll( service, slices ) )
+			for ( int i = 0; i < counts.length; i++ )
+				result[ i ] += counts[ i ];
+		return result;
+	}
+
+	// -- helpers --
+
+	private long[] countSlice( final List< ? extends IterableInterval< T >> data, final long start, final long count )
+	{
+		final long[] counts = new long[ totalBins + 1 ];
+		final int n = data.size();
+		final List< Cursor< T >> cursors = new ArrayList< Cursor< T >>( n );
+		for ( final IterableInterval< T > source : data )
+		{
+			final Cursor< T > cursor = source.cursor();
+			cursor.jumpFwd( start );
+			cursors.add( cursor );
+		}
+
+		if ( n == 1 )
+		{
+			// NB: Specialized loops for the common 1-d case.
+			final Cursor< T > cursor = cursors.get( 0 );
+			final BinMapper1d< T > mapper = mappers.get( 0 );
+			switch ( kinds[ 0 ] )
+			{
+			case REAL:
+			{
+				final Real1dBinMapper< ? > real = ( Real1dBinMapper< ? > ) mapper;
+				for ( long i = 0; i < count; i++ )
+					counts[ index( real.map( ( ( RealType< ? > ) cursor.next() ).getRealDouble() ) ) ]++;
+				break;
+			}
+			case INTEGER:
+			{
+				final Integer1dBinMapper< ? > integer = ( Integer1dBinMapper< ? > ) mapper;
+				for ( long i = 0; i < count; i++ )
+					counts[ index( integer.map( ( ( IntegerType< ? > ) cursor.next() ).getIntegerLong() ) ) ]++;
+				break;
+			}
+			default:
+				for ( long i = 0; i < count; i++ )
+					counts[ index( mapper.map( cursor.next() ) ) ]++;
+			}
+			return counts;
+		}
+
+		for ( long i = 0; i < count; i++ )
+		{
+			long index = 0;
+			boolean ignored = false;
+			for ( int d = n - 1; d >= 0; d-- )
+			{
+				final long bin = map( d, cursors.get( d ).next() );
+				if ( bin == Long.MIN_VALUE || bin == Long.MAX_VALUE )
+					ignored = true;
+				else
+					index = index * binCounts[ d ] + bin;
+			}
+			counts[ ignored ? totalBins : ( int ) index ]++;
+		}
+		return counts;
+	}
+
+	private long map( final int d, final T value )
+	{
+		switch ( kinds[ d ] )
+		{
+		case REAL:
+			return ( ( Real1dBinMapper< ? > ) mappers.get( d ) ).map( ( ( RealType< ? > ) value ).getRealDouble() );
+		case INTEGER:
+			return ( ( Integer1dBinMapper< ? > ) mappers.get( d ) ).map( ( ( IntegerType< ? > ) value ).getIntegerLong() );
+		default:
+			return mappers.get( d ).map( value );
+		}
+	}
+
+	/** Gets the counter index of a 1-d bin, with ignored values last. */
+	private int index( final long bin )
+	{
+		return ( bin == Long.MIN_VALUE || bin == Long.MAX_VALUE ) ? totalBins : ( int ) bin;
+	}
+
+}
@@ -115,7 +115,15 @@ public class Real1dBinMapper< T extends RealType< T >> implements BinMapper1d< T
 	@Override
 	public long map( final T value )
 	{
-		final double val = value.getRealDouble();
+		return map( value.getRealDouble() );
+	}
+
+	/**
+	 * Converts a primitive data value to a long index within the bin
+	 * distribution, exactly as {@link #map(RealType)} does for typed values.
+	 */
+	public long map( final double val )
+	{
 		long pos;
 		if ( val >= minVal && val <= maxVal )
 		{
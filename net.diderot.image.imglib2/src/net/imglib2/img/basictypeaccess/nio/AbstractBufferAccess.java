@@ -0,0 +1,137 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.basictypeaccess.nio;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+
+/**
+ * Base class of the basic type accesses backed by a {@link ByteBuffer}
+ * rather than a Java array.
+ * <p>
+ * Accesses created with a number of entities allocate a direct buffer in
+ * native byte order, which lives outside of the Java heap and is thus not
+ * copied or scanned by the garbage collector. Accesses can also wrap a given
+ * buffer, such as a {@link java.nio.MappedByteBuffer} of a file, using the
+ * bytes from its position to its limit in its byte order. Either way, the
+ * {@link #getCurrentStorageArray() storage} is the {@link ByteBuffer}.
+ * </p>
+ * <p>
+ * Serialization copies the bytes of the buffer; a deserialized access is
+ * backed by a new direct buffer in the original byte order.
+ * </p>
+ */
+public abstract class AbstractBufferAccess< A > implements ArrayDataAccess< A >
+{
+	private static final long serialVersionUID = 1L;
+
+	private static final int COPY_CHUNK = 8192;
+
+	protected transient ByteBuffer buffer;
+
+	protected AbstractBufferAccess( final ByteBuffer buffer )
+	{
+		this.buffer = buffer;
+	}
+
+	/**
+	 * Creates the typed view of {@link #buffer} used by the accessors. Called
+	 * on construction and after deserialization.
+	 */
+	protected abstract void bind();
+
+	/** Gets the buffer backing this access. */
+	public ByteBuffer getBuffer()
+	{
+		return buffer;
+	}
+
+	@Override
+	public ByteBuffer getCurrentStorageArray()
+	{
+		return buffer;
+	}
+
+	/**
+	 * Allocates a direct buffer in native byte order for the given number of
+	 * entities of the given size in bytes.
+	 */
+	protected static ByteBuffer allocate( final int numEntities, final int entitySize )
+	{
+		final long numBytes = ( long ) numEntities * entitySize;
+		if ( numBytes > Integer.MAX_VALUE )
+			throw new IllegalArgumentException( "Buffer too big, use for example a CellImg instead: " + numBytes + " > " + Integer.MAX_VALUE + " bytes" );
+		return ByteBuffer.allocateDirect( ( int ) numBytes ).order( ByteOrder.nativeOrder() );
+	}
+
+	private void writeObject( final ObjectOutputStream out ) throws IOException
+	{
+		out.defaultWriteObject();
+		final ByteBuffer source = buffer.duplicate();
+		out.writeBoolean( buffer.order() == ByteOrder.BIG_ENDIAN );
+		out.writeInt( source.remaining() );
+		final byte[] chunk = new byte[ Math.min( COPY_CHUNK, source.remaining() ) ];
+		while ( source.hasRemaining() )
+		{
+			final int n = Math.min( chunk.length, source.remaining() );
+			source.get( chunk, 0, n );
+			out.write( chunk, 0, n );
+		}
+	}
+
+	private void readObject( final ObjectInputStream in ) throws IOException, ClassNotFoundException
+	{
+		in.defaultReadObject();
+		final ByteOrder order = in.readBoolean() ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+		final int numBytes = in.readInt();
+		if ( numBytes < 0 )
+			throw new IOException( "Invalid buffer size: " + numBytes );
+		buffer = ByteBuffer.allocateDirect( numBytes ).order( order );
+		final byte[] chunk = new byte[ Math.min( COPY_CHUNK, numBytes ) ];
+		while ( buffer.hasRemaining() )
+		{
+			final int n = Math.min( chunk.length, buffer.remaining() );
+			in.readFully( chunk, 0, n );
+			buffer.put( chunk, 0, n );
+		}
+		buffer.clear();
+		bind();
+	}
+}
@@ -0,0 +1,207 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+
+/**
+ * Loads the cells of a {@link CachedCells} cache in the background.
+ * <p>
+ * Requested cells are queued by priority (lower values first, then in order
+ * of request) and loaded on an {@link ExecutorService}: every request submits
+ * one task, which loads whichever queued cell has the best priority at the
+ * time it runs. Pending requests can be {@link #cancel() cancelled}, e.g. when
+ * a display moves on to another plane. {@link Listener}s are notified on the
+ * loading thread whenever a cell has been loaded.
+ * </p>
+ * 
+ * @see VolatileCellView
+ */
+public class AsyncCellLoader< A extends ArrayDataAccess< A > >
+{
+	/** Notified when cells have been loaded. */
+	public interface Listener
+	{
+		/**
+		 * Called on the loading thread after the cell with the given index in
+		 * the cell grid has been loaded into the cache.
+		 */
+		public void cellLoaded( int index );
+	}
+
+	private final CachedCells< A > cells;
+
+	private final ExecutorService service;
+
+	private final PriorityBlockingQueue< Request > queue = new PriorityBlockingQueue< Request >();
+
+	/** The queued requests, by cell index. */
+	private final ConcurrentHashMap< Integer, Request > pending = new ConcurrentHashMap< Integer, Request >();
+
+	private final CopyOnWriteArrayList< Listener > listeners = new CopyOnWriteArrayList< Listener >();
+
+	private final AtomicLong sequence = new AtomicLong();
+
+	private final Runnable loadNext = new Runnable()
+	{
+		@Override
+		public void run()
+		{
+			final Request request = queue.poll();
+			if ( request == null )
+				return;
+			try
+			{
+				cells.getCell( request.index );
+			}
+			finally
+			{
+				pending.remove( request.index, request );
+			}
+			for ( final Listener listener : listeners )
+				listener.cellLoaded( request.index );
+		}
+	};
+
+	/**
+	 * @param cells
+	 *            the cache to load cells into
+	 * @param service
+	 *            the executor on which to load cells
+	 */
+	public AsyncCellLoader( final CachedCells< A > cells, final ExecutorService service )
+	{
+		this.cells = cells;
+		this.service = service;
+	}
+
+	public CachedCells< A > getCells()
+	{
+		return cells;
+	}
+
+	public void addListener( final Listener listener )
+	{
+		listeners.add( listener );
+	}
+
+	public void removeListener( final Listener listener )
+	{
+		listeners.remove( listener );
+	}
+
+	/**
+	 * Requests the cell with the given index in the cell grid to be loaded, if
+	 * it is not cached yet. Requesting a cell which is already queued only
+	 * raises its priority, if the new one is better.
+	 * 
+	 * @param index
+	 *            index of the cell in the cell grid
+	 * @param priority
+	 *            the priority of the request; lower values are loaded first
+	 */
+	public void request( final int index, final double priority )
+	{
+		if ( cells.isCached( index ) )
+			return;
+		final Request request = new Request( index, priority, sequence.getAndIncrement() );
+		while ( true )
+		{
+			final Request queued = pending.putIfAbsent( index, request );
+			if ( queued == null )
+			{
+				queue.add( request );
+				service.execute( loadNext );
+				return;
+			}
+			if ( priority >= queued.priority || !queue.remove( queued ) )
+				return;
+			// NB: The task submitted for the queued request is still pending.
+			if ( pending.replace( index, queued, request ) )
+			{
+				queue.add( request );
+				return;
+			}
+			// the queued request was dropped meanwhile; queue this one anew
+		}
+	}
+
+	/** Gets the number of cells waiting to be loaded. */
+	public int getQueueSize()
+	{
+		return queue.size();
+	}
+
+	/**
+	 * Drops all requests which are not being loaded yet.
+	 */
+	public void cancel()
+	{
+		Request request;
+		while ( ( request = queue.poll() ) != null )
+			pending.remove( request.index, request );
+	}
+
+	// -- Helper classes --
+
+	private static final class Request implements Comparable< Request >
+	{
+		private final int index;
+
+		private final double priority;
+
+		private final long sequence;
+
+		private Request( final int index, final double priority, final long sequence )
+		{
+			this.index = index;
+			this.priority = priority;
+			this.sequence = sequence;
+		}
+
+		@Override
+		public int compareTo( final Request other )
+		{
+			final int c = Double.compare( priority, other.priority );
+			return c != 0 ? c : Long.compare( sequence, other.sequence );
+		}
+	}
+}
@@ -0,0 +1,667 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.img.cell;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import net.imglib2.img.Img;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.list.AbstractListImg;
+import net.imglib2.util.Fraction;
+import net.imglib2.util.IntervalIndexer;
+
+/**
+ * Implementation of {@link Cells} that creates {@link CachedCell}s on demand
+ * from a {@link CellLoader}, and keeps the most recently used of them in a
+ * cache bounded by the size of their data in bytes. This allows a
+ * {@link CellImg} to be larger than the heap.
+ * <p>
+ * Cells are loaded without holding the lock of the cache, so that requests
+ * for cached cells never wait for I/O; concurrent requests for the same
+ * uncached cell share a single load.
+ * </p>
+ * <p>
+ * If the cache is writable, modified cells are saved through the loader when
+ * they are evicted. Since samplers write directly into the data of a cell, a
+ * checksum of the data is kept to tell whether it was modified since it was
+ * loaded or saved. Samplers keep using the data of their current cell after
+ * it was evicted, so evicted data remains known to the cache until it is no
+ * longer in use: a cell requested again meanwhile gets the same data rather
+ * than a reloaded copy, and writes made after eviction are saved once the
+ * data is released (on a later cache miss) or {@link #flush() flushed}.
+ * {@link #flush()} should be called when done writing.
+ * </p>
+ */
+public class CachedCells< A extends ArrayDataAccess< A > > extends AbstractCells< A, CachedCell< A >, CachedCells.CellGrid< A > >
+{
+	private final A creator;
+
+	private final CellLoader loader;
+
+	private final boolean writable;
+
+	private final long maxBytes;
+
+	private final int entitySize;
+
+	private final CellGrid< A > cells;
+
+	/** The cached cells, by index in the cell grid, least recently used first. */
+	private final LinkedHashMap< Integer, CachedCell< A > > cache = new LinkedHashMap< Integer, CachedCell< A > >( 16, 0.75f, true );
+
+	/** The cells being loaded, by index in the cell grid. */
+	private final HashMap< Integer, FutureTask< CachedCell< A > > > loading = new HashMap< Integer, FutureTask< CachedCell< A > > >();
+
+	/** Data of evicted cells which may still be in use. */
+	private final HashMap< Integer, EvictedData< A > > evicted = new HashMap< Integer, EvictedData< A > >();
+
+	private final ReferenceQueue< A > evictedQueue = new ReferenceQueue< A >();
+
+	private long cachedBytes;
+
+	/**
+	 * Incremented by {@link #clear()}, so that loads started before do not
+	 * populate the cache.
+	 */
+	private long generation;
+
+	private long hits, misses, evictions;
+
+	/**
+	 * @param creator
+	 *            creates the storage arrays of the cells
+	 * @param entitiesPerPixel
+	 *            number of entities per pixel of the image type
+	 * @param dimensions
+	 *            dimensions of the image
+	 * @param cellDimensions
+	 *            dimensions of a standard cell
+	 * @param loader
+	 *            loads (and saves) the data of cells
+	 * @param maxBytes
+	 *            the maximum size in bytes of the data of the cached cells;
+	 *            the most recently used cell is always kept
+	 * @param writable
+	 *            whether to save modified cells through the loader
+	 */
+	public CachedCells( final A creator, final Fraction entitiesPerPixel, final long[] dimensions, final int[] cellDimensions, final CellLoader loader, final long maxBytes, final boolean writable )
+	{
+		super( entitiesPerPixel, dimensions, cellDimensions );
+		this.creator = creator;
+		this.loader = loader;
+		this.maxBytes = maxBytes;
+		this.writable = writable;
+		entitySize = CellData.entitySize( creator.getCurrentStorageArray() );
+
+		long total = 1;
+		for ( int d = 0; d < n; ++d )
+			total *= numCells[ d ];
+		if ( total > Integer.MAX_VALUE )
+			throw new IllegalArgumentException( "too many cells: " + total );
+		cells = new CellGrid< A >( this, numCells );
+	}
+
+	@Override
+	protected CellGrid< A > cells()
+	{
+		return cells;
+	}
+
+	public CellLoader getLoader()
+	{
+		return loader;
+	}
+
+	public boolean isWritable()
+	{
+		return writable;
+	}
+
+	public long getMaxBytes()
+	{
+		return maxBytes;
+	}
+
+	/** Gets the size in bytes of the data of the cached cells. */
+	public synchronized long getCachedBytes()
+	{
+		return cachedBytes;
+	}
+
+	/** Gets the number of cached cells. */
+	public synchronized int getCachedCellCount()
+	{
+		return cache.size();
+	}
+
+	/** Gets the number of cell requests answered from the cache. */
+	public synchronized long getHitCount()
+	{
+		return hits;
+	}
+
+	/** Gets the number of cell requests which had to load the cell. */
+	public synchronized long getMissCount()
+	{
+		return misses;
+	}
+
+	/** Gets the number of cells evicted from the cache. */
+	public synchronized long getEvictionCount()
+	{
+		return evictions;
+	}
+
+	/**
+	 * Gets the index in the cell grid of the cell containing the given image
+	 * position.
+	 */
+	public int getCellIndex( final long[] position )
+	{
+		long index = 0;
+		for ( int d = n - 1; d >= 0; --d )
+			index = index * numCells[ d ] + position[ d ] / cellDimensions[ d ];
+		return ( int ) index;
+	}
+
+	/** Gets whether the cell with the given index is cached. */
+	public synchronized boolean isCached( final int index )
+	{
+		return cache.containsKey( index );
+	}
+
+	/**
+	 * Gets the cell with the given index in the cell grid if it is cached,
+	 * without loading it.
+	 * 
+	 * @return the cell, or null if it is not cached
+	 */
+	public synchronized CachedCell< A > getCellIfCached( final int index )
+	{
+		final CachedCell< A > cell = cache.get( index );
+		if ( cell != null )
+			++hits;
+		return cell;
+	}
+
+	/**
+	 * Gets the cell with the given index in the cell grid, loading it if it is
+	 * not cached. If the cell is already being loaded by another thread, waits
+	 * for that load instead.
+	 */
+	public CachedCell< A > getCell( final int index )
+	{
+		final FutureTask< CachedCell< A > > task;
+		final boolean load;
+		final List< EvictedData< A > > released;
+		final List< EvictedData< A > > victims = new ArrayList< EvictedData< A > >();
+		synchronized ( this )
+		{
+			final long gen = generation;
+			final CachedCell< A > cell = cache.get( index );
+			if ( cell != null )
+			{
+				++hits;
+				return cell;
+			}
+			final FutureTask< CachedCell< A > > pending = loading.get( index );
+			load = pending == null;
+			if ( load )
+			{
+				++misses;
+				task = new FutureTask< CachedCell< A > >( new Callable< CachedCell< A > >()
+				{
+					@Override
+					public CachedCell< A > call() throws IOException
+					{
+						return load( index, gen, victims );
+					}
+				} );
+				loading.put( index, task );
+				released = purgeEvicted();
+			}
+			else
+			{
+				task = pending;
+				released = null;
+			}
+		}
+		if ( !load )
+			return await( task );
+		try
+		{
+			release( released );
+		}
+		finally
+		{
+			task.run();
+			writeBack( victims );
+		}
+		return await( task );
+	}
+
+	/**
+	 * Saves all cells whose data was modified, if the cache is writable.
+	 */
+	public void flush()
+	{
+		if ( !writable )
+			return;
+		final List< CachedCell< A > > cached;
+		final List< EvictedData< A > > known;
+		final List< EvictedData< A > > released;
+		synchronized ( this )
+		{
+			cached = new ArrayList< CachedCell< A > >( cache.values() );
+			known = new ArrayList< EvictedData< A > >( evicted.values() );
+			released = purgeEvicted();
+		}
+		try
+		{
+			for ( final CachedCell< A > cell : cached )
+				saveIfModified( cell );
+			for ( final EvictedData< A > ref : known )
+				saveIfModified( ref );
+		}
+		finally
+		{
+			release( released );
+		}
+	}
+
+	/**
+	 * Removes all cells from the cache, saving modified ones if the cache is
+	 * writable. Loads in progress complete, but do not populate the cache.
+	 * <p>
+	 * The cells are evicted, so that a cell requested again before its data is
+	 * saved (or while its data is still in use) gets the same data rather than
+	 * a stale reload; the cache is not locked while saving.
+	 * </p>
+	 */
+	public void clear()
+	{
+		final List< EvictedData< A > > victims = new ArrayList< EvictedData< A > >();
+		synchronized ( this )
+		{
+			++generation;
+			for ( final Map.Entry< Integer, CachedCell< A > > entry : cache.entrySet() )
+				victims.add( evict( entry.getKey(), entry.getValue() ) );
+			cache.clear();
+			cachedBytes = 0;
+		}
+		try
+		{
+			flush();
+		}
+		finally
+		{
+			for ( final EvictedData< A > ref : victims )
+				ref.pinned = null;
+		}
+	}
+
+	// -- Helper methods --
+
+	private long bytes( final CachedCell< A > cell )
+	{
+		return ( long ) CellData.length( cell.getData().getCurrentStorageArray() ) * entitySize;
+	}
+
+	/**
+	 * Loads the cell with the given index (or adopts its evicted data, if
+	 * that is still around), then publishes it. Called without holding the
+	 * lock.
+	 * 
+	 * @param gen
+	 *            the {@link #generation} when the load was started; if the
+	 *            cache was cleared since, the cell is not cached, only known
+	 *            like evicted data
+	 * @param victims
+	 *            receives the data of the cells evicted to make room
+	 */
+	private CachedCell< A > load( final int index, final long gen, final List< EvictedData< A > > victims ) throws IOException
+	{
+		final long[] cellGridPosition = new long[ n ];
+		final long[] cellMin = new long[ n ];
+		final int[] cellDims = new int[ n ];
+		IntervalIndexer.indexToPosition( index, numCells, cellGridPosition );
+		getCellDimensions( cellGridPosition, cellMin, cellDims );
+
+		final CachedCell< A > cell;
+		try
+		{
+			final EvictedData< A > ref;
+			synchronized ( this )
+			{
+				ref = evicted.remove( index );
+			}
+			A data = ref == null ? null : ref.get();
+			if ( data == null && ref != null && ref.storage != null )
+				data = copy( ref.storage );
+			final long checksum;
+			if ( data != null )
+			{
+				// NB: The evicted data may have been written to since it was
+				// last saved, so it is adopted again rather than reloaded.
+				checksum = ref.checksum;
+			}
+			else
+			{
+				long numPixels = 1;
+				for ( int d = 0; d < n; ++d )
+					numPixels *= cellDims[ d ];
+				data = creator.createArray( ( int ) entitiesPerPixel.mulCeil( numPixels ) );
+				loader.load( cellMin, cellDims, data );
+				checksum = writable ? CellData.checksum( data.getCurrentStorageArray() ) : 0;
+			}
+			cell = new CachedCell< A >( cellDims, cellMin, data );
+			cell.checksum = checksum;
+
+			synchronized ( this )
+			{
+				loading.remove( index );
+				if ( gen == generation )
+				{
+					cache.put( index, cell );
+					cachedBytes += bytes( cell );
+					victims.addAll( evict() );
+				}
+				else
+					evict( index, cell ).pinned = null;
+			}
+		}
+		catch ( final IOException | RuntimeException | Error e )
+		{
+			synchronized ( this )
+			{
+				loading.remove( index );
+			}
+			throw e;
+		}
+		return cell;
+	}
+
+	/** Saves the modified data of evicted cells, then unpins it. */
+	private void writeBack( final List< EvictedData< A > > victims )
+	{
+		try
+		{
+			for ( final EvictedData< A > ref : victims )
+				saveIfModified( ref );
+		}
+		finally
+		{
+			for ( final EvictedData< A > ref : victims )
+				ref.pinned = null;
+		}
+	}
+
+	/** Waits for the given load, rethrowing its failure. */
+	private CachedCell< A > await( final FutureTask< CachedCell< A > > task )
+	{
+		boolean interrupted = false;
+		try
+		{
+			while ( true )
+			{
+				try
+				{
+					return task.get();
+				}
+				catch ( final InterruptedException e )
+				{
+					interrupted = true;
+				}
+				catch ( final ExecutionException e )
+				{
+					final Throwable cause = e.getCause();
+					if ( cause instanceof RuntimeException )
+						throw ( RuntimeException ) cause;
+					if ( cause instanceof Error )
+						throw ( Error ) cause;
+					if ( cause instanceof IOException )
+						throw new UncheckedIOException( ( IOException ) cause );
+					throw new RuntimeException( cause );
+				}
+			}
+		}
+		finally
+		{
+			if ( interrupted )
+				Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Evicts least recently used cells until the cache fits its bound.
+	 * 
+	 * @return the evicted data, pinned until it has been written back
+	 */
+	private List< EvictedData< A > > evict()
+	{
+		final List< EvictedData< A > > victims = new ArrayList< EvictedData< A > >();
+		final Iterator< Map.Entry< Integer, CachedCell< A > > > it = cache.entrySet().iterator();
+		while ( cachedBytes > maxBytes && cache.size() > 1 )
+		{
+			final Map.Entry< Integer, CachedCell< A > > eldest = it.next();
+			final CachedCell< A > cell = eldest.getValue();
+			it.remove();
+			cachedBytes -= bytes( cell );
+			++evictions;
+			victims.add( evict( eldest.getKey(), cell ) );
+		}
+		return victims;
+	}
+
+	/**
+	 * Makes the given cell, which is no longer cached, known as evicted data.
+	 * 
+	 * @return the evicted data, pinned until it has been written back
+	 */
+	private EvictedData< A > evict( final int index, final CachedCell< A > cell )
+	{
+		final EvictedData< A > ref = new EvictedData< A >( index, cell, writable, evictedQueue );
+		evicted.put( index, ref );
+		return ref;
+	}
+
+	/** Saves the data of the given cell, if it was modified. */
+	private void saveIfModified( final CachedCell< A > cell )
+	{
+		synchronized ( cell )
+		{
+			final long checksum = CellData.checksum( cell.getData().getCurrentStorageArray() );
+			if ( checksum == cell.checksum )
+				return;
+			save( cell.min, cell.dimensions, cell.getData() );
+			cell.checksum = checksum;
+		}
+	}
+
+	/** Saves the given evicted data, if it was modified. */
+	private void saveIfModified( final EvictedData< A > ref )
+	{
+		if ( ref.storage == null )
+			return;
+		synchronized ( ref )
+		{
+			final long checksum = CellData.checksum( ref.storage );
+			if ( checksum == ref.checksum )
+				return;
+			final A data = ref.get();
+			save( ref.min, ref.dimensions, data == null ? copy( ref.storage ) : data );
+			ref.checksum = checksum;
+		}
+	}
+
+	private void save( final long[] min, final int[] dims, final A data )
+	{
+		try
+		{
+			loader.save( min, dims, data );
+		}
+		catch ( final IOException e )
+		{
+			throw new UncheckedIOException( e );
+		}
+	}
+
+	/** Creates data holding a copy of the given storage array. */
+	private A copy( final Object storage )
+	{
+		final int length = CellData.length( storage );
+		final A data = creator.createArray( length );
+		System.arraycopy( storage, 0, data.getCurrentStorageArray(), 0, length );
+		return data;
+	}
+
+	/**
+	 * Collects the evicted data which is no longer in use. It stays known to
+	 * the cache until {@link #release released}, so that it is not reloaded
+	 * before its modifications are saved.
+	 */
+	private List< EvictedData< A > > purgeEvicted()
+	{
+		final List< EvictedData< A > > released = new ArrayList< EvictedData< A > >();
+		EvictedData< ? > ref;
+		while ( ( ref = ( EvictedData< ? > ) evictedQueue.poll() ) != null )
+		{
+			final EvictedData< A > known = evicted.get( ref.index );
+			if ( known != ref )
+				continue;
+			if ( known.storage == null )
+				evicted.remove( ref.index );
+			else
+				released.add( known );
+		}
+		return released;
+	}
+
+	/**
+	 * Saves the modifications of the given evicted data which is no longer in
+	 * use, then forgets it. Called without holding the lock.
+	 */
+	private void release( final List< EvictedData< A > > released )
+	{
+		for ( final EvictedData< A > ref : released )
+		{
+			saveIfModified( ref );
+			synchronized ( this )
+			{
+				if ( evicted.get( ref.index ) == ref )
+					evicted.remove( ref.index );
+			}
+		}
+	}
+
+	// -- Helper classes --
+
+	/**
+	 * Weak reference to the data of an evicted cell. If the cache is writable,
+	 * the storage array of the data is kept, so that writes made after the
+	 * eviction can still be saved once the data is no longer in use.
+	 */
+	private static final class EvictedData< A extends ArrayDataAccess< A > > extends WeakReference< A >
+	{
+		private final int index;
+
+		private final long[] min;
+
+		private final int[] dimensions;
+
+		private final Object storage;
+
+		/** Checksum of the data as last loaded or saved. */
+		private volatile long checksum;
+
+		/** Strong reference to the data while it is written back. */
+		private volatile A pinned;
+
+		private EvictedData( final int index, final CachedCell< A > cell, final boolean writable, final ReferenceQueue< A > queue )
+		{
+			super( cell.getData(), queue );
+			this.index = index;
+			this.min = cell.min;
+			this.dimensions = cell.dimensions;
+			this.storage = writable ? cell.getData().getCurrentStorageArray() : null;
+			this.checksum = cell.checksum;
+			this.pinned = cell.getData();
+		}
+	}
+
+	/**
+	 * The grid of cells of a {@link CachedCells}, whose elements are fetched
+	 * from the cache.
+	 */
+	public static final class CellGrid< A extends ArrayDataAccess< A > > extends AbstractListImg< CachedCell< A > >
+	{
+		private final CachedCells< A > cache;
+
+		private CellGrid( final CachedCells< A > cache, final long[] numCells )
+		{
+			super( numCells );
+			this.cache = cache;
+		}
+
+		@Override
+		protected CachedCell< A > get( final int index )
+		{
+			return cache.getCell( index );
+		}
+
+		@Override
+		protected void set( final int index, final CachedCell< A > value )
+		{
+			throw new UnsupportedOperationException( "cells of a cache cannot be replaced" );
+		}
+
+		@Override
+		public Img< CachedCell< A > > copy()
+		{
+			throw new UnsupportedOperationException( "cells of a cache cannot be copied" );
+		}
+	}
+}
@@ -0,0 +1,186 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Moves the primitive storage arrays of cells to and from byte buffers, for
+ * the {@link CellLoader}s.
+ */
+final class CellData
+{
+	private CellData()
+	{}
+
+	/**
+	 * Gets the size in bytes of one entity of the given primitive array.
+	 */
+	static int entitySize( final Object array )
+	{
+		if ( array instanceof byte[] )
+			return 1;
+		if ( array instanceof short[] || array instanceof char[] )
+			return 2;
+		if ( array instanceof int[] || array instanceof float[] )
+			return 4;
+		if ( array instanceof long[] || array instanceof double[] )
+			return 8;
+		throw new IllegalArgumentException( "Unsupported storage array: " + array );
+	}
+
+	/**
+	 * Gets the number of entities of the given primitive array.
+	 */
+	static int length( final Object array )
+	{
+		return java.lang.reflect.Array.getLength( array );
+	}
+
+	/**
+	 * Computes a 64-bit checksum of the given primitive array, to tell whether
+	 * it was modified. Each entity is mixed in with a bijective step (as in
+	 * FNV-1a), so changing any single entity always changes the checksum.
+	 */
+	static long checksum( final Object array )
+	{
+		long h = 0xcbf29ce484222325L;
+		if ( array instanceof byte[] )
+			for ( final byte v : ( byte[] ) array )
+				h = ( h ^ v ) * 0x100000001b3L;
+		else if ( array instanceof short[] )
+			for ( final short v : ( short[] ) array )
+				h = ( h ^ v ) * 0x100000001b3L;
+		else if ( array instanceof char[] )
+			for ( final char v : ( char[] ) array )
+				h = ( h ^ v ) * 0x100000001b3L;
+		else if ( array instanceof int[] )
+			for ( final int v : ( int[] ) array )
+				h = ( h ^ v ) * 0x100000001b3L;
+		else if ( array instanceof float[] )
+			for ( final float v : ( float[] ) array )
+				h = ( h ^ Float.floatToRawIntBits( v ) ) * 0x100000001b3L;
+		else if ( array instanceof long[] )
+			for ( final long v : ( long[] ) array )
+				h = ( h ^ v ) * 0x100000001b3L;
+		else if ( array instanceof double[] )
+			for ( final double v : ( double[] ) array )
+				h = ( h ^ Double.doubleToRawLongBits( v ) ) * 0x100000001b3L;
+		else
+			throw new IllegalArgumentException( "Unsupported storage array: " + array );
+		return h;
+	}
+
+	/**
+	 * Copies entities from the buffer's position into the array.
+	 */
+	static void get( final ByteBuffer buffer, final Object array, final int offset, final int length )
+	{
+		if ( array instanceof byte[] )
+			buffer.get( ( byte[] ) array, offset, length );
+		else if ( array instanceof short[] )
+			buffer.asShortBuffer().get( ( short[] ) array, offset, length );
+		else if ( array instanceof char[] )
+			buffer.asCharBuffer().get( ( char[] ) array, offset, length );
+		else if ( array instanceof int[] )
+			buffer.asIntBuffer().get( ( int[] ) array, offset, length );
+		else if ( array instanceof float[] )
+			buffer.asFloatBuffer().get( ( float[] ) array, offset, length );
+		else if ( array instanceof long[] )
+			buffer.asLongBuffer().get( ( long[] ) array, offset, length );
+		else if ( array instanceof double[] )
+			buffer.asDoubleBuffer().get( ( double[] ) array, offset, length );
+		else
+			throw new IllegalArgumentException( "Unsupported storage array: " + array );
+	}
+
+	/**
+	 * Copies entities from the array into the buffer, which must be empty,
+	 * leaving it ready to be written.
+	 */
+	static void put( final ByteBuffer buffer, final Object array, final int offset, final int length )
+	{
+		if ( array instanceof byte[] )
+			buffer.put( ( byte[] ) array, offset, length );
+		else if ( array instanceof short[] )
+			buffer.asShortBuffer().put( ( short[] ) array, offset, length );
+		else if ( array instanceof char[] )
+			buffer.asCharBuffer().put( ( char[] ) array, offset, length );
+		else if ( array instanceof int[] )
+			buffer.asIntBuffer().put( ( int[] ) array, offset, length );
+		else if ( array instanceof float[] )
+			buffer.asFloatBuffer().put( ( float[] ) array, offset, length );
+		else if ( array instanceof long[] )
+			buffer.asLongBuffer().put( ( long[] ) array, offset, length );
+		else if ( array instanceof double[] )
+			buffer.asDoubleBuffer().put( ( double[] ) array, offset, length );
+		else
+			throw new IllegalArgumentException( "Unsupported storage array: " + array );
+		buffer.limit( length * entitySize( array ) );
+		buffer.position( 0 );
+	}
+
+	/**
+	 * Reads bytes at the given file offset until the buffer is full or the
+	 * end of the file is reached, zero-filling whatever lies beyond the end of
+	 * the file. Leaves the buffer ready to be read.
+	 */
+	static void read( final FileChannel channel, final ByteBuffer buffer, final long offset ) throws IOException
+	{
+		long pos = offset;
+		while ( buffer.hasRemaining() )
+		{
+			final int r = channel.read( buffer, pos );
+			if ( r < 0 )
+				break;
+			pos += r;
+		}
+		while ( buffer.hasRemaining() )
+			buffer.put( ( byte ) 0 );
+		buffer.flip();
+	}
+
+	/**
+	 * Writes the remaining bytes of the buffer at the given file offset.
+	 */
+	static void write( final FileChannel channel, final ByteBuffer buffer, final long offset ) throws IOException
+	{
+		long pos = offset;
+		while ( buffer.hasRemaining() )
+			pos += channel.write( buffer, pos );
+	}
+}
@@ -0,0 +1,118 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+
+/**
+ * {@link CellLoader} for an image stored as a directory of chunk files, one
+ * per cell. Each chunk holds the raw entities of its cell in flat order, and
+ * is named after the cell's offset, e.g. {@code 0_64_128.raw}. Cells without
+ * a chunk file are loaded as zeros.
+ */
+public class ChunkDirectoryCellLoader implements CellLoader
+{
+	private final File directory;
+
+	private final ByteOrder order;
+
+	/**
+	 * @param directory
+	 *            the directory of chunk files, which is created when the
+	 *            first cell is saved
+	 * @param order
+	 *            the byte order of the entities in the chunks
+	 */
+	public ChunkDirectoryCellLoader( final File directory, final ByteOrder order )
+	{
+		this.directory = directory;
+		this.order = order;
+	}
+
+	/** Gets the chunk file of the cell with the given offset. */
+	public File getChunkFile( final long[] min )
+	{
+		final StringBuilder name = new StringBuilder();
+		for ( int d = 0; d < min.length; ++d )
+		{
+			if ( d > 0 )
+				name.append( '_' );
+			name.append( min[ d ] );
+		}
+		return new File( directory, name.append( ".raw" ).toString() );
+	}
+
+	@Override
+	public void load( final long[] min, final int[] dims, final ArrayDataAccess< ? > data ) throws IOException
+	{
+		final File chunk = getChunkFile( min );
+		if ( !chunk.exists() )
+			return;
+		final Object array = data.getCurrentStorageArray();
+		final int length = CellData.length( array );
+		final ByteBuffer buffer = ByteBuffer.allocate( length * CellData.entitySize( array ) );
+		buffer.order( order );
+		try (final RandomAccessFile file = new RandomAccessFile( chunk, "r" ))
+		{
+			CellData.read( file.getChannel(), buffer, 0 );
+		}
+		CellData.get( buffer, array, 0, length );
+	}
+
+	@Override
+	public void save( final long[] min, final int[] dims, final ArrayDataAccess< ? > data ) throws IOException
+	{
+		if ( !directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory() )
+			throw new IOException( "Cannot create directory " + directory );
+		final Object array = data.getCurrentStorageArray();
+		final int length = CellData.length( array );
+		final ByteBuffer buffer = ByteBuffer.allocate( length * CellData.entitySize( array ) );
+		buffer.order( order );
+		CellData.put( buffer, array, 0, length );
+		try (final RandomAccessFile file = new RandomAccessFile( getChunkFile( min ), "rw" ))
+		{
+			final FileChannel channel = file.getChannel();
+			CellData.write( channel, buffer, 0 );
+			channel.truncate( length * ( long ) CellData.entitySize( array ) );
+		}
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+
+/**
+ * {@link CellLoader} for an image stored as raw entities in a single file, in
+ * flat order (dimension 0 varying fastest) and without a header.
+ * <p>
+ * Each cell is transferred one row (a run along dimension 0) at a time. Parts
+ * of cells beyond the end of the file are loaded as zeros, so a writable
+ * loader may start from an empty file. Only types with a whole number of
+ * entities per pixel are supported.
+ * </p>
+ */
+public class RawFileCellLoader implements CellLoader, Closeable
+{
+	private final RandomAccessFile file;
+
+	private final FileChannel channel;
+
+	private final long[] dimensions;
+
+	private final ByteOrder order;
+
+	/**
+	 * @param file
+	 *            the raw file
+	 * @param dimensions
+	 *            the dimensions of the image stored in the file
+	 * @param order
+	 *            the byte order of the entities in the file
+	 * @param writable
+	 *            whether cells may be saved to the file, which is created if
+	 *            it does not exist
+	 */
+	public RawFileCellLoader( final File file, final long[] dimensions, final ByteOrder order, final boolean writable ) throws IOException
+	{
+		this.file = new RandomAccessFile( file, writable ? "rw" : "r" );
+		this.channel = this.file.getChannel();
+		this.dimensions = dimensions.clone();
+		this.order = order;
+	}
+
+	@Override
+	public void load( final long[] min, final int[] dims, final ArrayDataAccess< ? > data ) throws IOException
+	{
+		transfer( min, dims, data.getCurrentStorageArray(), false );
+	}
+
+	@Override
+	public void save( final long[] min, final int[] dims, final ArrayDataAccess< ? > data ) throws IOException
+	{
+		transfer( min, dims, data.getCurrentStorageArray(), true );
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		file.close();
+	}
+
+	private void transfer( final long[] min, final int[] dims, final Object array, final boolean write ) throws IOException
+	{
+		final int n = dims.length;
+		long numPixels = 1;
+		for ( int d = 0; d < n; ++d )
+			numPixels *= dims[ d ];
+		final int length = CellData.length( array );
+		if ( length % numPixels != 0 )
+			throw new IllegalArgumentException( "Fractional entities per pixel are not supported" );
+		final int entitiesPerPixel = ( int ) ( length / numPixels );
+		final int entitySize = CellData.entitySize( array );
+		final int rowLength = dims[ 0 ] * entitiesPerPixel;
+
+		final ByteBuffer buffer = ByteBuffer.allocate( rowLength * entitySize );
+		buffer.order( order );
+		final long[] position = min.clone();
+		final int numRows = ( int ) ( numPixels / dims[ 0 ] );
+		for ( int row = 0; row < numRows; ++row )
+		{
+			long index = 0;
+			for ( int d = n - 1; d >= 0; --d )
+				index = index * dimensions[ d ] + position[ d ];
+			final long offset = index * entitiesPerPixel * entitySize;
+
+			buffer.clear();
+			if ( write )
+			{
+				CellData.put( buffer, array, row * rowLength, rowLength );
+				CellData.write( channel, buffer, offset );
+			}
+			else
+			{
+				CellData.read( channel, buffer, offset );
+				CellData.get( buffer, array, row * rowLength, rowLength );
+			}
+
+			// advance to the next row
+			for ( int d = 1; d < n; ++d )
+			{
+				if ( ++position[ d ] < min[ d ] + dims[ d ] )
+					break;
+				position[ d ] = min[ d ];
+			}
+		}
+	}
+}
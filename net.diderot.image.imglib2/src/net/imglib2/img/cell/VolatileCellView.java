@@ -0,0 +1,216 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import net.imglib2.AbstractInterval;
+import net.imglib2.Interval;
+import net.imglib2.Point;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.Sampler;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.cell.AbstractCellImg.CellContainerSampler;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.volatiles.VolatileRealType;
+
+/**
+ * A non-blocking view of a {@link CellImg} with {@link CachedCells}, whose
+ * pixels are {@link VolatileRealType}s.
+ * <p>
+ * Pixels of cells in the cache are {@link VolatileRealType#isValid() valid}
+ * and carry the image value. Pixels of other cells are invalid and zero, and
+ * accessing them requests their cell from an {@link AsyncCellLoader} instead
+ * of waiting for it. Requests are prioritized by the distance of the cell's
+ * center from the {@link #setFocus(double[]) focus}, e.g. the center of the
+ * displayed region, so that cells near it arrive first. Listen to the loader
+ * to find out when to access the view again: an access only notices that a
+ * missing cell has arrived once it moves to another cell, so use new accesses
+ * for each pass over the view.
+ * </p>
+ * <p>
+ * The view is meant for display: it cannot be written to.
+ * </p>
+ */
+public class VolatileCellView< T extends NativeType< T > & RealType< T >, A extends ArrayDataAccess< A > > extends AbstractInterval implements RandomAccessibleInterval< VolatileRealType< T > >
+{
+	private final AbstractCellImg< T, A, CachedCell< A >, ? > img;
+
+	private final CachedCells< A > cells;
+
+	private final AsyncCellLoader< A > loader;
+
+	private volatile double[] focus;
+
+	/**
+	 * @param img
+	 *            the image to view, which must have {@link CachedCells}
+	 * @param loader
+	 *            the loader of the image's cells
+	 */
+	public VolatileCellView( final AbstractCellImg< T, A, CachedCell< A >, ? > img, final AsyncCellLoader< A > loader )
+	{
+		super( img );
+		this.img = img;
+		this.cells = loader.getCells();
+		this.loader = loader;
+		if ( img.getCells() != cells )
+			throw new IllegalArgumentException( "The loader does not load the cells of the image" );
+	}
+
+	public AsyncCellLoader< A > getLoader()
+	{
+		return loader;
+	}
+
+	/**
+	 * Sets the position around which cells are loaded first, or null to load
+	 * cells in order of request.
+	 */
+	public void setFocus( final double[] focus )
+	{
+		this.focus = focus == null ? null : focus.clone();
+	}
+
+	@Override
+	public VolatileCellRandomAccess randomAccess()
+	{
+		return new VolatileCellRandomAccess();
+	}
+
+	@Override
+	public VolatileCellRandomAccess randomAccess( final Interval interval )
+	{
+		return randomAccess();
+	}
+
+	/** Gets the load priority of the given cell. */
+	private double priority( final int cellIndex )
+	{
+		final double[] f = focus;
+		if ( f == null )
+			return 0;
+		double squDistance = 0;
+		long i = cellIndex;
+		for ( int d = 0; d < n; ++d )
+		{
+			final long numCells = ( img.dimension( d ) - 1 ) / img.cellDims[ d ] + 1;
+			final long cellPos = i % numCells;
+			i /= numCells;
+			final double center = ( cellPos + 0.5 ) * img.cellDims[ d ];
+			final double diff = center - f[ d ];
+			squDistance += diff * diff;
+		}
+		return squDistance;
+	}
+
+	/**
+	 * {@link RandomAccess} to a {@link VolatileCellView}.
+	 */
+	public class VolatileCellRandomAccess extends Point implements RandomAccess< VolatileRealType< T > >, CellContainerSampler< T, A, CachedCell< A > >
+	{
+		private final T type;
+
+		private final VolatileRealType< T > value;
+
+		private final long[] local;
+
+		private int cellIndex = -1;
+
+		private CachedCell< A > cell;
+
+		private VolatileCellRandomAccess()
+		{
+			super( VolatileCellView.this.n );
+			type = img.createLinkedType();
+			value = new VolatileRealType< T >( type.createVariable(), false );
+			local = new long[ n ];
+		}
+
+		private VolatileCellRandomAccess( final VolatileCellRandomAccess ra )
+		{
+			this();
+			setPosition( ra );
+		}
+
+		@Override
+		public CachedCell< A > getCell()
+		{
+			return cell;
+		}
+
+		@Override
+		public VolatileRealType< T > get()
+		{
+			final int index = cells.getCellIndex( position );
+			if ( index != cellIndex )
+			{
+				// NB: Keep using the current cell, even if it was evicted since.
+				// A missing cell is requested once, and looked up again only
+				// when this access comes back to it from another cell.
+				cell = cells.getCellIfCached( index );
+				cellIndex = index;
+				if ( cell == null )
+					loader.request( index, priority( index ) );
+				else
+					type.updateContainer( this );
+			}
+			if ( cell == null )
+			{
+				value.get().setZero();
+				value.setValid( false );
+				return value;
+			}
+			for ( int d = 0; d < n; ++d )
+				local[ d ] = position[ d ] - cell.min( d );
+			type.updateIndex( cell.localPositionToIndex( local ) );
+			value.get().set( type );
+			value.setValid( true );
+			return value;
+		}
+
+		@Override
+		public VolatileCellRandomAccess copy()
+		{
+			return new VolatileCellRandomAccess( this );
+		}
+
+		@Override
+		public VolatileCellRandomAccess copyRandomAccess()
+		{
+			return copy();
+		}
+	}
+}
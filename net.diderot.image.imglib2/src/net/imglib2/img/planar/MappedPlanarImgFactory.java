@@ -0,0 +1,239 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.planar;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.NativeImgFactory;
+import net.imglib2.img.basictypeaccess.nio.ByteBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.CharBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.DoubleBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.FloatBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.IntBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.LongBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.ShortBufferAccess;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.Fraction;
+
+/**
+ * Factory for {@link PlanarImg}s whose planes are memory-mapped from a raw
+ * file, rather than read into the heap. Opening an image this way is nearly
+ * instantaneous, and paging its data in and out is left to the operating
+ * system.
+ * <p>
+ * Plane {@code i} is mapped from byte {@code offset + i * planeStride} of the
+ * file, and holds the entities of one XY plane in flat order and in the given
+ * byte order. Planes are numbered like those of {@link PlanarImg}, i.e. with
+ * dimension 2 varying fastest. Each plane is a
+ * {@link net.imglib2.img.basictypeaccess.nio.AbstractBufferAccess} over its
+ * mapped buffer, which is what {@link PlanarImg#getPlane(int)} returns.
+ * </p>
+ * <p>
+ * The {@link MapMode} determines what happens to writes:
+ * {@link MapMode#READ_ONLY} images throw
+ * {@link java.nio.ReadOnlyBufferException}, {@link MapMode#PRIVATE}
+ * (copy-on-write) images keep their changes in memory without altering the
+ * file, and {@link MapMode#READ_WRITE} images write through to the file.
+ * The file must be large enough to hold all planes, except in
+ * {@link MapMode#READ_WRITE} mode, which grows it as needed. Both modes other
+ * than {@link MapMode#READ_ONLY} require write permission on the file.
+ * </p>
+ */
+public class MappedPlanarImgFactory< T extends NativeType< T > > extends NativeImgFactory< T >
+{
+	private final File file;
+
+	private final long offset;
+
+	private final long planeStride;
+
+	private final ByteOrder order;
+
+	private final MapMode mode;
+
+	/**
+	 * Creates a factory for a file of contiguous planes without header.
+	 */
+	public MappedPlanarImgFactory( final File file, final ByteOrder order, final MapMode mode )
+	{
+		this( file, 0, 0, order, mode );
+	}
+
+	/**
+	 * @param file
+	 *            the raw file
+	 * @param offset
+	 *            the position of the first plane in the file, in bytes
+	 * @param planeStride
+	 *            the distance between the starts of consecutive planes in
+	 *            bytes, or 0 for contiguous planes
+	 * @param order
+	 *            the byte order of the entities in the file
+	 * @param mode
+	 *            how to map the planes
+	 */
+	public MappedPlanarImgFactory( final File file, final long offset, final long planeStride, final ByteOrder order, final MapMode mode )
+	{
+		this.file = file;
+		this.offset = offset;
+		this.planeStride = planeStride;
+		this.order = order;
+		this.mode = mode;
+	}
+
+	@SuppressWarnings( "unchecked" )
+	@Override
+	public PlanarImg< T, ? > create( final long[] dim, final T type )
+	{
+		return ( PlanarImg< T, ? > ) type.createSuitableNativeImg( this, dim );
+	}
+
+	@Override
+	public PlanarImg< T, ByteBufferAccess > createByteInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		final PlanarImg< T, ByteBufferAccess > img = new PlanarImg< T, ByteBufferAccess >( dimensions, entitiesPerPixel );
+		final ByteBuffer[] planes = mapPlanes( img, entitiesPerPixel, 1 );
+		for ( int i = 0; i < planes.length; ++i )
+			img.setPlane( i, new ByteBufferAccess( planes[ i ] ) );
+		return img;
+	}
+
+	@Override
+	public PlanarImg< T, CharBufferAccess > createCharInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		final PlanarImg< T, CharBufferAccess > img = new PlanarImg< T, CharBufferAccess >( dimensions, entitiesPerPixel );
+		final ByteBuffer[] planes = mapPlanes( img, entitiesPerPixel, 2 );
+		for ( int i = 0; i < planes.length; ++i )
+			img.setPlane( i, new CharBufferAccess( planes[ i ] ) );
+		return img;
+	}
+
+	@Override
+	public PlanarImg< T, ShortBufferAccess > createShortInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		final PlanarImg< T, ShortBufferAccess > img = new PlanarImg< T, ShortBufferAccess >( dimensions, entitiesPerPixel );
+		final ByteBuffer[] planes = mapPlanes( img, entitiesPerPixel, 2 );
+		for ( int i = 0; i < planes.length; ++i )
+			img.setPlane( i, new ShortBufferAccess( planes[ i ] ) );
+		return img;
+	}
+
+	@Override
+	public PlanarImg< T, IntBufferAccess > createIntInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		final PlanarImg< T, IntBufferAccess > img = new PlanarImg< T, IntBufferAccess >( dimensions, entitiesPerPixel );
+		final ByteBuffer[] planes = mapPlanes( img, entitiesPerPixel, 4 );
+		for ( int i = 0; i < planes.length; ++i )
+			img.setPlane( i, new IntBufferAccess( planes[ i ] ) );
+		return img;
+	}
+
+	@Override
+	public PlanarImg< T, LongBufferAccess > createLongInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		final PlanarImg< T, LongBufferAccess > img = new PlanarImg< T, LongBufferAccess >( dimensions, entitiesPerPixel );
+		final ByteBuffer[] planes = mapPlanes( img, entitiesPerPixel, 8 );
+		for ( int i = 0; i < planes.length; ++i )
+			img.setPlane( i, new LongBufferAccess( planes[ i ] ) );
+		return img;
+	}
+
+	@Override
+	public PlanarImg< T, FloatBufferAccess > createFloatInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		final PlanarImg< T, FloatBufferAccess > img = new PlanarImg< T, FloatBufferAccess >( dimensions, entitiesPerPixel );
+		final ByteBuffer[] planes = mapPlanes( img, entitiesPerPixel, 4 );
+		for ( int i = 0; i < planes.length; ++i )
+			img.setPlane( i, new FloatBufferAccess( planes[ i ] ) );
+		return img;
+	}
+
+	@Override
+	public PlanarImg< T, DoubleBufferAccess > createDoubleInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		final PlanarImg< T, DoubleBufferAccess > img = new PlanarImg< T, DoubleBufferAccess >( dimensions, entitiesPerPixel );
+		final ByteBuffer[] planes = mapPlanes( img, entitiesPerPixel, 8 );
+		for ( int i = 0; i < planes.length; ++i )
+			img.setPlane( i, new DoubleBufferAccess( planes[ i ] ) );
+		return img;
+	}
+
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	@Override
+	public < S > ImgFactory< S > imgFactory( final S type ) throws IncompatibleTypeException
+	{
+		if ( NativeType.class.isInstance( type ) )
+			return new PlanarImgFactory();
+		throw new IncompatibleTypeException( this, type.getClass().getCanonicalName() + " does not implement NativeType." );
+	}
+
+	/**
+	 * Maps the planes of the given image.
+	 * 
+	 * @param entitySize
+	 *            the size of one entity in bytes
+	 */
+	private ByteBuffer[] mapPlanes( final PlanarImg< T, ? > img, final Fraction entitiesPerPixel, final int entitySize )
+	{
+		final long planeSize = entitySize * entitiesPerPixel.mulCeil( img.dimension( 0 ) * ( img.numDimensions() > 1 ? img.dimension( 1 ) : 1 ) );
+		if ( planeSize > Integer.MAX_VALUE )
+			throw new IllegalArgumentException( "Plane too big to be mapped: " + planeSize + " > " + Integer.MAX_VALUE + " bytes" );
+		final long stride = planeStride == 0 ? planeSize : planeStride;
+		final ByteBuffer[] planes = new ByteBuffer[ img.numSlices() ];
+		try (final RandomAccessFile raf = new RandomAccessFile( file, mode == MapMode.READ_ONLY ? "r" : "rw" ))
+		{
+			final FileChannel channel = raf.getChannel();
+			if ( mode != MapMode.READ_WRITE && channel.size() < offset + ( planes.length - 1 ) * stride + planeSize )
+				throw new IOException( "File too small for image: " + file );
+			// NB: Mappings remain valid after the channel is closed.
+			for ( int i = 0; i < planes.length; ++i )
+				planes[ i ] = channel.map( mode, offset + i * stride, planeSize ).order( order );
+		}
+		catch ( final IOException e )
+		{
+			throw new UncheckedIOException( e );
+		}
+		return planes;
+	}
+}
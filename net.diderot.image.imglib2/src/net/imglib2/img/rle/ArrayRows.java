@@ -0,0 +1,297 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.rle;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.Fraction;
+import net.imglib2.util.Intervals;
+import net.imglib2.util.Util;
+
+/**
+ * The rows of an {@link ArrayImg} or {@link PlanarImg} with primitive array
+ * storage, for converting to and from {@link RleRows} without going through
+ * types. Supports one entity per pixel, and one bit per pixel (as in
+ * {@link net.imglib2.type.logic.BitType}).
+ */
+final class ArrayRows
+{
+	private final long[] dimensions;
+
+	private final Object[] arrays;
+
+	private final int rowsPerArray;
+
+	private final int rowLength;
+
+	/** Whether pixels are packed into the bits of {@code long[]} arrays. */
+	private final boolean packed;
+
+	private ArrayRows( final long[] dimensions, final Object[] arrays, final int rowsPerArray, final boolean packed )
+	{
+		this.dimensions = dimensions;
+		this.arrays = arrays;
+		this.rowsPerArray = rowsPerArray;
+		rowLength = ( int ) dimensions[ 0 ];
+		this.packed = packed;
+	}
+
+	/**
+	 * Gets the rows of the given image, or null if it is not an
+	 * {@link ArrayImg} or {@link PlanarImg} with supported storage.
+	 */
+	static ArrayRows of( final RandomAccessibleInterval< ? > img )
+	{
+		if ( !( img instanceof ArrayImg ) && !( img instanceof PlanarImg ) )
+			return null;
+		final Fraction entitiesPerPixel = ( ( NativeType< ? > ) Util.getTypeFromInterval( img ) ).getEntitiesPerPixel();
+		final boolean bits = entitiesPerPixel.getNumerator() == 1 && entitiesPerPixel.getDenominator() == 64;
+		if ( !bits && entitiesPerPixel.getNumerator() != entitiesPerPixel.getDenominator() )
+			return null;
+		final long[] dimensions = Intervals.dimensionsAsLongArray( img );
+
+		final Object[] arrays;
+		final int rowsPerArray;
+		if ( img instanceof ArrayImg )
+		{
+			arrays = new Object[] { ( ( ArrayImg< ?, ? > ) img ).update( null ) };
+			rowsPerArray = ( int ) ( Intervals.numElements( img ) / dimensions[ 0 ] );
+		}
+		else
+		{
+			final PlanarImg< ?, ? > planar = ( PlanarImg< ?, ? > ) img;
+			arrays = new Object[ planar.numSlices() ];
+			for ( int i = 0; i < arrays.length; ++i )
+				arrays[ i ] = planar.getPlane( i );
+			rowsPerArray = dimensions.length > 1 ? ( int ) dimensions[ 1 ] : 1;
+		}
+
+		// NB: BitType reports one entity per pixel, but packs its pixels into
+		// longs, so the layout is decided by the length of the storage.
+		final long pixelsPerArray = ( long ) rowsPerArray * dimensions[ 0 ];
+		boolean packed = bits;
+		for ( int i = 0; i < arrays.length; ++i )
+		{
+			if ( !( arrays[ i ] instanceof ArrayDataAccess ) )
+				return null;
+			arrays[ i ] = ( ( ArrayDataAccess< ? > ) arrays[ i ] ).getCurrentStorageArray();
+			if ( !isPrimitiveArray( arrays[ i ] ) )
+				return null;
+			final int length = Array.getLength( arrays[ i ] );
+			if ( length != pixelsPerArray )
+				packed = true;
+			if ( packed && ( !( arrays[ i ] instanceof long[] ) || length != ( pixelsPerArray + 63 ) / 64 ) )
+				return null;
+		}
+		return new ArrayRows( dimensions, arrays, rowsPerArray, packed );
+	}
+
+	/**
+	 * Gets the raw bits of the given entity of a primitive array, encoded like
+	 * the {@link RleAccess}es do.
+	 */
+	static long get( final Object array, final int i )
+	{
+		if ( array instanceof byte[] )
+			return ( ( byte[] ) array )[ i ];
+		if ( array instanceof char[] )
+			return ( ( char[] ) array )[ i ];
+		if ( array instanceof short[] )
+			return ( ( short[] ) array )[ i ];
+		if ( array instanceof int[] )
+			return ( ( int[] ) array )[ i ];
+		if ( array instanceof long[] )
+			return ( ( long[] ) array )[ i ];
+		if ( array instanceof float[] )
+			return Float.floatToRawIntBits( ( ( float[] ) array )[ i ] );
+		return Double.doubleToRawLongBits( ( ( double[] ) array )[ i ] );
+	}
+
+	boolean isPacked()
+	{
+		return packed;
+	}
+
+	/**
+	 * Run-length encodes the rows.
+	 */
+	RleRows read( final ExecutorService service, final int numTasks )
+	{
+		return RleRows.build( dimensions, new RleRows.RowSource()
+		{
+			@Override
+			public void read( final int row, final long[] values )
+			{
+				readRow( row, values );
+			}
+
+			@Override
+			public RleRows.RowSource copy()
+			{
+				return this;
+			}
+		}, service, numTasks );
+	}
+
+	/**
+	 * Fills the rows with the runs of the given rows. Packed rows must not be
+	 * written in parallel, since rows may share words.
+	 */
+	void write( final RleRows rows, final ExecutorService service, final int numTasks )
+	{
+		RleRows.forEachRowRange( rows.numRows, service, numTasks, new RleRows.RowRangeTask()
+		{
+			@Override
+			public void run( final int start, final int end, final boolean copy )
+			{
+				for ( int row = start; row < end; ++row )
+				{
+					final int k = rows.getRunCount( row );
+					for ( int run = 0; run < k; ++run )
+						fill( row, rows.getRunStart( row, run ), rows.getRunEnd( row, run ), rows.getRunValue( row, run ) );
+				}
+			}
+		} );
+	}
+
+	// -- helpers --
+
+	private static boolean isPrimitiveArray( final Object array )
+	{
+		return array instanceof byte[] || array instanceof char[] || array instanceof short[] || array instanceof int[] || array instanceof long[] || array instanceof float[] || array instanceof double[];
+	}
+
+	private void readRow( final int row, final long[] values )
+	{
+		final Object array = arrays[ row / rowsPerArray ];
+		final long offset = ( long ) ( row % rowsPerArray ) * rowLength;
+		if ( packed )
+		{
+			final long[] a = ( long[] ) array;
+			for ( int x = 0; x < rowLength; ++x )
+			{
+				final long i = offset + x;
+				values[ x ] = ( a[ ( int ) ( i >>> 6 ) ] >>> ( i & 63 ) ) & 1;
+			}
+			return;
+		}
+		final int o = ( int ) offset;
+		if ( array instanceof byte[] )
+		{
+			final byte[] a = ( byte[] ) array;
+			for ( int x = 0; x < rowLength; ++x )
+				values[ x ] = a[ o + x ];
+		}
+		else if ( array instanceof char[] )
+		{
+			final char[] a = ( char[] ) array;
+			for ( int x = 0; x < rowLength; ++x )
+				values[ x ] = a[ o + x ];
+		}
+		else if ( array instanceof short[] )
+		{
+			final short[] a = ( short[] ) array;
+			for ( int x = 0; x < rowLength; ++x )
+				values[ x ] = a[ o + x ];
+		}
+		else if ( array instanceof int[] )
+		{
+			final int[] a = ( int[] ) array;
+			for ( int x = 0; x < rowLength; ++x )
+				values[ x ] = a[ o + x ];
+		}
+		else if ( array instanceof long[] )
+			System.arraycopy( array, o, values, 0, rowLength );
+		else if ( array instanceof float[] )
+		{
+			final float[] a = ( float[] ) array;
+			for ( int x = 0; x < rowLength; ++x )
+				values[ x ] = Float.floatToRawIntBits( a[ o + x ] );
+		}
+		else
+		{
+			final double[] a = ( double[] ) array;
+			for ( int x = 0; x < rowLength; ++x )
+				values[ x ] = Double.doubleToRawLongBits( a[ o + x ] );
+		}
+	}
+
+	private void fill( final int row, final int start, final int end, final long v )
+	{
+		final Object array = arrays[ row / rowsPerArray ];
+		final long offset = ( long ) ( row % rowsPerArray ) * rowLength;
+		if ( packed )
+		{
+			fillBits( ( long[] ) array, offset + start, offset + end, ( v & 1 ) != 0 );
+			return;
+		}
+		final int from = ( int ) offset + start, to = ( int ) offset + end;
+		if ( array instanceof byte[] )
+			Arrays.fill( ( byte[] ) array, from, to, ( byte ) v );
+		else if ( array instanceof char[] )
+			Arrays.fill( ( char[] ) array, from, to, ( char ) v );
+		else if ( array instanceof short[] )
+			Arrays.fill( ( short[] ) array, from, to, ( short ) v );
+		else if ( array instanceof int[] )
+			Arrays.fill( ( int[] ) array, from, to, ( int ) v );
+		else if ( array instanceof long[] )
+			Arrays.fill( ( long[] ) array, from, to, v );
+		else if ( array instanceof float[] )
+			Arrays.fill( ( float[] ) array, from, to, Float.intBitsToFloat( ( int ) v ) );
+		else
+			Arrays.fill( ( double[] ) array, from, to, Double.longBitsToDouble( v ) );
+	}
+
+	/** Sets or clears the bits from {@code from} (inclusive) to {@code to}. */
+	private static void fillBits( final long[] words, long from, final long to, final boolean set )
+	{
+		while ( from < to )
+		{
+			final int word = ( int ) ( from >>> 6 );
+			final int bit = ( int ) ( from & 63 );
+			final int count = ( int ) Math.min( 64 - bit, to - from );
+			final long mask = count == 64 ? -1L : ( ( 1L << count ) - 1 ) << bit;
+			words[ word ] = set ? words[ word ] | mask : words[ word ] & ~mask;
+			from += count;
+		}
+	}
+}
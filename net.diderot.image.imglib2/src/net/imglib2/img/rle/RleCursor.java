@@ -0,0 +1,193 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.rle;
+
+import net.imglib2.AbstractCursor;
+import net.imglib2.type.NativeType;
+
+/**
+ * {@link net.imglib2.Cursor} on an {@link RleImg}, in flat order.
+ * <p>
+ * Besides visiting every pixel, it can skip to the end of the current run,
+ * so that code which treats runs as a whole (e.g. counting or copying) visits
+ * each run only once:
+ * </p>
+ * 
+ * <pre>
+ * while ( cursor.hasNext() )
+ * {
+ * 	final T value = cursor.next();
+ * 	final long length = cursor.getRunLength();
+ * 	// ... process length pixels of the same value ...
+ * 	cursor.skipRun();
+ * }
+ * </pre>
+ */
+public final class RleCursor< T extends NativeType< T > > extends AbstractCursor< T > implements RleImg.PointerProvider
+{
+	private final RleImg< T, ? > img;
+
+	private final T type;
+
+	private final RleRows.Pointer pointer;
+
+	private final long[] dimensions;
+
+	private final int rowLength;
+
+	private final long lastIndex;
+
+	private long index;
+
+	public RleCursor( final RleImg< T, ? > img )
+	{
+		super( img.numDimensions() );
+		this.img = img;
+		type = img.createLinkedType();
+		pointer = img.getRows().pointer();
+		dimensions = new long[ n ];
+		img.dimensions( dimensions );
+		rowLength = ( int ) dimensions[ 0 ];
+		lastIndex = img.size() - 1;
+		reset();
+		type.updateContainer( this );
+	}
+
+	private RleCursor( final RleCursor< T > cursor )
+	{
+		this( cursor.img );
+		jumpFwd( cursor.index + 1 );
+	}
+
+	@Override
+	public RleRows.Pointer getPointer()
+	{
+		return pointer;
+	}
+
+	/**
+	 * Get the number of pixels from the current one to the end of its run,
+	 * including the current one. Runs do not extend beyond rows.
+	 */
+	public long getRunLength()
+	{
+		return pointer.getRunEnd() - pointer.x;
+	}
+
+	/**
+	 * Move to the last pixel of the current run, so that {@link #fwd()} moves
+	 * to the first pixel of the next run.
+	 */
+	public void skipRun()
+	{
+		final int last = pointer.getRunEnd() - 1;
+		index += last - pointer.x;
+		pointer.x = last;
+	}
+
+	@Override
+	public T get()
+	{
+		return type;
+	}
+
+	@Override
+	public void fwd()
+	{
+		++index;
+		if ( ++pointer.x == rowLength )
+		{
+			pointer.x = 0;
+			++pointer.row;
+		}
+	}
+
+	@Override
+	public void jumpFwd( final long steps )
+	{
+		index += steps;
+		pointer.x = ( int ) ( index % rowLength );
+		pointer.row = ( int ) ( index / rowLength );
+	}
+
+	@Override
+	public boolean hasNext()
+	{
+		return index < lastIndex;
+	}
+
+	@Override
+	public void reset()
+	{
+		index = -1;
+		pointer.x = -1;
+		pointer.row = 0;
+	}
+
+	@Override
+	public void localize( final long[] position )
+	{
+		position[ 0 ] = pointer.x;
+		long row = pointer.row;
+		for ( int d = 1; d < n; ++d )
+		{
+			position[ d ] = row % dimensions[ d ];
+			row /= dimensions[ d ];
+		}
+	}
+
+	@Override
+	public long getLongPosition( final int d )
+	{
+		if ( d == 0 )
+			return pointer.x;
+		long row = pointer.row;
+		for ( int i = 1; i < d; ++i )
+			row /= dimensions[ i ];
+		return row % dimensions[ d ];
+	}
+
+	@Override
+	public RleCursor< T > copy()
+	{
+		return new RleCursor< T >( this );
+	}
+
+	@Override
+	public RleCursor< T > copyCursor()
+	{
+		return copy();
+	}
+}
@@ -0,0 +1,174 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.rle;
+
+import java.util.concurrent.ExecutorService;
+
+import net.imglib2.FlatIterationOrder;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.AbstractNativeImg;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.Fraction;
+import net.imglib2.util.Intervals;
+
+/**
+ * Image whose rows (along dimension 0) are run-length encoded in
+ * {@link RleRows}. Suited to masks and label images, which are mostly uniform
+ * along their rows: memory use is proportional to the number of runs, and
+ * {@link RleCursor}s can {@link RleCursor#skipRun() skip} whole runs.
+ * <p>
+ * Types with less than one entity per pixel (e.g.
+ * {@link net.imglib2.type.logic.BitType}) are supported, types with several
+ * entities per pixel are not.
+ * </p>
+ */
+public final class RleImg< T extends NativeType< T >, A extends RleAccess< A > > extends AbstractNativeImg< T, A >
+{
+	/**
+	 * Provides the {@link RleRows.Pointer} of a cursor or random access, for
+	 * creating its accesses.
+	 */
+	public static interface PointerProvider
+	{
+		RleRows.Pointer getPointer();
+	}
+
+	final A data;
+
+	public RleImg( final A data, final long[] dim, final Fraction entitiesPerPixel )
+	{
+		super( dim, entitiesPerPixel );
+		this.data = data;
+	}
+
+	/**
+	 * Get the rows holding the pixels of this image.
+	 */
+	public RleRows getRows()
+	{
+		return data.getCurrentStorageRows();
+	}
+
+	/**
+	 * Copies the pixels of this image to the given target, which must have the
+	 * same dimensions. Runs are filled in bulk into
+	 * {@link net.imglib2.img.array.ArrayImg}s and
+	 * {@link net.imglib2.img.planar.PlanarImg}s with primitive array storage,
+	 * in parallel if the target has one entity per pixel.
+	 * 
+	 * @param service
+	 *            The executor on which to copy ranges of rows, or null to
+	 *            copy on the calling thread
+	 * @param numTasks
+	 *            The number of tasks to copy in
+	 */
+	public void copyTo( final RandomAccessibleInterval< T > target, final ExecutorService service, final int numTasks )
+	{
+		if ( !Intervals.equalDimensions( this, target ) )
+			throw new IllegalArgumentException( "The dimensions of the target differ" );
+		final ArrayRows arrayRows = ArrayRows.of( target );
+		if ( arrayRows != null )
+		{
+			arrayRows.write( getRows(), arrayRows.isPacked() ? null : service, numTasks );
+			return;
+		}
+
+		final RandomAccess< T > access = target.randomAccess();
+		final long[] min = Intervals.minAsLongArray( target );
+		final long[] position = new long[ n ];
+		final RleCursor< T > cursor = cursor();
+		while ( cursor.hasNext() )
+		{
+			final T value = cursor.next();
+			cursor.localize( position );
+			for ( int d = 0; d < n; ++d )
+				access.setPosition( min[ d ] + position[ d ], d );
+			final long length = cursor.getRunLength();
+			for ( long i = 0; i < length; ++i )
+			{
+				access.get().set( value );
+				access.fwd( 0 );
+			}
+			cursor.skipRun();
+		}
+	}
+
+	// updater is the RandomAccess / Cursor etc
+	// each call creates a new access at the updater's pointer
+	@Override
+	public A update( final Object updater )
+	{
+		return data.createInstance( ( ( PointerProvider ) updater ).getPointer() );
+	}
+
+	@Override
+	public RleRandomAccess< T > randomAccess()
+	{
+		return new RleRandomAccess< T >( this );
+	}
+
+	@Override
+	public RleCursor< T > cursor()
+	{
+		return new RleCursor< T >( this );
+	}
+
+	@Override
+	public RleCursor< T > localizingCursor()
+	{
+		return cursor();
+	}
+
+	@Override
+	public RleImgFactory< T > factory()
+	{
+		return new RleImgFactory< T >();
+	}
+
+	@Override
+	@SuppressWarnings( "unchecked" )
+	public RleImg< T, A > copy()
+	{
+		final RleRows rows = new RleRows( getRows() );
+		return ( RleImg< T, A > ) new RleImgFactory< T >( rows ).create( dimension, firstElement().createVariable() );
+	}
+
+	@Override
+	public FlatIterationOrder iterationOrder()
+	{
+		return new FlatIterationOrder( this );
+	}
+}
@@ -0,0 +1,230 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.rle;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.NativeImgFactory;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.Fraction;
+import net.imglib2.util.Intervals;
+import net.imglib2.util.Util;
+
+/**
+ * Factory for {@link RleImg}s.
+ * <p>
+ * Besides creating uniform images, it can
+ * {@link #create(RandomAccessibleInterval, ExecutorService, int) convert}
+ * existing data, encoding ranges of rows in parallel. Conversion from
+ * {@link ArrayImg}s and {@link net.imglib2.img.planar.PlanarImg}s reads their
+ * primitive arrays directly.
+ * </p>
+ */
+public class RleImgFactory< T extends NativeType< T > > extends NativeImgFactory< T >
+{
+	/** Rows for the images to create, or null to create uniform ones. */
+	private final RleRows rows;
+
+	public RleImgFactory()
+	{
+		this( null );
+	}
+
+	/**
+	 * Creates a factory whose images use the given rows, which must have
+	 * matching dimensions.
+	 */
+	RleImgFactory( final RleRows rows )
+	{
+		this.rows = rows;
+	}
+
+	@Override
+	public RleImg< T, ? > create( final long[] dim, final T type )
+	{
+		return ( RleImg< T, ? > ) type.createSuitableNativeImg( this, dim );
+	}
+
+	/**
+	 * Creates an image with the values of the given source.
+	 * 
+	 * @param source
+	 *            the values of the image
+	 * @param service
+	 *            The executor on which to encode ranges of rows, or null to
+	 *            encode on the calling thread
+	 * @param numTasks
+	 *            The number of tasks to encode in
+	 */
+	public RleImg< T, ? > create( final RandomAccessibleInterval< T > source, final ExecutorService service, final int numTasks )
+	{
+		final long[] dimensions = Intervals.dimensionsAsLongArray( source );
+		final T type = Util.getTypeFromInterval( source ).createVariable();
+		final ArrayRows arrayRows = ArrayRows.of( source );
+		final RleRows encoded = arrayRows != null ? arrayRows.read( service, numTasks ) : RleRows.build( dimensions, new TypeRowSource( source, type ), service, numTasks );
+		return new RleImgFactory< T >( encoded ).create( dimensions, type );
+	}
+
+	@Override
+	public RleImg< T, ByteRle > createByteInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return new RleImg< T, ByteRle >( new ByteRle( rows( dimensions, entitiesPerPixel ), null ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public RleImg< T, CharRle > createCharInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return new RleImg< T, CharRle >( new CharRle( rows( dimensions, entitiesPerPixel ), null ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public RleImg< T, ShortRle > createShortInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return new RleImg< T, ShortRle >( new ShortRle( rows( dimensions, entitiesPerPixel ), null ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public RleImg< T, IntRle > createIntInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return new RleImg< T, IntRle >( new IntRle( rows( dimensions, entitiesPerPixel ), null ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public RleImg< T, LongRle > createLongInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return new RleImg< T, LongRle >( new LongRle( rows( dimensions, entitiesPerPixel ), null ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public RleImg< T, FloatRle > createFloatInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return new RleImg< T, FloatRle >( new FloatRle( rows( dimensions, entitiesPerPixel ), null ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public RleImg< T, DoubleRle > createDoubleInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return new RleImg< T, DoubleRle >( new DoubleRle( rows( dimensions, entitiesPerPixel ), null ), dimensions, entitiesPerPixel );
+	}
+
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	@Override
+	public < S > ImgFactory< S > imgFactory( final S type ) throws IncompatibleTypeException
+	{
+		if ( NativeType.class.isInstance( type ) )
+			return new RleImgFactory();
+		throw new IncompatibleTypeException( this, type.getClass().getCanonicalName() + " does not implement NativeType." );
+	}
+
+	// -- helpers --
+
+	private RleRows rows( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		if ( entitiesPerPixel.getNumerator() > entitiesPerPixel.getDenominator() )
+			throw new RuntimeException( "not implemented" );
+		if ( rows == null )
+			return new RleRows( dimensions, 0 );
+		if ( !Arrays.equals( dimensions, rows.dimensions ) )
+			throw new IllegalArgumentException( "The dimensions do not match the rows" );
+		return rows;
+	}
+
+	/**
+	 * Gets the raw bits of the values of a {@link RandomAccessibleInterval},
+	 * by copying each of them into a single-pixel {@link ArrayImg}.
+	 */
+	private class TypeRowSource implements RleRows.RowSource
+	{
+		private final RandomAccessibleInterval< T > source;
+
+		private final T type;
+
+		private final RandomAccess< T > sourceAccess;
+
+		private final long[] min;
+
+		private final long[] dimensions;
+
+		private final T pixelType;
+
+		private final Object pixel;
+
+		TypeRowSource( final RandomAccessibleInterval< T > source, final T type )
+		{
+			this.source = source;
+			this.type = type;
+			sourceAccess = source.randomAccess();
+			min = Intervals.minAsLongArray( source );
+			dimensions = Intervals.dimensionsAsLongArray( source );
+			final long[] one = new long[ source.numDimensions() ];
+			Arrays.fill( one, 1 );
+			final ArrayImg< T, ? > img = new ArrayImgFactory< T >().create( one, type );
+			pixelType = img.firstElement();
+			pixel = ( ( ArrayDataAccess< ? > ) img.update( null ) ).getCurrentStorageArray();
+		}
+
+		@Override
+		public void read( final int row, final long[] values )
+		{
+			long r = row;
+			for ( int d = 1; d < min.length; ++d )
+			{
+				sourceAccess.setPosition( min[ d ] + r % dimensions[ d ], d );
+				r /= dimensions[ d ];
+			}
+			sourceAccess.setPosition( min[ 0 ], 0 );
+			for ( int x = 0; x < values.length; ++x )
+			{
+				pixelType.set( sourceAccess.get() );
+				values[ x ] = ArrayRows.get( pixel, 0 );
+				sourceAccess.fwd( 0 );
+			}
+		}
+
+		@Override
+		public TypeRowSource copy()
+		{
+			return new TypeRowSource( source, type );
+		}
+	}
+}
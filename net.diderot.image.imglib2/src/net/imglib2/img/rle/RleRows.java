@@ -0,0 +1,560 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.rle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Run-length encoded rows of an n-dimensional array.
+ * <p>
+ * A row is a line of pixels along dimension 0; rows are numbered in flat
+ * order of the remaining dimensions. Each row is stored as a sorted array of
+ * run starts and an array of run values. Rows consisting of a single run,
+ * which are the majority in typical masks, are stored as just their value.
+ * Values are stored as raw {@code long} bits, so one container serves all
+ * primitive types.
+ * </p>
+ * <p>
+ * Writes are synchronized, reads are not: do not read from the rows while
+ * another thread writes to them.
+ * </p>
+ */
+public final class RleRows
+{
+	/**
+	 * Source of the values from which to {@link RleRows#build build} rows.
+	 */
+	public interface RowSource
+	{
+		/**
+		 * Gets the raw bits of the values of the given row.
+		 */
+		void read( int row, long[] values );
+
+		/**
+		 * Creates an independent copy, for use on another thread.
+		 */
+		RowSource copy();
+	}
+
+	final long[] dimensions;
+
+	final int rowLength;
+
+	final int numRows;
+
+	/** Number of runs of each row. */
+	private final int[] numRuns;
+
+	/** Value of each row consisting of a single run. */
+	private final long[] uniform;
+
+	/** Run starts of each row with several runs, or null. */
+	private final int[][] starts;
+
+	/** Run values of each row with several runs, or null. */
+	private final long[][] values;
+
+	/** Incremented whenever runs are split or merged. */
+	private int modCount;
+
+	/**
+	 * Create rows of the given dimensions, all with the given value.
+	 *
+	 * @param dimensions
+	 *            of the array
+	 * @param value
+	 *            raw bits of the uniform value of all pixels in the array
+	 */
+	public RleRows( final long[] dimensions, final long value )
+	{
+		this.dimensions = dimensions.clone();
+		if ( dimensions[ 0 ] > Integer.MAX_VALUE )
+			throw new IllegalArgumentException( "Rows are too long" );
+		rowLength = ( int ) dimensions[ 0 ];
+		long rows = 1;
+		for ( int d = 1; d < dimensions.length; ++d )
+			rows *= dimensions[ d ];
+		if ( rows > Integer.MAX_VALUE )
+			throw new IllegalArgumentException( "Too many rows" );
+		numRows = ( int ) rows;
+		numRuns = new int[ numRows ];
+		Arrays.fill( numRuns, 1 );
+		uniform = new long[ numRows ];
+		Arrays.fill( uniform, value );
+		starts = new int[ numRows ][];
+		values = new long[ numRows ][];
+	}
+
+	/**
+	 * Copy constructor. Create a deep copy of rows.
+	 */
+	public RleRows( final RleRows rows )
+	{
+		dimensions = rows.dimensions;
+		rowLength = rows.rowLength;
+		numRows = rows.numRows;
+		synchronized ( rows )
+		{
+			numRuns = rows.numRuns.clone();
+			uniform = rows.uniform.clone();
+			starts = new int[ numRows ][];
+			values = new long[ numRows ][];
+			for ( int row = 0; row < numRows; ++row )
+			{
+				if ( rows.starts[ row ] != null )
+				{
+					starts[ row ] = rows.starts[ row ].clone();
+					values[ row ] = rows.values[ row ].clone();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Builds rows from the given values, building ranges of rows in parallel.
+	 *
+	 * @param dimensions
+	 *            of the array
+	 * @param source
+	 *            the values of the array
+	 * @param service
+	 *            The executor on which to build rows, or null to build on the
+	 *            calling thread
+	 * @param numTasks
+	 *            The number of tasks to build rows in
+	 */
+	public static RleRows build( final long[] dimensions, final RowSource source, final ExecutorService service, final int numTasks )
+	{
+		final RleRows rows = new RleRows( dimensions, 0 );
+		forEachRowRange( rows.numRows, service, numTasks, new RowRangeTask()
+		{
+			@Override
+			public void run( final int start, final int end, final boolean copy )
+			{
+				rows.buildRows( copy ? source.copy() : source, start, end );
+			}
+		} );
+		return rows;
+	}
+
+	/**
+	 * Get the number of pixels per row.
+	 */
+	public int getRowLength()
+	{
+		return rowLength;
+	}
+
+	/**
+	 * Get the number of rows.
+	 */
+	public int getRowCount()
+	{
+		return numRows;
+	}
+
+	/**
+	 * Get the number of runs of the given row.
+	 */
+	public int getRunCount( final int row )
+	{
+		return numRuns[ row ];
+	}
+
+	/**
+	 * Get the total number of runs of all rows, which determines the memory
+	 * use.
+	 */
+	public synchronized long getRunCount()
+	{
+		long count = 0;
+		for ( final int k : numRuns )
+			count += k;
+		return count;
+	}
+
+	/**
+	 * Get the first pixel of the given run.
+	 */
+	public int getRunStart( final int row, final int run )
+	{
+		return numRuns[ row ] == 1 ? 0 : starts[ row ][ run ];
+	}
+
+	/**
+	 * Get the pixel after the given run.
+	 */
+	public int getRunEnd( final int row, final int run )
+	{
+		return run + 1 < numRuns[ row ] ? starts[ row ][ run + 1 ] : rowLength;
+	}
+
+	/**
+	 * Get the raw bits of the value of the given run.
+	 */
+	public long getRunValue( final int row, final int run )
+	{
+		return numRuns[ row ] == 1 ? uniform[ row ] : values[ row ][ run ];
+	}
+
+	/**
+	 * Find the run of the given row which contains pixel x, by binary search.
+	 */
+	public int findRun( final int row, final int x )
+	{
+		final int k = numRuns[ row ];
+		if ( k == 1 )
+			return 0;
+		final int i = Arrays.binarySearch( starts[ row ], 0, k, x );
+		return i >= 0 ? i : -i - 2;
+	}
+
+	/**
+	 * Get the raw bits of the value of pixel x of the given row.
+	 */
+	public long get( final int row, final int x )
+	{
+		return getRunValue( row, findRun( row, x ) );
+	}
+
+	/**
+	 * Set the value of pixel x of the given row, splitting and merging runs as
+	 * needed.
+	 *
+	 * @param v
+	 *            raw bits of the value
+	 */
+	public synchronized void set( final int row, final int x, final long v )
+	{
+		final int k = numRuns[ row ];
+		if ( k == 1 )
+		{
+			final long old = uniform[ row ];
+			if ( old == v )
+				return;
+			final int[] s = new int[ 3 ];
+			final long[] val = new long[ 3 ];
+			int m = 0;
+			if ( x > 0 )
+				val[ m++ ] = old;
+			s[ m ] = x;
+			val[ m++ ] = v;
+			if ( x + 1 < rowLength )
+			{
+				s[ m ] = x + 1;
+				val[ m++ ] = old;
+			}
+			store( row, s, val, m );
+			return;
+		}
+
+		final int[] s = starts[ row ];
+		final long[] val = values[ row ];
+		final int r = findRun( row, x );
+		if ( val[ r ] == v )
+			return;
+		final int end = getRunEnd( row, r );
+		final boolean left = x > s[ r ];
+		final boolean right = x + 1 < end;
+		final boolean mergeLeft = !left && r > 0 && val[ r - 1 ] == v;
+		final boolean mergeRight = !right && r + 1 < k && val[ r + 1 ] == v;
+		if ( !left && !right && !mergeLeft && !mergeRight )
+		{
+			// NB: A single-pixel run just changes its value.
+			val[ r ] = v;
+			return;
+		}
+
+		final int[] ns = new int[ k + 2 ];
+		final long[] nv = new long[ k + 2 ];
+		System.arraycopy( s, 0, ns, 0, r );
+		System.arraycopy( val, 0, nv, 0, r );
+		int m = r;
+		if ( left )
+		{
+			ns[ m ] = s[ r ];
+			nv[ m++ ] = val[ r ];
+		}
+		if ( !mergeLeft )
+		{
+			ns[ m ] = x;
+			nv[ m++ ] = v;
+		}
+		if ( right )
+		{
+			ns[ m ] = x + 1;
+			nv[ m++ ] = val[ r ];
+		}
+		final int next = mergeRight ? r + 2 : r + 1;
+		System.arraycopy( s, next, ns, m, k - next );
+		System.arraycopy( val, next, nv, m, k - next );
+		store( row, ns, nv, m + k - next );
+	}
+
+	/**
+	 * Create a {@link Pointer} for accessing these rows.
+	 */
+	public Pointer pointer()
+	{
+		return new Pointer( null );
+	}
+
+	/**
+	 * Create a {@link Pointer} for accessing these rows, which reads its
+	 * position from the given array whenever it is accessed.
+	 */
+	public Pointer pointer( final long[] position )
+	{
+		return new Pointer( position );
+	}
+
+	/**
+	 * Accesses one pixel of {@link RleRows}, remembering the run it was in. An
+	 * access within the same run costs O(1), as does an access of the next
+	 * run; other accesses binary-search the runs of the row.
+	 */
+	public final class Pointer
+	{
+		/** Position to read x and row from, or null. */
+		private final long[] position;
+
+		private final long[] strides;
+
+		int x;
+
+		int row;
+
+		private int cachedRow = -1;
+
+		private int run;
+
+		private int runStart;
+
+		private int runEnd;
+
+		/** {@link RleRows#modCount} when the run was located. */
+		private int expectedModCount;
+
+		private Pointer( final long[] position )
+		{
+			this.position = position;
+			strides = new long[ dimensions.length ];
+			long stride = 1;
+			for ( int d = 1; d < dimensions.length; ++d )
+			{
+				strides[ d ] = stride;
+				stride *= dimensions[ d ];
+			}
+		}
+
+		/**
+		 * Get the raw bits of the value at the current pixel.
+		 */
+		public long get()
+		{
+			locate();
+			return numRuns[ row ] == 1 ? uniform[ row ] : values[ row ][ run ];
+		}
+
+		/**
+		 * Set the raw bits of the value at the current pixel.
+		 */
+		public void set( final long v )
+		{
+			if ( position != null )
+				update();
+			RleRows.this.set( row, x, v );
+		}
+
+		/**
+		 * Get the pixel after the run containing the current pixel.
+		 */
+		public int getRunEnd()
+		{
+			locate();
+			return runEnd;
+		}
+
+		private void update()
+		{
+			x = ( int ) position[ 0 ];
+			long r = 0;
+			for ( int d = 1; d < strides.length; ++d )
+				r += position[ d ] * strides[ d ];
+			row = ( int ) r;
+		}
+
+		private void locate()
+		{
+			if ( position != null )
+				update();
+			if ( row == cachedRow && expectedModCount == modCount )
+			{
+				if ( x >= runStart && x < runEnd )
+					return;
+				if ( x >= runEnd && run + 1 < numRuns[ row ] && x < RleRows.this.getRunEnd( row, run + 1 ) )
+				{
+					++run;
+					runStart = runEnd;
+					runEnd = RleRows.this.getRunEnd( row, run );
+					return;
+				}
+			}
+			cachedRow = row;
+			expectedModCount = modCount;
+			run = findRun( row, x );
+			runStart = getRunStart( row, run );
+			runEnd = RleRows.this.getRunEnd( row, run );
+		}
+	}
+
+	// -- helpers --
+
+	/** Task processing a range of rows. */
+	interface RowRangeTask
+	{
+		/**
+		 * @param copy
+		 *            whether the task runs concurrently with others, and needs
+		 *            its own copies of any shared state
+		 */
+		void run( int start, int end, boolean copy );
+	}
+
+	/**
+	 * Runs the given task over slices of the rows.
+	 * 
+	 * @param service
+	 *            The executor on which to run the tasks, or null to run on the
+	 *            calling thread
+	 * @param numTasks
+	 *            The number of slices to process in parallel
+	 */
+	static void forEachRowRange( final int numRows, final ExecutorService service, final int numTasks, final RowRangeTask task )
+	{
+		final int tasks = ( service == null ) ? 1 : Math.max( 1, Math.min( numTasks, numRows ) );
+		if ( tasks == 1 )
+		{
+			task.run( 0, numRows, false );
+			return;
+		}
+
+		final List< Future< Void >> futures = new ArrayList< Future< Void >>();
+		for ( int t = 0; t < tasks; t++ )
+		{
+			final int start = ( int ) ( ( long ) numRows * t / tasks );
+			final int end = ( int ) ( ( long ) numRows * ( t + 1 ) / tasks );
+			futures.add( service.submit( new Callable< Void >()
+			{
+				@Override
+				public Void call()
+				{
+					task.run( start, end, true );
+					return null;
+				}
+			} ) );
+		}
+		try
+		{
+			for ( final Future< Void > future : futures )
+				future.get();
+		}
+		catch ( final InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException( e );
+		}
+		catch ( final ExecutionException e )
+		{
+			throw new RuntimeException( e.getCause() );
+		}
+	}
+
+	private void buildRows( final RowSource source, final int start, final int end )
+	{
+		final long[] buffer = new long[ rowLength ];
+		for ( int row = start; row < end; ++row )
+		{
+			source.read( row, buffer );
+			int k = 1;
+			for ( int x = 1; x < rowLength; ++x )
+				if ( buffer[ x ] != buffer[ x - 1 ] )
+					++k;
+			if ( k == 1 )
+			{
+				uniform[ row ] = buffer[ 0 ];
+				continue;
+			}
+			final int[] s = new int[ k ];
+			final long[] val = new long[ k ];
+			val[ 0 ] = buffer[ 0 ];
+			for ( int x = 1, r = 0; x < rowLength; ++x )
+			{
+				if ( buffer[ x ] != buffer[ x - 1 ] )
+				{
+					s[ ++r ] = x;
+					val[ r ] = buffer[ x ];
+				}
+			}
+			numRuns[ row ] = k;
+			starts[ row ] = s;
+			values[ row ] = val;
+		}
+	}
+
+	private void store( final int row, final int[] s, final long[] val, final int k )
+	{
+		numRuns[ row ] = k;
+		if ( k == 1 )
+		{
+			uniform[ row ] = val[ 0 ];
+			starts[ row ] = null;
+			values[ row ] = null;
+		}
+		else
+		{
+			starts[ row ] = s.length == k ? s : Arrays.copyOf( s, k );
+			values[ row ] = val.length == k ? val : Arrays.copyOf( val, k );
+		}
+		++modCount;
+	}
+}
@@ -0,0 +1,695 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.sparse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Pointer-free equivalent of {@link Ntree}, storing the nodes in primitive
+ * arrays.
+ * <p>
+ * The children of a node are stored as a contiguous block of
+ * {@code 2^n} nodes. Each node has an entry in a {@code int[]} (the index of
+ * its block of children, or -1 for a leaf) and an entry in a {@code long[]}
+ * (its value, if it is a leaf). Values are stored as raw {@code long} bits, so
+ * one tree serves all primitive types. Blocks which are merged away are reused
+ * by later splits.
+ * </p>
+ * <p>
+ * Setting a value splits leaves as needed and merges uniform subtrees again,
+ * so the tree always has as few nodes as possible. {@link Locator}s remember
+ * the path to the last leaf they visited, so visiting neighboring pixels (e.g.
+ * in flat iteration order) costs amortized O(1) per pixel rather than a full
+ * descent.
+ * </p>
+ * <p>
+ * Writes are synchronized, reads are not: do not read from a tree while
+ * another thread writes to it.
+ * </p>
+ */
+public final class ArrayNtree
+{
+	/**
+	 * Source of the values from which to {@link ArrayNtree#build build} a
+	 * tree.
+	 */
+	public interface ValueSource
+	{
+		/**
+		 * Gets the raw bits of the value at the given position.
+		 */
+		long get( long[] position );
+
+		/**
+		 * Creates an independent copy, for use on another thread.
+		 */
+		ValueSource copy();
+	}
+
+	/** Kind of a subtree which is a leaf. */
+	private static final int LEAF = -1;
+
+	/** Kind of a subtree which lies outside the image. */
+	private static final int EMPTY = -2;
+
+	/**
+	 * number of dimensions.
+	 */
+	final int n;
+
+	/**
+	 * number of branching levels: the root covers {@code 2^numLevels} pixels
+	 * in each dimension.
+	 */
+	final int numLevels;
+
+	/**
+	 * how many children (if any) each node has.
+	 */
+	final int numChildren;
+
+	/**
+	 * dimensions of tree
+	 */
+	final long[] dimensions;
+
+	/** Index of the first child of each node, or -1 for leaves. */
+	private int[] child;
+
+	/** Value of each leaf. */
+	private long[] value;
+
+	/** Number of used entries of {@link #child} and {@link #value}. */
+	private int size;
+
+	/** First free block, or -1. Free blocks are linked by {@link #child}. */
+	private int freeBlock = -1;
+
+	private int numFreeBlocks;
+
+	/** Incremented whenever nodes are split or merged. */
+	private int modCount;
+
+	/** Path of the current {@link #set} call. */
+	private final int[] writePath;
+
+	/**
+	 * Create a tree capable of representing an array of the given dimensions.
+	 * Initially, the tree contains only a root node and represents an array of
+	 * uniform values.
+	 *
+	 * @param dimensions
+	 *            of the array
+	 * @param value
+	 *            raw bits of the uniform value of all pixels in the array
+	 */
+	public ArrayNtree( final long[] dimensions, final long value )
+	{
+		this( dimensions );
+		this.value[ 0 ] = value;
+	}
+
+	/**
+	 * Copy constructor. Create a deep copy of tree.
+	 */
+	public ArrayNtree( final ArrayNtree tree )
+	{
+		n = tree.n;
+		numLevels = tree.numLevels;
+		numChildren = tree.numChildren;
+		dimensions = tree.dimensions;
+		synchronized ( tree )
+		{
+			child = Arrays.copyOf( tree.child, tree.size );
+			value = Arrays.copyOf( tree.value, tree.size );
+			size = tree.size;
+			freeBlock = tree.freeBlock;
+			numFreeBlocks = tree.numFreeBlocks;
+		}
+		writePath = new int[ numLevels ];
+	}
+
+	/** Creates a tree with an uninitialized leaf as root. */
+	private ArrayNtree( final long[] dimensions )
+	{
+		n = dimensions.length;
+		this.dimensions = dimensions.clone();
+		long maxdim = 1;
+		for ( int d = 0; d < n; ++d )
+			maxdim = Math.max( maxdim, dimensions[ d ] );
+		numLevels = 64 - Long.numberOfLeadingZeros( maxdim - 1 );
+		numChildren = 1 << n;
+		child = new int[] { -1 };
+		value = new long[ 1 ];
+		size = 1;
+		writePath = new int[ numLevels ];
+	}
+
+	/**
+	 * Builds a tree from the given values, merging uniform subtrees as it goes
+	 * so that the full array is never represented.
+	 *
+	 * @param dimensions
+	 *            of the array
+	 * @param source
+	 *            the values of the array
+	 * @param service
+	 *            The executor on which to build subtrees, or null to build on
+	 *            the calling thread
+	 * @param numTasks
+	 *            The number of tasks to build subtrees in
+	 */
+	public static ArrayNtree build( final long[] dimensions, final ValueSource source, final ExecutorService service, final int numTasks )
+	{
+		final ArrayNtree tree = new ArrayNtree( dimensions );
+
+		// find the level of subtrees to build in parallel, with a few per task
+		final int tasks = ( service == null ) ? 1 : Math.max( 1, numTasks );
+		int splitLevel = tree.numLevels - 1;
+		long[] grid = tree.subtreeGrid( splitLevel );
+		while ( tasks > 1 && splitLevel > 0 && count( grid ) < 4 * tasks )
+			grid = tree.subtreeGrid( --splitLevel );
+
+		final Builder builder;
+		if ( tasks == 1 || splitLevel < 0 )
+			builder = new Builder( tree, source, -2, null, null, null );
+		else
+		{
+			final int numSubtrees = ( int ) count( grid );
+			final int[] kinds = new int[ numSubtrees ];
+			final long[] values = new long[ numSubtrees ];
+			final ArrayNtree[] fragments = buildSubtrees( tree, source, splitLevel, grid, kinds, values, service, tasks );
+
+			// append the subtrees to the tree
+			ArrayNtree fragment = null;
+			int offset = 0;
+			for ( int i = 0; i < numSubtrees; ++i )
+			{
+				if ( fragments[ i ] != fragment )
+				{
+					fragment = fragments[ i ];
+					offset = tree.append( fragment );
+				}
+				if ( kinds[ i ] >= 0 )
+					kinds[ i ] += offset;
+			}
+			builder = new Builder( tree, source, splitLevel, grid, kinds, values );
+		}
+
+		final int kind = builder.build( tree.numLevels - 1 );
+		if ( kind >= 0 )
+			tree.child[ 0 ] = kind;
+		else
+			tree.value[ 0 ] = kind == LEAF ? builder.leafValue : 0;
+		tree.trim();
+		return tree;
+	}
+
+	/**
+	 * Get the number of dimensions.
+	 */
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	/**
+	 * Get the number of nodes in the tree, which determines its memory use.
+	 */
+	public synchronized int getNodeCount()
+	{
+		return size - numFreeBlocks * numChildren;
+	}
+
+	/**
+	 * Get the raw bits of the value at position. Use a {@link Locator} to
+	 * read many nearby positions.
+	 *
+	 * @param position
+	 *            a position inside the image.
+	 */
+	public long get( final long[] position )
+	{
+		int node = 0;
+		for ( int l = numLevels - 1; l >= 0 && child[ node ] >= 0; --l )
+			node = child[ node ] + childIndex( position, l );
+		return value[ node ];
+	}
+
+	/**
+	 * Set the value at position. If necessary, new nodes will be created. If
+	 * possible, nodes will be merged.
+	 *
+	 * @param position
+	 *            a position inside the image.
+	 * @param v
+	 *            raw bits of the value to store at position.
+	 */
+	public synchronized void set( final long[] position, final long v )
+	{
+		int node = 0;
+		for ( int l = numLevels - 1; l >= 0; --l )
+		{
+			if ( child[ node ] < 0 )
+			{
+				if ( value[ node ] == v )
+					return;
+				split( node );
+			}
+			writePath[ l ] = node;
+			node = child[ node ] + childIndex( position, l );
+		}
+		if ( value[ node ] == v )
+			return;
+		value[ node ] = v;
+
+		// merge uniform children upwards
+		for ( int l = 0; l < numLevels; ++l )
+		{
+			final int parent = writePath[ l ];
+			final int block = child[ parent ];
+			for ( int i = 0; i < numChildren; ++i )
+				if ( ( child[ block + i ] >= 0 || value[ block + i ] != v ) && !isOutside( position, l, i ) )
+					return;
+			value[ parent ] = v;
+			child[ parent ] = -1;
+			freeBlock( block );
+			++modCount;
+		}
+	}
+
+	/**
+	 * Create a {@link Locator} for reading this tree.
+	 */
+	public Locator locator()
+	{
+		return new Locator();
+	}
+
+	/**
+	 * Reads values of an {@link ArrayNtree}, remembering the path to the last
+	 * leaf visited. A read within the same leaf costs O(1), and a read of
+	 * another leaf only descends from the lowest common ancestor.
+	 */
+	public final class Locator
+	{
+		/** The nodes on the path to the current leaf, by level. */
+		private final int[] path = new int[ numLevels ];
+
+		/** The position of the last read. */
+		private final long[] last = new long[ n ];
+
+		/** The current leaf covers {@code 2^(leafLevel + 1)} pixels. */
+		private int leafLevel;
+
+		private int leaf;
+
+		/** {@link ArrayNtree#modCount} when {@link #path} was computed. */
+		private int expectedModCount = modCount - 1;
+
+		private Locator()
+		{}
+
+		/**
+		 * Get the raw bits of the value at position.
+		 */
+		public long get( final long[] position )
+		{
+			int node = 0;
+			int l = numLevels - 1;
+			if ( expectedModCount == modCount )
+			{
+				long diff = 0;
+				for ( int d = 0; d < n; ++d )
+					diff |= position[ d ] ^ last[ d ];
+				if ( ( diff >>> ( leafLevel + 1 ) ) == 0 )
+					return value[ leaf ];
+				final int h = 63 - Long.numberOfLeadingZeros( diff );
+				if ( h < numLevels )
+				{
+					node = path[ h ];
+					l = h;
+				}
+			}
+			else
+				expectedModCount = modCount;
+
+			for ( ; l >= 0; --l )
+			{
+				path[ l ] = node;
+				if ( child[ node ] < 0 )
+					break;
+				node = child[ node ] + childIndex( position, l );
+			}
+			leafLevel = l;
+			leaf = node;
+			for ( int d = 0; d < n; ++d )
+				last[ d ] = position[ d ];
+			return value[ node ];
+		}
+	}
+
+	// -- helpers --
+
+	private int childIndex( final long[] position, final int level )
+	{
+		int index = 0;
+		for ( int d = 0; d < n; ++d )
+			index |= ( int ) ( ( position[ d ] >>> level ) & 1 ) << d;
+		return index;
+	}
+
+	/**
+	 * Checks whether the given child of the node at level, which contains
+	 * position, lies outside of the array. Such children never change, so
+	 * they do not prevent merging.
+	 */
+	private boolean isOutside( final long[] position, final int level, final int childIndex )
+	{
+		for ( int d = 0; d < n; ++d )
+		{
+			final long origin = ( ( position[ d ] >>> ( level + 1 ) ) << ( level + 1 ) ) | ( ( long ) ( ( childIndex >> d ) & 1 ) << level );
+			if ( origin >= dimensions[ d ] )
+				return true;
+		}
+		return false;
+	}
+
+	private void split( final int node )
+	{
+		final int block = allocateBlock();
+		Arrays.fill( child, block, block + numChildren, -1 );
+		Arrays.fill( value, block, block + numChildren, value[ node ] );
+		child[ node ] = block;
+		++modCount;
+	}
+
+	private int allocateBlock()
+	{
+		if ( freeBlock >= 0 )
+		{
+			final int block = freeBlock;
+			freeBlock = child[ block ];
+			--numFreeBlocks;
+			return block;
+		}
+		ensureCapacity( size + numChildren );
+		final int block = size;
+		size += numChildren;
+		return block;
+	}
+
+	private void freeBlock( final int block )
+	{
+		child[ block ] = freeBlock;
+		freeBlock = block;
+		++numFreeBlocks;
+	}
+
+	private void ensureCapacity( final int capacity )
+	{
+		if ( capacity < 0 )
+			throw new IllegalStateException( "Too many nodes" );
+		if ( capacity <= child.length )
+			return;
+		final int newLength = ( int ) Math.min( Integer.MAX_VALUE, Math.max( capacity, 2L * child.length ) );
+		child = Arrays.copyOf( child, newLength );
+		value = Arrays.copyOf( value, newLength );
+	}
+
+	private void trim()
+	{
+		child = Arrays.copyOf( child, size );
+		value = Arrays.copyOf( value, size );
+	}
+
+	/**
+	 * Appends the blocks of another tree, which must not have free blocks.
+	 *
+	 * @return the offset to add to the other tree's block indices.
+	 */
+	private int append( final ArrayNtree other )
+	{
+		final int offset = size - 1;
+		ensureCapacity( size + other.size - 1 );
+		for ( int i = 1; i < other.size; ++i )
+		{
+			final int c = other.child[ i ];
+			child[ offset + i ] = c >= 0 ? c + offset : c;
+			value[ offset + i ] = other.value[ i ];
+		}
+		size += other.size - 1;
+		return offset;
+	}
+
+	/**
+	 * Gets the number of subtrees covering {@code 2^(level + 1)} pixels that
+	 * intersect the array, in each dimension.
+	 */
+	private long[] subtreeGrid( final int level )
+	{
+		final long[] grid = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+			grid[ d ] = ( ( dimensions[ d ] - 1 ) >> ( level + 1 ) ) + 1;
+		return grid;
+	}
+
+	private static long count( final long[] grid )
+	{
+		long count = 1;
+		for ( final long g : grid )
+			count *= g;
+		return count;
+	}
+
+	/**
+	 * Builds the subtrees at the given level into fragments, one per task.
+	 *
+	 * @return the fragment holding each subtree.
+	 */
+	private static ArrayNtree[] buildSubtrees( final ArrayNtree tree, final ValueSource source, final int level, final long[] grid, final int[] kinds, final long[] values, final ExecutorService service, final int numTasks )
+	{
+		final int numSubtrees = kinds.length;
+		final int tasks = Math.min( numTasks, numSubtrees );
+		final ArrayNtree[] fragments = new ArrayNtree[ numSubtrees ];
+		final List< Future< ArrayNtree >> futures = new ArrayList< Future< ArrayNtree >>();
+		for ( int t = 0; t < tasks; t++ )
+		{
+			final int start = ( int ) ( ( long ) numSubtrees * t / tasks );
+			final int end = ( int ) ( ( long ) numSubtrees * ( t + 1 ) / tasks );
+			futures.add( service.submit( new Callable< ArrayNtree >()
+			{
+				@Override
+				public ArrayNtree call()
+				{
+					final ArrayNtree fragment = new ArrayNtree( tree.dimensions );
+					final Builder builder = new Builder( fragment, source.copy(), -2, null, null, null );
+					final long[] position = builder.position;
+					for ( int i = start; i < end; ++i )
+					{
+						long index = i;
+						for ( int d = 0; d < tree.n; ++d )
+						{
+							position[ d ] = ( index % grid[ d ] ) << ( level + 1 );
+							index /= grid[ d ];
+						}
+						kinds[ i ] = builder.build( level );
+						values[ i ] = builder.leafValue;
+					}
+					return fragment;
+				}
+			} ) );
+		}
+
+		try
+		{
+			for ( int t = 0; t < tasks; t++ )
+			{
+				final ArrayNtree fragment = futures.get( t ).get();
+				final int start = ( int ) ( ( long ) numSubtrees * t / tasks );
+				final int end = ( int ) ( ( long ) numSubtrees * ( t + 1 ) / tasks );
+				Arrays.fill( fragments, start, end, fragment );
+			}
+		}
+		catch ( final InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException( e );
+		}
+		catch ( final ExecutionException e )
+		{
+			throw new RuntimeException( e.getCause() );
+		}
+		return fragments;
+	}
+
+	/**
+	 * Builds a tree bottom-up, merging uniform children before they are ever
+	 * stored. Optionally, subtrees at a given level are taken from previously
+	 * built results rather than built.
+	 */
+	private static final class Builder
+	{
+		private final ArrayNtree tree;
+
+		private final ValueSource source;
+
+		private final int splitLevel;
+
+		private final long[] grid;
+
+		private final int[] subtreeKinds;
+
+		private final long[] subtreeValues;
+
+		/** Origin of the subtree being built. */
+		final long[] position;
+
+		/** Kinds of the children being built, by level. */
+		private final int[][] kinds;
+
+		/** Values of the children being built, by level. */
+		private final long[][] values;
+
+		/** Value of the last subtree built, if it is a leaf. */
+		long leafValue;
+
+		Builder( final ArrayNtree tree, final ValueSource source, final int splitLevel, final long[] grid, final int[] subtreeKinds, final long[] subtreeValues )
+		{
+			this.tree = tree;
+			this.source = source;
+			this.splitLevel = splitLevel;
+			this.grid = grid;
+			this.subtreeKinds = subtreeKinds;
+			this.subtreeValues = subtreeValues;
+			position = new long[ tree.n ];
+			kinds = new int[ tree.numLevels ][ tree.numChildren ];
+			values = new long[ tree.numLevels ][ tree.numChildren ];
+		}
+
+		private boolean isInside()
+		{
+			for ( int d = 0; d < tree.n; ++d )
+				if ( position[ d ] >= tree.dimensions[ d ] )
+					return false;
+			return true;
+		}
+
+		/**
+		 * Builds the subtree covering {@code 2^(level + 1)} pixels at
+		 * {@link #position}.
+		 *
+		 * @return {@link ArrayNtree#LEAF} (with the value in
+		 *         {@link #leafValue}), {@link ArrayNtree#EMPTY}, or the index of
+		 *         the block of children.
+		 */
+		int build( final int level )
+		{
+			if ( !isInside() )
+				return EMPTY;
+
+			final int n = tree.n;
+			if ( level == splitLevel )
+			{
+				long index = 0;
+				for ( int d = n - 1; d >= 0; --d )
+					index = index * grid[ d ] + ( position[ d ] >> ( level + 1 ) );
+				leafValue = subtreeValues[ ( int ) index ];
+				return subtreeKinds[ ( int ) index ];
+			}
+			if ( level < 0 )
+			{
+				leafValue = source.get( position );
+				return LEAF;
+			}
+
+			final int[] k = kinds[ level ];
+			final long[] v = values[ level ];
+			final long bit = 1L << level;
+			boolean uniform = true, found = false;
+			long fill = 0;
+			for ( int i = 0; i < tree.numChildren; ++i )
+			{
+				for ( int d = 0; d < n; ++d )
+					if ( ( i & ( 1 << d ) ) != 0 )
+						position[ d ] |= bit;
+				if ( level == 0 && splitLevel != -1 )
+				{
+					// NB: Read pixels directly, rather than recursing for each.
+					k[ i ] = isInside() ? LEAF : EMPTY;
+					if ( k[ i ] == LEAF )
+						leafValue = source.get( position );
+				}
+				else
+					k[ i ] = build( level - 1 );
+				v[ i ] = leafValue;
+				for ( int d = 0; d < n; ++d )
+					position[ d ] &= ~bit;
+
+				if ( k[ i ] >= 0 )
+					uniform = false;
+				else if ( k[ i ] == LEAF )
+				{
+					if ( !found )
+					{
+						fill = v[ i ];
+						found = true;
+					}
+					else if ( v[ i ] != fill )
+						uniform = false;
+				}
+			}
+
+			if ( uniform )
+			{
+				leafValue = fill;
+				return found ? LEAF : EMPTY;
+			}
+			final int block = tree.allocateBlock();
+			for ( int i = 0; i < tree.numChildren; ++i )
+			{
+				tree.child[ block + i ] = k[ i ] >= 0 ? k[ i ] : -1;
+				tree.value[ block + i ] = k[ i ] == EMPTY ? fill : v[ i ];
+			}
+			return block;
+		}
+	}
+}
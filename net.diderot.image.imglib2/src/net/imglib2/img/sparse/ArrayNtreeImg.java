@@ -0,0 +1,111 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.sparse;
+
+import net.imglib2.FlatIterationOrder;
+import net.imglib2.img.AbstractNativeImg;
+import net.imglib2.img.sparse.NtreeImg.PositionProvider;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.Fraction;
+
+/**
+ * Sparse image stored in an {@link ArrayNtree}. Compared to {@link NtreeImg},
+ * it uses a fraction of the memory per node, and its cursors and random
+ * accesses do not descend the whole tree for each pixel.
+ */
+public final class ArrayNtreeImg< T extends NativeType< T >, A extends ArrayNtreeAccess< A > > extends AbstractNativeImg< T, A >
+{
+	final A data;
+
+	public ArrayNtreeImg( final A data, final long[] dim, final Fraction entitiesPerPixel )
+	{
+		super( dim, entitiesPerPixel );
+		this.data = data;
+	}
+
+	/**
+	 * Get the tree holding the pixels of this image.
+	 */
+	public ArrayNtree getTree()
+	{
+		return data.getCurrentStorageArrayNtree();
+	}
+
+	// updater is the RandomAccess / Cursor etc
+	// each call creates a new access with its own ArrayNtree.Locator
+	@Override
+	public A update( final Object updater )
+	{
+		return data.createInstance( ( ( PositionProvider ) updater ).getPosition() );
+	}
+
+	@Override
+	public NtreeRandomAccess< T > randomAccess()
+	{
+		return new NtreeRandomAccess< T >( this );
+	}
+
+	@Override
+	public NtreeCursor< T > cursor()
+	{
+		return new NtreeCursor< T >( this );
+	}
+
+	@Override
+	public NtreeCursor< T > localizingCursor()
+	{
+		return cursor();
+	}
+
+	@Override
+	public ArrayNtreeImgFactory< T > factory()
+	{
+		return new ArrayNtreeImgFactory< T >();
+	}
+
+	@Override
+	@SuppressWarnings( "unchecked" )
+	public ArrayNtreeImg< T, A > copy()
+	{
+		final ArrayNtree tree = new ArrayNtree( getTree() );
+		return ( ArrayNtreeImg< T, A > ) new ArrayNtreeImgFactory< T >( tree ).create( dimension, firstElement().createVariable() );
+	}
+
+	@Override
+	public FlatIterationOrder iterationOrder()
+	{
+		return new FlatIterationOrder( this );
+	}
+}
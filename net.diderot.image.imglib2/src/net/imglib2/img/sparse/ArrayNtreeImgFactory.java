@@ -0,0 +1,248 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.sparse;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.NativeImgFactory;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.Fraction;
+import net.imglib2.util.Intervals;
+import net.imglib2.util.Util;
+
+/**
+ * Factory for {@link ArrayNtreeImg}s.
+ * <p>
+ * Besides creating uniform images, it can
+ * {@link #create(RandomAccessibleInterval, ExecutorService, int) build} an
+ * image from existing data, constructing subtrees in parallel and merging
+ * uniform ones before they are stored.
+ * </p>
+ */
+public class ArrayNtreeImgFactory< T extends NativeType< T > > extends NativeImgFactory< T >
+{
+	/** Tree for the images to create, or null to create uniform ones. */
+	private final ArrayNtree tree;
+
+	public ArrayNtreeImgFactory()
+	{
+		this( null );
+	}
+
+	/**
+	 * Creates a factory whose images use the given tree, which must have
+	 * matching dimensions.
+	 */
+	ArrayNtreeImgFactory( final ArrayNtree tree )
+	{
+		this.tree = tree;
+	}
+
+	@Override
+	public ArrayNtreeImg< T, ? > create( final long[] dim, final T type )
+	{
+		return ( ArrayNtreeImg< T, ? > ) type.createSuitableNativeImg( this, dim );
+	}
+
+	/**
+	 * Creates an image with the values of the given source.
+	 * 
+	 * @param source
+	 *            the values of the image
+	 * @param service
+	 *            The executor on which to build parts of the image, or null to
+	 *            build on the calling thread
+	 * @param numTasks
+	 *            The number of tasks to build the image in
+	 */
+	public ArrayNtreeImg< T, ? > create( final RandomAccessibleInterval< T > source, final ExecutorService service, final int numTasks )
+	{
+		final long[] dimensions = Intervals.dimensionsAsLongArray( source );
+		final T type = Util.getTypeFromInterval( source ).createVariable();
+		final ArrayNtree built = ArrayNtree.build( dimensions, new TypeValueSource( source, type ), service, numTasks );
+		return new ArrayNtreeImgFactory< T >( built ).create( dimensions, type );
+	}
+
+	@Override
+	public ArrayNtreeImg< T, ByteArrayNtree > createByteInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		if ( entitiesPerPixel.getNumerator() != entitiesPerPixel.getDenominator() )
+			throw new RuntimeException( "not implemented" );
+
+		return new ArrayNtreeImg< T, ByteArrayNtree >( new ByteArrayNtree( tree( dimensions ), new long[ dimensions.length ] ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayNtreeImg< T, CharArrayNtree > createCharInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		if ( entitiesPerPixel.getNumerator() != entitiesPerPixel.getDenominator() )
+			throw new RuntimeException( "not implemented" );
+
+		return new ArrayNtreeImg< T, CharArrayNtree >( new CharArrayNtree( tree( dimensions ), new long[ dimensions.length ] ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayNtreeImg< T, ShortArrayNtree > createShortInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		if ( entitiesPerPixel.getNumerator() != entitiesPerPixel.getDenominator() )
+			throw new RuntimeException( "not implemented" );
+
+		return new ArrayNtreeImg< T, ShortArrayNtree >( new ShortArrayNtree( tree( dimensions ), new long[ dimensions.length ] ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayNtreeImg< T, IntArrayNtree > createIntInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		if ( entitiesPerPixel.getNumerator() != entitiesPerPixel.getDenominator() )
+			throw new RuntimeException( "not implemented" );
+
+		return new ArrayNtreeImg< T, IntArrayNtree >( new IntArrayNtree( tree( dimensions ), new long[ dimensions.length ] ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayNtreeImg< T, LongArrayNtree > createLongInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		if ( entitiesPerPixel.getNumerator() != entitiesPerPixel.getDenominator() )
+			throw new RuntimeException( "not implemented" );
+
+		return new ArrayNtreeImg< T, LongArrayNtree >( new LongArrayNtree( tree( dimensions ), new long[ dimensions.length ] ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayNtreeImg< T, FloatArrayNtree > createFloatInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		if ( entitiesPerPixel.getNumerator() != entitiesPerPixel.getDenominator() )
+			throw new RuntimeException( "not implemented" );
+
+		return new ArrayNtreeImg< T, FloatArrayNtree >( new FloatArrayNtree( tree( dimensions ), new long[ dimensions.length ] ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayNtreeImg< T, DoubleArrayNtree > createDoubleInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		if ( entitiesPerPixel.getNumerator() != entitiesPerPixel.getDenominator() )
+			throw new RuntimeException( "not implemented" );
+
+		return new ArrayNtreeImg< T, DoubleArrayNtree >( new DoubleArrayNtree( tree( dimensions ), new long[ dimensions.length ] ), dimensions, entitiesPerPixel );
+	}
+
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	@Override
+	public < S > ImgFactory< S > imgFactory( final S type ) throws IncompatibleTypeException
+	{
+		if ( NativeType.class.isInstance( type ) )
+			return new ArrayNtreeImgFactory();
+		throw new IncompatibleTypeException( this, type.getClass().getCanonicalName() + " does not implement NativeType." );
+	}
+
+	// -- helpers --
+
+	private ArrayNtree tree( final long[] dimensions )
+	{
+		if ( tree == null )
+			return new ArrayNtree( dimensions, 0 );
+		if ( !Arrays.equals( dimensions, tree.dimensions ) )
+			throw new IllegalArgumentException( "The dimensions do not match the tree" );
+		return tree;
+	}
+
+	/**
+	 * Gets the raw bits of the values of a {@link RandomAccessibleInterval},
+	 * by copying each of them into a single-pixel {@link ArrayImg}.
+	 */
+	private class TypeValueSource implements ArrayNtree.ValueSource
+	{
+		private final RandomAccessibleInterval< T > source;
+
+		private final T type;
+
+		private final RandomAccess< T > sourceAccess;
+
+		private final long[] min;
+
+		private final T pixelType;
+
+		private final Object pixel;
+
+		TypeValueSource( final RandomAccessibleInterval< T > source, final T type )
+		{
+			this.source = source;
+			this.type = type;
+			sourceAccess = source.randomAccess();
+			min = Intervals.minAsLongArray( source );
+			final long[] one = new long[ source.numDimensions() ];
+			Arrays.fill( one, 1 );
+			final ArrayImg< T, ? > img = new ArrayImgFactory< T >().create( one, type );
+			pixelType = img.firstElement();
+			pixel = ( ( ArrayDataAccess< ? > ) img.update( null ) ).getCurrentStorageArray();
+		}
+
+		@Override
+		public long get( final long[] position )
+		{
+			for ( int d = 0; d < min.length; ++d )
+				sourceAccess.setPosition( min[ d ] + position[ d ], d );
+			pixelType.set( sourceAccess.get() );
+			// NB: The encodings must match those of the accesses.
+			if ( pixel instanceof byte[] )
+				return ( ( byte[] ) pixel )[ 0 ];
+			if ( pixel instanceof char[] )
+				return ( ( char[] ) pixel )[ 0 ];
+			if ( pixel instanceof short[] )
+				return ( ( short[] ) pixel )[ 0 ];
+			if ( pixel instanceof int[] )
+				return ( ( int[] ) pixel )[ 0 ];
+			if ( pixel instanceof long[] )
+				return ( ( long[] ) pixel )[ 0 ];
+			if ( pixel instanceof float[] )
+				return Float.floatToRawIntBits( ( ( float[] ) pixel )[ 0 ] );
+			return Double.doubleToRawLongBits( ( ( double[] ) pixel )[ 0 ] );
+		}
+
+		@Override
+		public TypeValueSource copy()
+		{
+			return new TypeValueSource( source, type );
+		}
+	}
+}
@@ -35,6 +35,7 @@
 package net.imglib2.img.sparse;
 
 import net.imglib2.Cursor;
+import net.imglib2.img.AbstractNativeImg;
 import net.imglib2.img.sparse.NtreeImg.PositionProvider;
 import net.imglib2.iterator.LocalizingIntervalIterator;
 import net.imglib2.type.NativeType;
@@ -46,11 +47,11 @@ import net.imglib2.type.NativeType;
 public final class NtreeCursor< T extends NativeType< T >> extends
 		LocalizingIntervalIterator implements Cursor< T >, PositionProvider
 {
-	private final NtreeImg< T, ? > img;
+	private final AbstractNativeImg< T, ? > img;
 
 	private final T type;
 
-	public NtreeCursor( final NtreeImg< T, ? > img )
+	public NtreeCursor( final AbstractNativeImg< T, ? > img )
 	{
 		super( img );
 
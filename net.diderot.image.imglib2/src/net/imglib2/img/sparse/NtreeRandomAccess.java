@@ -36,6 +36,7 @@ package net.imglib2.img.sparse;
 
 import net.imglib2.Localizable;
 import net.imglib2.RandomAccess;
+import net.imglib2.img.AbstractNativeImg;
 import net.imglib2.img.sparse.NtreeImg.PositionProvider;
 import net.imglib2.type.NativeType;
 import net.imglib2.util.Util;
@@ -46,7 +47,7 @@ import net.imglib2.util.Util;
  */
 public final class NtreeRandomAccess< T extends NativeType< T >> implements PositionProvider, RandomAccess< T >
 {
-	private final NtreeImg< T, ? > img;
+	private final AbstractNativeImg< T, ? > img;
 
 	private final T type;
 
@@ -54,7 +55,7 @@ public final class NtreeRandomAccess< T extends NativeType< T >> implements Posi
 
 	private final long[] position;
 
-	public NtreeRandomAccess( final NtreeImg< T, ? > img )
+	public NtreeRandomAccess( final AbstractNativeImg< T, ? > img )
 	{
 
 		this.n = img.numDimensions();
@@ -34,11 +34,20 @@
 
 package net.imglib2.interpolation.neighborsearch;
 
+import java.util.concurrent.ExecutorService;
+
+import net.imglib2.Cursor;
+import net.imglib2.FlatKDTree;
+import net.imglib2.IterableInterval;
+import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.RealPoint;
 import net.imglib2.RealRandomAccess;
 import net.imglib2.Sampler;
+import net.imglib2.neighborsearch.BatchNeighborSearch;
 import net.imglib2.neighborsearch.KNearestNeighborSearch;
+import net.imglib2.neighborsearch.KNearestNeighborSearchOnFlatKDTree;
 import net.imglib2.type.numeric.RealType;
+import net.imglib2.view.Views;
 
 /**
  * {@link RealRandomAccess} to a {@link KNearestNeighborSearch} whose sample
@@ -137,4 +146,130 @@ public class InverseDistanceWeightingInterpolator< T extends RealType< T > > ext
 	{
 		return copy();
 	}
+
+	/**
+	 * Sets every pixel of the image to the inverse distance weighted
+	 * value of the <em>k</em> nearest neighbors of its coordinates. This gives
+	 * the same result as calling {@link #get()} at each pixel, but pixels are
+	 * rendered in parallel slices and, for a
+	 * {@link KNearestNeighborSearchOnFlatKDTree}, answered in blocks by a
+	 * {@link BatchNeighborSearch} without allocating per pixel.
+	 * 
+	 * @param search
+	 *            the search to render; it is copied, not used
+	 * @param p
+	 *            power applied to the distance
+	 * @param image
+	 *            the image to render into
+	 * @param service
+	 *            the executor on which to run the tasks, or null to render on
+	 *            the calling thread
+	 * @param numTasks
+	 *            the number of slices to render in parallel
+	 */
+	public static < T extends RealType< T >, S extends RealType< S > > void render( final KNearestNeighborSearch< T > search, final double p, final RandomAccessibleInterval< S > image, final ExecutorService service, final int numTasks )
+	{
+		final int k = search.getK();
+		final double p2 = p / 2.0;
+		final SliceRenderer< S > renderer;
+		if ( search instanceof KNearestNeighborSearchOnFlatKDTree )
+		{
+			final FlatKDTree< T > tree = ( ( KNearestNeighborSearchOnFlatKDTree< T > ) search ).getTree();
+			renderer = new SliceRenderer< S >()
+			{
+				@Override
+				void render( final IterableInterval< S > target, final long start, final long count )
+				{
+					final Cursor< S > cursor = cursor( target, start );
+					final int n = tree.numDimensions();
+					final BatchNeighborSearch< T > batch = new BatchNeighborSearch< T >( tree, null, 1 );
+					final int blockSize = ( int ) Math.min( BLOCK_SIZE, count );
+					final double[] queries = new double[ blockSize * n ];
+					final int[] indices = new int[ blockSize * k ];
+					final double[] squDistances = new double[ blockSize * k ];
+					final double[] values = new double[ k ];
+					final Cursor< S > writer = cursor( target, start );
+					for ( long remaining = count; remaining > 0; remaining -= blockSize )
+					{
+						final int block = ( int ) Math.min( blockSize, remaining );
+						for ( int i = 0, o = 0; i < block; ++i, o += n )
+						{
+							cursor.fwd();
+							for ( int d = 0; d < n; ++d )
+								queries[ o + d ] = cursor.getDoublePosition( d );
+						}
+						batch.kNearest( k, queries, block, indices, squDistances );
+						for ( int i = 0, o = 0; i < block; ++i, o += k )
+						{
+							int found = 0;
+							while ( found < k && indices[ o + found ] >= 0 )
+							{
+								values[ found ] = tree.getValue( indices[ o + found ] ).getRealDouble();
+								++found;
+							}
+							writer.next().setReal( weight( values, squDistances, o, found, k, p2 ) );
+						}
+					}
+				}
+			};
+		}
+		else
+		{
+			renderer = new SliceRenderer< S >()
+			{
+				@Override
+				void render( final IterableInterval< S > target, final long start, final long count )
+				{
+					final Cursor< S > cursor = cursor( target, start );
+					final KNearestNeighborSearch< T > copy = search.copy();
+					final double[] values = new double[ k ];
+					final double[] squDistances = new double[ k ];
+					for ( long i = 0; i < count; ++i )
+					{
+						cursor.fwd();
+						copy.search( cursor );
+						int found = 0;
+						Sampler< T > sampler;
+						while ( found < k && ( sampler = copy.getSampler( found ) ) != null )
+						{
+							values[ found ] = sampler.get().getRealDouble();
+							squDistances[ found ] = copy.getSquareDistance( found );
+							++found;
+						}
+						if ( found < k )
+							squDistances[ found ] = copy.getSquareDistance( found );
+						cursor.get().setReal( weight( values, squDistances, 0, found, k, p2 ) );
+					}
+				}
+			};
+		}
+		renderer.run( Views.flatIterable( image ), service, numTasks );
+	}
+
+	/**
+	 * Weights the values of the neighbors found by their inverse distance, in
+	 * the same way as {@link #get()}.
+	 * 
+	 * @param values
+	 *            the values of the neighbors found
+	 * @param squDistances
+	 *            the squared distances of all k neighbors, starting at offset
+	 * @param found
+	 *            the number of neighbors found
+	 */
+	private static double weight( final double[] values, final double[] squDistances, final int offset, final int found, final int k, final double p2 )
+	{
+		if ( k == 1 || squDistances[ offset ] / squDistances[ offset + 1 ] < minThreshold )
+			return values[ 0 ];
+
+		double sumIntensity = 0;
+		double sumWeights = 0;
+		for ( int i = 0; i < found; ++i )
+		{
+			final double weight = 1.0 / Math.pow( squDistances[ offset + i ], p2 );
+			sumWeights += weight;
+			sumIntensity += values[ i ] * weight;
+		}
+		return sumIntensity / sumWeights;
+	}
 }
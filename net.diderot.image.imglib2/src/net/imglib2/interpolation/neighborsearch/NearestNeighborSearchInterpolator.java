@@ -34,9 +34,19 @@
 
 package net.imglib2.interpolation.neighborsearch;
 
+import java.util.concurrent.ExecutorService;
+
+import net.imglib2.Cursor;
+import net.imglib2.FlatKDTree;
+import net.imglib2.IterableInterval;
+import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.RealPoint;
 import net.imglib2.RealRandomAccess;
+import net.imglib2.neighborsearch.BatchNeighborSearch;
 import net.imglib2.neighborsearch.NearestNeighborSearch;
+import net.imglib2.neighborsearch.NearestNeighborSearchOnFlatKDTree;
+import net.imglib2.type.Type;
+import net.imglib2.view.Views;
 
 /**
  * Nearest-neighbor interpolation implemented by {@link NearestNeighborSearch}.
@@ -73,4 +83,76 @@ public class NearestNeighborSearchInterpolator< T > extends RealPoint implements
 	{
 		return copy();
 	}
+
+	/**
+	 * Sets every pixel of the image to the value of the nearest
+	 * neighbor of its coordinates. This gives the same result as calling
+	 * {@link #get()} at each pixel, but pixels are rendered in parallel slices
+	 * and, for a {@link NearestNeighborSearchOnFlatKDTree}, answered in blocks
+	 * by a {@link BatchNeighborSearch} without allocating per pixel.
+	 * 
+	 * @param search
+	 *            the search to render; it is copied, not used
+	 * @param image
+	 *            the image to render into
+	 * @param service
+	 *            the executor on which to run the tasks, or null to render on
+	 *            the calling thread
+	 * @param numTasks
+	 *            the number of slices to render in parallel
+	 */
+	public static < T extends Type< T > > void render( final NearestNeighborSearch< T > search, final RandomAccessibleInterval< T > image, final ExecutorService service, final int numTasks )
+	{
+		final SliceRenderer< T > renderer;
+		if ( search instanceof NearestNeighborSearchOnFlatKDTree )
+		{
+			final FlatKDTree< T > tree = ( ( NearestNeighborSearchOnFlatKDTree< T > ) search ).getTree();
+			renderer = new SliceRenderer< T >()
+			{
+				@Override
+				void render( final IterableInterval< T > target, final long start, final long count )
+				{
+					final Cursor< T > cursor = cursor( target, start );
+					final int n = tree.numDimensions();
+					final BatchNeighborSearch< T > batch = new BatchNeighborSearch< T >( tree, null, 1 );
+					final int blockSize = ( int ) Math.min( BLOCK_SIZE, count );
+					final double[] queries = new double[ blockSize * n ];
+					final int[] indices = new int[ blockSize ];
+					final Cursor< T > writer = cursor( target, start );
+					for ( long remaining = count; remaining > 0; remaining -= blockSize )
+					{
+						final int block = ( int ) Math.min( blockSize, remaining );
+						for ( int i = 0, o = 0; i < block; ++i, o += n )
+						{
+							cursor.fwd();
+							for ( int d = 0; d < n; ++d )
+								queries[ o + d ] = cursor.getDoublePosition( d );
+						}
+						batch.nearest( queries, block, indices, null );
+						for ( int i = 0; i < block; ++i )
+							writer.next().set( tree.getValue( indices[ i ] ) );
+					}
+				}
+			};
+		}
+		else
+		{
+			renderer = new SliceRenderer< T >()
+			{
+				@Override
+				void render( final IterableInterval< T > target, final long start, final long count )
+				{
+					final Cursor< T > cursor = cursor( target, start );
+					final NearestNeighborSearch< T > copy = search.copy();
+					for ( long i = 0; i < count; ++i )
+					{
+						cursor.fwd();
+						copy.search( cursor );
+						cursor.get().set( copy.getSampler().get() );
+					}
+				}
+			};
+		}
+		renderer.run( Views.flatIterable( image ), service, numTasks );
+	}
 }
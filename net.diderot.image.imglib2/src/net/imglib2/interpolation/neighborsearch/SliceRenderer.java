@@ -0,0 +1,107 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.interpolation.neighborsearch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+import net.imglib2.Cursor;
+import net.imglib2.IterableInterval;
+import net.imglib2.util.SliceTasks;
+
+/**
+ * Renders slices of the flat iteration of an image in parallel, one slice per
+ * task.
+ */
+abstract class SliceRenderer< T >
+{
+	/** Number of query coordinates gathered per batch search. */
+	static final int BLOCK_SIZE = 4096;
+
+	/**
+	 * Renders {@code count} pixels of the target, starting at the given index
+	 * in its iteration order.
+	 */
+	abstract void render( IterableInterval< T > target, long start, long count );
+
+	/**
+	 * Gets a cursor whose next element is the given index of the target.
+	 */
+	static < T > Cursor< T > cursor( final IterableInterval< T > target, final long start )
+	{
+		final Cursor< T > cursor = target.cursor();
+		cursor.jumpFwd( start );
+		return cursor;
+	}
+
+	/**
+	 * @param target
+	 *            the pixels to render
+	 * @param service
+	 *            the executor on which to run the tasks, or null to render on
+	 *            the calling thread
+	 * @param numTasks
+	 *            the number of slices to render in parallel
+	 */
+	void run( final IterableInterval< T > target, final ExecutorService service, final int numTasks )
+	{
+		final long size = target.size();
+		final int tasks = ( service == null ) ? 1 : ( int ) Math.max( 1, Math.min( numTasks, size ) );
+		if ( tasks == 1 )
+		{
+			render( target, 0, size );
+			return;
+		}
+
+		final List< Callable< Void >> slices = new ArrayList< Callable< Void >>( tasks );
+		for ( int t = 0; t < tasks; t++ )
+		{
+			final long start = size * t / tasks;
+			final long end = size * ( t + 1 ) / tasks;
+			slices.add( new Callable< Void >()
+			{
+				@Override
+				public Void call()
+				{
+					render( target, start, end - start );
+					return null;
+				}
+			} );
+		}
+		SliceTasks.invokeAll( service, slices );
+	}
+}
@@ -0,0 +1,343 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.neighborsearch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+import net.imglib2.FlatKDTree;
+import net.imglib2.util.SliceTasks;
+
+/**
+ * Answers blocks of nearest-neighbor queries on a {@link FlatKDTree} at once.
+ * <p>
+ * Query coordinates are given in a flat array, {@link #numDimensions()} per
+ * query, and the node indices and squared distances of the results are written
+ * to caller-provided arrays. Each block is divided into one slice per task;
+ * every task has its own search state, which is kept and reused by later
+ * calls, so answering a block allocates (almost) nothing. Instances are not
+ * thread-safe: make one per thread issuing queries.
+ * </p>
+ */
+public class BatchNeighborSearch< T >
+{
+	private final FlatKDTree< T > tree;
+
+	private final int n;
+
+	private final ExecutorService service;
+
+	private final int numTasks;
+
+	private final List< NearestNeighborSearchOnFlatKDTree< T > > nearest;
+
+	private final List< KNearestNeighborSearchOnFlatKDTree< T > > kNearest;
+
+	private final List< RadiusNeighborSearchOnFlatKDTree< T > > radius;
+
+	/** Per-task radius results, in query order. */
+	private final RadiusBuffer[] radiusBuffers;
+
+	private int[] radiusIndices = new int[ 0 ];
+
+	private double[] radiusSquDistances = new double[ 0 ];
+
+	/**
+	 * @param tree
+	 *            the tree to search
+	 * @param service
+	 *            the executor on which to run the tasks, or null to answer
+	 *            queries on the calling thread
+	 * @param numTasks
+	 *            the number of slices to answer in parallel
+	 */
+	public BatchNeighborSearch( final FlatKDTree< T > tree, final ExecutorService service, final int numTasks )
+	{
+		this.tree = tree;
+		this.n = tree.numDimensions();
+		this.service = service;
+		this.numTasks = service == null ? 1 : Math.max( 1, numTasks );
+		nearest = slots( this.numTasks );
+		kNearest = slots( this.numTasks );
+		radius = slots( this.numTasks );
+		radiusBuffers = new RadiusBuffer[ this.numTasks ];
+	}
+
+	public FlatKDTree< T > getTree()
+	{
+		return tree;
+	}
+
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	/**
+	 * Finds the nearest neighbor of each query.
+	 *
+	 * @param queries
+	 *            query coordinates, {@link #numDimensions()} per query
+	 * @param numQueries
+	 *            the number of queries
+	 * @param indices
+	 *            receives the node index of each query's nearest neighbor
+	 * @param squDistances
+	 *            receives the squared distance of each query's nearest
+	 *            neighbor, or null
+	 */
+	public void nearest( final double[] queries, final int numQueries, final int[] indices, final double[] squDistances )
+	{
+		run( numQueries, new Slice()
+		{
+			@Override
+			public void search( final int task, final int start, final int end )
+			{
+				if ( nearest.get( task ) == null )
+					nearest.set( task, new NearestNeighborSearchOnFlatKDTree< T >( tree ) );
+				final NearestNeighborSearchOnFlatKDTree< T > search = nearest.get( task );
+				final double[] pos = search.pos;
+				for ( int q = start; q < end; ++q )
+				{
+					System.arraycopy( queries, q * n, pos, 0, n );
+					search.search( pos );
+					indices[ q ] = search.getIndex();
+					if ( squDistances != null )
+						squDistances[ q ] = search.getSquareDistance();
+				}
+			}
+		} );
+	}
+
+	/**
+	 * Finds the k nearest neighbors of each query, ordered by increasing
+	 * distance. Missing neighbors (when the tree has fewer than k nodes) have
+	 * index -1.
+	 *
+	 * @param k
+	 *            the number of neighbors per query
+	 * @param queries
+	 *            query coordinates, {@link #numDimensions()} per query
+	 * @param numQueries
+	 *            the number of queries
+	 * @param indices
+	 *            receives k node indices per query
+	 * @param squDistances
+	 *            receives k squared distances per query, or null
+	 */
+	public void kNearest( final int k, final double[] queries, final int numQueries, final int[] indices, final double[] squDistances )
+	{
+		run( numQueries, new Slice()
+		{
+			@Override
+			public void search( final int task, final int start, final int end )
+			{
+				if ( kNearest.get( task ) == null || kNearest.get( task ).getK() != k )
+					kNearest.set( task, new KNearestNeighborSearchOnFlatKDTree< T >( tree, k ) );
+				final KNearestNeighborSearchOnFlatKDTree< T > search = kNearest.get( task );
+				final double[] pos = search.pos;
+				for ( int q = start; q < end; ++q )
+				{
+					System.arraycopy( queries, q * n, pos, 0, n );
+					search.search( pos );
+					System.arraycopy( search.bestIndices, 0, indices, q * k, k );
+					if ( squDistances != null )
+						System.arraycopy( search.bestSquDistances, 0, squDistances, q * k, k );
+				}
+			}
+		} );
+	}
+
+	/**
+	 * Finds all nodes within the given radius of each query. The results of
+	 * query {@code q} are found at positions {@code offsets[q]} (inclusive) to
+	 * {@code offsets[q + 1]} (exclusive) of {@link #getRadiusIndices()} and
+	 * {@link #getRadiusSquDistances()}, which remain valid until the next call.
+	 *
+	 * @param queries
+	 *            query coordinates, {@link #numDimensions()} per query
+	 * @param numQueries
+	 *            the number of queries
+	 * @param r
+	 *            the search radius
+	 * @param sortResults
+	 *            whether to order each query's results by increasing distance
+	 * @param offsets
+	 *            receives the {@code numQueries + 1} result offsets
+	 */
+	public void radius( final double[] queries, final int numQueries, final double r, final boolean sortResults, final int[] offsets )
+	{
+		final int tasks = run( numQueries, new Slice()
+		{
+			@Override
+			public void search( final int task, final int start, final int end )
+			{
+				if ( radius.get( task ) == null )
+				{
+					radius.set( task, new RadiusNeighborSearchOnFlatKDTree< T >( tree ) );
+					radiusBuffers[ task ] = new RadiusBuffer();
+				}
+				final RadiusNeighborSearchOnFlatKDTree< T > search = radius.get( task );
+				final RadiusBuffer buffer = radiusBuffers[ task ];
+				buffer.size = 0;
+				final double[] pos = search.pos;
+				for ( int q = start; q < end; ++q )
+				{
+					System.arraycopy( queries, q * n, pos, 0, n );
+					search.search( pos, r, sortResults );
+					final int count = search.numNeighbors();
+					// NB: Offsets relative to the task's buffer for now.
+					offsets[ q + 1 ] = buffer.size + count;
+					buffer.add( search.resultIndices, search.resultSquDistances, count );
+				}
+			}
+		} );
+
+		// concatenate the per-task buffers
+		int total = 0;
+		for ( int t = 0; t < tasks; ++t )
+			total += radiusBuffers[ t ].size;
+		if ( radiusIndices.length < total )
+		{
+			radiusIndices = new int[ total ];
+			radiusSquDistances = new double[ total ];
+		}
+		offsets[ 0 ] = 0;
+		int base = 0;
+		for ( int t = 0; t < tasks; ++t )
+		{
+			final RadiusBuffer buffer = radiusBuffers[ t ];
+			System.arraycopy( buffer.indices, 0, radiusIndices, base, buffer.size );
+			System.arraycopy( buffer.squDistances, 0, radiusSquDistances, base, buffer.size );
+			final int start = sliceStart( numQueries, tasks, t ), end = sliceStart( numQueries, tasks, t + 1 );
+			for ( int q = start; q < end; ++q )
+				offsets[ q + 1 ] += base;
+			base += buffer.size;
+		}
+	}
+
+	/** Gets the node indices found by the last {@link #radius} call. */
+	public int[] getRadiusIndices()
+	{
+		return radiusIndices;
+	}
+
+	/** Gets the squared distances found by the last {@link #radius} call. */
+	public double[] getRadiusSquDistances()
+	{
+		return radiusSquDistances;
+	}
+
+	// -- Helper methods --
+
+	/** Creates a list of {@code size} empty per-task slots. */
+	private static < S > List< S > slots( final int size )
+	{
+		return new ArrayList< S >( Collections.< S >nCopies( size, null ) );
+	}
+
+	private static int sliceStart( final int numQueries, final int tasks, final int t )
+	{
+		return ( int ) ( ( long ) numQueries * t / tasks );
+	}
+
+	/**
+	 * Answers the queries in slices, one per task.
+	 *
+	 * @return the number of tasks used
+	 */
+	private int run( final int numQueries, final Slice slice )
+	{
+		final int tasks = Math.max( 1, Math.min( numTasks, numQueries ) );
+		if ( tasks == 1 )
+		{
+			slice.search( 0, 0, numQueries );
+			return 1;
+		}
+
+		final List< Callable< Void > > slices = new ArrayList< Callable< Void > >( tasks );
+		for ( int t = 0; t < tasks; ++t )
+		{
+			final int task = t;
+			final int start = sliceStart( numQueries, tasks, t ), end = sliceStart( numQueries, tasks, t + 1 );
+			slices.add( new Callable< Void >()
+			{
+				@Override
+				public Void call()
+				{
+					slice.search( task, start, end );
+					return null;
+				}
+			} );
+		}
+		SliceTasks.invokeAll( service, slices );
+		return tasks;
+	}
+
+	// -- Helper classes --
+
+	private interface Slice
+	{
+		/** Answers the queries {@code [start, end)} using the given task's state. */
+		void search( int task, int start, int end );
+	}
+
+	/** Growable buffer of radius search results. */
+	private static final class RadiusBuffer
+	{
+		private int[] indices = new int[ 64 ];
+
+		private double[] squDistances = new double[ 64 ];
+
+		private int size;
+
+		private void add( final int[] newIndices, final double[] newSquDistances, final int count )
+		{
+			if ( size + count > indices.length )
+			{
+				final int capacity = Math.max( size + count, 2 * indices.length );
+				indices = Arrays.copyOf( indices, capacity );
+				squDistances = Arrays.copyOf( squDistances, capacity );
+			}
+			System.arraycopy( newIndices, 0, indices, size, count );
+			System.arraycopy( newSquDistances, 0, squDistances, size, count );
+			size += count;
+		}
+	}
+}
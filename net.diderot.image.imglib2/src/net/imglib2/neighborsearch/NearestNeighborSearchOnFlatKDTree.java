@@ -0,0 +1,192 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.neighborsearch;
+
+import net.imglib2.FlatKDTree;
+import net.imglib2.RealLocalizable;
+import net.imglib2.Sampler;
+
+/**
+ * Implementation of {@link NearestNeighborSearch} search for
+ * {@link FlatKDTree}s.
+ */
+public class NearestNeighborSearchOnFlatKDTree< T > implements NearestNeighborSearch< T >
+{
+	protected final FlatKDTree< T > tree;
+
+	protected final int n;
+
+	protected final double[] pos;
+
+	protected final double[] positions;
+
+	protected int bestIndex = -1;
+
+	protected double bestSquDistance;
+
+	public NearestNeighborSearchOnFlatKDTree( final FlatKDTree< T > tree )
+	{
+		this.tree = tree;
+		this.n = tree.numDimensions();
+		this.pos = new double[ n ];
+		this.positions = tree.getPositions();
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	/** Gets the tree searched by this search. */
+	public FlatKDTree< T > getTree()
+	{
+		return tree;
+	}
+
+	@Override
+	public void search( final RealLocalizable p )
+	{
+		p.localize( pos );
+		search();
+	}
+
+	/**
+	 * Searches for the nearest neighbor of the given coordinates.
+	 */
+	public void search( final double[] p )
+	{
+		System.arraycopy( p, 0, pos, 0, n );
+		search();
+	}
+
+	private void search()
+	{
+		bestIndex = -1;
+		bestSquDistance = Double.MAX_VALUE;
+		if ( tree.numNodes() > 0 )
+			searchNode( 0, tree.numNodes() - 1, 0 );
+	}
+
+	protected void searchNode( final int i, final int j, final int d )
+	{
+		// consider the current node
+		final int k = i + ( j - i ) / 2;
+		final int o = k * n;
+		double distance = 0;
+		for ( int e = 0; e < n; ++e )
+		{
+			final double diff = pos[ e ] - positions[ o + e ];
+			distance += diff * diff;
+		}
+		if ( distance < bestSquDistance )
+		{
+			bestSquDistance = distance;
+			bestIndex = k;
+		}
+
+		final double axisDiff = pos[ d ] - positions[ o + d ];
+		final double axisSquDistance = axisDiff * axisDiff;
+		final boolean leftIsNearBranch = axisDiff < 0;
+		final int dChild = ( d + 1 == n ) ? 0 : d + 1;
+
+		// search the near branch
+		if ( leftIsNearBranch )
+		{
+			if ( k > i )
+				searchNode( i, k - 1, dChild );
+		}
+		else if ( j > k )
+			searchNode( k + 1, j, dChild );
+
+		// search the away branch - maybe
+		if ( axisSquDistance <= bestSquDistance )
+		{
+			if ( leftIsNearBranch )
+			{
+				if ( j > k )
+					searchNode( k + 1, j, dChild );
+			}
+			else if ( k > i )
+				searchNode( i, k - 1, dChild );
+		}
+	}
+
+	/**
+	 * Gets the node index of the nearest neighbor, or -1 if the tree is empty.
+	 */
+	public int getIndex()
+	{
+		return bestIndex;
+	}
+
+	/**
+	 * Gets the nearest neighbor, or null if the tree is empty or nothing has
+	 * been searched yet.
+	 */
+	@Override
+	public Sampler< T > getSampler()
+	{
+		return bestIndex < 0 ? null : tree.node( bestIndex );
+	}
+
+	@Override
+	public RealLocalizable getPosition()
+	{
+		return bestIndex < 0 ? null : tree.node( bestIndex );
+	}
+
+	@Override
+	public double getSquareDistance()
+	{
+		return bestSquDistance;
+	}
+
+	@Override
+	public double getDistance()
+	{
+		return Math.sqrt( bestSquDistance );
+	}
+
+	@Override
+	public NearestNeighborSearchOnFlatKDTree< T > copy()
+	{
+		final NearestNeighborSearchOnFlatKDTree< T > copy = new NearestNeighborSearchOnFlatKDTree< T >( tree );
+		System.arraycopy( pos, 0, copy.pos, 0, pos.length );
+		copy.bestIndex = bestIndex;
+		copy.bestSquDistance = bestSquDistance;
+		return copy;
+	}
+}
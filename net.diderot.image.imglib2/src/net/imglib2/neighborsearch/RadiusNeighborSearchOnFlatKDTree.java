@@ -0,0 +1,247 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.neighborsearch;
+
+import java.util.Arrays;
+
+import net.imglib2.FlatKDTree;
+import net.imglib2.RealLocalizable;
+import net.imglib2.Sampler;
+
+/**
+ * Implementation of {@link RadiusNeighborSearch} search for
+ * {@link FlatKDTree}s. Results are kept in primitive arrays, which are reused
+ * between searches.
+ */
+public class RadiusNeighborSearchOnFlatKDTree< T > implements RadiusNeighborSearch< T >
+{
+	protected final FlatKDTree< T > tree;
+
+	protected final int n;
+
+	protected final double[] pos;
+
+	protected final double[] positions;
+
+	protected int numNeighbors;
+
+	protected int[] resultIndices = new int[ 16 ];
+
+	protected double[] resultSquDistances = new double[ 16 ];
+
+	public RadiusNeighborSearchOnFlatKDTree( final FlatKDTree< T > tree )
+	{
+		this.tree = tree;
+		this.n = tree.numDimensions();
+		this.pos = new double[ n ];
+		this.positions = tree.getPositions();
+	}
+
+	@Override
+	public void search( final RealLocalizable reference, final double radius, final boolean sortResults )
+	{
+		reference.localize( pos );
+		search( radius, sortResults );
+	}
+
+	/**
+	 * Searches for all nodes within the given radius of the given coordinates.
+	 */
+	public void search( final double[] reference, final double radius, final boolean sortResults )
+	{
+		System.arraycopy( reference, 0, pos, 0, n );
+		search( radius, sortResults );
+	}
+
+	private void search( final double radius, final boolean sortResults )
+	{
+		assert radius >= 0;
+		numNeighbors = 0;
+		if ( tree.numNodes() > 0 )
+			searchNode( 0, tree.numNodes() - 1, 0, radius * radius );
+		if ( sortResults )
+			sort( 0, numNeighbors - 1 );
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	/** Gets the tree searched by this search. */
+	public FlatKDTree< T > getTree()
+	{
+		return tree;
+	}
+
+	protected void searchNode( final int i, final int j, final int d, final double squRadius )
+	{
+		// consider the current node
+		final int k = i + ( j - i ) / 2;
+		final int o = k * n;
+		double squDistance = 0;
+		for ( int e = 0; e < n; ++e )
+		{
+			final double diff = pos[ e ] - positions[ o + e ];
+			squDistance += diff * diff;
+		}
+		if ( squDistance <= squRadius )
+			add( k, squDistance );
+
+		final double axisDiff = pos[ d ] - positions[ o + d ];
+		final double axisSquDistance = axisDiff * axisDiff;
+		final boolean leftIsNearBranch = axisDiff < 0;
+		final int dChild = ( d + 1 == n ) ? 0 : d + 1;
+
+		// search the near branch
+		if ( leftIsNearBranch )
+		{
+			if ( k > i )
+				searchNode( i, k - 1, dChild, squRadius );
+		}
+		else if ( j > k )
+			searchNode( k + 1, j, dChild, squRadius );
+
+		// search the away branch - maybe
+		if ( axisSquDistance <= squRadius )
+		{
+			if ( leftIsNearBranch )
+			{
+				if ( j > k )
+					searchNode( k + 1, j, dChild, squRadius );
+			}
+			else if ( k > i )
+				searchNode( i, k - 1, dChild, squRadius );
+		}
+	}
+
+	@Override
+	public int numNeighbors()
+	{
+		return numNeighbors;
+	}
+
+	/**
+	 * Gets the node index of the i-th neighbor found.
+	 */
+	public int getIndex( final int i )
+	{
+		return resultIndices[ i ];
+	}
+
+	@Override
+	public Sampler< T > getSampler( final int i )
+	{
+		return tree.node( resultIndices[ i ] );
+	}
+
+	@Override
+	public RealLocalizable getPosition( final int i )
+	{
+		return tree.node( resultIndices[ i ] );
+	}
+
+	@Override
+	public double getSquareDistance( final int i )
+	{
+		return resultSquDistances[ i ];
+	}
+
+	@Override
+	public double getDistance( final int i )
+	{
+		return Math.sqrt( resultSquDistances[ i ] );
+	}
+
+	private void add( final int index, final double squDistance )
+	{
+		if ( numNeighbors == resultIndices.length )
+		{
+			resultIndices = Arrays.copyOf( resultIndices, 2 * numNeighbors );
+			resultSquDistances = Arrays.copyOf( resultSquDistances, 2 * numNeighbors );
+		}
+		resultIndices[ numNeighbors ] = index;
+		resultSquDistances[ numNeighbors ] = squDistance;
+		++numNeighbors;
+	}
+
+	/** Sorts the results in {@code [lo, hi]} by increasing distance. */
+	private void sort( int lo, int hi )
+	{
+		while ( hi > lo )
+		{
+			if ( hi - lo < 16 )
+			{
+				for ( int i = lo + 1; i <= hi; ++i )
+					for ( int j = i; j > lo && resultSquDistances[ j ] < resultSquDistances[ j - 1 ]; --j )
+						swap( j, j - 1 );
+				return;
+			}
+			final double pivot = resultSquDistances[ lo + ( hi - lo ) / 2 ];
+			int l = lo, r = hi;
+			while ( l <= r )
+			{
+				while ( resultSquDistances[ l ] < pivot )
+					++l;
+				while ( pivot < resultSquDistances[ r ] )
+					--r;
+				if ( l <= r )
+					swap( l++, r-- );
+			}
+			// recurse into the smaller part, loop on the larger one
+			if ( r - lo < hi - l )
+			{
+				sort( lo, r );
+				lo = l;
+			}
+			else
+			{
+				sort( l, hi );
+				hi = r;
+			}
+		}
+	}
+
+	private void swap( final int a, final int b )
+	{
+		final int ti = resultIndices[ a ];
+		resultIndices[ a ] = resultIndices[ b ];
+		resultIndices[ b ] = ti;
+		final double td = resultSquDistances[ a ];
+		resultSquDistances[ a ] = resultSquDistances[ b ];
+		resultSquDistances[ b ] = td;
+	}
+}
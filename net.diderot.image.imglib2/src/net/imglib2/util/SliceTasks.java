@@ -0,0 +1,206 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs a fixed set of tasks, typically one per slice of some data, on an
+ * {@link ExecutorService} and on the calling thread.
+ * <p>
+ * The first task runs on the calling thread, which then runs any other task
+ * that no thread of the executor has started yet, instead of waiting for it.
+ * The executor may thus be bounded, and may be the one the caller itself runs
+ * on. If a task fails, the tasks which have not started are withdrawn and the
+ * started ones are waited for, so that none of them is still running once the
+ * failure is thrown.
+ * </p>
+ */
+public final class SliceTasks
+{
+	private SliceTasks()
+	{
+		// NB: Prevent instantiation of utility class.
+	}
+
+	/**
+	 * Runs the given tasks and returns their results, in the order of the
+	 * tasks.
+	 *
+	 * @param service
+	 *            the executor on which to run all but the first task, or null
+	 *            to run them all on the calling thread
+	 * @throws RuntimeException
+	 *             the unchecked exception thrown by a task, as it is; or
+	 *             wrapping a checked exception thrown by a task, or the
+	 *             interruption of the calling thread
+	 * @throws Error
+	 *             the error thrown by a task
+	 */
+	public static < R > List< R > invokeAll( final ExecutorService service, final List< ? extends Callable< R > > tasks )
+	{
+		final int n = tasks.size();
+		final List< R > results = new ArrayList< R >( n );
+		if ( service == null || n <= 1 )
+		{
+			for ( final Callable< R > task : tasks )
+				results.add( call( task ) );
+			return results;
+		}
+
+		final List< AtomicBoolean > claims = new ArrayList< AtomicBoolean >( n );
+		final List< Future< R > > futures = new ArrayList< Future< R > >( n );
+		claims.add( new AtomicBoolean( true ) );
+		futures.add( null );
+		for ( int t = 1; t < n; t++ )
+		{
+			final Callable< R > task = tasks.get( t );
+			final AtomicBoolean claim = new AtomicBoolean();
+			claims.add( claim );
+			futures.add( service.submit( new Callable< R >()
+			{
+				@Override
+				public R call() throws Exception
+				{
+					// NB: Skip the task if the caller has taken it over.
+					return claim.compareAndSet( false, true ) ? task.call() : null;
+				}
+			} ) );
+		}
+
+		boolean done = false;
+		try
+		{
+			results.add( call( tasks.get( 0 ) ) );
+			for ( int t = 1; t < n; t++ )
+			{
+				if ( claims.get( t ).compareAndSet( false, true ) )
+				{
+					futures.get( t ).cancel( false );
+					results.add( call( tasks.get( t ) ) );
+				}
+				else
+					results.add( get( futures.get( t ) ) );
+			}
+			done = true;
+			return results;
+		}
+		finally
+		{
+			if ( !done )
+				abort( claims, futures );
+		}
+	}
+
+	// -- Helper methods --
+
+	/**
+	 * Withdraws the tasks which have not started, and waits for the others to
+	 * end.
+	 */
+	private static < R > void abort( final List< AtomicBoolean > claims, final List< Future< R > > futures )
+	{
+		for ( int t = 1; t < futures.size(); t++ )
+			if ( claims.get( t ).compareAndSet( false, true ) )
+				futures.get( t ).cancel( false );
+		// NB: Wait without spinning, and restore the interrupt status after.
+		boolean interrupted = Thread.interrupted();
+		for ( int t = 1; t < futures.size(); t++ )
+		{
+			final Future< R > future = futures.get( t );
+			while ( !future.isDone() )
+			{
+				try
+				{
+					future.get();
+				}
+				catch ( final InterruptedException e )
+				{
+					interrupted = true;
+				}
+				catch ( final Exception e )
+				{
+					// NB: Only the first failure is reported.
+				}
+			}
+		}
+		if ( interrupted )
+			Thread.currentThread().interrupt();
+	}
+
+	private static < R > R call( final Callable< R > task )
+	{
+		try
+		{
+			return task.call();
+		}
+		catch ( final Exception e )
+		{
+			throw unchecked( e );
+		}
+	}
+
+	private static < R > R get( final Future< R > future )
+	{
+		try
+		{
+			return future.get();
+		}
+		catch ( final InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException( e );
+		}
+		catch ( final ExecutionException e )
+		{
+			throw unchecked( e.getCause() );
+		}
+	}
+
+	private static RuntimeException unchecked( final Throwable t )
+	{
+		if ( t instanceof RuntimeException )
+			return ( RuntimeException ) t;
+		if ( t instanceof Error )
+			throw ( Error ) t;
+		return new RuntimeException( t );
+	}
+}
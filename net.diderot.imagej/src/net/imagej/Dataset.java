@@ -32,6 +32,7 @@
 package net.imagej;
 
 import net.imagej.axis.CalibratedAxis;
+import net.imglib2.Interval;
 import net.imglib2.img.Img;
 import net.imglib2.type.numeric.RealType;
 
@@ -163,6 +164,22 @@ public interface Dataset extends Data, ImgPlusMetadata, Img<RealType<?>> {
 	@Override
 	void update();
 
+	/**
+	 * Informs interested parties that the values within the given region of the
+	 * dataset may have changed, while those outside of it have not.
+	 * <p>
+	 * By default, the whole dataset is reported as changed, via
+	 * {@link #update()}.
+	 * </p>
+	 * 
+	 * @param dirtyRegion The changed region, in the dataset's coordinates, or
+	 *          null if any value may have changed.
+	 * @see net.imagej.event.DatasetUpdatedEvent#getDirtyRegion()
+	 */
+	default void update(final Interval dirtyRegion) {
+		update();
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * 
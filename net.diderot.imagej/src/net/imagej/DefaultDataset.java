@@ -353,6 +353,12 @@ public class DefaultDataset extends AbstractData implements Dataset {
 		update(false);
 	}
 
+	@Override
+	public void update(final Interval dirtyRegion) {
+		setDirty(true);
+		publish(new DatasetUpdatedEvent(this, false, dirtyRegion));
+	}
+
 	@Override
 	public void rebuild() {
 		setDirty(true);
@@ -37,6 +37,8 @@ import net.imagej.render.TextRenderer;
 import net.imagej.render.TextRenderer.FontFamily;
 import net.imagej.render.TextRenderer.FontStyle;
 import net.imagej.render.TextRenderer.TextJustification;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
 import net.imglib2.RandomAccess;
 import net.imglib2.type.numeric.RealType;
 
@@ -70,6 +72,9 @@ public class DrawingTool {
 	private ChannelCollection channels;
 	private double intensity;
 
+	/** Bounds of the pixels drawn since the last update, or null if none. */
+	private long[] dirtyMin, dirtyMax;
+
 	private TextRenderer textRenderer;
 
 	// -- constructor --
@@ -156,6 +161,28 @@ public class DrawingTool {
 		accessor.setPosition(position);
 	}
 
+	/**
+	 * Gets the bounds of the pixels drawn since the last {@link #update()}, in
+	 * the coordinates of the Dataset, or null if nothing has been drawn.
+	 */
+	public Interval getDirtyRegion() {
+		if (dirtyMin == null) return null;
+		return new FinalInterval(dirtyMin, dirtyMax);
+	}
+
+	/**
+	 * Informs interested parties that the pixels drawn since the last update
+	 * have changed, via {@link Dataset#update(Interval)}. Displays then only need
+	 * to repaint the {@link #getDirtyRegion() dirty region}. Does nothing if no
+	 * pixels have been drawn.
+	 */
+	public void update() {
+		final Interval dirtyRegion = getDirtyRegion();
+		if (dirtyRegion == null) return;
+		dirtyMin = dirtyMax = null;
+		dataset.update(dirtyRegion);
+	}
+
 	/** Gets this DrawingHelper's current drawing position. */
 	public void getPosition(final long[] position) {
 		for (int i = 0; i < accessor.numDimensions(); i++)
@@ -274,6 +301,7 @@ public class DrawingTool {
 			final double value = intensity * channels.getChannelValue(preferredChannel);
 			if (channelAxis != -1) accessor.setPosition(preferredChannel, channelAxis);
 			accessor.get().setReal(value);
+			markDirty(preferredChannel, preferredChannel);
 		}
 		else { // draw across all channels
 			long numChannels = 1;
@@ -283,6 +311,7 @@ public class DrawingTool {
 				if (channelAxis != -1) accessor.setPosition(c, channelAxis);
 				accessor.get().setReal(value);
 			}
+			markDirty(0, numChannels - 1);
 		}
 		dataset.setDirty(true);
 	}
@@ -489,6 +518,30 @@ public class DrawingTool {
 		maxV = dataset.dimension(vAxis) - 1;
 	}
 
+	/**
+	 * Grows the dirty region to include the pixel just drawn, in the given range
+	 * of channels.
+	 */
+	private void markDirty(final long minChannel, final long maxChannel) {
+		final int numDims = accessor.numDimensions();
+		if (dirtyMin == null) {
+			dirtyMin = new long[numDims];
+			dirtyMax = new long[numDims];
+			accessor.localize(dirtyMin);
+			accessor.localize(dirtyMax);
+		}
+		for (int d = 0; d < numDims; d++) {
+			final long min, max;
+			if (d == channelAxis) {
+				min = minChannel;
+				max = maxChannel;
+			}
+			else min = max = accessor.getLongPosition(d);
+			if (min < dirtyMin[d]) dirtyMin[d] = min;
+			if (max > dirtyMax[d]) dirtyMax[d] = max;
+		}
+	}
+
 	private void checkAxisValid(final int axisNum) {
 		if (axisNum == channelAxis) {
 			throw new IllegalArgumentException("DrawingTool misconfiguration. "
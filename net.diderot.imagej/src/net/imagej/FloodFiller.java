@@ -48,6 +48,11 @@ import org.scijava.util.RealRect;
  * particle analyzer. The Wikipedia article at
  * "http://en.wikipedia.org/wiki/Flood_fill" has a good description of the
  * algorithm used here as well as examples in C and Java.
+ * <p>
+ * The filled pixels are drawn by the {@link DrawingTool}, which keeps track of
+ * their bounds; call {@link DrawingTool#update()} after filling so that
+ * displays only repaint the filled region.
+ * </p>
  * 
  * @author Wayne Rasband
  * @author Barry DeZonia
@@ -31,17 +31,33 @@
 
 package net.imagej.autoscale;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.imagej.reduce.ChunkWorkers;
+import net.imglib2.Cursor;
 import net.imglib2.IterableInterval;
-import net.imglib2.histogram.Histogram1d;
-import net.imglib2.histogram.Real1dBinMapper;
 import net.imglib2.type.numeric.RealType;
 
 import org.scijava.plugin.Parameter;
 import org.scijava.plugin.Plugin;
+import org.scijava.thread.ThreadService;
 
 /**
  * Computes a confidence interval containing percentages of the an entire set of
  * values in an {@link IterableInterval}.
+ * <p>
+ * The data is read in a single pass: the interval is split into chunks which
+ * are summarized in parallel by {@link QuantileSketch}es, which are then merged
+ * and queried for the tail quantiles. The bounds are accurate to within
+ * {@link QuantileSketch#getRankError()} in rank.
+ * </p>
+ * <p>
+ * For very large intervals, a sampled mode can be enabled via
+ * {@link #setSampling(double, double)}, in which only enough values are read to
+ * bound the additional rank error with the requested confidence.
+ * </p>
  * 
  * @author Barry DeZonia
  */
@@ -52,10 +68,17 @@ public class ConfidenceIntervalAutoscaleMethod<T extends RealType<T>> extends
 
 	// -- instance variables --
 
+	/** Minimum number of values per chunk when computing in parallel. */
+	private static final long MIN_CHUNK_SIZE = 1 << 16;
+
 	private double lowerTail, upperTail;
 
-	@Parameter
-	private AutoscaleService autoscaleService;
+	private int sketchSize = QuantileSketch.DEFAULT_K;
+
+	private double sampleError, sampleConfidence;
+
+	@Parameter(required = false)
+	private ThreadService threadService;
 
 	// -- ConfidenceIntervalAutoscaleMethod methods --
 
@@ -120,48 +143,152 @@ public class ConfidenceIntervalAutoscaleMethod<T extends RealType<T>> extends
 		upperTail = upper;
 	}
 
+	/** Gets the accuracy parameter of the quantile sketches. */
+	public int getSketchSize() {
+		return sketchSize;
+	}
+
+	/**
+	 * Sets the accuracy parameter of the quantile sketches.
+	 *
+	 * @see QuantileSketch#QuantileSketch(int)
+	 */
+	public void setSketchSize(final int k) {
+		new QuantileSketch(k); // validate
+		sketchSize = k;
+	}
+
+	/** Gets whether the sampled mode is enabled. */
+	public boolean isSampling() {
+		return sampleError > 0;
+	}
+
+	/**
+	 * Enables the sampled mode, in which only a stratified random sample of the
+	 * values is read. The sample size is chosen, by the
+	 * Dvoretzky-Kiefer-Wolfowitz inequality, such that the rank of each computed
+	 * bound differs from its rank in the full data by more than
+	 * {@code maxError} (in addition to the sketch's own rank error) with
+	 * probability at most {@code 1 - confidence}.
+	 *
+	 * @param maxError The maximum additional rank error, as a fraction of 1, or
+	 *          0 to read all values.
+	 * @param confidence The probability with which the error bound holds.
+	 */
+	public void setSampling(final double maxError, final double confidence) {
+		if (maxError < 0 || maxError >= 1) {
+			throw new IllegalArgumentException(
+				"sample error must be between 0 and 1");
+		}
+		if (confidence <= 0 || confidence >= 1) {
+			throw new IllegalArgumentException(
+				"sample confidence must be between 0 and 1");
+		}
+		sampleError = maxError;
+		sampleConfidence = confidence;
+	}
+
+	/**
+	 * Gets the number of values read in sampled mode, or 0 if sampling is
+	 * disabled.
+	 */
+	public long getSampleSize() {
+		if (!isSampling()) return 0;
+		return (long) Math.ceil(Math.log(2 / (1 - sampleConfidence)) /
+			(2 * sampleError * sampleError));
+	}
+
+	/**
+	 * Computes a {@link QuantileSketch} of the values in the given interval,
+	 * in a single (possibly sampled) pass.
+	 */
+	public QuantileSketch sketch(final IterableInterval<T> interval) {
+		final long size = interval.size();
+		final long samples = getSampleSize();
+		final boolean sampled = samples > 0 && samples < size;
+		final long units = sampled ? samples : size;
+
+		final int threads = Runtime.getRuntime().availableProcessors();
+		final long chunks = threadService == null ? 1 : Math.max(1, Math.min(
+			4L * threads, sampled ? threads : units / MIN_CHUNK_SIZE));
+		if (chunks == 1) return sketch(interval, 0, units, units);
+
+		final AtomicLong nextChunk = new AtomicLong();
+		final Callable<QuantileSketch> worker = new Callable<QuantileSketch>() {
+
+			@Override
+			public QuantileSketch call() {
+				final QuantileSketch sketch = new QuantileSketch(sketchSize);
+				long c;
+				while ((c = nextChunk.getAndIncrement()) < chunks) {
+					final long start = units * c / chunks;
+					final long end = units * (c + 1) / chunks;
+					sketch.merge(sketch(interval, start, end, units));
+				}
+				return sketch;
+			}
+		};
+		final QuantileSketch result = new QuantileSketch(sketchSize);
+		try {
+			for (final QuantileSketch sketch : ChunkWorkers.invokeUnchecked(
+				threadService, (int) Math.min(threads, chunks), worker))
+			{
+				result.merge(sketch);
+			}
+		}
+		finally {
+			// NB: Stop the other threads early if this one failed.
+			nextChunk.set(chunks);
+		}
+		return result;
+	}
+
 	// -- AutoscaleMethod methods --
 
 	@Override
 	public DataRange getRange(IterableInterval<T> interval) {
-		// pass one through data
-		DataRange range = autoscaleService.getDefaultIntervalRange(interval);
-		// pass two through data
-		Real1dBinMapper<T> mapper =
-			new Real1dBinMapper<>(range.getMin(), range.getMax(), 1000, false);
-		Histogram1d<T> histogram = new Histogram1d<>(mapper);
-		histogram.countData(interval);
-		// calc some sizes
-		long totValues = histogram.distributionCount();
-		long lowerSize = (long) Math.floor(lowerTail * totValues);
-		long upperSize = (long) Math.floor(upperTail * totValues);
-		// determine bin number containing > than lower tail size
-		long soFar = 0;
-		int bottom = 0;
-		while (soFar < lowerSize) {
-			soFar += histogram.frequency(bottom++);
-		}
-		while (histogram.frequency(bottom) == 0) {
-			bottom++;
+		final QuantileSketch sketch = sketch(interval);
+		if (sketch.isEmpty()) {
+			final T type = interval.firstElement();
+			return new DataRange(type.getMinValue(), type.getMaxValue());
 		}
-		// determine bin number containing < upper tail size
-		soFar = 0;
-		int top = 999;
-		while (soFar < upperSize) {
-			soFar += histogram.frequency(top--);
+		final double min = sketch.quantile(lowerTail);
+		final double max = sketch.quantile(1 - upperTail);
+		return new DataRange(min, max);
+	}
+
+	// -- Helper methods --
+
+	/**
+	 * Sketches one chunk of the interval. Without sampling, the chunk consists
+	 * of the elements {@code [start, end)}. With sampling, the interval is
+	 * divided into {@code units} equal strata, and one random element is read
+	 * from each of the strata {@code [start, end)}.
+	 */
+	private QuantileSketch sketch(final IterableInterval<T> interval,
+		final long start, final long end, final long units)
+	{
+		final QuantileSketch sketch = new QuantileSketch(sketchSize);
+		final Cursor<T> cursor = interval.cursor();
+		final long size = interval.size();
+		if (units == size) {
+			cursor.jumpFwd(start);
+			for (long i = start; i < end; i++) {
+				sketch.update(cursor.next().getRealDouble());
+			}
+			return sketch;
 		}
-		while (histogram.frequency(top) == 0) {
-			top--;
+		final ThreadLocalRandom random = ThreadLocalRandom.current();
+		long index = -1;
+		for (long s = start; s < end; s++) {
+			final long lo = size * s / units;
+			final long hi = size * (s + 1) / units;
+			final long target = lo + random.nextLong(hi - lo);
+			cursor.jumpFwd(target - index);
+			index = target;
+			sketch.update(cursor.get().getRealDouble());
 		}
-		// determine approx boundaries
-		T approxMin = interval.firstElement().createVariable();
-		T approxMax = approxMin.createVariable();
-		histogram.getLowerBound(bottom, approxMin);
-		histogram.getUpperBound(top, approxMax);
-		double min = approxMin.getRealDouble();
-		double max = approxMax.getRealDouble();
-		// return them
-		return new DataRange(min, max);
+		return sketch;
 	}
 
 }
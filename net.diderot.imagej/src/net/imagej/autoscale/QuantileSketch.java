@@ -0,0 +1,282 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.autoscale;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A mergeable, fixed-memory sketch of a distribution of values, from which
+ * approximate quantiles can be queried.
+ * <p>
+ * The sketch follows the KLL design: values are gathered in a hierarchy of
+ * compactors, where each item on level {@code h} stands for {@code 2^h}
+ * original values. When a level fills up, it is sorted and every other item
+ * (starting at a random offset) is promoted to the next level. Capacities
+ * shrink geometrically towards the lower levels, so the memory use is
+ * {@code O(k)} regardless of the number of values seen, and the normalized
+ * rank error of any quantile is approximately {@link #getRankError()}.
+ * </p>
+ * <p>
+ * Sketches of disjoint parts of the data can be built independently (e.g., one
+ * per thread) and combined with {@link #merge(QuantileSketch)}; the result has
+ * the same accuracy as a sketch built from all of the data at once. NaN values
+ * are ignored. Sketches are not thread-safe.
+ * </p>
+ */
+public class QuantileSketch {
+
+	/** Default accuracy parameter, giving a rank error of about 0.5%. */
+	public static final int DEFAULT_K = 512;
+
+	/** Smallest capacity of any level. */
+	private static final int MIN_CAPACITY = 8;
+
+	/** Ratio between the capacities of adjacent levels. */
+	private static final double CAPACITY_RATIO = 2.0 / 3.0;
+
+	// -- instance variables --
+
+	private final int k;
+
+	private final Random random = new Random();
+
+	/** Items of each level; an item on level h has weight 2^h. */
+	private double[][] levels = new double[1][];
+
+	/** Number of items on each level. */
+	private int[] sizes = new int[1];
+
+	/** Total number of items on all levels. */
+	private int retained;
+
+	/** Total capacity of all levels. */
+	private int maxRetained;
+
+	/** Number of values seen. */
+	private long count;
+
+	private double min = Double.POSITIVE_INFINITY;
+
+	private double max = Double.NEGATIVE_INFINITY;
+
+	// -- constructors --
+
+	/** Creates a sketch with the {@link #DEFAULT_K default accuracy}. */
+	public QuantileSketch() {
+		this(DEFAULT_K);
+	}
+
+	/**
+	 * Creates a sketch with the given accuracy parameter. Larger values of
+	 * {@code k} use more memory but give more accurate quantiles.
+	 */
+	public QuantileSketch(final int k) {
+		if (k < MIN_CAPACITY) {
+			throw new IllegalArgumentException("k must be at least " + MIN_CAPACITY);
+		}
+		this.k = k;
+		levels[0] = new double[k];
+		maxRetained = k;
+	}
+
+	// -- QuantileSketch methods --
+
+	/** Gets the accuracy parameter of the sketch. */
+	public int getK() {
+		return k;
+	}
+
+	/**
+	 * Gets the approximate normalized rank error of quantiles queried from this
+	 * sketch, as a fraction of 1.
+	 */
+	public double getRankError() {
+		// NB: Empirical fit of the KLL rank error at 99% confidence.
+		return 2.296 / Math.pow(k, 0.9723);
+	}
+
+	/** Gets the number of (non-NaN) values seen by the sketch. */
+	public long getCount() {
+		return count;
+	}
+
+	/** Gets whether the sketch has seen no values. */
+	public boolean isEmpty() {
+		return count == 0;
+	}
+
+	/** Gets the exact minimum of the values seen, or NaN if none. */
+	public double getMin() {
+		return isEmpty() ? Double.NaN : min;
+	}
+
+	/** Gets the exact maximum of the values seen, or NaN if none. */
+	public double getMax() {
+		return isEmpty() ? Double.NaN : max;
+	}
+
+	/** Adds a value to the sketch. NaN values are ignored. */
+	public void update(final double value) {
+		if (Double.isNaN(value)) return;
+		if (value < min) min = value;
+		if (value > max) max = value;
+		count++;
+		if (retained >= maxRetained) compress();
+		if (sizes[0] == levels[0].length) {
+			levels[0] = Arrays.copyOf(levels[0], 2 * levels[0].length);
+		}
+		levels[0][sizes[0]++] = value;
+		retained++;
+	}
+
+	/** Adds the values seen by another sketch to this one. */
+	public void merge(final QuantileSketch other) {
+		if (other.isEmpty()) return;
+		if (other.levels.length > levels.length) grow(other.levels.length);
+		for (int h = 0; h < other.levels.length; h++) {
+			append(h, other.levels[h], other.sizes[h]);
+		}
+		count += other.count;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+		while (retained > maxRetained) {
+			compress();
+		}
+	}
+
+	/**
+	 * Gets the approximate value at the given quantile.
+	 *
+	 * @param q The quantile, between 0 and 1. 0 gives the exact minimum and 1
+	 *          the exact maximum.
+	 * @return The approximate quantile, or NaN if the sketch is empty.
+	 */
+	public double quantile(final double q) {
+		if (q < 0 || q > 1) {
+			throw new IllegalArgumentException("quantile must be between 0 and 1");
+		}
+		if (isEmpty()) return Double.NaN;
+		if (q == 0) return min;
+		if (q == 1) return max;
+
+		// sort each level, then walk them in merged order by cumulative weight
+		final double[][] sorted = new double[levels.length][];
+		long total = 0;
+		for (int h = 0; h < levels.length; h++) {
+			sorted[h] = Arrays.copyOf(levels[h], sizes[h]);
+			Arrays.sort(sorted[h]);
+			total += (long) sizes[h] << h;
+		}
+		final double rank = q * total;
+		final int[] next = new int[levels.length];
+		long cumulative = 0;
+		while (true) {
+			int best = -1;
+			for (int h = 0; h < sorted.length; h++) {
+				if (next[h] < sorted[h].length && (best < 0 ||
+					sorted[h][next[h]] < sorted[best][next[best]]))
+				{
+					best = h;
+				}
+			}
+			if (best < 0) return max;
+			cumulative += 1L << best;
+			final double value = sorted[best][next[best]++];
+			if (cumulative >= rank) return value;
+		}
+	}
+
+	// -- Helper methods --
+
+	/** Gets the capacity of the given level. */
+	private int capacity(final int h) {
+		final int depth = levels.length - 1 - h;
+		return Math.max(MIN_CAPACITY, (int) Math.ceil(k * Math.pow(
+			CAPACITY_RATIO, depth)));
+	}
+
+	/** Compacts the lowest level which is at or over its capacity. */
+	private void compress() {
+		int h = 0;
+		while (h < levels.length - 1 && sizes[h] < capacity(h)) {
+			h++;
+		}
+		if (h == levels.length - 1) grow(levels.length + 1);
+
+		final double[] items = levels[h];
+		final int size = sizes[h];
+		Arrays.sort(items, 0, size);
+
+		// promote every other item, keeping the odd one out (if any) in place
+		final int pairs = size / 2;
+		final double[] promoted = new double[pairs];
+		final int offset = random.nextBoolean() ? 1 : 0;
+		for (int i = 0; i < pairs; i++) {
+			promoted[i] = items[2 * i + offset];
+		}
+		if (size % 2 == 1) {
+			items[0] = items[size - 1];
+			sizes[h] = 1;
+		}
+		else sizes[h] = 0;
+		retained -= 2 * pairs;
+		append(h + 1, promoted, pairs);
+	}
+
+	/** Increases the number of levels to the given count. */
+	private void grow(final int count) {
+		final int old = levels.length;
+		levels = Arrays.copyOf(levels, count);
+		sizes = Arrays.copyOf(sizes, count);
+		for (int h = old; h < count; h++) {
+			levels[h] = new double[MIN_CAPACITY];
+		}
+		maxRetained = 0;
+		for (int h = 0; h < count; h++) {
+			maxRetained += capacity(h);
+		}
+	}
+
+	/** Appends items to the given level, growing its storage if needed. */
+	private void append(final int h, final double[] items, final int n) {
+		final int size = sizes[h];
+		if (size + n > levels[h].length) {
+			levels[h] = Arrays.copyOf(levels[h], Math.max(size + n,
+				2 * levels[h].length));
+		}
+		System.arraycopy(items, 0, levels[h], size, n);
+		sizes[h] = size + n;
+		retained += n;
+	}
+
+}
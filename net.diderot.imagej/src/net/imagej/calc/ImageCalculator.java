@@ -0,0 +1,453 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.calc;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.imagej.Dataset;
+import net.imagej.reduce.ChunkWorkers;
+import net.imagej.reduce.RealArrays;
+import net.imglib2.Cursor;
+import net.imglib2.IterableInterval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.type.numeric.RealType;
+
+import org.scijava.app.StatusService;
+import org.scijava.sjep.ExpressionParser;
+import org.scijava.sjep.eval.CompiledExpression;
+import org.scijava.sjep.eval.ExpressionCompiler;
+import org.scijava.thread.ThreadService;
+
+/**
+ * Computes images pixel by pixel from formulas such as
+ * {@code (a - bg) / max(b, 1)}, in parallel, using the threads of a
+ * {@link ThreadService}.
+ * <p>
+ * The formula is parsed by an {@link ExpressionParser} and compiled once by an
+ * {@link ExpressionCompiler} into a {@link CompiledExpression}, which each
+ * thread evaluates without boxing. Each variable of the formula is bound to
+ * either an image of the output's dimensions, read at the same position as the
+ * output pixel, or a constant {@link Number} or {@link Boolean}. Images are
+ * read as doubles; boolean results (e.g., of {@code a > 100}) are written as 1
+ * or 0.
+ * </p>
+ * <p>
+ * The output is divided into chunks, which the threads claim one at a time as
+ * the {@link net.imagej.reduce.ParallelReducer ParallelReducer} does. Images
+ * which are iterated like the output are read with cursors positioned via
+ * {@link Cursor#jumpFwd(long)}, or directly from their backing arrays if they
+ * are {@code ArrayImg}s or {@code PlanarImg}s of primitive real types; other
+ * images are read by random access. Likewise, array-backed outputs are written
+ * directly, in blocks.
+ * </p>
+ */
+public class ImageCalculator {
+
+	/** Minimum number of pixels per chunk. */
+	public static final int MIN_CHUNK_SIZE = 16384;
+
+	/** Number of chunks per thread, for load balancing. */
+	private static final int CHUNKS_PER_THREAD = 8;
+
+	/** Number of pixels read, computed and written at a time. */
+	private static final int BLOCK_SIZE = 4096;
+
+	// -- Fields --
+
+	private final ThreadService threadService;
+
+	private final ExpressionCompiler compiler = new ExpressionCompiler();
+
+	private int numThreads = Runtime.getRuntime().availableProcessors();
+
+	private StatusService statusService;
+
+	private String statusMessage;
+
+	// -- Constructors --
+
+	/**
+	 * Creates a calculator using the given {@link ThreadService}, or computing
+	 * on the calling thread only if it is null.
+	 */
+	public ImageCalculator(final ThreadService threadService) {
+		this.threadService = threadService;
+	}
+
+	// -- ImageCalculator methods --
+
+	/**
+	 * Gets the compiler of formulas given as strings, e.g. to
+	 * {@link ExpressionCompiler#declare declare} the types of variables.
+	 */
+	public ExpressionCompiler getCompiler() {
+		return compiler;
+	}
+
+	/** Gets the maximum number of threads to use. */
+	public int getNumThreads() {
+		return threadService == null ? 1 : numThreads;
+	}
+
+	/** Sets the maximum number of threads to use. */
+	public void setNumThreads(final int numThreads) {
+		if (numThreads < 1) {
+			throw new IllegalArgumentException("Invalid thread count: " +
+				numThreads);
+		}
+		this.numThreads = numThreads;
+	}
+
+	/**
+	 * Reports the progress of subsequent computations to the given
+	 * {@link StatusService} (which may be null) with the given message.
+	 */
+	public void setStatus(final StatusService statusService,
+		final String message)
+	{
+		this.statusService = statusService;
+		this.statusMessage = message;
+	}
+
+	/**
+	 * Computes every pixel of the output from the given formula.
+	 *
+	 * @param formula The formula, e.g. {@code (a - bg) / max(b, 1)}.
+	 * @param out The image to which the results are written.
+	 * @param inputs The images and constants to which the formula's variables
+	 *          are bound, by name.
+	 * @throws IllegalArgumentException if the formula is not supported by the
+	 *           {@link ExpressionCompiler}, or its variables are not all bound
+	 *           to constants or images of the output's dimensions.
+	 */
+	public void compute(final String formula,
+		final IterableInterval<? extends RealType<?>> out,
+		final Map<String, ?> inputs)
+	{
+		compute(compiler.compile(formula), out, inputs);
+	}
+
+	/**
+	 * Computes every pixel of the output from the given compiled formula.
+	 *
+	 * @see #compute(String, IterableInterval, Map)
+	 */
+	public void compute(final CompiledExpression formula,
+		final IterableInterval<? extends RealType<?>> out,
+		final Map<String, ?> inputs)
+	{
+		// bind the formula's variables
+		final List<Input> images = new ArrayList<>();
+		for (final String name : formula.getVariables()) {
+			if (!inputs.containsKey(name)) {
+				throw new IllegalArgumentException("Unbound variable: " + name);
+			}
+			final Object value = inputs.get(name);
+			if (value instanceof Number || value instanceof Boolean) continue;
+			if (!(value instanceof IterableInterval)) {
+				throw new IllegalArgumentException("Unsupported value for " + name +
+					": " + value);
+			}
+			images.add(new Input(formula.slot(name), (IterableInterval<?>) value,
+				out));
+		}
+		final Class<?> type = formula.getType();
+		final boolean bool = type == boolean.class;
+		final RealArrays outArrays = RealArrays.create(out);
+
+		final long size = out.size();
+		final int threads = (int) Math.max(1, Math.min(getNumThreads(), size /
+			MIN_CHUNK_SIZE));
+		final long chunkSize = Math.max(MIN_CHUNK_SIZE, (size + CHUNKS_PER_THREAD *
+			threads - 1) / (CHUNKS_PER_THREAD * threads));
+		final long chunks = (size + chunkSize - 1) / chunkSize;
+		final AtomicLong nextChunk = new AtomicLong();
+		final AtomicLong doneChunks = new AtomicLong();
+
+		final Callable<Void> worker = new Callable<Void>() {
+
+			@Override
+			public Void call() {
+				// NB: Compiled formulas hold their variables, so use one per thread.
+				final CompiledExpression e = formula.copy();
+				e.setAll(scalars(inputs, formula));
+				final int[] slots = new int[images.size()];
+				final Source[] sources = new Source[images.size()];
+				final double[][] blocks = new double[images.size()][BLOCK_SIZE];
+				for (int i = 0; i < sources.length; i++) {
+					slots[i] = images.get(i).slot;
+					sources[i] = images.get(i).source();
+				}
+				final CursorSink sink = outArrays == null ? new CursorSink(out) : null;
+				final double[] results = new double[BLOCK_SIZE];
+
+				long chunk;
+				while ((chunk = nextChunk.getAndIncrement()) < chunks) {
+					final long start = chunk * chunkSize;
+					final long end = Math.min(start + chunkSize, size);
+					for (final Source source : sources) {
+						source.start(start);
+					}
+					if (sink != null) sink.start(start);
+
+					for (long index = start; index < end;) {
+						// find how many pixels can be computed as a block
+						int n = (int) Math.min(BLOCK_SIZE, end - index);
+						if (outArrays != null) n = outArrays.contiguous(index, n);
+						for (final Source source : sources) {
+							n = source.contiguous(index, n);
+						}
+
+						for (int i = 0; i < sources.length; i++) {
+							sources[i].read(index, blocks[i], n);
+						}
+						for (int k = 0; k < n; k++) {
+							for (int i = 0; i < slots.length; i++) {
+								e.set(slots[i], blocks[i][k]);
+							}
+							results[k] = bool ? (e.evaluateBoolean() ? 1 : 0) : //
+								e.evaluateDouble();
+						}
+						if (sink == null) outArrays.write(index, results, n);
+						else sink.write(results, n);
+						index += n;
+					}
+					report(doneChunks.incrementAndGet(), chunks);
+				}
+				return null;
+			}
+		};
+
+		report(0, chunks);
+		try {
+			ChunkWorkers.invokeUnchecked(threadService, threads, worker);
+		}
+		finally {
+			// NB: Stop the other threads early if this one failed.
+			nextChunk.set(chunks);
+		}
+
+		if (out instanceof Dataset) ((Dataset) out).update();
+	}
+
+	// -- Helper methods --
+
+	/** Gets the constants to which the formula's variables are bound. */
+	private static Map<String, Object> scalars(final Map<String, ?> inputs,
+		final CompiledExpression formula)
+	{
+		final Map<String, Object> scalars = new HashMap<>();
+		for (final String name : formula.getVariables()) {
+			final Object value = inputs.get(name);
+			if (value instanceof Number || value instanceof Boolean) {
+				scalars.put(name, value);
+			}
+		}
+		return scalars;
+	}
+
+	private void report(final long done, final long total) {
+		if (statusService == null) return;
+		statusService.showStatus((int) done, (int) total, statusMessage);
+	}
+
+	// -- Helper classes --
+
+	/** An image to which a variable of the formula is bound. */
+	private static class Input {
+
+		private final int slot;
+		private final IterableInterval<?> image;
+		private final IterableInterval<?> out;
+		private final boolean aligned;
+		private final RealArrays arrays;
+
+		public Input(final int slot, final IterableInterval<?> image,
+			final IterableInterval<?> out)
+		{
+			this.slot = slot;
+			this.image = image;
+			this.out = out;
+			boolean sameSize = image.numDimensions() == out.numDimensions();
+			for (int d = 0; sameSize && d < out.numDimensions(); d++) {
+				sameSize = image.dimension(d) == out.dimension(d);
+			}
+			if (!sameSize) {
+				throw new IllegalArgumentException(
+					"Image dimensions do not match the output: " + image);
+			}
+			if (image.size() > 0 && !(image.firstElement() instanceof RealType)) {
+				throw new IllegalArgumentException("Not a real-valued image: " +
+					image);
+			}
+			aligned = image.iterationOrder().equals(out.iterationOrder());
+			if (!aligned && !(image instanceof RandomAccessible)) {
+				throw new IllegalArgumentException(
+					"Image is neither iterated like the output nor randomly accessible: " +
+						image);
+			}
+			arrays = aligned ? RealArrays.create(image) : null;
+		}
+
+		/** Creates a source of the image's values for the calling thread. */
+		public Source source() {
+			if (arrays != null) return new ArraySource(arrays);
+			if (aligned) return new CursorSource(image);
+			return new RandomAccessSource(image, out);
+		}
+	}
+
+	/** Reads the values of an image in the output's iteration order. */
+	private static abstract class Source {
+
+		/** Prepares to read from the given flat index of the output. */
+		public void start(final long index) {
+			// NB: No action needed by default.
+		}
+
+		/** Gets how many of the next values can be read at once. */
+		public int contiguous(final long index, final int length) {
+			return length;
+		}
+
+		/** Reads the next values into the given block. */
+		public abstract void read(long index, double[] block, int length);
+	}
+
+	private static class ArraySource extends Source {
+
+		private final RealArrays arrays;
+
+		public ArraySource(final RealArrays arrays) {
+			this.arrays = arrays;
+		}
+
+		@Override
+		public int contiguous(final long index, final int length) {
+			return arrays.contiguous(index, length);
+		}
+
+		@Override
+		public void read(final long index, final double[] block, final int length) {
+			arrays.read(index, block, length);
+		}
+	}
+
+	private static class CursorSource extends Source {
+
+		private final IterableInterval<?> image;
+		private Cursor<?> cursor;
+
+		public CursorSource(final IterableInterval<?> image) {
+			this.image = image;
+		}
+
+		@Override
+		public void start(final long index) {
+			cursor = image.cursor();
+			cursor.jumpFwd(index);
+		}
+
+		@Override
+		public void read(final long index, final double[] block, final int length) {
+			for (int k = 0; k < length; k++) {
+				block[k] = ((RealType<?>) cursor.next()).getRealDouble();
+			}
+		}
+	}
+
+	/** Reads an image at the positions visited by a cursor of the output. */
+	private static class RandomAccessSource extends Source {
+
+		private final RandomAccess<?> access;
+		private final IterableInterval<?> out;
+		private final long[] offset;
+		private Cursor<?> positions;
+
+		public RandomAccessSource(final IterableInterval<?> image,
+			final IterableInterval<?> out)
+		{
+			this.access = ((RandomAccessible<?>) image).randomAccess();
+			this.out = out;
+			offset = new long[out.numDimensions()];
+			for (int d = 0; d < offset.length; d++) {
+				offset[d] = image.min(d) - out.min(d);
+			}
+		}
+
+		@Override
+		public void start(final long index) {
+			positions = out.localizingCursor();
+			positions.jumpFwd(index);
+		}
+
+		@Override
+		public void read(final long index, final double[] block, final int length) {
+			for (int k = 0; k < length; k++) {
+				positions.fwd();
+				for (int d = 0; d < offset.length; d++) {
+					access.setPosition(positions.getLongPosition(d) + offset[d], d);
+				}
+				block[k] = ((RealType<?>) access.get()).getRealDouble();
+			}
+		}
+	}
+
+	/** Writes values to the output in its iteration order. */
+	private static class CursorSink {
+
+		private final IterableInterval<? extends RealType<?>> out;
+		private Cursor<? extends RealType<?>> cursor;
+
+		public CursorSink(final IterableInterval<? extends RealType<?>> out) {
+			this.out = out;
+		}
+
+		public void start(final long index) {
+			cursor = out.cursor();
+			cursor.jumpFwd(index);
+		}
+
+		public void write(final double[] block, final int length) {
+			for (int k = 0; k < length; k++) {
+				cursor.next().setReal(block[k]);
+			}
+		}
+	}
+
+}
@@ -34,6 +34,7 @@ package net.imagej.display;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import net.imagej.ChannelCollection;
 import net.imagej.Data;
@@ -49,12 +50,18 @@ import net.imagej.display.event.LUTsChangedEvent;
 import net.imagej.event.DatasetRGBChangedEvent;
 import net.imagej.event.DatasetTypeChangedEvent;
 import net.imagej.event.DatasetUpdatedEvent;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.converter.RealLUTConverter;
 import net.imglib2.display.ColorTable;
 import net.imglib2.display.projector.composite.CompositeXYProjector;
 import net.imglib2.display.screenimage.awt.ARGBScreenImage;
+import net.imglib2.img.Img;
 import net.imglib2.img.cell.AbstractCellImg;
+import net.imglib2.img.cell.AsyncCellLoader;
+import net.imglib2.img.cell.CachedCells;
+import net.imglib2.img.cell.VolatileCellView;
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.util.Binning;
 import net.imglib2.util.Intervals;
@@ -88,6 +95,9 @@ public class DefaultDatasetView extends AbstractDataView implements DatasetView
 	@Parameter(required = false)
 	private EventService eventService;
 
+	@Parameter(required = false)
+	private ImageDisplayService imageDisplayService;
+
 	/** The dimensional index representing channels, for compositing. */
 	private int channelDimIndex;
 
@@ -104,6 +114,64 @@ public class DefaultDatasetView extends AbstractDataView implements DatasetView
 	private final ArrayList<RealLUTConverter<? extends RealType<?>>> converters =
 		new ArrayList<>();
 
+	/**
+	 * Loader of the cells of a disk-backed {@link Dataset}, or null if the data
+	 * is not loaded asynchronously.
+	 */
+	private AsyncCellLoader<?> cellLoader;
+
+	private VolatileCellView<?, ?> volatileView;
+
+	/**
+	 * Serializes the mapping of the projector with the changes to its position
+	 * and converters, and with the rebuilding of the view.
+	 */
+	private final Object projectorLock = new Object();
+
+	/** Whether a repaint of the dirty region is already scheduled. */
+	private final AtomicBoolean repaintPending = new AtomicBoolean();
+
+	/** Guards the dirty region. */
+	private final Object dirtyLock = new Object();
+
+	/** Whether the current plane has changed since it was last projected. */
+	private boolean planeDirty;
+
+	/**
+	 * Bounds in X and Y of the changes to the current plane, or null if all of
+	 * it may have changed.
+	 */
+	private long[] dirtyMin, dirtyMax;
+
+	private final Runnable repaint = new Runnable() {
+
+		@Override
+		public void run() {
+			final boolean mapped;
+			synchronized (projectorLock) {
+				mapped = repaintDirtyRegion();
+				// NB: Repaints scheduled from now on will see the changes marked
+				// since the mapping.
+				repaintPending.set(false);
+			}
+			if (mapped) updateDisplays();
+			// NB: Changes marked before the flag was cleared need another repaint.
+			if (isPlaneDirty() && repaintPending.compareAndSet(false, true)) {
+				threadService.run(repaint);
+			}
+		}
+	};
+
+	private final AsyncCellLoader.Listener cellListener =
+		new AsyncCellLoader.Listener()
+		{
+
+			@Override
+			public void cellLoaded(final int index) {
+				markDirty(null);
+			}
+		};
+
 	// -- DatasetView methods --
 
 	@Override
@@ -182,7 +250,9 @@ public class DefaultDatasetView extends AbstractDataView implements DatasetView
 	public void setComposite(final boolean composite) {
 		if (!isInitialized()) return;
 
-		projector.setComposite(composite);
+		synchronized (projectorLock) {
+			projector.setComposite(composite);
+		}
 	}
 
 	@Override
@@ -260,9 +330,11 @@ public class DefaultDatasetView extends AbstractDataView implements DatasetView
 	public void setColorMode(final ColorMode colorMode) {
 		if (!isInitialized()) return;
 
-		resetColorTables(colorMode == ColorMode.GRAYSCALE);
-		projector.setComposite(colorMode == ColorMode.COMPOSITE);
-		projector.map();
+		synchronized (projectorLock) {
+			resetColorTables(colorMode == ColorMode.GRAYSCALE);
+			projector.setComposite(colorMode == ColorMode.COMPOSITE);
+			projector.map();
+		}
 	}
 
 	// TODO - add this kind of mapping code to the Imglib Projector classes. Here
@@ -377,28 +449,30 @@ public class DefaultDatasetView extends AbstractDataView implements DatasetView
 
 	@Override
 	public synchronized void rebuild() {
-		// NB: Make sure any calls to updateLUTs are ignored. If they happen before
-		// the converters are correctly defined (in setupProjector) an exception
-		// can get thrown. Basically if you add a channel to an image the converter
-		// size() can be out of sync.
-		uninitializeView();
+		synchronized (projectorLock) {
+			// NB: Make sure any calls to updateLUTs are ignored. If they happen
+			// before the converters are correctly defined (in setupProjector) an
+			// exception can get thrown. Basically if you add a channel to an image
+			// the converter size() can be out of sync.
+			uninitializeView();
 
-		channelDimIndex = getChannelDimIndex();
+			channelDimIndex = getChannelDimIndex();
 
-		final ImgPlus<? extends RealType<?>> img = getData().getImgPlus();
+			final ImgPlus<? extends RealType<?>> img = getData().getImgPlus();
 
-		if (defaultLUTs == null || defaultLUTs.size() != getChannelCount()) {
-			defaultLUTs = new ArrayList<>();
-			resetColorTables(false);
-		}
+			if (defaultLUTs == null || defaultLUTs.size() != getChannelCount()) {
+				defaultLUTs = new ArrayList<>();
+				resetColorTables(false);
+			}
 
-		final int width = (int) img.dimension(0);
-		final int height = (int) img.dimension(1);
-		screenImage = new ARGBScreenImage(width, height);
+			final int width = (int) img.dimension(0);
+			final int height = (int) img.dimension(1);
+			screenImage = new ARGBScreenImage(width, height);
 
-		initializeView(isComposite());
-		updateLUTs();
-		projector.map();
+			initializeView(isComposite());
+			updateLUTs();
+			projector.map();
+		}
 	}
 
 	// -- PositionableByAxis methods --
@@ -423,18 +497,25 @@ public class DefaultDatasetView extends AbstractDataView implements DatasetView
 		if (axis.isXY()) return;
 		final int dim = getData().dimensionIndex(axis);
 		if (dim < 0) return;
-		final long currentValue = projector.getLongPosition(dim);
-		if (position == currentValue) {
-			return; // no change
-		}
-		projector.setPosition(position, dim);
+		synchronized (projectorLock) {
+			final long currentValue = projector.getLongPosition(dim);
+			if (position == currentValue) {
+				return; // no change
+			}
+			projector.setPosition(position, dim);
+			if (cellLoader != null) {
+				// NB: Cells requested for the previous plane are no longer urgent.
+				cellLoader.cancel();
+				updateFocus();
+			}
 
-		// update color tables
-		if (dim != channelDimIndex) {
-			updateLUTs();
-		}
+			// update color tables
+			if (dim != channelDimIndex) {
+				updateLUTs();
+			}
 
-		projector.map();
+			projector.map();
+		}
 
 		super.setPosition(position, axis);
 	}
@@ -482,7 +563,10 @@ public class DefaultDatasetView extends AbstractDataView implements DatasetView
 		}
 		if (getData() == event.getObject()) {
 			if (event.isMetaDataOnly()) return;
-			projector.map();
+			if (!isInitialized()) return;
+			final Interval region = event.getDirtyRegion();
+			if (region != null && !intersectsPlane(region)) return;
+			markDirty(region);
 		}
 	}
 
@@ -500,10 +584,109 @@ public class DefaultDatasetView extends AbstractDataView implements DatasetView
 		return projector != null;
 	}
 
+	/**
+	 * Gets whether the given region of the data intersects the current plane. All
+	 * channels are considered visible, since they may be composited.
+	 */
+	private boolean intersectsPlane(final Interval region) {
+		final int numDims =
+			Math.min(region.numDimensions(), projector.numDimensions());
+		for (int d = 2; d < numDims; d++) {
+			if (d == channelDimIndex) continue;
+			final long pos = projector.getLongPosition(d);
+			if (pos < region.min(d) || pos > region.max(d)) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Adds the given region of the current plane to the dirty region, and
+	 * schedules a repaint of it. Regions marked in quick succession (e.g., by
+	 * several updates within one frame) are coalesced into one repaint of their
+	 * union.
+	 * 
+	 * @param region The changed region, or null if all of the plane may have
+	 *          changed.
+	 */
+	private void markDirty(final Interval region) {
+		synchronized (dirtyLock) {
+			if (region == null) {
+				dirtyMin = dirtyMax = null;
+			}
+			else if (!planeDirty) {
+				dirtyMin = new long[] { region.min(0), region.min(1) };
+				dirtyMax = new long[] { region.max(0), region.max(1) };
+			}
+			else if (dirtyMin != null) {
+				for (int d = 0; d < 2; d++) {
+					dirtyMin[d] = Math.min(dirtyMin[d], region.min(d));
+					dirtyMax[d] = Math.max(dirtyMax[d], region.max(d));
+				}
+			}
+			planeDirty = true;
+		}
+		if (repaintPending.compareAndSet(false, true)) threadService.run(repaint);
+	}
+
+	/**
+	 * Projects the dirty region of the current plane. The caller holds the
+	 * {@link #projectorLock} and then updates the displays showing this view,
+	 * so that they repaint it.
+	 * <p>
+	 * NB: The displays already update upon the data's own update event, but
+	 * possibly before the projection has run; hence the update afterwards.
+	 * </p>
+	 * 
+	 * @return Whether anything was projected.
+	 */
+	private boolean repaintDirtyRegion() {
+		final Interval region;
+		synchronized (dirtyLock) {
+			if (!planeDirty) return false;
+			region = dirtyMin == null ? null : new FinalInterval(dirtyMin, dirtyMax);
+			planeDirty = false;
+			dirtyMin = dirtyMax = null;
+		}
+		final CompositeXYProjector<?> p = projector;
+		if (p == null) return false;
+		if (region != null && p instanceof SourceOptimizedCompositeXYProjector) {
+			((SourceOptimizedCompositeXYProjector<?, ?, ?>) p).map(region);
+		}
+		else p.map();
+		return true;
+	}
+
+	private boolean isPlaneDirty() {
+		synchronized (dirtyLock) {
+			return planeDirty;
+		}
+	}
+
+	/** Updates the displays of this view, or just the view if there are none. */
+	private void updateDisplays() {
+		boolean displayed = false;
+		if (imageDisplayService != null) {
+			for (final ImageDisplay display : imageDisplayService
+				.getImageDisplays())
+			{
+				if (!display.contains(this)) continue;
+				display.update();
+				displayed = true;
+			}
+		}
+		if (!displayed) update();
+	}
+
 	/** Uninitializes the view. */
 	private void uninitializeView() {
 		converters.clear();
 		projector = null;
+		if (cellLoader != null) {
+			cellLoader.removeListener(cellListener);
+			cellLoader.cancel();
+			cellLoader = null;
+			volatileView = null;
+		}
 	}
 
 	/** Initializes the view. */
@@ -519,20 +702,45 @@ public class DefaultDatasetView extends AbstractDataView implements DatasetView
 			converters.add(converter);
 		}
 
-		final ImgPlus<?> img = getData().getImgPlus();
-
-		if (AbstractCellImg.class.isAssignableFrom(img.getImg().getClass())) {
-			projector =
-				new SourceOptimizedCompositeXYProjector(getData().getImgPlus(),
-					screenImage, converters, channelDimIndex);
-		}
-		else {
-			projector =
-				new CompositeXYProjector(getData().getImgPlus(), screenImage,
-					converters, channelDimIndex);
+		// NB: Composites are rendered in parallel bands of rows, traversing each
+		// channel in flat order, which suits cell images as well as planar ones.
+		// NB: Cells of disk-backed images are loaded in the background, so that
+		// the view can be painted progressively instead of blocking on them.
+		final Img<? extends RealType<?>> img = getData().getImgPlus().getImg();
+		RandomAccessibleInterval source = getData().getImgPlus();
+		if (img instanceof AbstractCellImg &&
+			((AbstractCellImg) img).getCells() instanceof CachedCells)
+		{
+			final AbstractCellImg cellImg = (AbstractCellImg) img;
+			cellLoader = new AsyncCellLoader((CachedCells) cellImg.getCells(),
+				threadService.getExecutorService());
+			cellLoader.addListener(cellListener);
+			volatileView = new VolatileCellView(cellImg, cellLoader);
+			source = Views.interval(volatileView, img);
 		}
 
+		final SourceOptimizedCompositeXYProjector sourceProjector =
+			new SourceOptimizedCompositeXYProjector(source, screenImage, converters,
+				channelDimIndex);
+		sourceProjector.setThreadService(threadService);
+		projector = sourceProjector;
+
 		projector.setComposite(composite);
+		if (cellLoader != null) updateFocus();
+	}
+
+	/**
+	 * Focuses the loading of cells on the center of the current plane, so that
+	 * it is painted first.
+	 */
+	private void updateFocus() {
+		final double[] focus = new double[projector.numDimensions()];
+		focus[0] = getData().dimension(0) / 2.0;
+		focus[1] = getData().dimension(1) / 2.0;
+		for (int d = 2; d < focus.length; d++) {
+			focus[d] = projector.getLongPosition(d);
+		}
+		volatileView.setFocus(focus);
 	}
 
 	private void updateLUTs() {
@@ -343,7 +343,7 @@ public final class DefaultOverlayService extends AbstractService implements
 		tool.setPosition(fullPos);
 		tool.setChannels(channels);
 		drawer.draw(o, tool);
-		ds.update();
+		tool.update();
 	}
 
 	// -- Helper classes --
@@ -32,16 +32,24 @@
 package net.imagej.display;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import net.imagej.reduce.ChunkWorkers;
 import net.imglib2.Cursor;
+import net.imglib2.Interval;
 import net.imglib2.IterableInterval;
-import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.converter.Converter;
 import net.imglib2.display.projector.composite.CompositeXYProjector;
+import net.imglib2.display.screenimage.awt.ARGBScreenImage;
 import net.imglib2.img.cell.CellImg;
 import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.view.Views;
+
+import org.scijava.thread.ThreadService;
 
 /**
  * As {@link CompositeXYProjector} but uses a source that is both a
@@ -60,9 +68,22 @@ import net.imglib2.type.numeric.ARGBType;
  * {@link CompositeXYProjector}.
  * </p>
  * <p>
- * NB: Because this is an XY projector, the assumption is the provided source's
- * natural iteration order will cover XY first. If that assumption is false, the
- * projector will fail to produce a correct image.
+ * When compositing, the XY plane is split into bands of rows. Within a band,
+ * each component and the target are traversed in the same (flat) order, so
+ * every cursor just moves forward instead of being repositioned for each
+ * pixel. If the target is an {@link ARGBScreenImage}, its pixel array is filled
+ * directly. When a {@link ThreadService} is {@link #setThreadService set}, the
+ * bands are rendered in parallel; the converters must then be safe to call
+ * from several threads at once (as {@code RealLUTConverter} is).
+ * </p>
+ * <p>
+ * To repaint only the pixels which changed, {@link #map(Interval)} maps a
+ * region of the target, in the same way.
+ * </p>
+ * <p>
+ * Unlike {@link CompositeXYProjector}, mapping keeps its working state local
+ * to the call. It still reads the position and composite settings, so these
+ * must not be changed while a mapping is in progress.
  * </p>
  * 
  * @see CompositeXYProjector for the code upon which this class was based.
@@ -71,96 +92,219 @@ import net.imglib2.type.numeric.ARGBType;
  */
 public class SourceOptimizedCompositeXYProjector< A, S extends RandomAccessibleInterval< A > & IterableInterval< A >, T extends RandomAccessibleInterval< ARGBType > & IterableInterval< ARGBType > > extends CompositeXYProjector< A >
 {
-  private int dimIndex = 0;
-  
+	/** Minimum number of rows per band worth handing to another thread. */
+	private static final int MIN_BAND_ROWS = 16;
+
+	private int dimIndex = 0;
+
 	private T raTarget = null;
 
 	private S iraSource = null;
 
+	private final ArrayList< Converter< A, ARGBType >> converters;
+
+	private ThreadService threadService;
+
+	private int numTasks = Runtime.getRuntime().availableProcessors();
+
 	public SourceOptimizedCompositeXYProjector( S source, T target, ArrayList< Converter< A, ARGBType >> converters, int dimIndex )
 	{
 		super( source, target, converters, dimIndex );
 		this.dimIndex = dimIndex;
 		raTarget = target;
 		iraSource = source;
+		this.converters = converters;
 	}
 
-	@Override
-	public void map()
+	// -- SourceOptimizedCompositeXYProjector methods --
+
+	/**
+	 * Sets the thread service used to render bands of rows in parallel, or null
+	 * to render on the calling thread only.
+	 */
+	public void setThreadService( final ThreadService threadService )
 	{
-		boolean noComposite = dimIndex < 0;
+		this.threadService = threadService;
+	}
 
-		int size = -1;
+	/** Sets the maximum number of bands rendered in parallel. */
+	public void setNumTasks( final int numTasks )
+	{
+		if ( numTasks < 1 )
+			throw new IllegalArgumentException( "Invalid number of tasks: " + numTasks );
+		this.numTasks = numTasks;
+	}
 
-		if ( !noComposite )
-			size = updateCurrentArrays();
+	// -- Projector methods --
 
-		if ( noComposite || size == 1 )
+	@Override
+	public void map()
+	{
+		map( raTarget );
+	}
+
+	/**
+	 * Maps the given region of the target only, leaving the rest of it as it
+	 * is. The region is given in the coordinates of the target (the X and Y
+	 * dimensions of the source), and may extend beyond it.
+	 */
+	public void map( final Interval region )
+	{
+		// NB: Keep the state of this call local, rather than in the fields of
+		// CompositeXYProjector, which concurrent calls would overwrite.
+		final long[] regionMin = new long[ position.length ];
+		final long[] regionMax = new long[ position.length ];
+		for ( int d = 2; d < position.length; ++d )
+			regionMin[ d ] = regionMax[ d ] = position[ d ];
+		for ( int d = 0; d < 2; ++d )
 		{
-			super.map();
-			return;
+			regionMin[ d ] = Math.max( region.min( d ), raTarget.min( d ) );
+			regionMax[ d ] = Math.min( region.max( d ), raTarget.max( d ) );
+			if ( regionMin[ d ] > regionMax[ d ] )
+				return;
 		}
 
-		// System.out.println("    CompositeXYProjector::map() : call #"+(++calls));
-		for ( int d = 2; d < position.length; ++d )
-			min[ d ] = max[ d ] = position[ d ];
+		final long[] positions = new long[ converters.size() ];
+		final Converter< A, ARGBType >[] convs = Arrays.copyOf( currentConverters, converters.size() );
+		final int size = activeComponents( regionMin, positions, convs );
+		mapRegion( regionMin, regionMax, positions, convs, size );
+	}
 
-		min[ 0 ] = raTarget.min( 0 );
-		min[ 1 ] = raTarget.min( 1 );
-		max[ 0 ] = raTarget.max( 0 );
-		max[ 1 ] = raTarget.max( 1 );
+	// -- Helper methods --
 
-		final List< RandomAccess< A >> sourceRandomAccess = new ArrayList<>();
+	/**
+	 * Stores the active positions (in dimension {@link #dimIndex}) and their
+	 * converters to the given arrays, as {@link #updateCurrentArrays()} does.
+	 * 
+	 * @param pos the current position of the projector
+	 * @return number of positions to convert
+	 */
+	private int activeComponents( final long[] pos, final long[] positions, final Converter< A, ARGBType >[] convs )
+	{
+		if ( dimIndex < 0 )
+		{
+			// there is only converter[0]
+			convs[ 0 ] = converters.get( 0 );
+			return 1;
+		}
+		final long positionMin = iraSource.min( dimIndex );
+		int size = 0;
+		for ( int i = 0; i < convs.length; i++ )
+			if ( isComposite( i ) )
+			{
+				positions[ size ] = positionMin + i;
+				convs[ size ] = converters.get( i );
+				++size;
+			}
+		if ( size == 0 )
+		{
+			// single-position mode: the current position, with its converter
+			positions[ 0 ] = pos[ dimIndex ];
+			convs[ 0 ] = converters.get( ( int ) ( pos[ dimIndex ] - positionMin ) );
+			return 1;
+		}
+		return size;
+	}
 
-		Cursor< A > leadCursor = iraSource.localizingCursor();
+	/**
+	 * Composites the given components over the region spanning
+	 * {@code regionMin} to {@code regionMax} in X and Y, in parallel bands of
+	 * rows if a {@link ThreadService} is set.
+	 */
+	private void mapRegion( final long[] regionMin, final long[] regionMax, final long[] positions, final Converter< A, ARGBType >[] convs, final int size )
+	{
+		final long height = regionMax[ 1 ] - regionMin[ 1 ] + 1;
+		final int bands = threadService == null ? 1 : ( int ) Math.max( 1, Math.min( numTasks, height / MIN_BAND_ROWS ) );
+		if ( bands == 1 )
+		{
+			mapBand( regionMin, regionMax, positions, convs, size );
+			return;
+		}
 
-		// Compute how many positions need to be composited in the target
-		int steps = 1;
-		for ( int i = 0; i < min.length; i++ )
-			steps *= ( max[ i ] + 1 - min[ i ] );
+		// NB: The calling thread claims bands too, and never waits for workers
+		// which have not started, so this is safe on the pool's own threads.
+		final AtomicInteger nextBand = new AtomicInteger();
+		final Callable< Void > worker = new Callable< Void >()
+		{
+			@Override
+			public Void call()
+			{
+				int b;
+				while ( ( b = nextBand.getAndIncrement() ) < bands )
+				{
+					final long[] bandMin = regionMin.clone();
+					final long[] bandMax = regionMax.clone();
+					bandMin[ 1 ] = regionMin[ 1 ] + height * b / bands;
+					bandMax[ 1 ] = regionMin[ 1 ] + height * ( b + 1 ) / bands - 1;
+					mapBand( bandMin, bandMax, positions, convs, size );
+				}
+				return null;
+			}
+		};
+		try
+		{
+			ChunkWorkers.invokeUnchecked( threadService, bands, worker );
+		}
+		finally
+		{
+			// NB: Stop the other threads early if this one failed.
+			nextBand.set( bands );
+		}
+	}
 
-		// Generate a RandomAccess for each composite component
+	/**
+	 * Composites the given components over a band of rows, spanning
+	 * {@code bandMin} to {@code bandMax} in X and Y.
+	 */
+	private void mapBand( final long[] bandMin, final long[] bandMax, final long[] positions, final Converter< A, ARGBType >[] convs, final int size )
+	{
+		// one flat cursor per component, all moving in lockstep with the target
+		final List< Cursor< A > > sourceCursors = new ArrayList<>( size );
+		final long[] cmin = bandMin.clone();
+		final long[] cmax = bandMax.clone();
 		for ( int i = 0; i < size; ++i )
 		{
-			RandomAccess< A > randomAccess = iraSource.randomAccess();
-			min[ dimIndex ] = max[ dimIndex ] = currentPositions[ i ];
-			randomAccess.setPosition( min );
-			sourceRandomAccess.add( randomAccess );
+			if ( dimIndex >= 0 )
+				cmin[ dimIndex ] = cmax[ dimIndex ] = positions[ i ];
+			sourceCursors.add( Views.flatIterable( Views.interval( iraSource, cmin, cmax ) ).cursor() );
 		}
 
-		// A random access for populating the target
-		final RandomAccess< ARGBType > targetCursor = raTarget.randomAccess();
+		// write straight into the screen image's pixels when possible
+		final long bandWidth = bandMax[ 0 ] - bandMin[ 0 ] + 1;
+		int[] data = null;
+		int index = 0, rowSkip = 0;
+		Cursor< ARGBType > targetCursor = null;
+		if ( raTarget instanceof ARGBScreenImage )
+		{
+			data = ( ( ARGBScreenImage ) raTarget ).getData();
+			final long width = raTarget.dimension( 0 );
+			index = ( int ) ( ( bandMin[ 1 ] - raTarget.min( 1 ) ) * width + bandMin[ 0 ] - raTarget.min( 0 ) );
+			rowSkip = ( int ) ( width - bandWidth );
+		}
+		else
+		{
+			final long[] tmin = { bandMin[ 0 ], bandMin[ 1 ] };
+			final long[] tmax = { bandMax[ 0 ], bandMax[ 1 ] };
+			targetCursor = Views.flatIterable( Views.interval( raTarget, tmin, tmax ) ).cursor();
+		}
 
 		final ARGBType bi = new ARGBType();
-
-		// Now we will read the composite component values at the first #steps
-		// x,y
-		// positions.
-		while ( leadCursor.hasNext() && ( --steps ) >= 0 )
+		final long steps = bandWidth * ( bandMax[ 1 ] - bandMin[ 1 ] + 1 );
+		long x = 0;
+		for ( long s = 0; s < steps; ++s )
 		{
 			int aSum = 0, rSum = 0, gSum = 0, bSum = 0;
 
-			leadCursor.fwd();
-
 			for ( int i = 0; i < size; i++ )
 			{
-				RandomAccess< A > randomAccess = sourceRandomAccess.get( i );
-				randomAccess.setPosition( leadCursor.getLongPosition( 0 ), 0 );
-				randomAccess.setPosition( leadCursor.getLongPosition( 1 ), 1 );
-				randomAccess.setPosition( currentPositions[ i ], dimIndex );
-
-				currentConverters[ i ].convert( randomAccess.get(), bi );
+				convs[ i ].convert( sourceCursors.get( i ).next(), bi );
 
 				// accumulate converted result
 				final int value = bi.get();
-				final int a = ARGBType.alpha( value );
-				final int r = ARGBType.red( value );
-				final int g = ARGBType.green( value );
-				final int b = ARGBType.blue( value );
-				aSum += a;
-				rSum += r;
-				gSum += g;
-				bSum += b;
+				aSum += ARGBType.alpha( value );
+				rSum += ARGBType.red( value );
+				gSum += ARGBType.green( value );
+				bSum += ARGBType.blue( value );
 			}
 			if ( aSum > 255 )
 				aSum = 255;
@@ -171,11 +315,19 @@ public class SourceOptimizedCompositeXYProjector< A, S extends RandomAccessibleI
 			if ( bSum > 255 )
 				bSum = 255;
 
-			targetCursor.setPosition( leadCursor.getLongPosition( 0 ), 0 );
-			targetCursor.setPosition( leadCursor.getLongPosition( 1 ), 1 );
-			targetCursor.get().set( ARGBType.rgba( rSum, gSum, bSum, aSum ) );
+			final int argb = ARGBType.rgba( rSum, gSum, bSum, aSum );
+			if ( data != null )
+			{
+				data[ index++ ] = argb;
+				if ( ++x == bandWidth )
+				{
+					x = 0;
+					index += rowSkip;
+				}
+			}
+			else
+				targetCursor.next().set( argb );
 		}
-
 	}
 
 }
@@ -32,6 +32,7 @@
 package net.imagej.event;
 
 import net.imagej.Dataset;
+import net.imglib2.Interval;
 
 /**
  * An event indicating a {@link Dataset}'s data has been updated. This means
@@ -39,6 +40,10 @@ import net.imagej.Dataset;
  * same as before.
  * <p>
  * This event is typically fired as part of a call to {@link Dataset#update()}.
+ * If only part of the data changed, as after a call to
+ * {@link Dataset#update(Interval)}, the event carries the
+ * {@link #getDirtyRegion() region} which may differ, so that listeners can
+ * limit their work to it.
  * </p>
  * 
  * @author Curtis Rueden
@@ -47,11 +52,23 @@ public class DatasetUpdatedEvent extends DataUpdatedEvent {
 
 	private final Dataset dataset;
 	private final boolean metadataOnly;
+	private final Interval dirtyRegion;
 
 	public DatasetUpdatedEvent(final Dataset dataset, boolean metadataOnly) {
+		this(dataset, metadataOnly, null);
+	}
+
+	/**
+	 * @param dirtyRegion The region of the dataset whose values may have changed,
+	 *          or null if any of them may have.
+	 */
+	public DatasetUpdatedEvent(final Dataset dataset, boolean metadataOnly,
+		final Interval dirtyRegion)
+	{
 		super(dataset);
 		this.dataset = dataset;
 		this.metadataOnly = metadataOnly;
+		this.dirtyRegion = dirtyRegion;
 	}
 
 	// -- ObjectEvent methods --
@@ -64,4 +81,12 @@ public class DatasetUpdatedEvent extends DataUpdatedEvent {
 	public boolean isMetaDataOnly() {
 		return metadataOnly;
 	}
+
+	/**
+	 * Gets the region of the dataset whose values may have changed, or null if
+	 * any of them may have.
+	 */
+	public Interval getDirtyRegion() {
+		return dirtyRegion;
+	}
 }
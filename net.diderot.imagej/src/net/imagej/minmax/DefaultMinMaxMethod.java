@@ -31,15 +31,15 @@
 
 package net.imagej.minmax;
 
-import java.util.Vector;
-import java.util.concurrent.atomic.AtomicInteger;
-
-import net.imglib2.Cursor;
+import net.imagej.reduce.ParallelReducer;
+import net.imagej.reduce.RealStatistics;
+import net.imagej.reduce.RealStatisticsReduction;
+import net.imagej.reduce.Reduction;
 import net.imglib2.IterableInterval;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.img.Img;
 import net.imglib2.type.Type;
-import net.imglib2.util.Util;
+import net.imglib2.type.numeric.RealType;
 import net.imglib2.view.Views;
 
 import org.scijava.app.StatusService;
@@ -50,6 +50,11 @@ import org.scijava.thread.ThreadService;
 /**
  * A {@link MinMaxMethod} implementation that forks
  * {@code net.imglib2.algorithm.stats.ComputeMinMax}.
+ * <p>
+ * The computation is performed by a {@link ParallelReducer}. Images of
+ * primitive real types backed by arrays are reduced directly from their
+ * backing arrays; all others are compared element-wise.
+ * </p>
  * 
  * @author Mark Hiner
  */
@@ -58,10 +63,6 @@ public class DefaultMinMaxMethod<T extends Type<T> & Comparable<T>> extends
 	AbstractMinMaxMethod<T>
 {
 
-	// -- Constants --
-
-	private final int MAX_UPDATES = 100;
-
 	// -- Fields --
 
 	@Parameter
@@ -70,14 +71,6 @@ public class DefaultMinMaxMethod<T extends Type<T> & Comparable<T>> extends
 	@Parameter(required = false)
 	private StatusService statusService;
 
-	// Number of positions processed
-	private long[] progress = null;
-	// Limit how many times to send status updates
-
-	// Last reported percentage
-	private int reported = -1;
-
-	private long imageSize;
 	private IterableInterval<T> image;
 	private T min;
 	private T max;
@@ -85,13 +78,12 @@ public class DefaultMinMaxMethod<T extends Type<T> & Comparable<T>> extends
 	private String errorMessage = "";
 	private int numThreads;
 	private long processingTime;
-	private Object lock = new Object();
 
 	// -- ComputeMinMaxMethod API --
 
 	@Override
 	public void initialize(final Img<T> img, final T min, final T max) {
-		initialize(img, min, max);
+		initialize((IterableInterval<T>) img, min, max);
 	}
 
 	@Override
@@ -109,7 +101,7 @@ public class DefaultMinMaxMethod<T extends Type<T> & Comparable<T>> extends
 	public void initialize(final RandomAccessibleInterval<T> interval,
 		final T min, final T max)
 	{
-		initialize(interval, min, max);
+		initialize(Views.iterable(interval), min, max);
 	}
 
 	@Override
@@ -145,57 +137,30 @@ public class DefaultMinMaxMethod<T extends Type<T> & Comparable<T>> extends
 	public boolean process() {
 		final long startTime = System.currentTimeMillis();
 
-		imageSize = image.size();
-
-		progress = new long[numThreads];
-		progress[0] = -1;
-		report(0);
-
-		final AtomicInteger ai = new AtomicInteger(0);
-
-		// TODO: Unify multithreading approach with org.scijava.thread package.
-
-		final Thread[] threads = SimpleMultiThreading.newThreads(getNumThreads());
-
-		final Vector<Chunk> threadChunks =
-			SimpleMultiThreading.divideIntoChunks(imageSize, numThreads);
-		final Vector<T> minValues = new Vector<>();
-		final Vector<T> maxValues = new Vector<>();
-
-		for (int ithread = 0; ithread < threads.length; ++ithread) {
-			minValues.add(image.firstElement().createVariable());
-			maxValues.add(image.firstElement().createVariable());
-
-			threads[ithread] = threadService.newThread(new Runnable() {
-
-				@Override
-				public void run() {
-					// Thread ID
-					final int myNumber = ai.getAndIncrement();
-
-					// get chunk of pixels to process
-					final Chunk myChunk = threadChunks.get(myNumber);
-
-					// compute min and max
-					compute(myNumber, myChunk.getStartPosition(), myChunk.getLoopSize(), minValues
-						.get(myNumber), maxValues.get(myNumber));
-
-				}
-			});
+		final ParallelReducer reducer = new ParallelReducer(threadService);
+		reducer.setNumThreads(getNumThreads());
+		reducer.setStatus(statusService, "Computing min/max...");
+
+		final T first = image.firstElement();
+		if (first instanceof RealType && ParallelReducer.isPrimitive(image)) {
+			// NB: Values of the supported primitive types are exact as doubles.
+			@SuppressWarnings({ "rawtypes", "unchecked" })
+			final RealStatistics stats = (RealStatistics) reducer.reduce(
+				(IterableInterval) image, new RealStatisticsReduction());
+			if (stats.getCount() == 0) {
+				// all values are NaN
+				min.set(first);
+				max.set(first);
+			}
+			else {
+				((RealType<?>) min).setReal(stats.getMin());
+				((RealType<?>) max).setReal(stats.getMax());
+			}
 		}
-
-		SimpleMultiThreading.startAndJoin(threads);
-
-		// compute overall min and max
-		min.set(minValues.get(0));
-		max.set(maxValues.get(0));
-
-		for (int i = 0; i < threads.length; ++i) {
-			T value = minValues.get(i);
-			if (Util.min(min, value) == value) min.set(value);
-
-			value = maxValues.get(i);
-			if (Util.max(max, value) == value) max.set(value);
+		else {
+			final MinMax<T> result = reducer.reduce(image, new MinMaxReduction());
+			min.set(result.min);
+			max.set(result.max);
 		}
 
 		processingTime = System.currentTimeMillis() - startTime;
@@ -205,36 +170,6 @@ public class DefaultMinMaxMethod<T extends Type<T> & Comparable<T>> extends
 		return true;
 	}
 
-	protected void compute(final int threadNumber, final long startPos, final long loopSize, final T min,
-		final T max)
-	{
-		final Cursor<T> cursor = image.cursor();
-
-		// init min and max
-		cursor.fwd();
-
-		min.set(cursor.get());
-		max.set(cursor.get());
-
-		cursor.reset();
-
-		// move to the starting position of the current thread
-		cursor.jumpFwd(startPos);
-
-		// do as many pixels as wanted by this thread
-		for (long j = 0; j < loopSize; ++j) {
-			cursor.fwd();
-
-			final T value = cursor.get();
-
-			if (Util.min(min, value) == value) min.set(value);
-
-			if (Util.max(max, value) == value) max.set(value);
-
-			report(threadNumber);
-		}
-	}
-
 	@Override
 	public boolean checkInput() {
 		if (errorMessage.length() > 0) {
@@ -279,110 +214,40 @@ public class DefaultMinMaxMethod<T extends Type<T> & Comparable<T>> extends
 		initialized = true;
 	}
 
-	/** Reports the current progress. */
-	private void report(int threadNumber) {
-		if (statusService == null) return; // nothing to report to, please move along
-		progress[threadNumber]++;
-
-		long netProgress = 0;
-		for (int i=0; i<progress.length; i++) {
-			netProgress += progress[i];
-		}
-		final int percentWork = (int) (((double) netProgress / imageSize) * MAX_UPDATES);
-
-		if (percentWork > reported) {
-			synchronized (lock) {
-				// NB: check twice in case another thread has already reported the
-				// status.
-				// We do this to avoid executing a synchronized block for each pixel
-				// analyzed.
-				if (percentWork > reported) {
-					reported++;
-					statusService.showStatus(percentWork, MAX_UPDATES,
-						"Computing min/max...");
-				}
-			}
-		}
-	}
-
 	// -- Helper classes --
 
-	/**
-	 * @author Stephan Preibisch
-	 */
-	private static class SimpleMultiThreading {
-
-		public static Vector<Chunk> divideIntoChunks(final long imageSize,
-			final int numThreads)
-		{
-			final long threadChunkSize = imageSize / numThreads;
-			final long threadChunkMod = imageSize % numThreads;
-
-			final Vector<Chunk> chunks = new Vector<>();
-
-			for (int threadID = 0; threadID < numThreads; ++threadID) {
-				// move to the starting position of the current thread
-				final long startPosition = threadID * threadChunkSize;
-
-				// the last thread may has to run longer if the number of pixels
-				// cannot be divided by the number of threads
-				final long loopSize;
-				if (threadID == numThreads - 1) loopSize =
-					threadChunkSize + threadChunkMod;
-				else loopSize = threadChunkSize;
-
-				chunks.add(new Chunk(startPosition, loopSize));
-			}
+	/** Partial result of a {@link MinMaxReduction}. */
+	private static class MinMax<T> {
 
-			return chunks;
-		}
-
-		public static Thread[] newThreads(final int numThreads) {
-			return new Thread[numThreads];
-		}
-
-		public static void startAndJoin(final Thread[] threads) {
-			if (1 == threads.length) {
-				threads[0].run();
-				return;
-			}
-
-			for (int ithread = 0; ithread < threads.length; ++ithread) {
-				threads[ithread].setPriority(Thread.NORM_PRIORITY);
-				threads[ithread].start();
-			}
-
-			try {
-				for (int ithread = 0; ithread < threads.length; ++ithread)
-					threads[ithread].join();
-			}
-			catch (final InterruptedException ie) {
-				throw new RuntimeException(ie);
-			}
-		}
+		private T min, max;
 	}
 
-	/**
-	 * @author Stephan Preibisch
-	 */
-	@Deprecated
-	private static class Chunk {
+	/** Reduction computing the extrema of {@link Comparable} elements. */
+	private class MinMaxReduction implements Reduction<T, MinMax<T>> {
 
-		public Chunk(final long startPosition, final long loopSize) {
-			this.startPosition = startPosition;
-			this.loopSize = loopSize;
+		@Override
+		public MinMax<T> create() {
+			return new MinMax<>();
 		}
 
-		public long getStartPosition() {
-			return startPosition;
+		@Override
+		public void accumulate(final MinMax<T> result, final T value) {
+			if (result.min == null) {
+				result.min = value.copy();
+				result.max = value.copy();
+			}
+			else if (value.compareTo(result.min) < 0) result.min.set(value);
+			else if (value.compareTo(result.max) > 0) result.max.set(value);
 		}
 
-		public long getLoopSize() {
-			return loopSize;
+		@Override
+		public MinMax<T> combine(final MinMax<T> a, final MinMax<T> b) {
+			if (a.min == null) return b;
+			if (b.min == null) return a;
+			if (b.min.compareTo(a.min) < 0) a.min.set(b.min);
+			if (b.max.compareTo(a.max) > 0) a.max.set(b.max);
+			return a;
 		}
-
-		protected long startPosition;
-
-		protected long loopSize;
 	}
+
 }
@@ -0,0 +1,154 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.reduce;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.scijava.thread.ThreadService;
+
+/**
+ * Runs copies of a worker which drain a shared supply of chunks, on the threads
+ * of a {@link ThreadService} and on the calling thread.
+ * <p>
+ * The calling thread only waits for the workers which have started: once it
+ * has run out of chunks itself, workers still queued behind other tasks are
+ * withdrawn instead. This keeps callers on a bounded pool's own threads from
+ * waiting forever for workers which could never start.
+ * </p>
+ */
+public final class ChunkWorkers {
+
+	private ChunkWorkers() {
+		// NB: Prevent instantiation of utility class.
+	}
+
+	/**
+	 * Runs the given worker on up to {@code threads} threads, including the
+	 * calling one.
+	 * 
+	 * @return The results of the workers which ran, the calling thread's first.
+	 * @throws ExecutionException if a worker on another thread failed.
+	 * @throws InterruptedException if interrupted while waiting for a worker.
+	 */
+	public static <R> List<R> invoke(final ThreadService threadService,
+		final int threads, final Callable<R> worker) throws InterruptedException,
+		ExecutionException
+	{
+		final List<AtomicBoolean> claims = new ArrayList<>();
+		final List<Future<R>> futures = new ArrayList<>();
+		final List<R> results = new ArrayList<>();
+		try {
+			for (int t = 1; t < threads; t++) {
+				final AtomicBoolean claim = new AtomicBoolean();
+				claims.add(claim);
+				futures.add(threadService.run(new Callable<R>() {
+
+					@Override
+					public R call() throws Exception {
+						// NB: Skip the work if the caller has withdrawn this worker.
+						return claim.compareAndSet(false, true) ? worker.call() : null;
+					}
+				}));
+			}
+			results.add(callUnchecked(worker));
+			for (int i = 0; i < futures.size(); i++) {
+				if (claims.get(i).compareAndSet(false, true)) {
+					futures.get(i).cancel(false);
+				}
+				else results.add(futures.get(i).get());
+			}
+			return results;
+		}
+		finally {
+			// NB: Withdraw the workers which have not started, if this one failed.
+			for (int i = 0; i < futures.size(); i++) {
+				if (claims.get(i).compareAndSet(false, true)) {
+					futures.get(i).cancel(false);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Runs the given worker on up to {@code threads} threads, including the
+	 * calling one, like {@link #invoke}, but without checked exceptions. With a
+	 * null {@link ThreadService} or a single thread, the worker runs on the
+	 * calling thread only.
+	 * 
+	 * @return The results of the workers which ran, the calling thread's first.
+	 * @throws IllegalStateException wrapping a checked exception thrown by a
+	 *           worker, or if interrupted while waiting for a worker. Unchecked
+	 *           exceptions and errors thrown by a worker are rethrown as they
+	 *           are.
+	 */
+	public static <R> List<R> invokeUnchecked(final ThreadService threadService,
+		final int threads, final Callable<R> worker)
+	{
+		if (threadService == null || threads <= 1) {
+			return Collections.singletonList(callUnchecked(worker));
+		}
+		try {
+			return invoke(threadService, threads, worker);
+		}
+		catch (final InterruptedException exc) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(exc);
+		}
+		catch (final ExecutionException exc) {
+			throw unchecked(exc.getCause());
+		}
+	}
+
+	// -- Helper methods --
+
+	private static <R> R callUnchecked(final Callable<R> callable) {
+		try {
+			return callable.call();
+		}
+		catch (final Exception exc) {
+			throw unchecked(exc);
+		}
+	}
+
+	private static RuntimeException unchecked(final Throwable t) {
+		if (t instanceof RuntimeException) return (RuntimeException) t;
+		if (t instanceof Error) throw (Error) t;
+		return new IllegalStateException(t);
+	}
+
+}
@@ -0,0 +1,109 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.reduce;
+
+import net.imglib2.histogram.Histogram1d;
+import net.imglib2.histogram.Real1dBinMapper;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * A {@link RealReduction} counting values into the bins of a
+ * {@link Real1dBinMapper}.
+ * <p>
+ * Each partial result is a private {@code long[]} with one counter per bin,
+ * followed by the number of values which could not be mapped to any bin.
+ * Partial results are summed in O(bins), and the final counts can be turned
+ * into a {@link Histogram1d} via {@link #toHistogram(long[])}.
+ * </p>
+ */
+public class HistogramReduction<T extends RealType<T>> implements
+	RealReduction<T, long[]>
+{
+
+	private final Real1dBinMapper<T> mapper;
+
+	private final int bins;
+
+	public HistogramReduction(final Real1dBinMapper<T> mapper) {
+		if (mapper.getBinCount() >= Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Too many bins: " +
+				mapper.getBinCount());
+		}
+		this.mapper = mapper;
+		bins = (int) mapper.getBinCount();
+	}
+
+	// -- HistogramReduction methods --
+
+	/** Creates a histogram holding the given counts. */
+	public Histogram1d<T> toHistogram(final long[] counts) {
+		final Histogram1d<T> histogram = new Histogram1d<>(mapper.copy());
+		histogram.add(counts, counts[bins]);
+		return histogram;
+	}
+
+	// -- Reduction methods --
+
+	@Override
+	public long[] create() {
+		return new long[bins + 1];
+	}
+
+	@Override
+	public void accumulate(final long[] result, final T value) {
+		result[index(mapper.map(value.getRealDouble()))]++;
+	}
+
+	@Override
+	public void accumulate(final long[] result, final double[] values,
+		final int length)
+	{
+		for (int i = 0; i < length; i++) {
+			result[index(mapper.map(values[i]))]++;
+		}
+	}
+
+	@Override
+	public long[] combine(final long[] a, final long[] b) {
+		for (int i = 0; i < a.length; i++) {
+			a[i] += b[i];
+		}
+		return a;
+	}
+
+	// -- Helper methods --
+
+	private int index(final long bin) {
+		return bin == Long.MIN_VALUE || bin == Long.MAX_VALUE ? bins : (int) bin;
+	}
+
+}
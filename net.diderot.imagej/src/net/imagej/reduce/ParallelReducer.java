@@ -0,0 +1,209 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.reduce;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.imglib2.Cursor;
+import net.imglib2.IterableInterval;
+
+import org.scijava.app.StatusService;
+import org.scijava.thread.ThreadService;
+
+/**
+ * Computes {@link Reduction}s of {@link IterableInterval}s in parallel, using
+ * the threads of a {@link ThreadService}.
+ * <p>
+ * The interval is divided into many more chunks than threads. Each thread
+ * repeatedly claims the next unprocessed chunk, positions a cursor at its start
+ * via {@link Cursor#jumpFwd(long)} and accumulates its elements into a partial
+ * result, so that threads which finish early take over the remaining work.
+ * The calling thread takes part in the computation as well.
+ * </p>
+ * <p>
+ * {@link RealReduction}s of {@code ArrayImg}s and {@code PlanarImg}s of
+ * primitive real types are computed directly from the backing arrays, without
+ * cursors or per-element virtual calls.
+ * </p>
+ */
+public class ParallelReducer {
+
+	/** Minimum number of elements per chunk. */
+	public static final int MIN_CHUNK_SIZE = 16384;
+
+	/** Number of chunks per thread, for load balancing. */
+	private static final int CHUNKS_PER_THREAD = 8;
+
+	/** Size of the blocks passed to {@link RealReduction}s. */
+	private static final int BLOCK_SIZE = 4096;
+
+	// -- Fields --
+
+	private final ThreadService threadService;
+
+	private int numThreads = Runtime.getRuntime().availableProcessors();
+
+	private StatusService statusService;
+
+	private String statusMessage;
+
+	// -- Constructors --
+
+	/**
+	 * Creates a reducer using the given {@link ThreadService}, or computing on
+	 * the calling thread only if it is null.
+	 */
+	public ParallelReducer(final ThreadService threadService) {
+		this.threadService = threadService;
+	}
+
+	// -- ParallelReducer methods --
+
+	/** Gets the maximum number of threads to use. */
+	public int getNumThreads() {
+		return threadService == null ? 1 : numThreads;
+	}
+
+	/** Sets the maximum number of threads to use. */
+	public void setNumThreads(final int numThreads) {
+		if (numThreads < 1) {
+			throw new IllegalArgumentException("Invalid thread count: " +
+				numThreads);
+		}
+		this.numThreads = numThreads;
+	}
+
+	/**
+	 * Reports the progress of subsequent reductions to the given
+	 * {@link StatusService} (which may be null) with the given message.
+	 */
+	public void setStatus(final StatusService statusService,
+		final String message)
+	{
+		this.statusService = statusService;
+		this.statusMessage = message;
+	}
+
+	/**
+	 * Gets whether {@link RealReduction}s of the given interval are computed
+	 * directly from its backing primitive arrays.
+	 */
+	public static boolean isPrimitive(final IterableInterval<?> interval) {
+		return RealArrays.create(interval) != null;
+	}
+
+	/** Computes the given reduction of all elements of the interval. */
+	public <T, R> R reduce(final IterableInterval<T> interval,
+		final Reduction<T, R> reduction)
+	{
+		final long size = interval.size();
+		final RealArrays arrays = reduction instanceof RealReduction ? //
+			RealArrays.create(interval) : null;
+
+		final int threads = (int) Math.max(1, Math.min(getNumThreads(), size /
+			MIN_CHUNK_SIZE));
+		final long chunkSize = Math.max(MIN_CHUNK_SIZE, (size + CHUNKS_PER_THREAD *
+			threads - 1) / (CHUNKS_PER_THREAD * threads));
+		final long chunks = (size + chunkSize - 1) / chunkSize;
+		final AtomicLong nextChunk = new AtomicLong();
+		final AtomicLong doneChunks = new AtomicLong();
+
+		final Callable<R> worker = new Callable<R>() {
+
+			@Override
+			public R call() {
+				final R result = reduction.create();
+				long chunk;
+				while ((chunk = nextChunk.getAndIncrement()) < chunks) {
+					final long start = chunk * chunkSize;
+					final long count = Math.min(chunkSize, size - start);
+					if (arrays == null) reduce(interval, reduction, result, start, count);
+					else reduce(arrays, reduction, result, start, count);
+					report(doneChunks.incrementAndGet(), chunks);
+				}
+				return result;
+			}
+		};
+
+		report(0, chunks);
+		try {
+			final List<R> results = ChunkWorkers.invokeUnchecked(threadService,
+				threads, worker);
+			R result = results.get(0);
+			for (int i = 1; i < results.size(); i++) {
+				result = reduction.combine(result, results.get(i));
+			}
+			return result;
+		}
+		finally {
+			// NB: Stop the other threads early if this one failed.
+			nextChunk.set(chunks);
+		}
+	}
+
+	// -- Helper methods --
+
+	private <T, R> void reduce(final IterableInterval<T> interval,
+		final Reduction<T, R> reduction, final R result, final long start,
+		final long count)
+	{
+		final Cursor<T> cursor = interval.cursor();
+		cursor.jumpFwd(start);
+		for (long i = 0; i < count; i++) {
+			reduction.accumulate(result, cursor.next());
+		}
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private <T, R> void reduce(final RealArrays arrays,
+		final Reduction<T, R> reduction, final R result, final long start,
+		final long count)
+	{
+		final RealReduction realReduction = (RealReduction) reduction;
+		final double[] block = new double[(int) Math.min(BLOCK_SIZE, count)];
+		long done = 0;
+		while (done < count) {
+			final int n = arrays.read(start + done, block, (int) Math.min(
+				block.length, count - done));
+			realReduction.accumulate(result, block, n);
+			done += n;
+		}
+	}
+
+	private void report(final long done, final long total) {
+		if (statusService == null) return;
+		statusService.showStatus((int) done, (int) total, statusMessage);
+	}
+
+}
@@ -0,0 +1,258 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.reduce;
+
+import net.imagej.Dataset;
+import net.imagej.ImgPlus;
+import net.imglib2.IterableInterval;
+import net.imglib2.util.Util;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.type.numeric.integer.ByteType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.ShortType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedIntType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+
+/**
+ * Direct access to the primitive arrays backing an {@link ArrayImg} or
+ * {@link PlanarImg}, decoding and encoding blocks of values in flat iteration
+ * order.
+ */
+public final class RealArrays {
+
+	private static final int BYTE = 0, UBYTE = 1, SHORT = 2, USHORT = 3,
+			INT = 4, UINT = 5, FLOAT = 6, DOUBLE = 7;
+
+	/** The storage arrays, one per plane. */
+	private final Object[] planes;
+
+	/** Number of elements per plane. */
+	private final long planeSize;
+
+	/** The kind of values stored in the arrays. */
+	private final int kind;
+
+	private RealArrays(final Object[] planes, final long planeSize,
+		final int kind)
+	{
+		this.planes = planes;
+		this.planeSize = planeSize;
+		this.kind = kind;
+	}
+
+	/**
+	 * Gets direct access to the arrays backing the given interval, or null if it
+	 * is not an {@link ArrayImg} or {@link PlanarImg} of a supported primitive
+	 * type (possibly wrapped in a {@link Dataset} or {@link ImgPlus}).
+	 */
+	public static RealArrays create(IterableInterval<?> interval) {
+		if (interval instanceof Dataset) interval = ((Dataset) interval).getImgPlus();
+		if (interval instanceof ImgPlus) interval = ((ImgPlus<?>) interval).getImg();
+		if (interval.size() == 0) return null;
+		final Object[] planes;
+		final long planeSize;
+		if (interval instanceof ArrayImg) {
+			final Object access = ((ArrayImg<?, ?>) interval).update(null);
+			if (!(access instanceof ArrayDataAccess)) return null;
+			planes = new Object[] { ((ArrayDataAccess<?>) access)
+				.getCurrentStorageArray() };
+			planeSize = interval.size();
+		}
+		else if (interval instanceof PlanarImg) {
+			final PlanarImg<?, ?> img = (PlanarImg<?, ?>) interval;
+			planes = new Object[img.numSlices()];
+			for (int i = 0; i < planes.length; i++) {
+				final ArrayDataAccess<?> plane = img.getPlane(i);
+				if (plane == null) return null;
+				planes[i] = plane.getCurrentStorageArray();
+			}
+			planeSize = interval.size() / planes.length;
+		}
+		else return null;
+
+		final int kind = kind(interval.firstElement(), planes[0]);
+		if (kind < 0) return null;
+		for (final Object plane : planes) {
+			if (plane == null || plane.getClass() != planes[0].getClass()) {
+				return null;
+			}
+		}
+		return new RealArrays(planes, planeSize, kind);
+	}
+
+	/**
+	 * Gets how many of up to {@code length} values, starting at the given flat
+	 * index, lie in the same plane, and can thus be decoded or encoded at once.
+	 */
+	public int contiguous(final long index, final int length) {
+		return (int) Math.min(length, planeSize - index % planeSize);
+	}
+
+	/**
+	 * Decodes up to {@code length} values, starting at the given flat index.
+	 * Fewer values are decoded if the end of a plane is reached.
+	 *
+	 * @return The number of values decoded.
+	 */
+	public int read(final long index, final double[] dest, final int length) {
+		final Object plane = planes[(int) (index / planeSize)];
+		final int off = (int) (index % planeSize);
+		final int n = (int) Math.min(length, planeSize - off);
+		switch (kind) {
+			case BYTE: {
+				final byte[] a = (byte[]) plane;
+				for (int i = 0; i < n; i++)
+					dest[i] = a[off + i];
+				break;
+			}
+			case UBYTE: {
+				final byte[] a = (byte[]) plane;
+				for (int i = 0; i < n; i++)
+					dest[i] = a[off + i] & 0xff;
+				break;
+			}
+			case SHORT: {
+				final short[] a = (short[]) plane;
+				for (int i = 0; i < n; i++)
+					dest[i] = a[off + i];
+				break;
+			}
+			case USHORT: {
+				final short[] a = (short[]) plane;
+				for (int i = 0; i < n; i++)
+					dest[i] = a[off + i] & 0xffff;
+				break;
+			}
+			case INT: {
+				final int[] a = (int[]) plane;
+				for (int i = 0; i < n; i++)
+					dest[i] = a[off + i];
+				break;
+			}
+			case UINT: {
+				final int[] a = (int[]) plane;
+				for (int i = 0; i < n; i++)
+					dest[i] = a[off + i] & 0xffffffffL;
+				break;
+			}
+			case FLOAT: {
+				final float[] a = (float[]) plane;
+				for (int i = 0; i < n; i++)
+					dest[i] = a[off + i];
+				break;
+			}
+			default: {
+				final double[] a = (double[]) plane;
+				System.arraycopy(a, off, dest, 0, n);
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * Encodes up to {@code length} values, starting at the given flat index.
+	 * Fewer values are encoded if the end of a plane is reached. Values are
+	 * converted as {@code RealType#setReal(double)} does: rounded to the
+	 * nearest integer, then truncated to the bits of the integer types.
+	 *
+	 * @return The number of values encoded.
+	 */
+	public int write(final long index, final double[] src, final int length) {
+		final Object plane = planes[(int) (index / planeSize)];
+		final int off = (int) (index % planeSize);
+		final int n = (int) Math.min(length, planeSize - off);
+		switch (kind) {
+			case BYTE:
+			case UBYTE: {
+				final byte[] a = (byte[]) plane;
+				for (int i = 0; i < n; i++)
+					a[off + i] = (byte) Util.round(src[i]);
+				break;
+			}
+			case SHORT:
+			case USHORT: {
+				final short[] a = (short[]) plane;
+				for (int i = 0; i < n; i++)
+					a[off + i] = (short) Util.round(src[i]);
+				break;
+			}
+			case INT:
+			case UINT: {
+				final int[] a = (int[]) plane;
+				for (int i = 0; i < n; i++)
+					a[off + i] = (int) Util.round(src[i]);
+				break;
+			}
+			case FLOAT: {
+				final float[] a = (float[]) plane;
+				for (int i = 0; i < n; i++)
+					a[off + i] = (float) src[i];
+				break;
+			}
+			default: {
+				final double[] a = (double[]) plane;
+				System.arraycopy(src, 0, a, off, n);
+			}
+		}
+		return n;
+	}
+
+	// -- Helper methods --
+
+	private static int kind(final Object type, final Object array) {
+		if (array instanceof byte[]) {
+			if (type instanceof UnsignedByteType) return UBYTE;
+			if (type instanceof ByteType) return BYTE;
+		}
+		else if (array instanceof short[]) {
+			if (type instanceof UnsignedShortType) return USHORT;
+			if (type instanceof ShortType) return SHORT;
+		}
+		else if (array instanceof int[]) {
+			if (type instanceof UnsignedIntType) return UINT;
+			if (type instanceof IntType) return INT;
+		}
+		else if (array instanceof float[]) {
+			if (type instanceof FloatType) return FLOAT;
+		}
+		else if (array instanceof double[]) {
+			if (type instanceof DoubleType) return DOUBLE;
+		}
+		return -1;
+	}
+
+}
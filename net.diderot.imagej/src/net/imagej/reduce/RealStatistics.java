@@ -0,0 +1,110 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.reduce;
+
+/**
+ * Count, sum, minimum and maximum of a set of real values, as computed by
+ * {@link RealStatisticsReduction}. NaN values are not counted.
+ */
+public class RealStatistics {
+
+	private long count;
+
+	private double sum;
+
+	private double min = Double.POSITIVE_INFINITY;
+
+	private double max = Double.NEGATIVE_INFINITY;
+
+	// -- RealStatistics methods --
+
+	/** Gets the number of values. */
+	public long getCount() {
+		return count;
+	}
+
+	/** Gets the sum of the values. */
+	public double getSum() {
+		return sum;
+	}
+
+	/** Gets the mean of the values, or NaN if there are none. */
+	public double getMean() {
+		return count == 0 ? Double.NaN : sum / count;
+	}
+
+	/** Gets the minimum value, or NaN if there are none. */
+	public double getMin() {
+		return count == 0 ? Double.NaN : min;
+	}
+
+	/** Gets the maximum value, or NaN if there are none. */
+	public double getMax() {
+		return count == 0 ? Double.NaN : max;
+	}
+
+	/** Adds a value to the statistics. */
+	public void add(final double value) {
+		if (Double.isNaN(value)) return;
+		if (value < min) min = value;
+		if (value > max) max = value;
+		sum += value;
+		count++;
+	}
+
+	/** Adds the first {@code length} values of the given array. */
+	public void add(final double[] values, final int length) {
+		double lo = min, hi = max, s = 0;
+		long n = 0;
+		for (int i = 0; i < length; i++) {
+			final double value = values[i];
+			if (value != value) continue; // NaN
+			if (value < lo) lo = value;
+			if (value > hi) hi = value;
+			s += value;
+			n++;
+		}
+		min = lo;
+		max = hi;
+		sum += s;
+		count += n;
+	}
+
+	/** Adds the values of another set of statistics to this one. */
+	public void add(final RealStatistics other) {
+		if (other.min < min) min = other.min;
+		if (other.max > max) max = other.max;
+		sum += other.sum;
+		count += other.count;
+	}
+
+}
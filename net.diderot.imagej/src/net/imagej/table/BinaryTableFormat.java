@@ -0,0 +1,290 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.table;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Compact columnar binary format for {@link ResultsTable}s.
+ * <p>
+ * A file consists of a fixed header, a column directory, and one data block
+ * per column. All values are little-endian. Each column is stored with the
+ * narrowest type which represents all of its values exactly (byte, short,
+ * int, float or double), and may optionally be deflate-compressed.
+ * </p>
+ *
+ * <pre>
+ * int    magic ({@link #MAGIC})
+ * int    version ({@link #VERSION})
+ * int    column count
+ * int    row count
+ * for each column:
+ *   byte   value type ({@link #TYPE_BYTE} .. {@link #TYPE_DOUBLE})
+ *   byte   compression ({@link #COMPRESSION_NONE} or {@link #COMPRESSION_DEFLATE})
+ *   short  reserved
+ *   int    header length in bytes, or -1 for no header
+ *   byte[] header, UTF-8 encoded
+ *   long   block offset (8-byte aligned)
+ *   long   block length in bytes
+ * column data blocks
+ * </pre>
+ *
+ * @see MappedResultsTable
+ */
+public final class BinaryTableFormat {
+
+	private BinaryTableFormat() {
+		// prevent instantiation of utility class
+	}
+
+	/** Magic number identifying the format: "IJRT". */
+	public static final int MAGIC = 0x494a5254;
+
+	/** Current version of the format. */
+	public static final int VERSION = 1;
+
+	public static final byte TYPE_BYTE = 0;
+	public static final byte TYPE_SHORT = 1;
+	public static final byte TYPE_INT = 2;
+	public static final byte TYPE_FLOAT = 3;
+	public static final byte TYPE_DOUBLE = 4;
+
+	public static final byte COMPRESSION_NONE = 0;
+	public static final byte COMPRESSION_DEFLATE = 1;
+
+	/** Byte order of all values in the format. */
+	static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+	/** Size of the fixed part of the file header. */
+	static final int HEADER_SIZE = 16;
+
+	/** Size of the fixed part of each column directory entry. */
+	static final int ENTRY_SIZE = 24;
+
+	/** Number of values encoded at a time when writing. */
+	private static final int BLOCK_VALUES = 8192;
+
+	/** Gets the size in bytes of one value of the given type. */
+	public static int typeSize(final byte type) {
+		switch (type) {
+			case TYPE_BYTE:
+				return 1;
+			case TYPE_SHORT:
+				return 2;
+			case TYPE_INT:
+			case TYPE_FLOAT:
+				return 4;
+			case TYPE_DOUBLE:
+				return 8;
+			default:
+				throw new IllegalArgumentException("Invalid type: " + type);
+		}
+	}
+
+	/**
+	 * Writes the given table to a file, without compression.
+	 *
+	 * @see #write(ResultsTable, File, boolean)
+	 */
+	public static void write(final ResultsTable table, final File file)
+		throws IOException
+	{
+		write(table, file, false);
+	}
+
+	/**
+	 * Writes the given table to a file.
+	 *
+	 * @param table The table to write. Row headers are not stored.
+	 * @param file The destination file, which is overwritten if it exists.
+	 * @param compress Whether to deflate-compress each column block.
+	 *          Compressed files are smaller, but their columns must be
+	 *          decompressed before {@link MappedResultsTable} can serve them.
+	 */
+	public static void write(final ResultsTable table, final File file,
+		final boolean compress) throws IOException
+	{
+		final int cols = table.getColumnCount();
+		final int rows = table.getRowCount();
+
+		// encode headers and choose a value type per column
+		final byte[][] headers = new byte[cols][];
+		final byte[] types = new byte[cols];
+		int dirSize = 0;
+		for (int c = 0; c < cols; c++) {
+			final String header = table.getColumnHeader(c);
+			headers[c] = header == null ? null : //
+				header.getBytes(StandardCharsets.UTF_8);
+			types[c] = narrowestType(table, c);
+			dirSize += ENTRY_SIZE + (headers[c] == null ? 0 : headers[c].length);
+		}
+
+		try (final RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.setLength(0);
+			final FileChannel channel = raf.getChannel();
+
+			// write the column blocks, recording where each one lands
+			final long[] offsets = new long[cols];
+			final long[] lengths = new long[cols];
+			long pos = align(HEADER_SIZE + dirSize);
+			for (int c = 0; c < cols; c++) {
+				offsets[c] = pos;
+				channel.position(pos);
+				lengths[c] = writeColumn(table, c, types[c], channel, compress);
+				pos = align(pos + lengths[c]);
+			}
+
+			// write the header and column directory
+			final ByteBuffer dir = ByteBuffer.allocate(HEADER_SIZE + dirSize);
+			dir.order(ORDER);
+			dir.putInt(MAGIC).putInt(VERSION).putInt(cols).putInt(rows);
+			for (int c = 0; c < cols; c++) {
+				dir.put(types[c]);
+				dir.put(compress ? COMPRESSION_DEFLATE : COMPRESSION_NONE);
+				dir.putShort((short) 0);
+				if (headers[c] == null) dir.putInt(-1);
+				else dir.putInt(headers[c].length).put(headers[c]);
+				dir.putLong(offsets[c]).putLong(lengths[c]);
+			}
+			dir.flip();
+			channel.write(dir, 0);
+		}
+	}
+
+	// -- Helper methods --
+
+	/** Rounds the given offset up to a multiple of 8 bytes. */
+	private static long align(final long offset) {
+		return (offset + 7) & ~7L;
+	}
+
+	private static byte narrowestType(final ResultsTable table, final int col) {
+		boolean integral = true, floatExact = true;
+		long min = 0, max = 0;
+		for (int r = 0; r < table.getRowCount(); r++) {
+			final double v = table.getValue(col, r);
+			if (integral) {
+				if (v != Math.rint(v) || Double.isInfinite(v) ||
+					(v == 0 && 1 / v < 0))
+				{
+					integral = false;
+				}
+				else {
+					min = Math.min(min, (long) v);
+					max = Math.max(max, (long) v);
+				}
+			}
+			if (floatExact && !Double.isNaN(v) && (float) v != v) {
+				floatExact = false;
+			}
+			if (!integral && !floatExact) return TYPE_DOUBLE;
+		}
+		if (integral) {
+			if (min >= Byte.MIN_VALUE && max <= Byte.MAX_VALUE) return TYPE_BYTE;
+			if (min >= Short.MIN_VALUE && max <= Short.MAX_VALUE) return TYPE_SHORT;
+			if (min >= Integer.MIN_VALUE && max <= Integer.MAX_VALUE) {
+				return TYPE_INT;
+			}
+		}
+		return floatExact ? TYPE_FLOAT : TYPE_DOUBLE;
+	}
+
+	/**
+	 * Writes one column block at the channel's current position.
+	 *
+	 * @return The number of bytes written.
+	 */
+	private static long writeColumn(final ResultsTable table, final int col,
+		final byte type, final FileChannel channel, final boolean compress)
+		throws IOException
+	{
+		final long start = channel.position();
+		final int size = typeSize(type);
+		final ByteBuffer buf = ByteBuffer.allocate(BLOCK_VALUES * size);
+		buf.order(ORDER);
+
+		final Deflater deflater = compress ? new Deflater() : null;
+		final OutputStream out = compress ? new DeflaterOutputStream(
+			new BufferedOutputStream(Channels.newOutputStream(channel)), deflater)
+			: null;
+		try {
+			final int rows = table.getRowCount();
+			for (int r = 0; r < rows;) {
+				buf.clear();
+				final int end = Math.min(rows, r + BLOCK_VALUES);
+				for (; r < end; r++) {
+					final double v = table.getValue(col, r);
+					switch (type) {
+						case TYPE_BYTE:
+							buf.put((byte) v);
+							break;
+						case TYPE_SHORT:
+							buf.putShort((short) v);
+							break;
+						case TYPE_INT:
+							buf.putInt((int) v);
+							break;
+						case TYPE_FLOAT:
+							buf.putFloat((float) v);
+							break;
+						default:
+							buf.putDouble(v);
+					}
+				}
+				buf.flip();
+				if (out != null) out.write(buf.array(), 0, buf.limit());
+				else while (buf.hasRemaining()) channel.write(buf);
+			}
+			if (out != null) {
+				// NB: Do not close the stream, since that would close the channel.
+				((DeflaterOutputStream) out).finish();
+				out.flush();
+			}
+		}
+		finally {
+			if (deflater != null) deflater.end();
+		}
+		return channel.position() - start;
+	}
+
+}
@@ -0,0 +1,559 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.table;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.zip.InflaterInputStream;
+
+import net.imagej.ImgPlus;
+import net.imagej.axis.Axes;
+import net.imagej.axis.AxisType;
+import net.imglib2.img.Img;
+import net.imglib2.type.numeric.real.DoubleType;
+
+/**
+ * Read-only {@link ResultsTable} backed by a memory-mapped file in
+ * {@link BinaryTableFormat}.
+ * <p>
+ * Uncompressed columns are served directly from the mapped file by
+ * {@link #getValue(int, int)}, so a table of any size can be opened without
+ * reading it into memory. Compressed columns are decompressed on first access.
+ * {@link #get(int)} returns a detached {@link DoubleColumn} copy of a column;
+ * changes to that copy are not reflected in the table. Operations which
+ * modify the table's values or structure throw
+ * {@link UnsupportedOperationException}.
+ * </p>
+ */
+public class MappedResultsTable extends AbstractList<DoubleColumn> implements
+	ResultsTable
+{
+
+	/** Size of each mapped segment of a column block. */
+	private static final int SEGMENT_BITS = 30;
+
+	private final int rowCount;
+
+	private final String[] headers;
+
+	private final ColumnData[] columns;
+
+	/** Opens the given {@link BinaryTableFormat} file. */
+	public MappedResultsTable(final File file) throws IOException {
+		try (final RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			final FileChannel channel = raf.getChannel();
+			final ByteBuffer head = read(channel, 0, BinaryTableFormat.HEADER_SIZE);
+			if (head.getInt() != BinaryTableFormat.MAGIC) {
+				throw new IOException("Not a binary table: " + file);
+			}
+			final int version = head.getInt();
+			if (version > BinaryTableFormat.VERSION) {
+				throw new IOException("Unsupported binary table version: " +
+					version);
+			}
+			final int colCount = head.getInt();
+			rowCount = head.getInt();
+			headers = new String[colCount];
+			columns = new ColumnData[colCount];
+
+			long pos = BinaryTableFormat.HEADER_SIZE;
+			for (int c = 0; c < colCount; c++) {
+				final ByteBuffer entry = read(channel, pos, 8);
+				final byte type = entry.get();
+				final byte compression = entry.get();
+				entry.getShort(); // reserved
+				final int headerLength = entry.getInt();
+				pos += 8;
+				if (headerLength >= 0) {
+					final ByteBuffer header = read(channel, pos, headerLength);
+					headers[c] = new String(header.array(), StandardCharsets.UTF_8);
+					pos += headerLength;
+				}
+				final ByteBuffer block = read(channel, pos, 16);
+				final long offset = block.getLong();
+				final long length = block.getLong();
+				pos += 16;
+				columns[c] = compression == BinaryTableFormat.COMPRESSION_NONE
+					? new MappedColumnData(channel, type, offset, length)
+					: new InflatedColumnData(file, type, offset, length);
+			}
+		}
+	}
+
+	// -- ResultsTable methods --
+
+	@Override
+	public double getValue(final int col, final int row) {
+		checkCol(col);
+		if (row < 0 || row >= rowCount) {
+			throw new IndexOutOfBoundsException("Row index out of range: " + row);
+		}
+		return columns[col].getValue(row);
+	}
+
+	@Override
+	public void setValue(final int col, final int row, final double value) {
+		throw readOnly();
+	}
+
+	@Override
+	public ImgPlus<DoubleType> img() {
+		final Img<DoubleType> img = new ResultsImg(this);
+		final AxisType[] axes = { Axes.X, Axes.Y };
+		return new ImgPlus<>(img, "Results", axes);
+	}
+
+	// -- Table methods --
+
+	@Override
+	public int getColumnCount() {
+		return columns.length;
+	}
+
+	@Override
+	public void setColumnCount(final int colCount) {
+		throw readOnly();
+	}
+
+	@Override
+	public DoubleColumn get(final String colHeader) {
+		return get(colIndex(colHeader));
+	}
+
+	@Override
+	public DoubleColumn appendColumn() {
+		throw readOnly();
+	}
+
+	@Override
+	public DoubleColumn appendColumn(final String header) {
+		throw readOnly();
+	}
+
+	@Override
+	public List<DoubleColumn> appendColumns(final int count) {
+		throw readOnly();
+	}
+
+	@Override
+	public List<DoubleColumn> appendColumns(final String... headers) {
+		throw readOnly();
+	}
+
+	@Override
+	public DoubleColumn insertColumn(final int col) {
+		throw readOnly();
+	}
+
+	@Override
+	public DoubleColumn insertColumn(final int col, final String header) {
+		throw readOnly();
+	}
+
+	@Override
+	public List<DoubleColumn> insertColumns(final int col, final int count) {
+		throw readOnly();
+	}
+
+	@Override
+	public List<DoubleColumn> insertColumns(final int col,
+		final String... headers)
+	{
+		throw readOnly();
+	}
+
+	@Override
+	public DoubleColumn removeColumn(final int col) {
+		throw readOnly();
+	}
+
+	@Override
+	public DoubleColumn removeColumn(final String header) {
+		throw readOnly();
+	}
+
+	@Override
+	public List<DoubleColumn> removeColumns(final int col, final int count) {
+		throw readOnly();
+	}
+
+	@Override
+	public List<DoubleColumn> removeColumns(final String... headers) {
+		throw readOnly();
+	}
+
+	@Override
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	@Override
+	public void setRowCount(final int rowCount) {
+		throw readOnly();
+	}
+
+	@Override
+	public void appendRow() {
+		throw readOnly();
+	}
+
+	@Override
+	public void appendRow(final String header) {
+		throw readOnly();
+	}
+
+	@Override
+	public void appendRows(final int count) {
+		throw readOnly();
+	}
+
+	@Override
+	public void appendRows(final String... headers) {
+		throw readOnly();
+	}
+
+	@Override
+	public void insertRow(final int row) {
+		throw readOnly();
+	}
+
+	@Override
+	public void insertRow(final int row, final String header) {
+		throw readOnly();
+	}
+
+	@Override
+	public void insertRows(final int row, final int count) {
+		throw readOnly();
+	}
+
+	@Override
+	public void insertRows(final int row, final String... headers) {
+		throw readOnly();
+	}
+
+	@Override
+	public void removeRow(final int row) {
+		throw readOnly();
+	}
+
+	@Override
+	public void removeRow(final String header) {
+		throw readOnly();
+	}
+
+	@Override
+	public void removeRows(final int row, final int count) {
+		throw readOnly();
+	}
+
+	@Override
+	public void removeRows(final String... headers) {
+		throw readOnly();
+	}
+
+	@Override
+	public void setDimensions(final int colCount, final int rowCount) {
+		throw readOnly();
+	}
+
+	@Override
+	public String getColumnHeader(final int col) {
+		checkCol(col);
+		return headers[col];
+	}
+
+	@Override
+	public void setColumnHeader(final int col, final String header) {
+		throw readOnly();
+	}
+
+	@Override
+	public int getColumnIndex(final String header) {
+		for (int c = 0; c < headers.length; c++) {
+			final String h = headers[c];
+			if (h == null ? header == null : h.equals(header)) return c;
+		}
+		return -1;
+	}
+
+	@Override
+	public String getRowHeader(final int row) {
+		return null;
+	}
+
+	@Override
+	public void setRowHeader(final int row, final String header) {
+		throw readOnly();
+	}
+
+	@Override
+	public int getRowIndex(final String header) {
+		return -1;
+	}
+
+	@Override
+	public void set(final int col, final int row, final Double value) {
+		throw readOnly();
+	}
+
+	@Override
+	public void set(final String colHeader, final int row, final Double value) {
+		throw readOnly();
+	}
+
+	@Override
+	public Double get(final int col, final int row) {
+		return getValue(col, row);
+	}
+
+	@Override
+	public Double get(final String colHeader, final int row) {
+		return getValue(colIndex(colHeader), row);
+	}
+
+	// -- List methods --
+
+	/**
+	 * Gets a copy of the given column. Note that this materializes the whole
+	 * column on the heap; use {@link #getValue(int, int)} to avoid that.
+	 */
+	@Override
+	public DoubleColumn get(final int col) {
+		checkCol(col);
+		final DoubleColumn column = new DoubleColumn(headers[col]);
+		column.setSize(rowCount);
+		final double[] values = column.getArray();
+		for (int r = 0; r < rowCount; r++) {
+			values[r] = columns[col].getValue(r);
+		}
+		return column;
+	}
+
+	@Override
+	public int size() {
+		return columns.length;
+	}
+
+	// -- Helper methods --
+
+	private void checkCol(final int col) {
+		if (col < 0 || col >= columns.length) {
+			throw new IndexOutOfBoundsException("Column index out of range: " +
+				col);
+		}
+	}
+
+	private int colIndex(final String header) {
+		final int col = getColumnIndex(header);
+		if (col < 0) {
+			throw new IndexOutOfBoundsException("No such column: " + header);
+		}
+		return col;
+	}
+
+	private UnsupportedOperationException readOnly() {
+		return new UnsupportedOperationException("Mapped table is read-only");
+	}
+
+	private static ByteBuffer read(final FileChannel channel, final long pos,
+		final int length) throws IOException
+	{
+		final ByteBuffer buf = ByteBuffer.allocate(length);
+		buf.order(BinaryTableFormat.ORDER);
+		while (buf.hasRemaining()) {
+			if (channel.read(buf, pos + buf.position()) < 0) {
+				throw new EOFException();
+			}
+		}
+		buf.flip();
+		return buf;
+	}
+
+	private static double decode(final ByteBuffer buf, final int index,
+		final byte type)
+	{
+		switch (type) {
+			case BinaryTableFormat.TYPE_BYTE:
+				return buf.get(index);
+			case BinaryTableFormat.TYPE_SHORT:
+				return buf.getShort(index);
+			case BinaryTableFormat.TYPE_INT:
+				return buf.getInt(index);
+			case BinaryTableFormat.TYPE_FLOAT:
+				return buf.getFloat(index);
+			default:
+				return buf.getDouble(index);
+		}
+	}
+
+	// -- Helper classes --
+
+	/** Source of the values of one column. */
+	private interface ColumnData {
+
+		double getValue(int row);
+	}
+
+	/** Column block mapped directly from the file, in 1 GB segments. */
+	private static class MappedColumnData implements ColumnData {
+
+		private final byte type;
+		private final int shift;
+		private final MappedByteBuffer[] segments;
+
+		private MappedColumnData(final FileChannel channel, final byte type,
+			final long offset, final long length) throws IOException
+		{
+			this.type = type;
+			shift = Integer.numberOfTrailingZeros(BinaryTableFormat.typeSize(type));
+			final long segmentSize = 1L << SEGMENT_BITS;
+			segments = new MappedByteBuffer[(int) ((length + segmentSize - 1) >>
+				SEGMENT_BITS)];
+			for (int s = 0; s < segments.length; s++) {
+				final long start = (long) s << SEGMENT_BITS;
+				final long size = Math.min(segmentSize, length - start);
+				segments[s] = channel.map(MapMode.READ_ONLY, offset + start, size);
+				segments[s].order(BinaryTableFormat.ORDER);
+			}
+		}
+
+		@Override
+		public double getValue(final int row) {
+			final long pos = (long) row << shift;
+			final int index = (int) (pos & ((1L << SEGMENT_BITS) - 1));
+			return decode(segments[(int) (pos >>> SEGMENT_BITS)], index, type);
+		}
+	}
+
+	/** Compressed column block, inflated into memory on first access. */
+	private class InflatedColumnData implements ColumnData {
+
+		private final File file;
+		private final byte type;
+		private final long offset;
+		private final long length;
+		private volatile double[] values;
+
+		private InflatedColumnData(final File file, final byte type,
+			final long offset, final long length)
+		{
+			this.file = file;
+			this.type = type;
+			this.offset = offset;
+			this.length = length;
+		}
+
+		@Override
+		public double getValue(final int row) {
+			double[] v = values;
+			if (v == null) v = inflate();
+			return v[row];
+		}
+
+		private synchronized double[] inflate() {
+			if (values != null) return values;
+			final int size = BinaryTableFormat.typeSize(type);
+			final double[] result = new double[rowCount];
+			try (final RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+				final FileChannel channel = raf.getChannel();
+				channel.position(offset);
+				final InputStream in = new InflaterInputStream(
+					new BoundedInputStream(Channels.newInputStream(channel), length));
+				final ByteBuffer buf = ByteBuffer.allocate(8192 * size);
+				buf.order(BinaryTableFormat.ORDER);
+				int r = 0;
+				while (r < rowCount) {
+					final int count = Math.min(8192, rowCount - r);
+					int n = 0;
+					while (n < count * size) {
+						final int read = in.read(buf.array(), n, count * size - n);
+						if (read < 0) throw new EOFException();
+						n += read;
+					}
+					for (int i = 0; i < count; i++) {
+						result[r + i] = decode(buf, i * size, type);
+					}
+					r += count;
+				}
+			}
+			catch (final IOException exc) {
+				throw new IllegalStateException("Cannot read column data from " +
+					file, exc);
+			}
+			values = result;
+			return result;
+		}
+	}
+
+	/** Input stream which reads at most a given number of bytes. */
+	private static class BoundedInputStream extends InputStream {
+
+		private final InputStream in;
+		private long remaining;
+
+		private BoundedInputStream(final InputStream in, final long limit) {
+			this.in = in;
+			remaining = limit;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (remaining <= 0) return -1;
+			final int b = in.read();
+			if (b >= 0) remaining--;
+			return b;
+		}
+
+		@Override
+		public int read(final byte[] b, final int off, final int len)
+			throws IOException
+		{
+			if (remaining <= 0) return -1;
+			final int n = in.read(b, off, (int) Math.min(len, remaining));
+			if (n > 0) remaining -= n;
+			return n;
+		}
+	}
+
+}
@@ -33,14 +33,18 @@ package net.imagej.table;
 
 import java.util.Iterator;
 
+import net.imglib2.AbstractLocalizingCursorInt;
 import net.imglib2.Cursor;
+import net.imglib2.FlatIterationOrder;
 import net.imglib2.Interval;
 import net.imglib2.IterableRealInterval;
+import net.imglib2.Point;
 import net.imglib2.Positionable;
 import net.imglib2.RandomAccess;
 import net.imglib2.RealPositionable;
 import net.imglib2.img.Img;
 import net.imglib2.img.ImgFactory;
+import net.imglib2.img.basictypeaccess.DoubleAccess;
 import net.imglib2.type.numeric.real.DoubleType;
 
 /**
@@ -60,14 +64,12 @@ public class ResultsImg implements Img<DoubleType> {
 
 	@Override
 	public RandomAccess<DoubleType> randomAccess() {
-		// TODO
-		throw new UnsupportedOperationException("Unimplemented");
+		return new ResultsRandomAccess();
 	}
 
 	@Override
 	public RandomAccess<DoubleType> randomAccess(final Interval interval) {
-		// TODO
-		throw new UnsupportedOperationException("Unimplemented");
+		return randomAccess();
 	}
 
 	// -- EuclideanSpace methods --
@@ -167,14 +169,12 @@ public class ResultsImg implements Img<DoubleType> {
 
 	@Override
 	public Cursor<DoubleType> cursor() {
-		// TODO
-		throw new UnsupportedOperationException("Unimplemented");
+		return new ResultsCursor();
 	}
 
 	@Override
 	public Cursor<DoubleType> localizingCursor() {
-		// TODO
-		throw new UnsupportedOperationException("Unimplemented");
+		return cursor();
 	}
 
 	@Override
@@ -184,21 +184,19 @@ public class ResultsImg implements Img<DoubleType> {
 
 	@Override
 	public DoubleType firstElement() {
-		return new DoubleType(table.get(0, 0));
+		return randomAccess().get();
 	}
 
 	@Override
 	public Object iterationOrder() {
-		// TODO
-		throw new UnsupportedOperationException("Unimplemented");
+		return new FlatIterationOrder(this);
 	}
 
 	// -- Iterable methods --
 
 	@Override
 	public Iterator<DoubleType> iterator() {
-		// TODO
-		throw new UnsupportedOperationException("Unimplemented");
+		return cursor();
 	}
 
 	// -- Img methods --
@@ -233,4 +231,125 @@ public class ResultsImg implements Img<DoubleType> {
 		return dim1() - 1;
 	}
 
+	// -- Helper classes --
+
+	/**
+	 * {@link RandomAccess} which reads table values on demand. The returned
+	 * {@link DoubleType} is linked to the table: setting it sets the table value
+	 * at the current position.
+	 */
+	private class ResultsRandomAccess extends Point implements
+		RandomAccess<DoubleType>, DoubleAccess
+	{
+
+		private final DoubleType value = new DoubleType(this);
+
+		private ResultsRandomAccess() {
+			super(2);
+		}
+
+		private ResultsRandomAccess(final ResultsRandomAccess ra) {
+			super(ra);
+		}
+
+		@Override
+		public DoubleType get() {
+			return value;
+		}
+
+		@Override
+		public double getValue(final int index) {
+			return table.getValue((int) position[0], (int) position[1]);
+		}
+
+		@Override
+		public void setValue(final int index, final double v) {
+			table.setValue((int) position[0], (int) position[1], v);
+		}
+
+		@Override
+		public ResultsRandomAccess copy() {
+			return new ResultsRandomAccess(this);
+		}
+
+		@Override
+		public ResultsRandomAccess copyRandomAccess() {
+			return copy();
+		}
+	}
+
+	/**
+	 * {@link Cursor} which reads table values on demand, in flat iteration order
+	 * (columns varying fastest). The returned {@link DoubleType} is linked to the
+	 * table, as for {@link ResultsRandomAccess}.
+	 */
+	private class ResultsCursor extends AbstractLocalizingCursorInt<DoubleType>
+		implements DoubleAccess
+	{
+
+		private final DoubleType value = new DoubleType(this);
+
+		private ResultsCursor() {
+			super(2);
+			reset();
+		}
+
+		private ResultsCursor(final ResultsCursor cursor) {
+			super(2);
+			position[0] = cursor.position[0];
+			position[1] = cursor.position[1];
+		}
+
+		@Override
+		public DoubleType get() {
+			return value;
+		}
+
+		@Override
+		public double getValue(final int index) {
+			return table.getValue(position[0], position[1]);
+		}
+
+		@Override
+		public void setValue(final int index, final double v) {
+			table.setValue(position[0], position[1], v);
+		}
+
+		@Override
+		public void fwd() {
+			if (++position[0] > max0()) {
+				position[0] = 0;
+				position[1]++;
+			}
+		}
+
+		@Override
+		public void jumpFwd(final long steps) {
+			final long index = (long) position[1] * dim0() + position[0] + steps;
+			position[0] = (int) (index % dim0());
+			position[1] = (int) (index / dim0());
+		}
+
+		@Override
+		public void reset() {
+			position[0] = -1;
+			position[1] = 0;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return position[1] < max1() || position[0] < max0();
+		}
+
+		@Override
+		public ResultsCursor copy() {
+			return new ResultsCursor(this);
+		}
+
+		@Override
+		public ResultsCursor copyCursor() {
+			return copy();
+		}
+	}
+
 }
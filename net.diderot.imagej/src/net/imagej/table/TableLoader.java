@@ -31,7 +31,6 @@
 
 package net.imagej.table;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
@@ -39,69 +38,150 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
-import java.io.StreamTokenizer;
 import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.scijava.thread.ThreadService;
 
 // note: adapted from Wayne Rasband's IJ1 TextReader class
 
 /**
  * Loads a text file containing comma separated values into a
  * {@link ResultsTable}.
- * 
+ * <p>
+ * The input is read in a single streaming pass, appending values to growable
+ * {@link DoubleColumn}s, so memory use is bounded by the size of the parsed
+ * values rather than the size of the text. If the first line consists solely
+ * of non-numeric tokens, it is used as the column headers.
+ * </p>
+ * <p>
+ * When constructed with a {@link ThreadService}, lines are parsed in parallel
+ * chunks of {@link #getChunkSize()} lines, while still being appended to the
+ * table in input order.
+ * </p>
+ *
  * @author Barry DeZonia
  * @author Wayne Rasband
  */
 public class TableLoader {
 
+	/** Default number of lines per chunk when parsing in parallel. */
+	public static final int DEFAULT_CHUNK_SIZE = 4096;
+
 	// -- instance variables --
 
+	private final ThreadService threadService;
+
+	private int chunkSize = DEFAULT_CHUNK_SIZE;
+
 	private int rows, cols;
 
-	// -- private legacy text file support methods --
+	private List<DoubleColumn> columns;
+
+	// -- constructors --
+
+	/** Creates a table loader which parses on the calling thread. */
+	public TableLoader() {
+		this(null);
+	}
 
 	/**
-	 * Loads the values of a table stored in a text file as a ResultsTable. Given
-	 * BufferedInputStream must be marked to hold entire contents in buffer. This
-	 * method rewinds the buggered stream so it can read it twice.
-	 * 
-	 * @param str The BufferedInputStream containing the data of the text table
-	 * @return A ResultsTable containing the values (and headers)
+	 * Creates a table loader which parses chunks of lines in parallel using the
+	 * given {@link ThreadService}.
+	 */
+	public TableLoader(final ThreadService threadService) {
+		this.threadService = threadService;
+	}
+
+	// -- TableLoader methods --
+
+	/** Gets the number of lines per chunk when parsing in parallel. */
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	/** Sets the number of lines per chunk when parsing in parallel. */
+	public void setChunkSize(final int chunkSize) {
+		if (chunkSize <= 0) {
+			throw new IllegalArgumentException("Invalid chunk size: " + chunkSize);
+		}
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Loads the values of a table stored in a text file as a ResultsTable.
+	 *
+	 * @param r The Reader containing the data of the text table
+	 * @return A ResultsTable containing the values (and headers), or null if
+	 *         the input contains no values
 	 * @throws IOException
 	 */
-	public ResultsTable valuesFromTextFile(BufferedInputStream str)
-		throws IOException
-	{
-		countRowsAndCols(str);
-		if (rows == 0) return null;
-		ResultsTable values = new DefaultResultsTable(cols, rows);
-		str.reset();
-		read(str, values);
-		int firstRowNaNCount = 0;
-		for (int i = 0; i < cols; i++) {
-			if (Double.isNaN(values.getValue(i, 0))) firstRowNaNCount++;
-		}
-		if (firstRowNaNCount == cols) { // assume first row is header
-			// throw away first row of non-values
-			rows--;
-			ResultsTable oldValues = values;
-			values = new DefaultResultsTable(cols, rows);
+	public ResultsTable valuesFromTextFile(final Reader r) throws IOException {
+		final BufferedReader in =
+			r instanceof BufferedReader ? (BufferedReader) r : new BufferedReader(r);
+		rows = cols = 0;
+		columns = new ArrayList<>();
+
+		// the first line determines the column count, and may be a header
+		int lineNo = 0;
+		String[] first = null;
+		String line;
+		while (first == null && (line = in.readLine()) != null) {
+			lineNo++;
+			final String[] tokens = tokenize(line);
+			if (tokens.length > 0) first = tokens;
+		}
+		if (first == null) return null;
+		cols = first.length;
+		boolean header = true;
+		for (final String token : first) {
+			if (!Double.isNaN(parse(token))) header = false;
+		}
+		for (final String token : first) {
+			final boolean numeric = !Double.isNaN(parse(token));
+			columns.add(new DoubleColumn(numeric ? null : token));
+		}
+		if (!header) {
+			final double[][] values = new double[cols][1];
 			for (int c = 0; c < cols; c++) {
-				String colHeader = oldValues.getColumnHeader(c);
-				values.setColumnHeader(c, colHeader);
-			}
-			for (int row = 0; row < rows; row++) {
-				for (int col = 0; col < cols; col++) {
-					double val = oldValues.getValue(col, row + 1);
-					values.setValue(col, row, val);
-				}
+				values[c][0] = parse(first[c]);
 			}
+			append(values);
 		}
+
+		if (threadService == null) readSerial(in, lineNo);
+		else readParallel(in, lineNo);
+
+		final DefaultResultsTable values = new DefaultResultsTable();
+		values.addAll(columns);
+		values.setRowCount(rows);
+		columns = null;
 		return values;
 	}
 
+	/**
+	 * Loads the values of a table stored in a text stream as a ResultsTable.
+	 *
+	 * @param str The InputStream containing the data of the text table
+	 * @return A ResultsTable containing the values (and headers)
+	 * @throws IOException
+	 */
+	public ResultsTable valuesFromTextFile(final InputStream str)
+		throws IOException
+	{
+		return valuesFromTextFile(new InputStreamReader(str));
+	}
+
 	/**
 	 * Loads the values of a table stored in a text file as a ResultsTable.
-	 * 
+	 *
 	 * @param urlString The url (as a string) of the file containing the text
 	 *          table
 	 * @return A ResultsTable containing the values (and headers)
@@ -113,96 +193,216 @@ public class TableLoader {
 
 	/**
 	 * Loads the values of a table stored in a text file as a ResultsTable.
-	 * 
+	 *
 	 * @param file The File containing the text table
 	 * @return A ResultsTable containing the values (and headers)
 	 * @throws IOException
 	 */
 	public ResultsTable valuesFromTextFile(File file) throws IOException {
-		FileInputStream fstr = new FileInputStream(file);
-		BufferedInputStream stream = new BufferedInputStream(fstr);
-		stream.mark((int) file.length());
-		return valuesFromTextFile(stream);
+		try (final InputStream stream = new FileInputStream(file)) {
+			return valuesFromTextFile(stream);
+		}
 	}
 
 	/**
 	 * Loads the values of a table stored at a URL as a ResultsTable.
-	 * 
+	 *
 	 * @param url The URL location of the file containing the text table
 	 * @return A ResultsTable containing the values (and headers)
 	 * @throws IOException
 	 */
 	public ResultsTable valuesFromTextFile(URL url) throws IOException {
-		InputStream istr = url.openStream();
-		BufferedInputStream stream = new BufferedInputStream(istr);
-		stream.mark(8000000); // about 8 megabytes: FIXME HACK
-		return valuesFromTextFile(stream);
+		try (final InputStream stream = url.openStream()) {
+			return valuesFromTextFile(stream);
+		}
 	}
 
 	// -- private helpers -
 
-	private void countRowsAndCols(InputStream str) throws IOException {
-		Reader r = new BufferedReader(new InputStreamReader(str));
-		StreamTokenizer tok = new StreamTokenizer(r);
-		tok.resetSyntax();
-		tok.wordChars(43, 43);
-		tok.wordChars(45, 126);
-		tok.whitespaceChars(0, 42);
-		tok.whitespaceChars(44, 44);
-		tok.whitespaceChars(127, 255);
-		tok.eolIsSignificant(true);
-
-		int words = 0, wordsPrevLine = 0;
-		while (tok.nextToken() != StreamTokenizer.TT_EOF) {
-			switch (tok.ttype) {
-				case StreamTokenizer.TT_EOL:
-					rows++;
-					if (words == 0) rows--; // ignore empty lines
-					if (rows == 1 && words > 0) cols = words;
-					if (rows > 1 && words != 0 && words != wordsPrevLine) {
-						throw new IOException("Line " + rows +
-							" is not the same length as the first line.");
-					}
-					if (words != 0) wordsPrevLine = words;
-					words = 0;
-					break;
-				case StreamTokenizer.TT_WORD:
-					// System.out.println("read word " + tok.sval);
-					words++;
-					break;
+	private void readSerial(final BufferedReader in, int lineNo)
+		throws IOException
+	{
+		final String[] lines = new String[chunkSize];
+		int n;
+		while ((n = readChunk(in, lines)) > 0) {
+			append(parseLines(lines, n, lineNo + 1));
+			lineNo += n;
+		}
+	}
+
+	private void readParallel(final BufferedReader in, int lineNo)
+		throws IOException
+	{
+		// bound the number of chunks in flight, to bound memory use
+		final int maxPending = 2 * Runtime.getRuntime().availableProcessors();
+		final ArrayDeque<Chunk> pending = new ArrayDeque<>();
+		try {
+			while (true) {
+				final String[] lines = new String[chunkSize];
+				final int n = readChunk(in, lines);
+				if (n == 0) break;
+				final Chunk chunk = new Chunk(lines, n, lineNo + 1);
+				lineNo += n;
+				chunk.submit();
+				pending.add(chunk);
+				if (pending.size() >= maxPending) append(pending.remove().values());
+			}
+			while (!pending.isEmpty()) {
+				append(pending.remove().values());
 			}
 		}
-		if (words == cols) rows++; // last line does not end with EOL
-	}
-
-	private void read(InputStream str, ResultsTable values) throws IOException {
-		Reader r = new BufferedReader(new InputStreamReader(str));
-		StreamTokenizer tok = new StreamTokenizer(r);
-		tok.resetSyntax();
-		tok.wordChars(43, 43);
-		tok.wordChars(45, 126);
-		tok.whitespaceChars(0, 42);
-		tok.whitespaceChars(44, 44);
-		tok.whitespaceChars(127, 255);
-
-		int row = 0, col = 0;
-		while (tok.nextToken() != StreamTokenizer.TT_EOF) {
-			if (tok.ttype == StreamTokenizer.TT_WORD) {
-				double value;
-				try {
-					value = Double.parseDouble(tok.sval);
-				}
-				catch (NumberFormatException e) {
-					value = Double.NaN;
-					if (row == 0) values.setColumnHeader(col, tok.sval);
-				}
-				values.setValue(col, row, value);
-				col++;
-				if (col == cols) {
-					row++;
-					col = 0;
-				}
+		finally {
+			for (final Chunk chunk : pending) {
+				chunk.withdraw();
 			}
 		}
 	}
+
+	/** Reads up to {@code lines.length} lines; returns the number read. */
+	private int readChunk(final BufferedReader in, final String[] lines)
+		throws IOException
+	{
+		int n = 0;
+		String line;
+		while (n < lines.length && (line = in.readLine()) != null) {
+			lines[n++] = line;
+		}
+		return n;
+	}
+
+	/**
+	 * Parses the given lines into a column-major block of values, skipping
+	 * empty lines.
+	 */
+	private double[][] parseLines(final String[] lines, final int count,
+		final int firstLine) throws IOException
+	{
+		final double[][] values = new double[cols][count];
+		int n = 0;
+		for (int i = 0; i < count; i++) {
+			final String[] tokens = tokenize(lines[i]);
+			if (tokens.length == 0) continue; // ignore empty lines
+			if (tokens.length != cols) {
+				throw new IOException("Line " + (firstLine + i) +
+					" is not the same length as the first line.");
+			}
+			for (int c = 0; c < cols; c++) {
+				values[c][n] = parse(tokens[c]);
+			}
+			n++;
+		}
+		if (n < count) {
+			for (int c = 0; c < cols; c++) {
+				values[c] = Arrays.copyOf(values[c], n);
+			}
+		}
+		return values;
+	}
+
+	/** Appends a column-major block of values to the columns. */
+	private void append(final double[][] values) {
+		final int count = values[0].length;
+		for (int c = 0; c < cols; c++) {
+			final DoubleColumn column = columns.get(c);
+			column.ensureCapacity(rows + count);
+			for (int i = 0; i < count; i++) {
+				column.addValue(values[c][i]);
+			}
+		}
+		rows += count;
+	}
+
+	/**
+	 * Splits a line into tokens. Tokens consist of the characters {@code +},
+	 * {@code -} through {@code ~} and all non-Latin-1 characters; everything
+	 * else (including commas, spaces and quotes) separates tokens.
+	 */
+	private static String[] tokenize(final String line) {
+		final ArrayList<String> tokens = new ArrayList<>();
+		final int len = line.length();
+		int start = -1;
+		for (int i = 0; i <= len; i++) {
+			final boolean word = i < len && isWordChar(line.charAt(i));
+			if (word && start < 0) start = i;
+			else if (!word && start >= 0) {
+				tokens.add(line.substring(start, i));
+				start = -1;
+			}
+		}
+		return tokens.toArray(new String[tokens.size()]);
+	}
+
+	private static boolean isWordChar(final char c) {
+		return c == 43 || (c >= 45 && c <= 126) || c > 255;
+	}
+
+	private static double parse(final String token) {
+		try {
+			return Double.parseDouble(token);
+		}
+		catch (final NumberFormatException e) {
+			return Double.NaN;
+		}
+	}
+
+
+	// -- Helper classes --
+
+	/**
+	 * A chunk of lines parsed on the {@link ThreadService}, or by the reading
+	 * thread itself if no thread has started on it by the time its values are
+	 * needed. This keeps a reader running on the pool's own threads from
+	 * waiting for parse tasks which cannot start.
+	 */
+	private class Chunk implements Callable<double[][]> {
+
+		private final String[] lines;
+		private final int count;
+		private final int firstLine;
+		private final AtomicBoolean claimed = new AtomicBoolean();
+		private Future<double[][]> future;
+
+		public Chunk(final String[] lines, final int count, final int firstLine) {
+			this.lines = lines;
+			this.count = count;
+			this.firstLine = firstLine;
+		}
+
+		public void submit() {
+			future = threadService.run(this);
+		}
+
+		/** Gets the parsed values, parsing them here if no thread has begun. */
+		public double[][] values() throws IOException {
+			if (claimed.compareAndSet(false, true)) {
+				future.cancel(false);
+				return parseLines(lines, count, firstLine);
+			}
+			try {
+				return future.get();
+			}
+			catch (final InterruptedException exc) {
+				Thread.currentThread().interrupt();
+				throw new IOException(exc);
+			}
+			catch (final ExecutionException exc) {
+				final Throwable cause = exc.getCause();
+				if (cause instanceof IOException) throw (IOException) cause;
+				throw new IOException(cause);
+			}
+		}
+
+		/** Cancels the parsing of this chunk, unless it has begun. */
+		public void withdraw() {
+			if (claimed.compareAndSet(false, true)) future.cancel(false);
+		}
+
+		@Override
+		public double[][] call() throws IOException {
+			// NB: Skip the work if the reading thread has claimed this chunk.
+			return claimed.compareAndSet(false, true) ? //
+				parseLines(lines, count, firstLine) : null;
+		}
+	}
+
 }
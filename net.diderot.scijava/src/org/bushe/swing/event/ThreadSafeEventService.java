@@ -15,10 +15,12 @@
  */
 package org.bushe.swing.event;
 
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
 import java.lang.reflect.Type;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.WildcardType;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -52,6 +54,10 @@ import org.bushe.swing.exception.SwingException;
  * the lock is released and the time that the listener is called, the unsubscribing thread can unsubscribe, resulting
  * in an unsubscribed object receiving notification of the event after it was unsubscribed (but just once).
  * <p/>
+ * Publishing by event class does not take the lock at all: the subscribers and veto subscribers of each event class
+ * are resolved once into a copy-on-write snapshot, which is discarded whenever anyone subscribes or unsubscribes.
+ * Snapshots refer to their subscribers weakly, so they do not keep weakly subscribed objects alive.
+ * <p/>
  * On event publication, subscribers are called in the order in which they subscribed.
  * <p/>
  * Events and/or topic data can be cached, but are not by default.  To cache events or topic data, call
@@ -180,6 +186,12 @@ public class ThreadSafeEventService implements EventService {
    private TimerTask cleanupTimerTask;
    private static final Comparator PRIORITIZED_SUBSCRIBER_COMPARATOR = new PrioritizedSubscriberComparator();
    private boolean hasEverUsedPrioritized;
+   //Copy-on-write, only replaced while holding the listenerLock
+   private volatile Map<Class, SubscriberSnapshot[]> snapshotsByEventClass = Collections.emptyMap();
+   //Receives the references of snapshots to subscribers that were garbage collected
+   private final ReferenceQueue snapshotReferenceQueue = new ReferenceQueue();
+   //Set once any cache size is made positive, so publication can skip the cache until then
+   private volatile boolean hasEverCached;
 
    /** Creates a ThreadSafeEventService that does not monitor timing of handlers. */
    public ThreadSafeEventService() {
@@ -668,6 +680,7 @@ public class ThreadSafeEventService implements EventService {
             }
          }
          currentSubscribers.add(subscriber);
+         clearSnapshots();
          if (isWeakProxySubscriber || isWeakRef) {
             incWeakRefPlusProxySubscriberCount();
          }
@@ -758,6 +771,7 @@ public class ThreadSafeEventService implements EventService {
          throw new IllegalArgumentException("Can't unsubscribe null subscriber to " + o);
       }
       synchronized (listenerLock) {
+         clearSnapshots();
          return removeFromSetResolveWeakReferences(subscriberMap, o, subscriber);
       }
    }
@@ -844,6 +858,7 @@ public class ThreadSafeEventService implements EventService {
          throw new IllegalArgumentException("Can't unsubscribe null veto listener to " + o);
       }
       synchronized (listenerLock) {
+         clearSnapshots();
          return removeFromSetResolveWeakReferences(vetoListenerMap, o, vl);
       }
    }
@@ -901,7 +916,8 @@ public class ThreadSafeEventService implements EventService {
       if (event == null) {
          throw new IllegalArgumentException("Cannot publish null event.");
       }
-      publish(event, null, null, getSubscribers(event.getClass()), getVetoSubscribers(event.getClass()), null);
+      SubscriberSnapshot[] snapshot = getSnapshot(event.getClass());
+      publish(event, null, null, snapshot[0], snapshot[1], null);
    }
 
    /** @see EventService#publish(java.lang.reflect.Type, Object)  */
@@ -927,8 +943,9 @@ public class ThreadSafeEventService implements EventService {
     * @param event the event to publish, null if publishing on a topic
     * @param topic if publishing on a topic, the topic to publish on, else null
     * @param eventObj if publishing on a topic, the eventObj to publish, else null
-    * @param subscribers the subscribers to publish to - must be a snapshot copy
-    * @param vetoSubscribers the veto subscribers to publish to - must be a snapshot copy.
+    * @param subscribers the subscribers to publish to - must be a snapshot copy, whose elements may be null if they
+    * were garbage collected (see {@link #getSubscriberSnapshot(Class)})
+    * @param vetoSubscribers the veto subscribers to publish to - must be a snapshot copy, whose elements may be null.
     * @param callingStack the stack that called this publication, helpful for reporting errors on other threads
     * @throws IllegalArgumentException if eh or o is null
     */
@@ -964,6 +981,9 @@ public class ThreadSafeEventService implements EventService {
          setStatus(PublicationStatus.Publishing, event, topic, eventObj);
          for (int i = 0; i < subscribers.size(); i++) {
             Object eh = subscribers.get(i);
+            if (eh == null) {
+               continue;//weakly subscribed and garbage collected since the snapshot was taken
+            }
             if (event != null) {
                EventSubscriber eventSubscriber = (EventSubscriber) eh;
                long start = System.currentTimeMillis();
@@ -1060,8 +1080,11 @@ public class ThreadSafeEventService implements EventService {
    private boolean checkVetoSubscribers(Object event, String topic, Object eventObj, List vetoSubscribers,
            StackTraceElement[] callingStack) {
       if (vetoSubscribers != null && !vetoSubscribers.isEmpty()) {
-         for (Iterator vlIter = vetoSubscribers.iterator(); vlIter.hasNext();) {
-            Object vetoer = vlIter.next();
+         for (int i = 0; i < vetoSubscribers.size(); i++) {
+            Object vetoer = vetoSubscribers.get(i);
+            if (vetoer == null) {
+               continue;
+            }
             VetoEventListener vl = null;
             VetoTopicEventListener vtl = null;
             if (event == null) {
@@ -1115,6 +1138,9 @@ public class ThreadSafeEventService implements EventService {
     * @param eventObj the eventObj about to be published on a topic, null if the event is non-null
     */
    protected void addEventToCache(Object event, String topic, Object eventObj) {
+      if (!hasEverCached) {
+         return;
+      }
       //Taking the listener lock here, since a listener that is now subscribing will want
       //this event since they are not in this subscriber list.
       synchronized (listenerLock) {
@@ -1181,6 +1207,70 @@ public class ThreadSafeEventService implements EventService {
 
    }
 
+   /**
+    * Returns the subscribers of an event class, like {@link #getSubscribers(Class)}, but from a snapshot that is
+    * shared between publications.  Unless someone subscribed or unsubscribed since the last publication of the
+    * class, this takes no lock and allocates nothing.
+    * <p/>
+    * The snapshot is read-only, and its elements are null for subscribers that were garbage collected after it was
+    * taken.
+    *
+    * @param eventClass the class of the published event
+    *
+    * @return the subscribers to eventClass, in publication order
+    */
+   protected List getSubscriberSnapshot(Class eventClass) {
+      return getSnapshot(eventClass)[0];
+   }
+
+   /**
+    * Returns the veto subscribers of an event class, like {@link #getVetoSubscribers(Class)}, but from a shared
+    * snapshot.  See {@link #getSubscriberSnapshot(Class)}.
+    *
+    * @param eventClass the class of the published event
+    *
+    * @return the veto subscribers to eventClass, in publication order
+    */
+   protected List getVetoSubscriberSnapshot(Class eventClass) {
+      return getSnapshot(eventClass)[1];
+   }
+
+   /**
+    * Returns the subscribers and veto subscribers of an event class, taking new snapshots if there are none or if
+    * a subscriber has been garbage collected since.
+    */
+   private SubscriberSnapshot[] getSnapshot(Class eventClass) {
+      if (snapshotReferenceQueue.poll() != null) {
+         synchronized (listenerLock) {
+            while (snapshotReferenceQueue.poll() != null) {
+               //drain, all snapshots are retaken below
+            }
+            clearSnapshots();
+         }
+      }
+      SubscriberSnapshot[] snapshot = snapshotsByEventClass.get(eventClass);
+      if (snapshot != null) {
+         return snapshot;
+      }
+      synchronized (listenerLock) {
+         //getSubscribers() also unsubscribes garbage collected subscribers
+         snapshot = new SubscriberSnapshot[] {
+                 new SubscriberSnapshot(getSubscribers(eventClass), snapshotReferenceQueue),
+                 new SubscriberSnapshot(getVetoSubscribers(eventClass), snapshotReferenceQueue)};
+         Map<Class, SubscriberSnapshot[]> snapshots = new HashMap<Class, SubscriberSnapshot[]>(snapshotsByEventClass);
+         snapshots.put(eventClass, snapshot);
+         snapshotsByEventClass = snapshots;
+         return snapshot;
+      }
+   }
+
+   /** Discards all snapshots.  Callers must hold the listenerLock. */
+   private void clearSnapshots() {
+      if (!snapshotsByEventClass.isEmpty()) {
+         snapshotsByEventClass = Collections.emptyMap();
+      }
+   }
+
    /** @see EventService#getSubscribersToClass(Class) */
    public <T> List<T> getSubscribersToClass(Class<T> eventClass) {
       synchronized (listenerLock) {
@@ -1663,6 +1753,9 @@ public class ThreadSafeEventService implements EventService {
    public void setDefaultCacheSizePerClassOrTopic(int defaultCacheSizePerClassOrTopic) {
       synchronized (cacheLock) {
          this.defaultCacheSizePerClassOrTopic = defaultCacheSizePerClassOrTopic;
+         if (defaultCacheSizePerClassOrTopic > 0) {
+            hasEverCached = true;
+         }
       }
    }
 
@@ -1697,6 +1790,9 @@ public class ThreadSafeEventService implements EventService {
          }
          rawCacheSizesForEventClass.put(eventClass, new Integer(cacheSize));
          rawCacheSizesForEventClassChanged = true;
+         if (cacheSize > 0) {
+            hasEverCached = true;
+         }
       }
    }
 
@@ -1778,6 +1874,9 @@ public class ThreadSafeEventService implements EventService {
          }
          rawCacheSizesForTopic.put(topicName, new Integer(cacheSize));
          rawCacheSizesForTopicChanged = true;
+         if (cacheSize > 0) {
+            hasEverCached = true;
+         }
       }
    }
 
@@ -1802,6 +1901,9 @@ public class ThreadSafeEventService implements EventService {
          PatternWrapper patternWrapper = new PatternWrapper(pattern);
          rawCacheSizesForPattern.put(patternWrapper, new Integer(cacheSize));
          rawCacheSizesForPatternChanged = true;
+         if (cacheSize > 0) {
+            hasEverCached = true;
+         }
       }
    }
 
@@ -2063,6 +2165,7 @@ public class ThreadSafeEventService implements EventService {
 
    protected void removeProxySubscriber(ProxySubscriber proxy, Iterator iter) {
       iter.remove();
+      clearSnapshots();
       proxy.proxyUnsubscribed();
       decWeakRefPlusProxySubscriberCount();
    }
@@ -2151,6 +2254,33 @@ public class ThreadSafeEventService implements EventService {
       }      
    }
 
+   /**
+    * A read-only list of resolved subscribers (or veto subscribers), which refers to them weakly.  Strongly subscribed
+    * elements stay reachable through the subscriber maps for as long as they are subscribed, and the snapshot is
+    * discarded when they are unsubscribed; weakly subscribed ones read as null once they are garbage collected.
+    */
+   private static class SubscriberSnapshot extends AbstractList {
+      private final WeakReference[] subscribers;
+
+      SubscriberSnapshot(List resolvedSubscribers, ReferenceQueue queue) {
+         int size = resolvedSubscribers == null ? 0 : resolvedSubscribers.size();
+         subscribers = new WeakReference[size];
+         for (int i = 0; i < size; i++) {
+            subscribers[i] = new WeakReference(resolvedSubscribers.get(i), queue);
+         }
+      }
+
+      @Override
+      public Object get(int index) {
+         return subscribers[index].get();
+      }
+
+      @Override
+      public int size() {
+         return subscribers.length;
+      }
+   }
+
    private static class PrioritizedSubscriberComparator implements Comparator<Prioritized> {
       public int compare(Prioritized prioritized1, Prioritized prioritized2) {
          if (prioritized1 == null) {
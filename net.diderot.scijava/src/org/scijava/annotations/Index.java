@@ -90,7 +90,7 @@ public class Index<A extends Annotation> implements Iterable<IndexItem<A>> {
 	}
 
 	static final String INDEX_PREFIX = "META-INF/json/";
-	private static final String LEGACY_INDEX_PREFIX = "META-INF/annotations/";
+	static final String LEGACY_INDEX_PREFIX = "META-INF/annotations/";
 
 	private final Class<A> annotation;
 	private final ClassLoader loader;
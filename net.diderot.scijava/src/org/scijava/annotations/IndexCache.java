@@ -0,0 +1,533 @@
+/*
+ * #%L
+ * SciJava Common shared library for SciJava software.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.annotations;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+
+import org.scijava.util.FileUtils;
+
+/**
+ * A persistent, binary cache of annotation indexes.
+ * <p>
+ * Reading an {@link Index} enumerates the index resources of every class path
+ * element and parses them character by character. This cache instead stores
+ * the parsed items of an annotation's index in one file per class path, keyed
+ * by a fingerprint of the class path: the paths, sizes and modification times
+ * of its JAR files, and of the index files within its directories. As long as
+ * none of them change, the items are loaded with a single read of the cache
+ * file, without opening any JAR files.
+ * </p>
+ * <p>
+ * JAR files referenced by the {@code Class-Path} of the manifests of the class
+ * path are recorded in the cache file when it is written, and checked in the
+ * same way when it is read.
+ * </p>
+ * <p>
+ * Since the cached items decide which plugins are found, the cache directory
+ * must be private: it is created accessible to its owner only, and the cache
+ * is bypassed if the directory is not owned by the current user, or if others
+ * may write to it.
+ * </p>
+ * <p>
+ * Class paths which cannot be fingerprinted (i.e., of class loaders other than
+ * the system class loader and {@link URLClassLoader}s of local files) are not
+ * cached. Failures to read or write the cache are never fatal: the index is
+ * then read as usual.
+ * </p>
+ */
+public class IndexCache {
+
+	/** Magic number identifying cache files: "SJIX". */
+	private static final int MAGIC = 0x534a4958;
+
+	/** Current version of the cache file format. */
+	private static final int VERSION = 2;
+
+	/** Number of cache files to keep per annotation, most recent first. */
+	private static final int MAX_FILES = 8;
+
+	private static final byte STRING = 's', LONG = 'j', DOUBLE = 'd',
+			BOOLEAN = 'z', LIST = 'l', MAP = 'm';
+
+	private final File directory;
+
+	/** Whether the directory was found to be private, once it was checked. */
+	private volatile Boolean usable;
+
+	/** Creates a cache which stores its files in the given directory. */
+	public IndexCache(final File directory) {
+		this.directory = directory;
+	}
+
+	/** Gets the directory in which the cache files are stored. */
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Loads the items of the given annotation's index, as {@link Index#load}
+	 * would, from the cache if it is up to date. Otherwise, the index is read
+	 * and the cache updated.
+	 */
+	public <A extends Annotation> List<IndexItem<A>> load(
+		final Class<A> annotation, final ClassLoader loader)
+	{
+		// NB: Let Eclipse projects update their indexes before fingerprinting.
+		EclipseHelper.updateAnnotationIndex(loader);
+
+		final List<File> classPath = isUsable() ? classPath(loader) : null;
+		final String fingerprint = classPath == null ? null : //
+			fingerprint(annotation, classPath);
+		final File file = fingerprint == null ? null : new File(directory,
+			annotation.getName() + "-" + Long.toHexString(hash(fingerprint)) +
+				".idx");
+		if (file != null && file.isFile()) {
+			try {
+				return read(file, annotation, loader, fingerprint);
+			}
+			catch (final IOException | RuntimeException exc) {
+				// NB: Unreadable or corrupt cache file; read the index instead.
+			}
+		}
+
+		final List<IndexItem<A>> items = new ArrayList<>();
+		final List<String> classNames = new ArrayList<>();
+		final List<Map<Object, Object>> values = new ArrayList<>();
+		for (final IndexItem<A> item : Index.load(annotation, loader)) {
+			items.add(item);
+			classNames.add(item.className());
+			values.add(item.values());
+		}
+		if (file != null) {
+			try {
+				write(file, fingerprint, manifestClassPath(classPath), classNames,
+					values);
+				prune(annotation);
+			}
+			catch (final IOException | RuntimeException exc) {
+				// NB: The cache is only an optimization.
+			}
+		}
+		return items;
+	}
+
+	// -- Helper methods - directory --
+
+	/**
+	 * Gets whether the cache directory can be trusted, creating it if needed.
+	 * The answer is remembered, as checking the owner is relatively slow.
+	 */
+	private boolean isUsable() {
+		Boolean result = usable;
+		if (result == null) {
+			try {
+				result = preparePrivateDirectory(directory.toPath());
+			}
+			catch (final IOException | RuntimeException exc) {
+				result = false;
+			}
+			usable = result;
+		}
+		return result;
+	}
+
+	/**
+	 * Creates the given directory accessible to its owner only, if it does not
+	 * exist yet, then checks that it is owned by the current user and cannot be
+	 * written by others. Without POSIX permissions (e.g., on Windows), the
+	 * directory is only created.
+	 */
+	private static boolean preparePrivateDirectory(final Path dir)
+		throws IOException
+	{
+		final boolean posix = FileSystems.getDefault()
+			.supportedFileAttributeViews().contains("posix");
+		if (!Files.isDirectory(dir, LinkOption.NOFOLLOW_LINKS)) {
+			final Path parent = dir.toAbsolutePath().getParent();
+			if (parent != null) Files.createDirectories(parent);
+			if (posix) {
+				Files.createDirectory(dir, PosixFilePermissions.asFileAttribute(
+					PosixFilePermissions.fromString("rwx------")));
+			}
+			else Files.createDirectory(dir);
+		}
+		if (!posix) return true;
+
+		final UserPrincipal user = dir.getFileSystem()
+			.getUserPrincipalLookupService().lookupPrincipalByName(System
+				.getProperty("user.name"));
+		if (!user.equals(Files.getOwner(dir, LinkOption.NOFOLLOW_LINKS))) {
+			return false;
+		}
+		final Set<PosixFilePermission> perms = Files.getPosixFilePermissions(dir,
+			LinkOption.NOFOLLOW_LINKS);
+		return !perms.contains(PosixFilePermission.GROUP_WRITE) && //
+			!perms.contains(PosixFilePermission.OTHERS_WRITE);
+	}
+
+	// -- Helper methods - fingerprinting --
+
+	/**
+	 * Describes the given class path, from which the given annotation's index
+	 * would be read.
+	 */
+	private static String fingerprint(final Class<?> annotation,
+		final List<File> classPath)
+	{
+		final String[] indexPaths = { Index.INDEX_PREFIX + annotation.getName(),
+			Index.LEGACY_INDEX_PREFIX + annotation.getName() };
+
+		final StringBuilder sb = new StringBuilder();
+		for (final File element : classPath) {
+			sb.append(element.getAbsolutePath());
+			if (element.isDirectory()) {
+				for (final String indexPath : indexPaths) {
+					stamp(sb, new File(element, indexPath));
+				}
+			}
+			else stamp(sb, element);
+			sb.append('\n');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Hashes the given fingerprint into a cache file name, with 64-bit FNV-1a.
+	 * <p>
+	 * NB: A cryptographic digest would cost more to initialize than the whole
+	 * cached load; collisions are harmless, since the cache files store the
+	 * complete fingerprint.
+	 * </p>
+	 */
+	private static long hash(final String fingerprint) {
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < fingerprint.length(); i++) {
+			hash ^= fingerprint.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	private static void stamp(final StringBuilder sb, final File file) {
+		sb.append(':').append(file.length()).append(':').append(file
+			.lastModified());
+	}
+
+	/**
+	 * Gets the JAR files referenced by the manifests of the given class path's
+	 * JAR files (transitively), which are searched for resources too.
+	 */
+	private static List<File> manifestClassPath(final List<File> classPath)
+		throws IOException
+	{
+		final Set<File> seen = new HashSet<>(classPath);
+		final List<File> pending = new ArrayList<>(classPath);
+		final List<File> files = new ArrayList<>();
+		while (!pending.isEmpty()) {
+			final File jar = pending.remove(pending.size() - 1);
+			if (!jar.isFile()) continue;
+			final String refs;
+			try (final JarFile jarFile = new JarFile(jar)) {
+				final Manifest manifest = jarFile.getManifest();
+				if (manifest == null) continue;
+				refs = manifest.getMainAttributes().getValue(
+					Attributes.Name.CLASS_PATH);
+			}
+			if (refs == null) continue;
+			final URL base = jar.toURI().toURL();
+			for (final String ref : refs.trim().split("\\s+")) {
+				if (ref.isEmpty()) continue;
+				final URL url = new URL(base, ref);
+				if (!"file".equals(url.getProtocol())) continue;
+				final File file;
+				try {
+					file = new File(url.toURI());
+				}
+				catch (final URISyntaxException | IllegalArgumentException exc) {
+					continue;
+				}
+				if (seen.add(file)) {
+					files.add(file);
+					pending.add(file);
+				}
+			}
+		}
+		return files;
+	}
+
+	/** Gets the class path of the given class loader, or null if unknown. */
+	private static List<File> classPath(final ClassLoader loader) {
+		final ClassLoader system = ClassLoader.getSystemClassLoader();
+		final List<File> files = new ArrayList<>();
+		for (ClassLoader l = loader; l != null; l = l.getParent()) {
+			if (l instanceof URLClassLoader) {
+				for (final URL url : ((URLClassLoader) l).getURLs()) {
+					if (!"file".equals(url.getProtocol())) return null;
+					files.add(FileUtils.urlToFile(url));
+				}
+			}
+			else if (l == system) {
+				final String classPath = System.getProperty("java.class.path");
+				if (classPath == null) return null;
+				for (final String path : classPath.split(File.pathSeparator)) {
+					if (!path.isEmpty()) files.add(new File(path));
+				}
+			}
+			else if (l != system.getParent()) {
+				// NB: The platform class loader has no index files of its own.
+				return null;
+			}
+		}
+		return files;
+	}
+
+	// -- Helper methods - I/O --
+
+	private <A extends Annotation> List<IndexItem<A>> read(final File file,
+		final Class<A> annotation, final ClassLoader loader,
+		final String fingerprint) throws IOException
+	{
+		final DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+			Files.readAllBytes(file.toPath())));
+		if (in.readInt() != MAGIC || in.readInt() != VERSION ||
+			!readString(in).equals(fingerprint))
+		{
+			throw new IOException("Invalid cache file: " + file);
+		}
+		final int extraCount = in.readInt();
+		for (int i = 0; i < extraCount; i++) {
+			final File extra = new File(in.readUTF());
+			if (extra.length() != in.readLong() || //
+				extra.lastModified() != in.readLong())
+			{
+				throw new IOException("Stale cache file: " + file);
+			}
+		}
+		final int count = in.readInt();
+		final List<IndexItem<A>> items = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			final String className = in.readUTF();
+			@SuppressWarnings("unchecked")
+			final Map<Object, Object> values = (Map<Object, Object>) readValue(in);
+			items.add(new IndexItem<>(annotation, loader, className, values));
+		}
+		return items;
+	}
+
+	private void write(final File file, final String fingerprint,
+		final List<File> extras, final List<String> classNames,
+		final List<Map<Object, Object>> values) throws IOException
+	{
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		writeString(out, fingerprint);
+		out.writeInt(extras.size());
+		for (final File extra : extras) {
+			out.writeUTF(extra.getPath());
+			out.writeLong(extra.length());
+			out.writeLong(extra.lastModified());
+		}
+		out.writeInt(classNames.size());
+		for (int i = 0; i < classNames.size(); i++) {
+			out.writeUTF(classNames.get(i));
+			writeValue(out, values.get(i));
+		}
+		out.flush();
+
+		// write to a temporary file first, so readers never see partial files
+		final File tmp = File.createTempFile(file.getName(), ".tmp", directory);
+		try {
+			try (final OutputStream os = new FileOutputStream(tmp)) {
+				bytes.writeTo(os);
+			}
+			Files.move(tmp.toPath(), file.toPath(),
+				StandardCopyOption.REPLACE_EXISTING);
+		}
+		finally {
+			tmp.delete();
+		}
+	}
+
+	/** Deletes all but the most recent cache files of the given annotation. */
+	private void prune(final Class<?> annotation) {
+		final String prefix = annotation.getName() + "-";
+		final File[] files = directory.listFiles();
+		if (files == null) return;
+		final List<File> cacheFiles = new ArrayList<>();
+		for (final File f : files) {
+			if (f.getName().startsWith(prefix) && f.getName().endsWith(".idx")) {
+				cacheFiles.add(f);
+			}
+		}
+		if (cacheFiles.size() <= MAX_FILES) return;
+		final File[] sorted = cacheFiles.toArray(new File[cacheFiles.size()]);
+		Arrays.sort(sorted, new Comparator<File>() {
+
+			@Override
+			public int compare(final File f1, final File f2) {
+				return Long.compare(f2.lastModified(), f1.lastModified());
+			}
+		});
+		for (int i = MAX_FILES; i < sorted.length; i++) {
+			sorted[i].delete();
+		}
+	}
+
+	/** Writes a string of any length (unlike {@link DataOutputStream#writeUTF}). */
+	private static void writeString(final DataOutputStream out, final String s)
+		throws IOException
+	{
+		final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(final DataInputStream in)
+		throws IOException
+	{
+		final byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/** Writes a value as parsed by {@link IndexReader}. */
+	private static void writeValue(final DataOutputStream out, final Object o)
+		throws IOException
+	{
+		if (o instanceof String) {
+			out.writeByte(STRING);
+			out.writeUTF((String) o);
+		}
+		else if (o instanceof Long) {
+			out.writeByte(LONG);
+			out.writeLong((Long) o);
+		}
+		else if (o instanceof Double) {
+			out.writeByte(DOUBLE);
+			out.writeDouble((Double) o);
+		}
+		else if (o instanceof Boolean) {
+			out.writeByte(BOOLEAN);
+			out.writeBoolean((Boolean) o);
+		}
+		else if (o instanceof List) {
+			final List<?> list = (List<?>) o;
+			out.writeByte(LIST);
+			out.writeInt(list.size());
+			for (final Object item : list) {
+				writeValue(out, item);
+			}
+		}
+		else if (o instanceof Map) {
+			final Map<?, ?> map = (Map<?, ?>) o;
+			out.writeByte(MAP);
+			out.writeInt(map.size());
+			for (final Map.Entry<?, ?> entry : map.entrySet()) {
+				if (!(entry.getKey() instanceof String)) {
+					throw new IOException("Unsupported key: " + entry.getKey());
+				}
+				out.writeUTF((String) entry.getKey());
+				writeValue(out, entry.getValue());
+			}
+		}
+		else throw new IOException("Unsupported value: " + o);
+	}
+
+	private static Object readValue(final DataInputStream in)
+		throws IOException
+	{
+		final byte tag = in.readByte();
+		switch (tag) {
+			case STRING:
+				return in.readUTF();
+			case LONG:
+				return in.readLong();
+			case DOUBLE:
+				return in.readDouble();
+			case BOOLEAN:
+				return in.readBoolean();
+			case LIST: {
+				final int size = in.readInt();
+				final List<Object> list = new ArrayList<>(size);
+				for (int i = 0; i < size; i++) {
+					list.add(readValue(in));
+				}
+				return list;
+			}
+			case MAP: {
+				final int size = in.readInt();
+				final Map<Object, Object> map = new LinkedHashMap<>();
+				for (int i = 0; i < size; i++) {
+					final String key = in.readUTF();
+					map.put(key, readValue(in));
+				}
+				return map;
+			}
+			default:
+				throw new IOException("Invalid value tag: " + tag);
+		}
+	}
+
+}
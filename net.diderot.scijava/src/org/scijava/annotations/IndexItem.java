@@ -78,6 +78,11 @@ public class IndexItem<A extends Annotation> {
 		return className;
 	}
 
+	/** Gets the annotation values as parsed from the index. */
+	Map<Object, Object> values() {
+		return map;
+	}
+
 	@SuppressWarnings("unchecked")
 	private static <A extends Annotation> A proxy(final Class<A> annotation,
 		final ClassLoader loader, final String className,
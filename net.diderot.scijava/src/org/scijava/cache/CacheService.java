@@ -37,18 +37,34 @@ import java.util.concurrent.ExecutionException;
 import org.scijava.service.SciJavaService;
 
 /**
- * Base interface for cache services in SciJava
+ * Base interface for cache services in SciJava.
+ * <p>
+ * Cache services hold values up to a configurable memory budget, measured in
+ * bytes as reported by the cache's {@link Weigher}. When the budget is
+ * exceeded, the least recently used entries are evicted first.
+ * </p>
  */
 public interface CacheService extends SciJavaService {
 
 	/**
-	 * Stores the given object in the cache.
+	 * Stores the given object in the cache, with a size estimated by the
+	 * service's {@link Weigher}. If the weigher cannot estimate the size, the
+	 * object is only weakly referenced.
 	 *
 	 * @param key A key.
 	 * @param value A value.
 	 */
 	void put(Object key, Object value);
 
+	/**
+	 * Stores the given object in the cache, with an explicit size.
+	 *
+	 * @param key A key.
+	 * @param value A value.
+	 * @param size The size of the value in bytes.
+	 */
+	void put(Object key, Object value, long size);
+
 	/**
 	 * @param key A key
 	 * @return The cached object, or null if the object is not in the cache.
@@ -56,12 +72,54 @@ public interface CacheService extends SciJavaService {
 	Object get(Object key);
 
 	/**
+	 * Gets the cached object for the given key, computing and caching it with
+	 * the given loader if it is absent. If several threads ask for the same
+	 * absent key at once, the loader is invoked only once and all callers
+	 * receive its result. If the key is written, invalidated or cleared while
+	 * the loader runs, its result is returned but not cached.
+	 *
 	 * @param key A key
 	 * @param valueLoader A value loader which will be used if null is returned
 	 *          for the given key.
 	 * @return The cached object, or if the object is not in the cache the result
 	 *         of the value loader.
-	 * @throws ExecutionException
+	 * @throws ExecutionException If the value loader throws an exception, or
+	 *           the calling thread is interrupted while waiting for another
+	 *           thread's load of the same key.
+	 * @throws IllegalStateException If called from within the value loader of
+	 *           the same key, which would wait for itself.
 	 */
 	<V> V get(Object key, Callable<V> valueLoader) throws ExecutionException;
+
+	/**
+	 * Removes the given key from the cache.
+	 *
+	 * @param key A key.
+	 */
+	void invalidate(Object key);
+
+	/** Removes all entries from the cache. */
+	void clear();
+
+	/** Gets the total size in bytes of the values currently cached. */
+	long getSize();
+
+	/** Gets the memory budget of the cache, in bytes. */
+	long getMaxSize();
+
+	/**
+	 * Sets the memory budget of the cache, in bytes. Entries are evicted
+	 * immediately if the cache exceeds the new budget.
+	 */
+	void setMaxSize(long maxSize);
+
+	/** Gets the {@link Weigher} used to estimate value sizes. */
+	Weigher getWeigher();
+
+	/** Sets the {@link Weigher} used to estimate value sizes. */
+	void setWeigher(Weigher weigher);
+
+	/** Gets a snapshot of the cache's hit, miss and eviction counters. */
+	CacheStats getStats();
+
 }
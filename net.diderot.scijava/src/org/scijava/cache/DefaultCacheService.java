@@ -31,10 +31,16 @@
 
 package org.scijava.cache;
 
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.WeakHashMap;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.scijava.Priority;
 import org.scijava.plugin.Plugin;
@@ -42,23 +48,75 @@ import org.scijava.service.AbstractService;
 import org.scijava.service.Service;
 
 /**
- * Trivial {@link CacheService} implementation. Wraps a {@link WeakHashMap}
+ * Default {@link CacheService} implementation. Keeps entries in access order,
+ * evicting the least recently used ones whenever the total size of the cached
+ * values exceeds the memory budget.
+ * <p>
+ * The initial budget is read from the {@code scijava.cache.maxSize} system
+ * property (in bytes), and defaults to a quarter of the maximum heap size.
+ * Values whose size the {@link Weigher} cannot estimate are only weakly
+ * referenced, and do not count against the budget.
+ * </p>
  */
 @Plugin(type = Service.class, priority = Priority.VERY_LOW_PRIORITY)
 public class DefaultCacheService extends AbstractService implements
 	CacheService
 {
 
-	private Map<Object, Object> map;
+	/** System property which defines the initial memory budget, in bytes. */
+	public static final String MAX_SIZE_PROPERTY = "scijava.cache.maxSize";
+
+	/** Cached entries, in least recently used order. Guarded by itself. */
+	private LinkedHashMap<Object, Entry> map;
+
+	/**
+	 * Loads in progress, so that concurrent misses share a single load. A load
+	 * only publishes its value if it is still registered here; writes to its
+	 * key (and clearing the cache) unregister it.
+	 */
+	private ConcurrentHashMap<Object, Load<?>> pending;
+
+	/** Weakly referenced values which have been garbage collected. */
+	private final ReferenceQueue<Object> collected = new ReferenceQueue<>();
+
+	private Weigher weigher;
+
+	private long size;
+	private long maxSize;
+
+	private long hitCount;
+	private long missCount;
+	private long evictionCount;
+	private final AtomicLong loadCount = new AtomicLong();
 
 	@Override
 	public void put(final Object key, final Object value) {
-		map.put(key, value);
+		put(key, value, weigher.weigh(key, value));
+	}
+
+	@Override
+	public void put(final Object key, final Object value, final long valueSize) {
+		if (value == null) {
+			invalidate(key);
+			return;
+		}
+		if (valueSize < 0 && valueSize != Weigher.UNKNOWN) {
+			throw new IllegalArgumentException("Negative size: " + valueSize);
+		}
+		synchronized (map) {
+			pending.remove(key);
+			store(key, value, valueSize);
+		}
 	}
 
 	@Override
 	public Object get(final Object key) {
-		return map.get(key);
+		synchronized (map) {
+			final Object value = lookup(key);
+			if (value == null) missCount++;
+			else hitCount++;
+			return value;
+		}
 	}
 
 	@SuppressWarnings("unchecked")
@@ -66,13 +124,250 @@ public class DefaultCacheService extends AbstractService implements
 	public <V> V get(final Object key, final Callable<V> valueLoader)
 		throws ExecutionException
 	{
-		return (V)get(key);
+		final Object cached = get(key);
+		if (cached != null) return (V) cached;
+
+		final Load<V> load = new Load<>(valueLoader);
+		final Load<?> existing = pending.putIfAbsent(key, load);
+		if (existing != null) {
+			if (existing.loader == Thread.currentThread()) {
+				throw new IllegalStateException("Recursive load of key: " + key);
+			}
+			return (V) await(existing);
+		}
+
+		try {
+			// another thread may have completed its load since our lookup
+			final Object loaded = peek(key);
+			if (loaded != null) return (V) loaded;
+
+			loadCount.incrementAndGet();
+			load.run();
+			final V value = (V) await(load);
+			if (value != null) {
+				final long valueSize = weigher.weigh(key, value);
+				synchronized (map) {
+					// NB: Do not overwrite a newer put, invalidate or clear.
+					if (pending.get(key) == load) store(key, value, valueSize);
+				}
+			}
+			return value;
+		}
+		finally {
+			pending.remove(key, load);
+		}
+	}
+
+	@Override
+	public void invalidate(final Object key) {
+		synchronized (map) {
+			pending.remove(key);
+			final Entry old = map.remove(key);
+			if (old != null) size -= old.size;
+		}
+	}
+
+	@Override
+	public void clear() {
+		synchronized (map) {
+			pending.clear();
+			map.clear();
+			size = 0;
+		}
+	}
+
+	@Override
+	public long getSize() {
+		synchronized (map) {
+			return size;
+		}
+	}
+
+	@Override
+	public long getMaxSize() {
+		synchronized (map) {
+			return maxSize;
+		}
+	}
+
+	@Override
+	public void setMaxSize(final long maxSize) {
+		if (maxSize < 0) {
+			throw new IllegalArgumentException("Negative size: " + maxSize);
+		}
+		synchronized (map) {
+			this.maxSize = maxSize;
+			evict();
+		}
+	}
+
+	@Override
+	public Weigher getWeigher() {
+		return weigher;
+	}
+
+	@Override
+	public void setWeigher(final Weigher weigher) {
+		if (weigher == null) throw new NullPointerException("Null weigher");
+		this.weigher = weigher;
+	}
+
+	@Override
+	public CacheStats getStats() {
+		synchronized (map) {
+			return new CacheStats(hitCount, missCount, loadCount.get(),
+				evictionCount, size, maxSize);
+		}
 	}
 
-	// -- Service Methods --
+	// -- Service methods --
 
 	@Override
 	public void initialize() {
-		map = new WeakHashMap<>();
+		map = new LinkedHashMap<>(16, 0.75f, true);
+		pending = new ConcurrentHashMap<>();
+		weigher = new DefaultWeigher();
+		maxSize = initialMaxSize();
 	}
+
+	// -- Disposable methods --
+
+	@Override
+	public void dispose() {
+		clear();
+	}
+
+	// -- Helper methods --
+
+	/** Stores an entry, then evicts as needed. The caller holds the lock. */
+	private void store(final Object key, final Object value,
+		final long valueSize)
+	{
+		purgeCollected();
+		final Entry entry = valueSize == Weigher.UNKNOWN ? //
+			new Entry(new WeakValue(key, value, collected)) : //
+			new Entry(value, valueSize);
+		final Entry old = map.put(key, entry);
+		if (old != null) size -= old.size;
+		size += entry.size;
+		evict();
+	}
+
+	/**
+	 * Looks up a value, dropping its entry if it was garbage collected. The
+	 * caller holds the lock.
+	 */
+	private Object lookup(final Object key) {
+		purgeCollected();
+		final Entry entry = map.get(key);
+		if (entry == null) return null;
+		final Object value = entry.value();
+		if (value == null) map.remove(key);
+		return value;
+	}
+
+	/** Looks up a value without affecting the hit and miss counters. */
+	private Object peek(final Object key) {
+		synchronized (map) {
+			return lookup(key);
+		}
+	}
+
+	/**
+	 * Removes the entries of garbage collected values. The caller holds the
+	 * lock.
+	 */
+	private void purgeCollected() {
+		WeakValue ref;
+		while ((ref = (WeakValue) collected.poll()) != null) {
+			final Entry entry = map.get(ref.key);
+			if (entry != null && entry.ref == ref) map.remove(ref.key);
+		}
+	}
+
+	/** Evicts least recently used entries until the budget is respected. */
+	private void evict() {
+		final Iterator<Map.Entry<Object, Entry>> iter = map.entrySet().iterator();
+		while (size > maxSize && iter.hasNext()) {
+			final Entry entry = iter.next().getValue();
+			// NB: Weakly referenced values are not part of the budget.
+			if (entry.ref != null) continue;
+			size -= entry.size;
+			iter.remove();
+			evictionCount++;
+		}
+	}
+
+	private Object await(final FutureTask<?> task) throws ExecutionException {
+		try {
+			return task.get();
+		}
+		catch (final InterruptedException exc) {
+			Thread.currentThread().interrupt();
+			throw new ExecutionException(exc);
+		}
+	}
+
+	private long initialMaxSize() {
+		final String prop = System.getProperty(MAX_SIZE_PROPERTY);
+		if (prop != null) {
+			try {
+				return Long.parseLong(prop.trim());
+			}
+			catch (final NumberFormatException exc) {
+				// fall back to the default budget
+			}
+		}
+		return Runtime.getRuntime().maxMemory() / 4;
+	}
+
+	// -- Helper classes --
+
+	/** A cached value, held strongly with a size, or weakly without one. */
+	private static class Entry {
+
+		private final Object value;
+		private final WeakValue ref;
+		private final long size;
+
+		private Entry(final Object value, final long size) {
+			this.value = value;
+			this.ref = null;
+			this.size = size;
+		}
+
+		private Entry(final WeakValue ref) {
+			this.value = null;
+			this.ref = ref;
+			this.size = 0;
+		}
+
+		private Object value() {
+			return ref == null ? value : ref.get();
+		}
+	}
+
+	/** A weak reference to a value, which remembers the value's key. */
+	private static class WeakValue extends WeakReference<Object> {
+
+		private final Object key;
+
+		private WeakValue(final Object key, final Object value,
+			final ReferenceQueue<Object> queue)
+		{
+			super(value, queue);
+			this.key = key;
+		}
+	}
+
+	/** A load in progress, which remembers the thread running it. */
+	private static class Load<V> extends FutureTask<V> {
+
+		private final Thread loader = Thread.currentThread();
+
+		private Load(final Callable<V> valueLoader) {
+			super(valueLoader);
+		}
+	}
+
 }
@@ -0,0 +1,69 @@
+/*
+ * #%L
+ * SciJava Common shared library for SciJava software.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.cache;
+
+/**
+ * Default {@link Weigher} implementation. Measures primitive arrays and
+ * strings exactly; the size of any other object, including the elements of
+ * arrays and collections, is {@link #UNKNOWN}. Callers caching large objects
+ * of other kinds should use
+ * {@link CacheService#put(Object, Object, long)} with an explicit size, or set
+ * a weigher which knows their size.
+ */
+public class DefaultWeigher implements Weigher {
+
+	/** Approximate size of an object header, in bytes. */
+	private static final long OBJECT_OVERHEAD = 16;
+
+	@Override
+	public long weigh(final Object key, final Object value) {
+		final long size = sizeOf(value);
+		return size < 0 ? UNKNOWN : OBJECT_OVERHEAD + size;
+	}
+
+	// -- Helper methods --
+
+	private long sizeOf(final Object value) {
+		if (value == null) return 0;
+		if (value instanceof byte[]) return ((byte[]) value).length;
+		if (value instanceof boolean[]) return ((boolean[]) value).length;
+		if (value instanceof short[]) return 2L * ((short[]) value).length;
+		if (value instanceof char[]) return 2L * ((char[]) value).length;
+		if (value instanceof int[]) return 4L * ((int[]) value).length;
+		if (value instanceof float[]) return 4L * ((float[]) value).length;
+		if (value instanceof long[]) return 8L * ((long[]) value).length;
+		if (value instanceof double[]) return 8L * ((double[]) value).length;
+		if (value instanceof String) return 2L * ((String) value).length();
+		return UNKNOWN;
+	}
+
+}
@@ -35,6 +35,7 @@ import java.lang.reflect.Type;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
+import java.util.Objects;
 import java.util.Set;
 
 import org.scijava.plugin.AbstractHandlerService;
@@ -43,6 +44,12 @@ import org.scijava.util.ConversionUtils;
 /**
  * Abstract superclass for {@link ConvertService} implementations. Sets this
  * service as the active delegate service in {@link ConversionUtils}.
+ * <p>
+ * Converter lookups are cached by source type, destination type and whether a
+ * source object is given. Converters which extend {@link AbstractConverter}
+ * without overriding any of its object-based {@code canConvert} methods decide
+ * from those types alone; all others are asked again on every lookup.
+ * </p>
  *
  * @author Mark Hiner
  */
@@ -162,8 +169,41 @@ public abstract class AbstractConvertService extends AbstractHandlerService<Conv
 		ConversionUtils.setDelegateService(this, getPriority());
 	}
 
+	// -- Internal methods --
+
+	@Override
+	protected Object getCacheKey(final ConversionRequest request) {
+		return new ConversionKey(request);
+	}
+
+	@Override
+	protected boolean isKeyDetermined(final Converter<?, ?> handler) {
+		final Class<?> c = handler.getClass();
+		return AbstractConverter.class.isAssignableFrom(c) &&
+			isInherited(c, "supports", ConversionRequest.class) &&
+			isInherited(c, "canConvert", ConversionRequest.class) &&
+			isInherited(c, "canConvert", Object.class, Type.class) &&
+			isInherited(c, "canConvert", Object.class, Class.class);
+	}
+
 	// -- Helper methods --
 
+	/**
+	 * Gets whether the given method of a converter class is the one declared by
+	 * {@link AbstractConverter}.
+	 */
+	private static boolean isInherited(final Class<?> c, final String name,
+		final Class<?>... parameterTypes)
+	{
+		try {
+			return c.getMethod(name, parameterTypes).getDeclaringClass() ==
+				AbstractConverter.class;
+		}
+		catch (final NoSuchMethodException exc) {
+			return false;
+		}
+	}
+
 	/**
 	 * Test two classes; if they match, a third class is added to the provided
 	 * set of classes.
@@ -172,4 +212,42 @@ public abstract class AbstractConvertService extends AbstractHandlerService<Conv
 		if (c1 == c2)
 			classes.add(toAdd);
 	}
+
+	// -- Helper classes --
+
+	/**
+	 * Dispatch cache key for a {@link ConversionRequest}. When the request has a
+	 * source object, converters decide by the object's class rather than the
+	 * declared source type, so the key does too.
+	 */
+	private static final class ConversionKey {
+
+		private final Type srcType;
+		private final Type destType;
+		private final boolean hasObject;
+		private final int hash;
+
+		private ConversionKey(final ConversionRequest request) {
+			final Object src = request.sourceObject();
+			hasObject = src != null;
+			srcType = hasObject ? src.getClass() : request.sourceType();
+			destType = request.destType();
+			hash = Objects.hash(srcType, destType, hasObject);
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (!(o instanceof ConversionKey)) return false;
+			final ConversionKey other = (ConversionKey) o;
+			return hasObject == other.hasObject &&
+				Objects.equals(srcType, other.srcType) &&
+				Objects.equals(destType, other.destType);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+
 }
@@ -72,8 +72,8 @@ public class DefaultEventBus extends ThreadSafeEventService {
 		if (event == null) {
 			throw new IllegalArgumentException("Cannot publish null event.");
 		}
-		publishNow(event, null, null, getSubscribers(event.getClass()),
-			getVetoSubscribers(event.getClass()), null);
+		publishNow(event, null, null, getSubscriberSnapshot(event.getClass()),
+			getVetoSubscriberSnapshot(event.getClass()), null);
 	}
 
 	public void publishNow(final Type genericType, final Object event) {
@@ -95,8 +95,8 @@ public class DefaultEventBus extends ThreadSafeEventService {
 		if (event == null) {
 			throw new IllegalArgumentException("Cannot publish null event.");
 		}
-		publishLater(event, null, null, getSubscribers(event.getClass()),
-			getVetoSubscribers(event.getClass()), null);
+		publishLater(event, null, null, getSubscriberSnapshot(event.getClass()),
+			getVetoSubscriberSnapshot(event.getClass()), null);
 	}
 
 	public void publishLater(final Type genericType, final Object event) {
@@ -31,9 +31,14 @@
 
 package org.scijava.io;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.DataInput;
+import java.io.DataInputStream;
 import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.ByteBuffer;
@@ -156,6 +161,111 @@ public interface DataHandle<L extends Location> extends WrapperPlugin<L>,
 		}
 	}
 
+	/**
+	 * Reads {@code len} short values from the stream into the given array,
+	 * honoring the stream's {@link #getOrder() byte order}.
+	 *
+	 * @throws EOFException If the stream ends before all values are read.
+	 */
+	default void readShorts(final short[] dest, final int off, final int len)
+		throws IOException
+	{
+		final int block = Math.max(1, Math.min(len, DEFAULT_BLOCK_SIZE / 2));
+		final ByteBuffer buf = ByteBuffer.allocate(2 * block).order(getOrder());
+		int n = 0;
+		while (n < len) {
+			final int count = Math.min(block, len - n);
+			readFully(buf.array(), 0, 2 * count);
+			buf.clear();
+			buf.asShortBuffer().get(dest, off + n, count);
+			n += count;
+		}
+	}
+
+	/**
+	 * Reads {@code len} int values from the stream into the given array,
+	 * honoring the stream's {@link #getOrder() byte order}.
+	 *
+	 * @throws EOFException If the stream ends before all values are read.
+	 */
+	default void readInts(final int[] dest, final int off, final int len)
+		throws IOException
+	{
+		final int block = Math.max(1, Math.min(len, DEFAULT_BLOCK_SIZE / 4));
+		final ByteBuffer buf = ByteBuffer.allocate(4 * block).order(getOrder());
+		int n = 0;
+		while (n < len) {
+			final int count = Math.min(block, len - n);
+			readFully(buf.array(), 0, 4 * count);
+			buf.clear();
+			buf.asIntBuffer().get(dest, off + n, count);
+			n += count;
+		}
+	}
+
+	/**
+	 * Reads {@code len} long values from the stream into the given array,
+	 * honoring the stream's {@link #getOrder() byte order}.
+	 *
+	 * @throws EOFException If the stream ends before all values are read.
+	 */
+	default void readLongs(final long[] dest, final int off, final int len)
+		throws IOException
+	{
+		final int block = Math.max(1, Math.min(len, DEFAULT_BLOCK_SIZE / 8));
+		final ByteBuffer buf = ByteBuffer.allocate(8 * block).order(getOrder());
+		int n = 0;
+		while (n < len) {
+			final int count = Math.min(block, len - n);
+			readFully(buf.array(), 0, 8 * count);
+			buf.clear();
+			buf.asLongBuffer().get(dest, off + n, count);
+			n += count;
+		}
+	}
+
+	/**
+	 * Reads {@code len} float values from the stream into the given array,
+	 * honoring the stream's {@link #getOrder() byte order}.
+	 *
+	 * @throws EOFException If the stream ends before all values are read.
+	 */
+	default void readFloats(final float[] dest, final int off, final int len)
+		throws IOException
+	{
+		final int block = Math.max(1, Math.min(len, DEFAULT_BLOCK_SIZE / 4));
+		final ByteBuffer buf = ByteBuffer.allocate(4 * block).order(getOrder());
+		int n = 0;
+		while (n < len) {
+			final int count = Math.min(block, len - n);
+			readFully(buf.array(), 0, 4 * count);
+			buf.clear();
+			buf.asFloatBuffer().get(dest, off + n, count);
+			n += count;
+		}
+	}
+
+	/**
+	 * Reads {@code len} double values from the stream into the given array,
+	 * honoring the stream's {@link #getOrder() byte order}.
+	 *
+	 * @throws EOFException If the stream ends before all values are read.
+	 */
+	default void readDoubles(final double[] dest, final int off, final int len)
+		throws IOException
+	{
+		final int block = Math.max(1, Math.min(len, DEFAULT_BLOCK_SIZE / 8));
+		final ByteBuffer buf = ByteBuffer.allocate(8 * block).order(getOrder());
+		int n = 0;
+		while (n < len) {
+			final int count = Math.min(block, len - n);
+			readFully(buf.array(), 0, 8 * count);
+			buf.clear();
+			buf.asDoubleBuffer().get(dest, off + n, count);
+			n += count;
+		}
+	}
+
 
 	/** Reads a string of arbitrary length, terminated by a null char. */
 	default String readCString() throws IOException {
@@ -370,4 +480,207 @@ public interface DataHandle<L extends Location> extends WrapperPlugin<L>,
 		return num;
 	}
 
+	// -- DataInput methods --
+
+	@Override
+	default void readFully(final byte[] b) throws IOException {
+		readFully(b, 0, b.length);
+	}
+
+	@Override
+	default void readFully(final byte[] b, final int off, final int len)
+		throws IOException
+	{
+		int n = 0;
+		while (n < len) {
+			final int r = read(b, off + n, len - n);
+			if (r < 0) throw new EOFException();
+			n += r;
+		}
+	}
+
+	@Override
+	default int skipBytes(final int n) throws IOException {
+		return (int) skip(n);
+	}
+
+	@Override
+	default boolean readBoolean() throws IOException {
+		return readByte() != 0;
+	}
+
+	@Override
+	default byte readByte() throws IOException {
+		final int b = read();
+		if (b < 0) throw new EOFException();
+		return (byte) b;
+	}
+
+	@Override
+	default int readUnsignedByte() throws IOException {
+		return readByte() & 0xff;
+	}
+
+	@Override
+	default short readShort() throws IOException {
+		final int b0 = readUnsignedByte();
+		final int b1 = readUnsignedByte();
+		if (isLittleEndian()) return (short) ((b1 << 8) | b0);
+		return (short) ((b0 << 8) | b1);
+	}
+
+	@Override
+	default int readUnsignedShort() throws IOException {
+		return readShort() & 0xffff;
+	}
+
+	@Override
+	default char readChar() throws IOException {
+		return (char) readShort();
+	}
+
+	@Override
+	default int readInt() throws IOException {
+		final int b0 = readUnsignedByte();
+		final int b1 = readUnsignedByte();
+		final int b2 = readUnsignedByte();
+		final int b3 = readUnsignedByte();
+		if (isLittleEndian()) return (b3 << 24) | (b2 << 16) | (b1 << 8) | b0;
+		return (b0 << 24) | (b1 << 16) | (b2 << 8) | b3;
+	}
+
+	@Override
+	default long readLong() throws IOException {
+		final long i0 = readInt() & 0xffffffffL;
+		final long i1 = readInt() & 0xffffffffL;
+		if (isLittleEndian()) return (i1 << 32) | i0;
+		return (i0 << 32) | i1;
+	}
+
+	@Override
+	default float readFloat() throws IOException {
+		return Float.intBitsToFloat(readInt());
+	}
+
+	@Override
+	default double readDouble() throws IOException {
+		return Double.longBitsToDouble(readLong());
+	}
+
+	@Override
+	default String readLine() throws IOException {
+		final StringBuilder sb = new StringBuilder();
+		int c = read();
+		if (c < 0) return null;
+		while (c >= 0 && c != '\n') {
+			if (c == '\r') {
+				final long pos = offset();
+				if (read() != '\n') seek(pos);
+				break;
+			}
+			sb.append((char) c);
+			c = read();
+		}
+		return sb.toString();
+	}
+
+	@Override
+	default String readUTF() throws IOException {
+		// NB: The length prefix of modified UTF-8 is always big-endian.
+		final int b0 = readUnsignedByte();
+		final int b1 = readUnsignedByte();
+		final byte[] b = new byte[((b0 << 8) | b1) + 2];
+		b[0] = (byte) b0;
+		b[1] = (byte) b1;
+		readFully(b, 2, b.length - 2);
+		return new DataInputStream(new ByteArrayInputStream(b)).readUTF();
+	}
+
+	// -- DataOutput methods --
+
+	@Override
+	default void write(final byte[] b) throws IOException {
+		write(b, 0, b.length);
+	}
+
+	@Override
+	default void writeBoolean(final boolean v) throws IOException {
+		write(v ? 1 : 0);
+	}
+
+	@Override
+	default void writeByte(final int v) throws IOException {
+		write(v);
+	}
+
+	@Override
+	default void writeShort(final int v) throws IOException {
+		if (isLittleEndian()) {
+			write(v);
+			write(v >> 8);
+		}
+		else {
+			write(v >> 8);
+			write(v);
+		}
+	}
+
+	@Override
+	default void writeChar(final int v) throws IOException {
+		writeShort(v);
+	}
+
+	@Override
+	default void writeInt(final int v) throws IOException {
+		final byte[] b = new byte[4];
+		for (int i = 0; i < 4; i++) {
+			final int shift = 8 * (isLittleEndian() ? i : 3 - i);
+			b[i] = (byte) (v >> shift);
+		}
+		write(b);
+	}
+
+	@Override
+	default void writeLong(final long v) throws IOException {
+		final byte[] b = new byte[8];
+		for (int i = 0; i < 8; i++) {
+			final int shift = 8 * (isLittleEndian() ? i : 7 - i);
+			b[i] = (byte) (v >> shift);
+		}
+		write(b);
+	}
+
+	@Override
+	default void writeFloat(final float v) throws IOException {
+		writeInt(Float.floatToIntBits(v));
+	}
+
+	@Override
+	default void writeDouble(final double v) throws IOException {
+		writeLong(Double.doubleToLongBits(v));
+	}
+
+	@Override
+	default void writeBytes(final String s) throws IOException {
+		final byte[] b = new byte[s.length()];
+		for (int i = 0; i < b.length; i++) {
+			b[i] = (byte) s.charAt(i);
+		}
+		write(b);
+	}
+
+	@Override
+	default void writeChars(final String s) throws IOException {
+		for (int i = 0; i < s.length(); i++) {
+			writeChar(s.charAt(i));
+		}
+	}
+
+	@Override
+	default void writeUTF(final String str) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new DataOutputStream(out).writeUTF(str);
+		write(out.toByteArray());
+	}
+
 }
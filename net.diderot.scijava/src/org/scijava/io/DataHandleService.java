@@ -45,5 +45,45 @@ import org.scijava.service.SciJavaService;
 public interface DataHandleService extends
 	WrapperService<Location, DataHandle<Location>>, SciJavaService
 {
-	// NB: Marker interface.
+
+	/**
+	 * Creates a data handle of the given class around the given location. This
+	 * allows callers to select a specific backend (e.g.,
+	 * {@link MappedFileHandle}) rather than the highest priority one chosen by
+	 * {@link #create(Object)}.
+	 *
+	 * @return A handle of the requested class, or null if that class of handle
+	 *         is unavailable or does not support the given location.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	default <H extends DataHandle<?>> H create(final Location location,
+		final Class<H> handleClass)
+	{
+		final DataHandle handle = create((Class) handleClass);
+		if (handle == null || !handle.supports(location)) return null;
+		handle.set(location);
+		return (H) handle;
+	}
+
+	/**
+	 * Wraps the given data handle in a {@link ReadBufferDataHandle}, so that
+	 * small reads are served from a read-ahead buffer.
+	 */
+	default <L extends Location> DataHandle<L> readBuffer(
+		final DataHandle<L> handle)
+	{
+		return new ReadBufferDataHandle<>(handle);
+	}
+
+	/**
+	 * Wraps the given data handle in a {@link ReadBufferDataHandle} with the
+	 * given buffer size, so that small reads are served from a read-ahead
+	 * buffer.
+	 */
+	default <L extends Location> DataHandle<L> readBuffer(
+		final DataHandle<L> handle, final int bufferSize)
+	{
+		return new ReadBufferDataHandle<>(handle, bufferSize);
+	}
+
 }
@@ -0,0 +1,382 @@
+/*
+ * #%L
+ * SciJava Common shared library for SciJava software.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+import org.scijava.Priority;
+import org.scijava.plugin.Plugin;
+
+/**
+ * {@link DataHandle} for a {@link FileLocation}, backed by a
+ * {@link FileChannel}.
+ * <p>
+ * All transfers are positional, so {@link #read(ByteBuffer, int)} and
+ * {@link #write(ByteBuffer, int)} move bytes directly between the file and the
+ * given buffer (including direct buffers) without intermediate copies. The
+ * bulk methods such as {@link #readFloats(float[], int, int)} decode whole
+ * blocks at once in the handle's {@link #getOrder() byte order}, making this
+ * handle well suited to reading raw pixel planes.
+ * </p>
+ * <p>
+ * This handle has a lower priority than {@link FileHandle}; request it
+ * explicitly via {@link DataHandleService#create(Location, Class)}.
+ * </p>
+ */
+@Plugin(type = DataHandle.class, priority = Priority.LOW_PRIORITY)
+public class FileChannelHandle extends AbstractDataHandle<FileLocation> {
+
+	// -- Fields --
+
+	/** The {@link RandomAccessFile} backing this file handle. */
+	private RandomAccessFile raf;
+
+	/** The channel used for all transfers. */
+	private FileChannel channel;
+
+	/** The mode of the {@link RandomAccessFile}. */
+	private String mode = "rw";
+
+	/** Scratch buffer for single primitive values. */
+	private final ByteBuffer scratch = ByteBuffer.allocateDirect(8);
+
+	/** Buffer for bulk primitive transfers, allocated on demand. */
+	private ByteBuffer block;
+
+	/** Current offset in the stream. */
+	private long pos;
+
+	// -- FileChannelHandle methods --
+
+	/** Gets the file channel backing this handle. */
+	public FileChannel getChannel() throws IOException {
+		return channel();
+	}
+
+	public String getMode() {
+		return mode;
+	}
+
+	public void setMode(final String mode) {
+		if (raf != null) {
+			throw new IllegalStateException("File already initialized");
+		}
+		this.mode = mode;
+	}
+
+	// -- DataHandle methods --
+
+	@Override
+	public long offset() throws IOException {
+		return pos;
+	}
+
+	@Override
+	public long length() throws IOException {
+		return channel().size();
+	}
+
+	@Override
+	public void setOrder(final ByteOrder order) {
+		super.setOrder(order);
+		scratch.order(order);
+	}
+
+	@Override
+	public int read() throws IOException {
+		scratch.clear().limit(1);
+		if (channel().read(scratch, pos) <= 0) return -1;
+		pos++;
+		return scratch.get(0) & 0xff;
+	}
+
+	@Override
+	public int read(final byte[] b, final int off, final int len)
+		throws IOException
+	{
+		return read(ByteBuffer.wrap(b, off, len), len);
+	}
+
+	@Override
+	public int read(final ByteBuffer buf, final int len) throws IOException {
+		final int limit = buf.limit();
+		if (len < buf.remaining()) buf.limit(buf.position() + len);
+		try {
+			final int n = transfer(buf, false);
+			return n == 0 && len > 0 ? -1 : n;
+		}
+		finally {
+			buf.limit(limit);
+		}
+	}
+
+	@Override
+	public void seek(final long pos) throws IOException {
+		this.pos = pos;
+	}
+
+	@Override
+	public void write(final ByteBuffer buf, final int len) throws IOException {
+		final int limit = buf.limit();
+		if (len < buf.remaining()) buf.limit(buf.position() + len);
+		try {
+			transfer(buf, true);
+		}
+		finally {
+			buf.limit(limit);
+		}
+	}
+
+	@Override
+	public void readShorts(final short[] dest, final int off, final int len)
+		throws IOException
+	{
+		int n = 0;
+		while (n < len) {
+			final int count = readBlock(2, len - n);
+			block.asShortBuffer().get(dest, off + n, count);
+			n += count;
+		}
+	}
+
+	@Override
+	public void readInts(final int[] dest, final int off, final int len)
+		throws IOException
+	{
+		int n = 0;
+		while (n < len) {
+			final int count = readBlock(4, len - n);
+			block.asIntBuffer().get(dest, off + n, count);
+			n += count;
+		}
+	}
+
+	@Override
+	public void readLongs(final long[] dest, final int off, final int len)
+		throws IOException
+	{
+		int n = 0;
+		while (n < len) {
+			final int count = readBlock(8, len - n);
+			block.asLongBuffer().get(dest, off + n, count);
+			n += count;
+		}
+	}
+
+	@Override
+	public void readFloats(final float[] dest, final int off, final int len)
+		throws IOException
+	{
+		int n = 0;
+		while (n < len) {
+			final int count = readBlock(4, len - n);
+			block.asFloatBuffer().get(dest, off + n, count);
+			n += count;
+		}
+	}
+
+	@Override
+	public void readDoubles(final double[] dest, final int off, final int len)
+		throws IOException
+	{
+		int n = 0;
+		while (n < len) {
+			final int count = readBlock(8, len - n);
+			block.asDoubleBuffer().get(dest, off + n, count);
+			n += count;
+		}
+	}
+
+	// -- DataInput methods --
+
+	@Override
+	public short readShort() throws IOException {
+		return readScratch(2).getShort(0);
+	}
+
+	@Override
+	public char readChar() throws IOException {
+		return readScratch(2).getChar(0);
+	}
+
+	@Override
+	public int readInt() throws IOException {
+		return readScratch(4).getInt(0);
+	}
+
+	@Override
+	public long readLong() throws IOException {
+		return readScratch(8).getLong(0);
+	}
+
+	@Override
+	public float readFloat() throws IOException {
+		return readScratch(4).getFloat(0);
+	}
+
+	@Override
+	public double readDouble() throws IOException {
+		return readScratch(8).getDouble(0);
+	}
+
+	// -- DataOutput methods --
+
+	@Override
+	public void write(final int b) throws IOException {
+		scratch.clear();
+		scratch.put((byte) b).flip();
+		transfer(scratch, true);
+	}
+
+	@Override
+	public void write(final byte[] b, final int off, final int len)
+		throws IOException
+	{
+		transfer(ByteBuffer.wrap(b, off, len), true);
+	}
+
+	@Override
+	public void writeShort(final int v) throws IOException {
+		scratch.clear();
+		scratch.putShort((short) v).flip();
+		transfer(scratch, true);
+	}
+
+	@Override
+	public void writeChar(final int v) throws IOException {
+		writeShort(v);
+	}
+
+	@Override
+	public void writeInt(final int v) throws IOException {
+		scratch.clear();
+		scratch.putInt(v).flip();
+		transfer(scratch, true);
+	}
+
+	@Override
+	public void writeLong(final long v) throws IOException {
+		scratch.clear();
+		scratch.putLong(v).flip();
+		transfer(scratch, true);
+	}
+
+	@Override
+	public void writeFloat(final float v) throws IOException {
+		writeInt(Float.floatToIntBits(v));
+	}
+
+	@Override
+	public void writeDouble(final double v) throws IOException {
+		writeLong(Double.doubleToLongBits(v));
+	}
+
+	// -- Closeable methods --
+
+	@Override
+	public void close() throws IOException {
+		if (raf != null) raf.close();
+	}
+
+	// -- Typed methods --
+
+	@Override
+	public Class<FileLocation> getType() {
+		return FileLocation.class;
+	}
+
+	// -- Helper methods --
+
+	private FileChannel channel() throws IOException {
+		if (channel == null) initChannel();
+		return channel;
+	}
+
+	private synchronized void initChannel() throws IOException {
+		if (channel != null) return;
+		raf = new RandomAccessFile(get().getFile(), getMode());
+		channel = raf.getChannel();
+	}
+
+	/**
+	 * Transfers the remaining bytes of the given buffer at the current offset,
+	 * advancing the offset accordingly.
+	 *
+	 * @return The number of bytes transferred, which is less than the buffer's
+	 *         remaining bytes only if the end of the file is reached when
+	 *         reading.
+	 */
+	private int transfer(final ByteBuffer buf, final boolean write)
+		throws IOException
+	{
+		final FileChannel ch = channel();
+		int n = 0;
+		while (buf.hasRemaining()) {
+			final int r = write ? ch.write(buf, pos) : ch.read(buf, pos);
+			if (r < 0) break;
+			pos += r;
+			n += r;
+		}
+		return n;
+	}
+
+	/** Reads exactly {@code size} bytes into the scratch buffer. */
+	private ByteBuffer readScratch(final int size) throws IOException {
+		scratch.clear().limit(size);
+		if (transfer(scratch, false) < size) throw new EOFException();
+		return scratch;
+	}
+
+	/**
+	 * Reads as many values as fit into the block buffer, up to the given count.
+	 *
+	 * @return The number of values read; the block buffer is positioned at the
+	 *         first of them.
+	 */
+	private int readBlock(final int valueSize, final int maxCount)
+		throws IOException
+	{
+		if (block == null) block = ByteBuffer.allocateDirect(DEFAULT_BLOCK_SIZE);
+		final int count = Math.min(maxCount, block.capacity() / valueSize);
+		block.clear().limit(valueSize * count);
+		if (transfer(block, false) < valueSize * count) throw new EOFException();
+		block.flip();
+		block.order(getOrder());
+		return count;
+	}
+
+}
@@ -0,0 +1,310 @@
+/*
+ * #%L
+ * SciJava Common shared library for SciJava software.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+import org.scijava.Priority;
+import org.scijava.plugin.Plugin;
+
+/**
+ * {@link DataHandle} for a {@link FileLocation}, backed by a memory-mapped
+ * view of the file.
+ * <p>
+ * The file is mapped one window at a time, so files larger than 2 GB are
+ * supported: whenever the stream pointer leaves the current window, a new
+ * window is mapped around it. Primitive values which lie entirely within the
+ * window are decoded directly from the mapped buffer in the handle's
+ * {@link #getOrder() byte order}.
+ * </p>
+ * <p>
+ * This handle has a lower priority than {@link FileHandle}; request it
+ * explicitly via {@link DataHandleService#create(Location, Class)}.
+ * </p>
+ */
+@Plugin(type = DataHandle.class, priority = Priority.LOW_PRIORITY)
+public class MappedFileHandle extends AbstractDataHandle<FileLocation> {
+
+	/** Default size of each mapped window. */
+	public static final int DEFAULT_WINDOW_SIZE = 256 * 1024 * 1024; // 256 MB
+
+	/** Alignment of mapped windows within the file. */
+	private static final long WINDOW_ALIGNMENT = 64 * 1024;
+
+	// -- Fields --
+
+	/** The {@link RandomAccessFile} backing this file handle. */
+	private RandomAccessFile raf;
+
+	/** The channel from which windows are mapped. */
+	private FileChannel channel;
+
+	/** The mode of the {@link RandomAccessFile}. */
+	private String mode = "r";
+
+	/** Maximum size of each mapped window. */
+	private int windowSize = DEFAULT_WINDOW_SIZE;
+
+	/** The currently mapped window, or null if none. */
+	private MappedByteBuffer window;
+
+	/** Offset in the file of the first byte of the current window. */
+	private long windowStart;
+
+	/** Scratch buffer for values which straddle two windows. */
+	private final ByteBuffer scratch = ByteBuffer.allocate(8);
+
+	/** Current offset in the stream. */
+	private long pos;
+
+	// -- MappedFileHandle methods --
+
+	public String getMode() {
+		return mode;
+	}
+
+	/**
+	 * Sets the access mode: {@code "r"} maps the file read-only, while
+	 * {@code "rw"} maps it read-write.
+	 */
+	public void setMode(final String mode) {
+		if (raf != null) {
+			throw new IllegalStateException("File already initialized");
+		}
+		this.mode = mode;
+	}
+
+	public int getWindowSize() {
+		return windowSize;
+	}
+
+	public void setWindowSize(final int windowSize) {
+		if (windowSize < WINDOW_ALIGNMENT) {
+			throw new IllegalArgumentException("Window too small: " + windowSize);
+		}
+		this.windowSize = windowSize;
+		window = null;
+	}
+
+	// -- DataHandle methods --
+
+	@Override
+	public long offset() throws IOException {
+		return pos;
+	}
+
+	@Override
+	public long length() throws IOException {
+		return channel().size();
+	}
+
+	@Override
+	public void setOrder(final ByteOrder order) {
+		super.setOrder(order);
+		scratch.order(order);
+		if (window != null) window.order(order);
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!map(pos)) return -1;
+		return window.get((int) (pos++ - windowStart)) & 0xff;
+	}
+
+	@Override
+	public int read(final byte[] b, final int off, final int len)
+		throws IOException
+	{
+		if (len == 0) return 0;
+		int n = 0;
+		while (n < len && map(pos)) {
+			final int index = (int) (pos - windowStart);
+			final int count = Math.min(len - n, window.limit() - index);
+			window.position(index);
+			window.get(b, off + n, count);
+			pos += count;
+			n += count;
+		}
+		return n == 0 ? -1 : n;
+	}
+
+	@Override
+	public void seek(final long pos) throws IOException {
+		this.pos = pos;
+	}
+
+	// -- DataInput methods --
+
+	@Override
+	public short readShort() throws IOException {
+		return value(2).getShort();
+	}
+
+	@Override
+	public char readChar() throws IOException {
+		return value(2).getChar();
+	}
+
+	@Override
+	public int readInt() throws IOException {
+		return value(4).getInt();
+	}
+
+	@Override
+	public long readLong() throws IOException {
+		return value(8).getLong();
+	}
+
+	@Override
+	public float readFloat() throws IOException {
+		return value(4).getFloat();
+	}
+
+	@Override
+	public double readDouble() throws IOException {
+		return value(8).getDouble();
+	}
+
+	// -- DataOutput methods --
+
+	@Override
+	public void write(final int b) throws IOException {
+		ensureLength(pos + 1);
+		map(pos);
+		window.put((int) (pos++ - windowStart), (byte) b);
+	}
+
+	@Override
+	public void write(final byte[] b, final int off, final int len)
+		throws IOException
+	{
+		ensureLength(pos + len);
+		int n = 0;
+		while (n < len) {
+			map(pos);
+			final int index = (int) (pos - windowStart);
+			final int count = Math.min(len - n, window.limit() - index);
+			window.position(index);
+			window.put(b, off + n, count);
+			pos += count;
+			n += count;
+		}
+	}
+
+	// -- Closeable methods --
+
+	@Override
+	public void close() throws IOException {
+		window = null;
+		if (raf != null) raf.close();
+	}
+
+	// -- Typed methods --
+
+	@Override
+	public Class<FileLocation> getType() {
+		return FileLocation.class;
+	}
+
+	// -- Helper methods --
+
+	private FileChannel channel() throws IOException {
+		if (channel == null) initChannel();
+		return channel;
+	}
+
+	private synchronized void initChannel() throws IOException {
+		if (channel != null) return;
+		raf = new RandomAccessFile(get().getFile(), getMode());
+		channel = raf.getChannel();
+	}
+
+	/**
+	 * Ensures the current window contains the given offset, remapping if needed.
+	 *
+	 * @return false if the offset lies beyond the end of the file.
+	 */
+	private boolean map(final long offset) throws IOException {
+		if (window != null && offset >= windowStart &&
+			offset < windowStart + window.limit())
+		{
+			return true;
+		}
+		final long length = length();
+		if (offset >= length || offset < 0) return false;
+		windowStart = offset - offset % WINDOW_ALIGNMENT;
+		final long size = Math.min(windowSize, length - windowStart);
+		final MapMode mapMode = getMode().contains("w") ? MapMode.READ_WRITE
+			: MapMode.READ_ONLY;
+		window = channel().map(mapMode, windowStart, size);
+		window.order(getOrder());
+		return true;
+	}
+
+	/**
+	 * Gets a buffer positioned at the next {@code size} bytes of the stream, and
+	 * advances the stream pointer past them. Values within the current window
+	 * are read in place; others are assembled in a scratch buffer.
+	 */
+	private ByteBuffer value(final int size) throws IOException {
+		if (map(pos) && pos + size <= windowStart + window.limit()) {
+			window.position((int) (pos - windowStart));
+			pos += size;
+			return window;
+		}
+		scratch.clear();
+		for (int i = 0; i < size; i++) {
+			final int b = read();
+			if (b < 0) throw new EOFException();
+			scratch.put((byte) b);
+		}
+		scratch.flip();
+		return scratch;
+	}
+
+	/** Grows the file, if needed, so that it has at least the given length. */
+	private void ensureLength(final long length) throws IOException {
+		if (!getMode().contains("w")) throw new IOException("Read-only handle");
+		if (length > length()) {
+			raf.setLength(length);
+			window = null;
+		}
+	}
+
+}
@@ -0,0 +1,225 @@
+/*
+ * #%L
+ * SciJava Common shared library for SciJava software.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.io;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+
+/**
+ * {@link DataHandle} which wraps another handle, reading ahead from it in
+ * blocks so that small reads (e.g., {@link #readShort()} or
+ * {@link #readInt()}) are served from memory rather than by the underlying
+ * handle. Writes pass straight through to the wrapped handle, discarding any
+ * stale buffered bytes.
+ *
+ * @see DataHandleService#readBuffer(DataHandle)
+ */
+public class ReadBufferDataHandle<L extends Location> extends
+	AbstractDataHandle<L>
+{
+
+	/** Default size of the read-ahead buffer. */
+	public static final int DEFAULT_BUFFER_SIZE = 64 * 1024; // 64 KB
+
+	// -- Fields --
+
+	/** The wrapped handle. */
+	private final DataHandle<L> handle;
+
+	/** The read-ahead buffer. */
+	private final byte[] buf;
+
+	/** Offset in the stream of the first byte of the buffer. */
+	private long bufStart;
+
+	/** Number of valid bytes in the buffer. */
+	private int bufLen;
+
+	/** Current offset in the stream. */
+	private long pos;
+
+	// -- Constructors --
+
+	public ReadBufferDataHandle(final DataHandle<L> handle) {
+		this(handle, DEFAULT_BUFFER_SIZE);
+	}
+
+	public ReadBufferDataHandle(final DataHandle<L> handle,
+		final int bufferSize)
+	{
+		if (bufferSize <= 0) {
+			throw new IllegalArgumentException("Invalid buffer size: " +
+				bufferSize);
+		}
+		this.handle = handle;
+		buf = new byte[bufferSize];
+		set(handle.get());
+		setOrder(handle.getOrder());
+		setEncoding(handle.getEncoding());
+	}
+
+	// -- ReadBufferDataHandle methods --
+
+	/** Gets the handle wrapped by this one. */
+	public DataHandle<L> getHandle() {
+		return handle;
+	}
+
+	// -- DataHandle methods --
+
+	@Override
+	public long offset() throws IOException {
+		return pos;
+	}
+
+	@Override
+	public long length() throws IOException {
+		return handle.length();
+	}
+
+	@Override
+	public void setOrder(final ByteOrder order) {
+		super.setOrder(order);
+		if (handle != null) handle.setOrder(order);
+	}
+
+	@Override
+	public void setEncoding(final String encoding) {
+		super.setEncoding(encoding);
+		if (handle != null) handle.setEncoding(encoding);
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!buffered(pos) && !fill(pos)) return -1;
+		return buf[(int) (pos++ - bufStart)] & 0xff;
+	}
+
+	@Override
+	public int read(final byte[] b, final int off, final int len)
+		throws IOException
+	{
+		if (len == 0) return 0;
+		int n = 0;
+		while (n < len) {
+			if (!buffered(pos)) {
+				if (len - n >= buf.length) {
+					// large read: bypass the buffer entirely
+					handle.seek(pos);
+					final int r = handle.read(b, off + n, len - n);
+					if (r <= 0) break;
+					pos += r;
+					n += r;
+					continue;
+				}
+				if (!fill(pos)) break;
+			}
+			final int index = (int) (pos - bufStart);
+			final int count = Math.min(len - n, bufLen - index);
+			System.arraycopy(buf, index, b, off + n, count);
+			pos += count;
+			n += count;
+		}
+		return n == 0 ? -1 : n;
+	}
+
+	@Override
+	public void seek(final long pos) throws IOException {
+		this.pos = pos;
+	}
+
+	// -- DataOutput methods --
+
+	@Override
+	public void write(final int b) throws IOException {
+		invalidate(pos, 1);
+		handle.seek(pos);
+		handle.write(b);
+		pos++;
+	}
+
+	@Override
+	public void write(final byte[] b, final int off, final int len)
+		throws IOException
+	{
+		invalidate(pos, len);
+		handle.seek(pos);
+		handle.write(b, off, len);
+		pos += len;
+	}
+
+	// -- Closeable methods --
+
+	@Override
+	public void close() throws IOException {
+		bufLen = 0;
+		handle.close();
+	}
+
+	// -- Typed methods --
+
+	@Override
+	public boolean supports(final L data) {
+		return handle == null || handle.supports(data);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public Class<L> getType() {
+		return handle == null ? (Class<L>) Location.class : handle.getType();
+	}
+
+	// -- Helper methods --
+
+	private boolean buffered(final long offset) {
+		return offset >= bufStart && offset < bufStart + bufLen;
+	}
+
+	/** Reads ahead from the given offset; returns false at end of stream. */
+	private boolean fill(final long offset) throws IOException {
+		handle.seek(offset);
+		bufStart = offset;
+		bufLen = 0;
+		while (bufLen < buf.length) {
+			final int r = handle.read(buf, bufLen, buf.length - bufLen);
+			if (r <= 0) break;
+			bufLen += r;
+		}
+		return bufLen > 0;
+	}
+
+	/** Discards the buffer if it overlaps the given range of bytes. */
+	private void invalidate(final long offset, final int len) {
+		if (offset < bufStart + bufLen && offset + len > bufStart) bufLen = 0;
+	}
+
+}
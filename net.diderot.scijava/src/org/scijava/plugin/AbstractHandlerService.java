@@ -31,8 +31,23 @@
 
 package org.scijava.plugin;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * Abstract base class for {@link HandlerService}s.
+ * <p>
+ * By default, every call to {@link #getHandler(Object)} asks each handler in
+ * turn whether it supports the data. Subclasses can speed this up by deriving
+ * a {@link #getCacheKey cache key} from the data (e.g., its class): the result
+ * of the scan is then remembered per key. Handlers whose support depends on
+ * more than the key (see {@link #isKeyDetermined}) are still consulted on every
+ * lookup, so the cached result is always the same as that of a full scan. The
+ * cache is cleared whenever plugins of the service's type are added or
+ * removed.
+ * </p>
  * 
  * @author Curtis Rueden
  * @param <DT> Base data type handled by the handlers.
@@ -42,14 +57,51 @@ public abstract class AbstractHandlerService<DT, PT extends HandlerPlugin<DT>>
 	extends AbstractSingletonService<PT> implements HandlerService<DT, PT>
 {
 
+	/** Cached dispatch results, by cache key. */
+	private final ConcurrentHashMap<Object, Dispatch<PT>> dispatchCache =
+		new ConcurrentHashMap<>();
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong uncached = new AtomicLong();
+	private final AtomicLong invalidations = new AtomicLong();
+
 	// -- HandlerService methods --
 
 	@Override
 	public PT getHandler(final DT data) {
-		for (final PT handler : getInstances()) {
-			if (handler.supports(data)) return handler;
+		final Object key = getCacheKey(data);
+		if (key == null) {
+			uncached.incrementAndGet();
+			return findHandler(data);
 		}
-		return null;
+		Dispatch<PT> dispatch = dispatchCache.get(key);
+		if (dispatch == null) {
+			misses.incrementAndGet();
+			// NB: Not computeIfAbsent, since handlers may query this service
+			// recursively from their supports method.
+			final long generation = invalidations.get();
+			dispatch = createDispatch(data);
+			dispatchCache.putIfAbsent(key, dispatch);
+			// discard the result if the handlers changed during the scan
+			if (generation != invalidations.get()) {
+				dispatchCache.remove(key, dispatch);
+			}
+		}
+		else hits.incrementAndGet();
+		return dispatch.getHandler(data);
+	}
+
+	@Override
+	public HandlerCacheStats getHandlerCacheStats() {
+		return new HandlerCacheStats(hits.get(), misses.get(), uncached.get(),
+			invalidations.get(), dispatchCache.size());
+	}
+
+	@Override
+	public void invalidateHandlerCache() {
+		dispatchCache.clear();
+		invalidations.incrementAndGet();
 	}
 
 	// -- Typed methods --
@@ -59,4 +111,83 @@ public abstract class AbstractHandlerService<DT, PT extends HandlerPlugin<DT>>
 		return getHandler(data) != null;
 	}
 
+	// -- Internal methods --
+
+	/**
+	 * Gets the key under which the handler lookup for the given data may be
+	 * cached, or null if it must not be cached. Two data objects with equal keys
+	 * must be supported by the same {@link #isKeyDetermined key-determined}
+	 * handlers. The default implementation returns null, disabling the cache.
+	 */
+	protected Object getCacheKey(final DT data) {
+		return null;
+	}
+
+	/**
+	 * Gets whether the given handler's {@link HandlerPlugin#supports} result is
+	 * fully determined by the {@link #getCacheKey cache key} of the data. Other
+	 * handlers are asked again on every lookup. The default implementation
+	 * returns false.
+	 */
+	protected boolean isKeyDetermined(final PT handler) {
+		return false;
+	}
+
+	/** Finds the first handler supporting the given data, without caching. */
+	protected PT findHandler(final DT data) {
+		for (final PT handler : getInstances()) {
+			if (handler.supports(data)) return handler;
+		}
+		return null;
+	}
+
+	@Override
+	protected void instancesChanged() {
+		invalidateHandlerCache();
+	}
+
+	// -- Helper methods --
+
+	/**
+	 * Scans the handlers for the given data, recording the first key-determined
+	 * handler which supports it, preceded by all handlers which must be asked
+	 * each time.
+	 */
+	private Dispatch<PT> createDispatch(final DT data) {
+		final List<PT> candidates = new ArrayList<>();
+		for (final PT handler : getInstances()) {
+			if (!isKeyDetermined(handler)) candidates.add(handler);
+			else if (handler.supports(data)) {
+				return new Dispatch<>(candidates, handler);
+			}
+		}
+		return new Dispatch<>(candidates, null);
+	}
+
+	// -- Helper classes --
+
+	/** Cached result of a handler scan for one cache key. */
+	private static class Dispatch<PT extends HandlerPlugin<?>> {
+
+		/** Handlers to ask on every lookup, in priority order. */
+		private final Object[] candidates;
+
+		/** Handler to use if none of the candidates applies. */
+		private final PT fallback;
+
+		private Dispatch(final List<PT> candidates, final PT fallback) {
+			this.candidates = candidates.toArray();
+			this.fallback = fallback;
+		}
+
+		@SuppressWarnings("unchecked")
+		private <DT> PT getHandler(final DT data) {
+			for (final Object candidate : candidates) {
+				final HandlerPlugin<DT> handler = (HandlerPlugin<DT>) candidate;
+				if (handler.supports(data)) return (PT) handler;
+			}
+			return fallback;
+		}
+	}
+
 }
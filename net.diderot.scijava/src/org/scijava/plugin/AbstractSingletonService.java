@@ -37,9 +37,13 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.scijava.event.EventHandler;
 import org.scijava.log.LogService;
 import org.scijava.object.LazyObjects;
 import org.scijava.object.ObjectService;
+import org.scijava.plugin.event.PluginsAddedEvent;
+import org.scijava.plugin.event.PluginsListEvent;
+import org.scijava.plugin.event.PluginsRemovedEvent;
 
 /**
  * Abstract base class for {@link SingletonService}s.
@@ -57,13 +61,10 @@ public abstract class AbstractSingletonService<PT extends SingletonPlugin>
 	@Parameter
 	private ObjectService objectService;
 
-	// TODO: Listen for PluginsAddedEvent and PluginsRemovedEvent
-	// and update the list of singletons accordingly.
-
 	/** List of singleton plugin instances. */
-	private List<PT> instances;
+	private volatile List<PT> instances;
 
-	private Map<Class<? extends PT>, PT> instanceMap;
+	private volatile Map<Class<? extends PT>, PT> instanceMap;
 
 	// -- SingletonService methods --
 
@@ -103,6 +104,18 @@ public abstract class AbstractSingletonService<PT extends SingletonPlugin>
 		});
 	}
 
+	// -- Event handlers --
+
+	@EventHandler
+	protected void onEvent(final PluginsAddedEvent event) {
+		updateInstances(event);
+	}
+
+	@EventHandler
+	protected void onEvent(final PluginsRemovedEvent event) {
+		updateInstances(event);
+	}
+
 	// -- Internal methods --
 
 	/**
@@ -115,14 +128,63 @@ public abstract class AbstractSingletonService<PT extends SingletonPlugin>
 		return list;
 	}
 
+	/**
+	 * Called after the list of instances has changed because plugins of this
+	 * service's type were added or removed. Subclasses which derive state from
+	 * the instances should discard it here.
+	 */
+	protected void instancesChanged() {
+		// NB: No implementation needed.
+	}
+
 	// -- Helper methods --
 
 	private synchronized void initInstances() {
 		if (instances != null) return;
+		setInstances(getPluginService().createInstancesOfType(getPluginType()));
+	}
+
+	/**
+	 * Rebuilds the list of instances if the given event concerns plugins of this
+	 * service's type. Existing instances are kept; only the added plugins are
+	 * instantiated.
+	 */
+	private void updateInstances(final PluginsListEvent event) {
+		boolean relevant = false;
+		for (final PluginInfo<?> info : event.getItems()) {
+			if (getPluginType().isAssignableFrom(info.getPluginType())) {
+				relevant = true;
+				break;
+			}
+		}
+		if (!relevant) return;
+
+		synchronized (this) {
+			if (instances == null) return; // not yet initialized
+
+			final HashMap<String, PT> existing = new HashMap<>();
+			for (final PT plugin : instances) {
+				existing.put(plugin.getClass().getName(), plugin);
+			}
+			final List<PT> list = new ArrayList<>();
+			for (final PluginInfo<PT> info : getPluginService().getPluginsOfType(
+				getPluginType()))
+			{
+				final PT plugin = existing.get(info.getClassName());
+				if (plugin != null) list.add(plugin);
+				else {
+					final PT created = getPluginService().createInstance(info);
+					if (created != null) list.add(created);
+				}
+			}
+			setInstances(list);
+		}
+		instancesChanged();
+	}
 
+	private void setInstances(final List<PT> created) {
 		final List<PT> list =
-			Collections.unmodifiableList(filterInstances(getPluginService()
-				.createInstancesOfType(getPluginType())));
+			Collections.unmodifiableList(filterInstances(created));
 
 		final HashMap<Class<? extends PT>, PT> map =
 			new HashMap<>();
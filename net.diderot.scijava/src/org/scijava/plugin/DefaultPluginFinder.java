@@ -31,6 +31,7 @@
 
 package org.scijava.plugin;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -38,6 +39,7 @@ import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
 import org.scijava.annotations.Index;
+import org.scijava.annotations.IndexCache;
 import org.scijava.annotations.IndexItem;
 
 /**
@@ -46,6 +48,14 @@ import org.scijava.annotations.IndexItem;
  * It works by scanning the classpath for {@link Plugin} annotations
  * previously indexed by scijava-common itself.
  * </p>
+ * <p>
+ * The scanned indexes are kept in a persistent {@link IndexCache}, so that
+ * subsequent contexts with the same class path load them with a single read.
+ * The cache directory is defined by the {@code scijava.plugin.cache} system
+ * property, which may also be set to {@code false} to disable the cache; by
+ * default, it is {@code .scijava/plugin-cache} in the user's home. Either
+ * way, plugin classes are only loaded once they are needed.
+ * </p>
  * 
  * @author Curtis Rueden
  */
@@ -56,6 +66,9 @@ public class DefaultPluginFinder implements PluginFinder {
 
 	private final PluginBlacklist blacklist;
 
+	/** Cache of the annotation indexes, or null to always scan them. */
+	private final IndexCache cache;
+
 	// -- Constructors --
 
 	public DefaultPluginFinder() {
@@ -63,8 +76,19 @@ public class DefaultPluginFinder implements PluginFinder {
 	}
 
 	public DefaultPluginFinder(final ClassLoader classLoader) {
+		this(classLoader, sysPropCache());
+	}
+
+	/**
+	 * Creates a plugin finder which keeps the annotation indexes in the given
+	 * cache, or always scans them if it is null.
+	 */
+	public DefaultPluginFinder(final ClassLoader classLoader,
+		final IndexCache cache)
+	{
 		customClassLoader = classLoader;
 		blacklist = new SysPropBlacklist();
+		this.cache = cache;
 	}
 
 	// -- PluginFinder methods --
@@ -78,8 +102,9 @@ public class DefaultPluginFinder implements PluginFinder {
 
 		// load the annotation indexes
 		final ClassLoader classLoader = getClassLoader();
-		final Index<Plugin> annotationIndex =
-			Index.load(Plugin.class, classLoader);
+		final Iterable<IndexItem<Plugin>> annotationIndex = cache == null ? //
+			Index.load(Plugin.class, classLoader) : //
+			cache.load(Plugin.class, classLoader);
 
 		// create a PluginInfo object for each item in the index
 		for (final IndexItem<Plugin> item : annotationIndex) {
@@ -116,6 +141,20 @@ public class DefaultPluginFinder implements PluginFinder {
 		return Thread.currentThread().getContextClassLoader();
 	}
 
+	/**
+	 * Gets the cache defined by the {@code scijava.plugin.cache} system
+	 * property, or null if it is disabled.
+	 */
+	private static IndexCache sysPropCache() {
+		final String sysProp = System.getProperty("scijava.plugin.cache");
+		if ("false".equals(sysProp)) return null;
+		if (sysProp != null) return new IndexCache(new File(sysProp));
+		final String userHome = System.getProperty("user.home");
+		if (userHome == null) return null;
+		return new IndexCache(new File(new File(userHome, ".scijava"),
+			"plugin-cache"));
+	}
+
 	// -- Helper classes --
 
 	private interface PluginBlacklist {
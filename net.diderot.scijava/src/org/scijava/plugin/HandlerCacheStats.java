@@ -0,0 +1,101 @@
+/*
+ * #%L
+ * SciJava Common shared library for SciJava software.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.plugin;
+
+/**
+ * Immutable snapshot of the dispatch cache counters of a
+ * {@link HandlerService}.
+ *
+ * @see HandlerService#getHandlerCacheStats()
+ */
+public class HandlerCacheStats {
+
+	private final long hitCount;
+	private final long missCount;
+	private final long uncachedCount;
+	private final long invalidationCount;
+	private final int size;
+
+	public HandlerCacheStats(final long hitCount, final long missCount,
+		final long uncachedCount, final long invalidationCount, final int size)
+	{
+		this.hitCount = hitCount;
+		this.missCount = missCount;
+		this.uncachedCount = uncachedCount;
+		this.invalidationCount = invalidationCount;
+		this.size = size;
+	}
+
+	/** Gets the number of handler lookups answered from the cache. */
+	public long getHitCount() {
+		return hitCount;
+	}
+
+	/** Gets the number of handler lookups which had to scan all handlers. */
+	public long getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * Gets the number of handler lookups for data which cannot be cached, and
+	 * hence always scan all handlers.
+	 */
+	public long getUncachedCount() {
+		return uncachedCount;
+	}
+
+	/** Gets the number of times the cache was cleared. */
+	public long getInvalidationCount() {
+		return invalidationCount;
+	}
+
+	/** Gets the number of cached dispatch entries. */
+	public int getSize() {
+		return size;
+	}
+
+	/** Gets the fraction of cacheable lookups which were answered from the cache. */
+	public double getHitRate() {
+		final long requests = hitCount + missCount;
+		return requests == 0 ? 1 : (double) hitCount / requests;
+	}
+
+	// -- Object methods --
+
+	@Override
+	public String toString() {
+		return "hits=" + hitCount + ", misses=" + missCount + ", uncached=" +
+			uncachedCount + ", invalidations=" + invalidationCount + ", size=" +
+			size;
+	}
+
+}
@@ -56,6 +56,16 @@ public interface HandlerService<DT, PT extends HandlerPlugin<DT>> extends
 	 */
 	PT getHandler(DT data);
 
+	/** Gets a snapshot of the counters of the handler dispatch cache. */
+	HandlerCacheStats getHandlerCacheStats();
+
+	/**
+	 * Discards all cached handler lookups. This happens automatically when
+	 * plugins are added or removed, but must be done explicitly if handlers
+	 * change which data they support for any other reason.
+	 */
+	void invalidateHandlerCache();
+
 	// NB: Javadoc overrides.
 
 	// -- SingletonService methods --
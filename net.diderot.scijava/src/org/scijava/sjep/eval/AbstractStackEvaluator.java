@@ -62,9 +62,9 @@ public abstract class AbstractStackEvaluator extends AbstractEvaluator
 	@Override
 	public Object evaluate(final LinkedList<Object> queue) {
 		// Process the postfix token queue.
+		// NB: Leave the queue intact, so that it can be evaluated again.
 		final Deque<Object> stack = new ArrayDeque<Object>();
-		while (!queue.isEmpty()) {
-			final Object token = queue.removeFirst();
+		for (final Object token : queue) {
 			final Object result;
 			if (Tokens.isOperator(token)) {
 				result = execute((Operator) token, stack);
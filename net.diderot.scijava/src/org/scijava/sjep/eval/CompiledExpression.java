@@ -0,0 +1,221 @@
+/*
+ * #%L
+ * SciJava mathematical expression parser.
+ * %%
+ * Copyright (C) 2015 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.sjep.eval;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.scijava.sjep.SyntaxTree;
+import org.scijava.sjep.eval.CompiledNode.Kind;
+import org.scijava.sjep.eval.CompiledNode.Slot;
+
+/**
+ * An expression compiled by an {@link ExpressionCompiler}, which can be
+ * evaluated any number of times, without boxing or allocating.
+ * <p>
+ * Each variable of the expression is bound to a slot, whose index is looked up
+ * once with {@link #slot(String)}; the slots are then assigned with the
+ * {@code set} methods before each evaluation. Values are converted to the
+ * variable's declared type as a Java cast would.
+ * </p>
+ * <p>
+ * A compiled expression holds the values of its variables, so it is not
+ * thread-safe; use a {@link #copy()} per thread instead.
+ * </p>
+ */
+public class CompiledExpression {
+
+	private final SyntaxTree syntaxTree;
+	private final Map<String, Kind> kinds;
+	private final CompiledNode root;
+	private final Slot[] slots;
+	private final List<String> variables;
+
+	CompiledExpression(final SyntaxTree syntaxTree,
+		final Map<String, Kind> kinds, final CompiledNode root,
+		final List<CompiledNode> variableNodes)
+	{
+		this.syntaxTree = syntaxTree;
+		this.kinds = kinds;
+		this.root = root;
+		slots = new Slot[variableNodes.size()];
+		final ArrayList<String> names = new ArrayList<String>(slots.length);
+		for (int i = 0; i < slots.length; i++) {
+			slots[i] = (Slot) variableNodes.get(i);
+			names.add(slots[i].name());
+		}
+		variables = Collections.unmodifiableList(names);
+	}
+
+	// -- CompiledExpression methods --
+
+	/** Gets the syntax tree from which the expression was compiled. */
+	public SyntaxTree getSyntaxTree() {
+		return syntaxTree;
+	}
+
+	/**
+	 * Gets the type of the expression's result: {@code boolean.class},
+	 * {@code int.class}, {@code long.class}, {@code float.class} or
+	 * {@code double.class}.
+	 */
+	public Class<?> getType() {
+		return root.kind().type();
+	}
+
+	/** Gets the names of the expression's variables, in slot order. */
+	public List<String> getVariables() {
+		return variables;
+	}
+
+	/**
+	 * Gets the slot of the given variable.
+	 *
+	 * @return The slot index, or -1 if the expression does not use the
+	 *         variable.
+	 */
+	public int slot(final String name) {
+		return variables.indexOf(name);
+	}
+
+	/** Gets the type of the variable in the given slot. */
+	public Class<?> getType(final int slot) {
+		return ((CompiledNode) slots[slot]).kind().type();
+	}
+
+	/** Assigns a numeric variable. */
+	public void set(final int slot, final double value) {
+		slots[slot].set(value);
+	}
+
+	/** Assigns a numeric variable, without loss of precision for longs. */
+	public void set(final int slot, final long value) {
+		slots[slot].set(value);
+	}
+
+	/** Assigns a boolean variable. */
+	public void set(final int slot, final boolean value) {
+		slots[slot].set(value);
+	}
+
+	/**
+	 * Assigns a variable by name, from a boxed {@link Number} or
+	 * {@link Boolean}. Variables which the expression does not use are ignored.
+	 */
+	public void set(final String name, final Object value) {
+		final int slot = slot(name);
+		if (slot < 0) return;
+		if (value instanceof Boolean) set(slot, (boolean) (Boolean) value);
+		else if (value instanceof Double || value instanceof Float) {
+			set(slot, ((Number) value).doubleValue());
+		}
+		else if (value instanceof Number) set(slot, ((Number) value).longValue());
+		else throw new IllegalArgumentException("Unsupported value for " + name +
+			": " + value);
+	}
+
+	/** Assigns variables en masse, as {@link #set(String, Object)} does. */
+	public void setAll(final Map<? extends String, ? extends Object> map) {
+		for (final Map.Entry<? extends String, ? extends Object> entry : map
+			.entrySet())
+		{
+			set(entry.getKey(), entry.getValue());
+		}
+	}
+
+	/** Evaluates the expression, boxing the result. */
+	public Object evaluate() {
+		return root.value();
+	}
+
+	/**
+	 * Evaluates a boolean expression.
+	 *
+	 * @throws UnsupportedOperationException if the expression is numeric.
+	 */
+	public boolean evaluateBoolean() {
+		return root.z();
+	}
+
+	/**
+	 * Evaluates a numeric expression, cast to an int.
+	 *
+	 * @throws UnsupportedOperationException if the expression is boolean.
+	 */
+	public int evaluateInt() {
+		return root.i();
+	}
+
+	/**
+	 * Evaluates a numeric expression, cast to a long.
+	 *
+	 * @throws UnsupportedOperationException if the expression is boolean.
+	 */
+	public long evaluateLong() {
+		return root.l();
+	}
+
+	/**
+	 * Evaluates a numeric expression, cast to a float.
+	 *
+	 * @throws UnsupportedOperationException if the expression is boolean.
+	 */
+	public float evaluateFloat() {
+		return root.f();
+	}
+
+	/**
+	 * Evaluates a numeric expression, as a double.
+	 *
+	 * @throws UnsupportedOperationException if the expression is boolean.
+	 */
+	public double evaluateDouble() {
+		return root.d();
+	}
+
+	/**
+	 * Creates an independent copy of the expression, with its own variable
+	 * slots (initially zero or false), for use by another thread.
+	 */
+	public CompiledExpression copy() {
+		return ExpressionCompiler.compile(syntaxTree, kinds);
+	}
+
+	// -- Object methods --
+
+	@Override
+	public String toString() {
+		return syntaxTree.toString();
+	}
+
+}
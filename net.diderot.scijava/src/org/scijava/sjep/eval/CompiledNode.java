@@ -0,0 +1,539 @@
+/*
+ * #%L
+ * SciJava mathematical expression parser.
+ * %%
+ * Copyright (C) 2015 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.sjep.eval;
+
+/**
+ * A node of a {@link CompiledExpression}'s evaluation tree.
+ * <p>
+ * Each node has a fixed {@link Kind} of result, decided at compile time, and
+ * computes it through the accessor of that kind (e.g., {@link #d()} for
+ * {@link Kind#DOUBLE}) without boxing. The accessors of the other numeric kinds
+ * convert the result as a Java cast would.
+ * </p>
+ *
+ * @see ExpressionCompiler
+ */
+abstract class CompiledNode {
+
+	/** The kinds of value an expression can compute, widest last. */
+	enum Kind {
+		BOOLEAN(boolean.class), INT(int.class), LONG(long.class),
+			FLOAT(float.class), DOUBLE(double.class);
+
+		private final Class<?> type;
+
+		private Kind(final Class<?> type) {
+			this.type = type;
+		}
+
+		public Class<?> type() {
+			return type;
+		}
+
+		public boolean isNumeric() {
+			return this != BOOLEAN;
+		}
+
+		public boolean isIntegral() {
+			return this == INT || this == LONG;
+		}
+
+		/** Gets the kind of the given primitive or boxed type, or null. */
+		public static Kind of(final Class<?> c) {
+			if (c == boolean.class || c == Boolean.class) return BOOLEAN;
+			if (c == byte.class || c == Byte.class || c == short.class ||
+				c == Short.class || c == int.class || c == Integer.class) return INT;
+			if (c == long.class || c == Long.class) return LONG;
+			if (c == float.class || c == Float.class) return FLOAT;
+			if (c == double.class || c == Double.class) return DOUBLE;
+			return null;
+		}
+
+		/** Gets the kind to which both operands of a binary operator promote. */
+		public static Kind promote(final Kind a, final Kind b) {
+			return a.compareTo(b) > 0 ? a : b;
+		}
+	}
+
+	private final Kind kind;
+
+	CompiledNode(final Kind kind) {
+		this.kind = kind;
+	}
+
+	// -- CompiledNode methods --
+
+	public Kind kind() {
+		return kind;
+	}
+
+	/** Gets whether the value of this node never changes. */
+	public boolean isConstant() {
+		return false;
+	}
+
+	public boolean z() {
+		throw new UnsupportedOperationException("Not a boolean expression");
+	}
+
+	public abstract int i();
+
+	public abstract long l();
+
+	public abstract float f();
+
+	public abstract double d();
+
+	/** Gets the result as a boxed object of the node's kind. */
+	public Object value() {
+		switch (kind) {
+			case BOOLEAN:
+				return z();
+			case INT:
+				return i();
+			case LONG:
+				return l();
+			case FLOAT:
+				return f();
+			default:
+				return d();
+		}
+	}
+
+	// -- Kinds --
+
+	static abstract class BooleanNode extends CompiledNode {
+
+		BooleanNode() {
+			super(Kind.BOOLEAN);
+		}
+
+		@Override
+		public abstract boolean z();
+
+		@Override
+		public int i() {
+			throw notNumeric();
+		}
+
+		@Override
+		public long l() {
+			throw notNumeric();
+		}
+
+		@Override
+		public float f() {
+			throw notNumeric();
+		}
+
+		@Override
+		public double d() {
+			throw notNumeric();
+		}
+
+		private UnsupportedOperationException notNumeric() {
+			return new UnsupportedOperationException("Not a numeric expression");
+		}
+	}
+
+	static abstract class IntNode extends CompiledNode {
+
+		IntNode() {
+			super(Kind.INT);
+		}
+
+		@Override
+		public long l() {
+			return i();
+		}
+
+		@Override
+		public float f() {
+			return i();
+		}
+
+		@Override
+		public double d() {
+			return i();
+		}
+	}
+
+	static abstract class LongNode extends CompiledNode {
+
+		LongNode() {
+			super(Kind.LONG);
+		}
+
+		@Override
+		public int i() {
+			return (int) l();
+		}
+
+		@Override
+		public float f() {
+			return l();
+		}
+
+		@Override
+		public double d() {
+			return l();
+		}
+	}
+
+	static abstract class FloatNode extends CompiledNode {
+
+		FloatNode() {
+			super(Kind.FLOAT);
+		}
+
+		@Override
+		public int i() {
+			return (int) f();
+		}
+
+		@Override
+		public long l() {
+			return (long) f();
+		}
+
+		@Override
+		public double d() {
+			return f();
+		}
+	}
+
+	static abstract class DoubleNode extends CompiledNode {
+
+		DoubleNode() {
+			super(Kind.DOUBLE);
+		}
+
+		@Override
+		public int i() {
+			return (int) d();
+		}
+
+		@Override
+		public long l() {
+			return (long) d();
+		}
+
+		@Override
+		public float f() {
+			return (float) d();
+		}
+	}
+
+	// -- Leaves --
+
+	/** A variable slot, whose value is assigned before each evaluation. */
+	interface Slot {
+
+		String name();
+
+		void set(boolean value);
+
+		void set(long value);
+
+		void set(double value);
+	}
+
+	static final class BooleanVariable extends BooleanNode implements Slot {
+
+		private final String name;
+		private boolean value;
+
+		BooleanVariable(final String name) {
+			this.name = name;
+		}
+
+		@Override
+		public boolean z() {
+			return value;
+		}
+
+		@Override
+		public String name() {
+			return name;
+		}
+
+		@Override
+		public void set(final boolean v) {
+			value = v;
+		}
+
+		@Override
+		public void set(final long v) {
+			throw new IllegalArgumentException("Not a numeric variable: " + name);
+		}
+
+		@Override
+		public void set(final double v) {
+			throw new IllegalArgumentException("Not a numeric variable: " + name);
+		}
+	}
+
+	static final class IntVariable extends IntNode implements Slot {
+
+		private final String name;
+		private int value;
+
+		IntVariable(final String name) {
+			this.name = name;
+		}
+
+		@Override
+		public int i() {
+			return value;
+		}
+
+		@Override
+		public String name() {
+			return name;
+		}
+
+		@Override
+		public void set(final boolean v) {
+			throw new IllegalArgumentException("Not a boolean variable: " + name);
+		}
+
+		@Override
+		public void set(final long v) {
+			value = (int) v;
+		}
+
+		@Override
+		public void set(final double v) {
+			value = (int) v;
+		}
+	}
+
+	static final class LongVariable extends LongNode implements Slot {
+
+		private final String name;
+		private long value;
+
+		LongVariable(final String name) {
+			this.name = name;
+		}
+
+		@Override
+		public long l() {
+			return value;
+		}
+
+		@Override
+		public String name() {
+			return name;
+		}
+
+		@Override
+		public void set(final boolean v) {
+			throw new IllegalArgumentException("Not a boolean variable: " + name);
+		}
+
+		@Override
+		public void set(final long v) {
+			value = v;
+		}
+
+		@Override
+		public void set(final double v) {
+			value = (long) v;
+		}
+	}
+
+	static final class FloatVariable extends FloatNode implements Slot {
+
+		private final String name;
+		private float value;
+
+		FloatVariable(final String name) {
+			this.name = name;
+		}
+
+		@Override
+		public float f() {
+			return value;
+		}
+
+		@Override
+		public String name() {
+			return name;
+		}
+
+		@Override
+		public void set(final boolean v) {
+			throw new IllegalArgumentException("Not a boolean variable: " + name);
+		}
+
+		@Override
+		public void set(final long v) {
+			value = v;
+		}
+
+		@Override
+		public void set(final double v) {
+			value = (float) v;
+		}
+	}
+
+	static final class DoubleVariable extends DoubleNode implements Slot {
+
+		private final String name;
+		private double value;
+
+		DoubleVariable(final String name) {
+			this.name = name;
+		}
+
+		@Override
+		public double d() {
+			return value;
+		}
+
+		@Override
+		public String name() {
+			return name;
+		}
+
+		@Override
+		public void set(final boolean v) {
+			throw new IllegalArgumentException("Not a boolean variable: " + name);
+		}
+
+		@Override
+		public void set(final long v) {
+			value = v;
+		}
+
+		@Override
+		public void set(final double v) {
+			value = v;
+		}
+	}
+
+	static final class BooleanConstant extends BooleanNode {
+
+		private final boolean value;
+
+		BooleanConstant(final boolean value) {
+			this.value = value;
+		}
+
+		@Override
+		public boolean isConstant() {
+			return true;
+		}
+
+		@Override
+		public boolean z() {
+			return value;
+		}
+	}
+
+	static final class IntConstant extends IntNode {
+
+		private final int value;
+
+		IntConstant(final int value) {
+			this.value = value;
+		}
+
+		@Override
+		public boolean isConstant() {
+			return true;
+		}
+
+		@Override
+		public int i() {
+			return value;
+		}
+	}
+
+	static final class LongConstant extends LongNode {
+
+		private final long value;
+
+		LongConstant(final long value) {
+			this.value = value;
+		}
+
+		@Override
+		public boolean isConstant() {
+			return true;
+		}
+
+		@Override
+		public long l() {
+			return value;
+		}
+	}
+
+	static final class FloatConstant extends FloatNode {
+
+		private final float value;
+
+		FloatConstant(final float value) {
+			this.value = value;
+		}
+
+		@Override
+		public boolean isConstant() {
+			return true;
+		}
+
+		@Override
+		public float f() {
+			return value;
+		}
+	}
+
+	static final class DoubleConstant extends DoubleNode {
+
+		private final double value;
+
+		DoubleConstant(final double value) {
+			this.value = value;
+		}
+
+		@Override
+		public boolean isConstant() {
+			return true;
+		}
+
+		@Override
+		public double d() {
+			return value;
+		}
+	}
+
+}
@@ -0,0 +1,660 @@
+/*
+ * #%L
+ * SciJava mathematical expression parser.
+ * %%
+ * Copyright (C) 2015 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.sjep.eval;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.scijava.sjep.ExpressionParser;
+import org.scijava.sjep.Function;
+import org.scijava.sjep.Operator;
+import org.scijava.sjep.Operators;
+import org.scijava.sjep.SyntaxTree;
+import org.scijava.sjep.Tokens;
+import org.scijava.sjep.Variable;
+import org.scijava.sjep.eval.CompiledNode.BooleanConstant;
+import org.scijava.sjep.eval.CompiledNode.BooleanNode;
+import org.scijava.sjep.eval.CompiledNode.BooleanVariable;
+import org.scijava.sjep.eval.CompiledNode.DoubleConstant;
+import org.scijava.sjep.eval.CompiledNode.DoubleNode;
+import org.scijava.sjep.eval.CompiledNode.DoubleVariable;
+import org.scijava.sjep.eval.CompiledNode.FloatConstant;
+import org.scijava.sjep.eval.CompiledNode.FloatNode;
+import org.scijava.sjep.eval.CompiledNode.FloatVariable;
+import org.scijava.sjep.eval.CompiledNode.IntConstant;
+import org.scijava.sjep.eval.CompiledNode.IntNode;
+import org.scijava.sjep.eval.CompiledNode.IntVariable;
+import org.scijava.sjep.eval.CompiledNode.Kind;
+import org.scijava.sjep.eval.CompiledNode.LongConstant;
+import org.scijava.sjep.eval.CompiledNode.LongNode;
+import org.scijava.sjep.eval.CompiledNode.LongVariable;
+
+/**
+ * Compiles {@link SyntaxTree}s into reusable {@link CompiledExpression}s.
+ * <p>
+ * Unlike the {@link StackEvaluator}s, which dispatch every operator on boxed
+ * tokens, the compiler decides the type of every subexpression up front and
+ * builds a tree of type-specialized nodes, so evaluation neither boxes nor
+ * allocates. Variables are bound to slots of the compiled expression, which
+ * are assigned before each evaluation.
+ * </p>
+ * <p>
+ * Supported are {@code boolean}, {@code int}, {@code long}, {@code float} and
+ * {@code double} literals and variables; variables are {@code double} unless
+ * {@link #declare declared} otherwise. Operands are promoted as in Java, with
+ * the following operators:
+ * </p>
+ * <ul>
+ * <li>unary {@code +}, {@code -}, {@code ~} and {@code !}</li>
+ * <li>{@code ^} (power, always {@code double}), {@code *}, {@code /},
+ * {@code %}, {@code +} and {@code -}</li>
+ * <li>{@code <<}, {@code >>} and {@code >>>}</li>
+ * <li>{@code <}, {@code >}, {@code <=}, {@code >=}, {@code ==} and {@code !=}
+ * (which compare numbers by value)</li>
+ * <li>{@code &}, {@code |}, {@code &&} and {@code ||}</li>
+ * <li>parentheses, and calls to the functions {@code abs}, {@code min} and
+ * {@code max} (which preserve the type of their arguments) and {@code sqrt},
+ * {@code cbrt}, {@code exp}, {@code log}, {@code log10}, {@code sin},
+ * {@code cos}, {@code tan}, {@code asin}, {@code acos}, {@code atan},
+ * {@code sinh}, {@code cosh}, {@code tanh}, {@code floor}, {@code ceil},
+ * {@code rint}, {@code signum}, {@code atan2}, {@code hypot} and {@code pow}
+ * (which compute {@code double}s as in {@link Math})</li>
+ * </ul>
+ * <p>
+ * Comparisons follow the rules of Java (IEEE 754) for {@code NaN}: every
+ * comparison with a {@code NaN} operand is false, except {@code !=}, which is
+ * true. This differs from the {@link DefaultEvaluator}, which compares values
+ * via {@link Comparable#compareTo} and {@link Object#equals}, and thus
+ * considers {@code NaN} greater than any other number and equal to itself.
+ * </p>
+ * <p>
+ * Subexpressions with only constant operands are computed once, at compile
+ * time. Anything else is rejected with an {@link IllegalArgumentException}.
+ * </p>
+ *
+ * @see CompiledExpression
+ */
+public class ExpressionCompiler {
+
+	/** Names of the unary functions computed on {@code double}s. */
+	private static final List<String> UNARY_FUNCTIONS = Arrays.asList("sqrt",
+		"cbrt", "exp", "log", "log10", "sin", "cos", "tan", "asin", "acos", "atan",
+		"sinh", "cosh", "tanh", "floor", "ceil", "rint", "signum");
+
+	/** Names of the binary functions computed on {@code double}s. */
+	private static final List<String> BINARY_FUNCTIONS = Arrays.asList("atan2",
+		"hypot", "pow");
+
+	private final ExpressionParser parser;
+
+	private final HashMap<String, Kind> kinds = new HashMap<String, Kind>();
+
+	public ExpressionCompiler() {
+		this(new ExpressionParser());
+	}
+
+	public ExpressionCompiler(final ExpressionParser parser) {
+		this.parser = parser;
+	}
+
+	// -- ExpressionCompiler methods --
+
+	/** Gets the parser used when compiling infix expressions. */
+	public ExpressionParser getParser() {
+		return parser;
+	}
+
+	/**
+	 * Declares the type of the given variable, for expressions compiled from
+	 * now on.
+	 *
+	 * @param name The name of the variable.
+	 * @param type The variable's type: {@code boolean}, {@code int},
+	 *          {@code long}, {@code float} or {@code double} (primitive or
+	 *          boxed; {@code byte} and {@code short} become {@code int}).
+	 */
+	public void declare(final String name, final Class<?> type) {
+		final Kind kind = Kind.of(type);
+		if (kind == null) {
+			throw new IllegalArgumentException("Unsupported variable type: " + type);
+		}
+		kinds.put(name, kind);
+	}
+
+	/** Compiles the given infix expression. */
+	public CompiledExpression compile(final String expression) {
+		return compile(parser.parseTree(expression));
+	}
+
+	/** Compiles the given syntax tree. */
+	public CompiledExpression compile(final SyntaxTree syntaxTree) {
+		return compile(syntaxTree, new HashMap<String, Kind>(kinds));
+	}
+
+	// -- Internal methods --
+
+	static CompiledExpression compile(final SyntaxTree syntaxTree,
+		final Map<String, Kind> kinds)
+	{
+		final Compilation c = new Compilation(kinds);
+		final CompiledNode root = c.node(syntaxTree);
+		return new CompiledExpression(syntaxTree, kinds, root,
+			new ArrayList<CompiledNode>(c.variables.values()));
+	}
+
+	// -- Helper classes --
+
+	/** State of a single compilation. */
+	private static class Compilation {
+
+		private final Map<String, Kind> kinds;
+
+		private final LinkedHashMap<String, CompiledNode> variables =
+			new LinkedHashMap<String, CompiledNode>();
+
+		public Compilation(final Map<String, Kind> kinds) {
+			this.kinds = kinds;
+		}
+
+		public CompiledNode node(final SyntaxTree tree) {
+			final Object token = tree.token();
+			if (Tokens.isVariable(token)) {
+				return variable(((Variable) token).getToken());
+			}
+			if (token instanceof Boolean) return new BooleanConstant((Boolean) token);
+			if (token instanceof Integer || token instanceof Short ||
+				token instanceof Byte)
+			{
+				return new IntConstant(((Number) token).intValue());
+			}
+			if (token instanceof Long) return new LongConstant((Long) token);
+			if (token instanceof Float) return new FloatConstant((Float) token);
+			if (token instanceof Double) return new DoubleConstant((Double) token);
+			if (token instanceof Function) return function(tree);
+			if (Tokens.isMatchingGroup(token, Operators.PARENS) &&
+				tree.count() == 1)
+			{
+				return node(tree.child(0));
+			}
+			if (Tokens.isOperator(token) && tree.count() == 1) {
+				final CompiledNode a = node(tree.child(0));
+				return fold(unary((Operator) token, a), a);
+			}
+			if (Tokens.isOperator(token) && tree.count() == 2) {
+				final CompiledNode a = node(tree.child(0)), b = node(tree.child(1));
+				return fold(binary((Operator) token, a, b), a, b);
+			}
+			throw new IllegalArgumentException("Unsupported token: " + token);
+		}
+
+		private CompiledNode variable(final String name) {
+			CompiledNode v = variables.get(name);
+			if (v != null) return v;
+			final Kind kind = kinds.containsKey(name) ? kinds.get(name) : Kind.DOUBLE;
+			switch (kind) {
+				case BOOLEAN:
+					v = new BooleanVariable(name);
+					break;
+				case INT:
+					v = new IntVariable(name);
+					break;
+				case LONG:
+					v = new LongVariable(name);
+					break;
+				case FLOAT:
+					v = new FloatVariable(name);
+					break;
+				default:
+					v = new DoubleVariable(name);
+			}
+			variables.put(name, v);
+			return v;
+		}
+
+		private CompiledNode function(final SyntaxTree tree) {
+			final Object name = tree.child(0).token();
+			final SyntaxTree group = tree.child(1);
+			if (!Tokens.isVariable(name) ||
+				!Tokens.isMatchingGroup(group.token(), Operators.PARENS))
+			{
+				throw new IllegalArgumentException("Unsupported function: " + name);
+			}
+			final String fn = ((Variable) name).getToken();
+			final CompiledNode[] args = new CompiledNode[group.count()];
+			for (int i = 0; i < args.length; i++) {
+				args[i] = node(group.child(i));
+				if (!args[i].kind().isNumeric()) {
+					throw new IllegalArgumentException("Non-numeric argument to " + fn);
+				}
+			}
+
+			final int unary = UNARY_FUNCTIONS.indexOf(fn);
+			final int binary = BINARY_FUNCTIONS.indexOf(fn);
+			if (fn.equals("abs")) {
+				checkArity(fn, args, 1);
+				return fold(abs(args[0]), args);
+			}
+			if (fn.equals("min") || fn.equals("max")) {
+				checkArity(fn, args, 2);
+				return fold(minMax(fn.equals("max"), args[0], args[1]), args);
+			}
+			if (unary >= 0) {
+				checkArity(fn, args, 1);
+				return fold(new UnaryFunction(unary, args[0]), args);
+			}
+			if (binary >= 0) {
+				checkArity(fn, args, 2);
+				return fold(new BinaryFunction(binary, args[0], args[1]), args);
+			}
+			throw new IllegalArgumentException("Unknown function: " + fn);
+		}
+
+		private void checkArity(final String fn, final CompiledNode[] args,
+			final int arity)
+		{
+			if (args.length == arity) return;
+			throw new IllegalArgumentException("Function " + fn + " takes " +
+				arity + " argument(s), not " + args.length);
+		}
+	}
+
+	// -- Helper methods - operators --
+
+	private static CompiledNode unary(final Operator op, final CompiledNode a) {
+		final Kind kind = a.kind();
+		if (op == Operators.POS && kind.isNumeric()) return a;
+		if (op == Operators.NEG && kind.isNumeric()) return neg(a);
+		if (op == Operators.COMPLEMENT && kind.isIntegral()) return complement(a);
+		if (op == Operators.NOT && kind == Kind.BOOLEAN) return not(a);
+		throw unsupported(op, a);
+	}
+
+	private static CompiledNode binary(final Operator op, final CompiledNode a,
+		final CompiledNode b)
+	{
+		final Kind ka = a.kind(), kb = b.kind();
+		final boolean numeric = ka.isNumeric() && kb.isNumeric();
+		final boolean integral = ka.isIntegral() && kb.isIntegral();
+		final boolean bool = ka == Kind.BOOLEAN && kb == Kind.BOOLEAN;
+		final Kind kind = Kind.promote(ka, kb);
+		if (op == Operators.POW && numeric) return pow(a, b);
+		if (op == Operators.MUL && numeric) return mul(kind, a, b);
+		if (op == Operators.DIV && numeric) return div(kind, a, b);
+		if (op == Operators.MOD && numeric) return mod(kind, a, b);
+		if (op == Operators.ADD && numeric) return add(kind, a, b);
+		if (op == Operators.SUB && numeric) return sub(kind, a, b);
+		if (op == Operators.LEFT_SHIFT && integral) return leftShift(a, b);
+		if (op == Operators.RIGHT_SHIFT && integral) return rightShift(a, b);
+		if (op == Operators.UNSIGNED_RIGHT_SHIFT && integral) {
+			return unsignedRightShift(a, b);
+		}
+		if (op == Operators.LESS_THAN && numeric) return lessThan(kind, a, b);
+		if (op == Operators.GREATER_THAN && numeric) return lessThan(kind, b, a);
+		if (op == Operators.LESS_THAN_OR_EQUAL && numeric) {
+			return lessOrEqual(kind, a, b);
+		}
+		if (op == Operators.GREATER_THAN_OR_EQUAL && numeric) {
+			return lessOrEqual(kind, b, a);
+		}
+		if (op == Operators.EQUAL && (numeric || bool)) return equal(kind, a, b);
+		if (op == Operators.NOT_EQUAL && (numeric || bool)) {
+			return not(equal(kind, a, b));
+		}
+		if (op == Operators.BITWISE_AND && (integral || bool)) {
+			return bitwiseAnd(kind, a, b);
+		}
+		if (op == Operators.BITWISE_OR && (integral || bool)) {
+			return bitwiseOr(kind, a, b);
+		}
+		if (op == Operators.LOGICAL_AND && bool) return logicalAnd(a, b);
+		if (op == Operators.LOGICAL_OR && bool) return logicalOr(a, b);
+		throw unsupported(op, a, b);
+	}
+
+	// -- unary --
+
+	private static CompiledNode neg(final CompiledNode a) {
+		switch (a.kind()) {
+			case INT: return new IntNode() { @Override public int i() { return -a.i(); } };
+			case LONG: return new LongNode() { @Override public long l() { return -a.l(); } };
+			case FLOAT: return new FloatNode() { @Override public float f() { return -a.f(); } };
+			default: return new DoubleNode() { @Override public double d() { return -a.d(); } };
+		}
+	}
+
+	private static CompiledNode complement(final CompiledNode a) {
+		if (a.kind() == Kind.INT) {
+			return new IntNode() { @Override public int i() { return ~a.i(); } };
+		}
+		return new LongNode() { @Override public long l() { return ~a.l(); } };
+	}
+
+	private static CompiledNode not(final CompiledNode a) {
+		return new BooleanNode() { @Override public boolean z() { return !a.z(); } };
+	}
+
+	// -- power, multiplicative --
+
+	private static CompiledNode pow(final CompiledNode a, final CompiledNode b) {
+		return new DoubleNode() { @Override public double d() { return Math.pow(a.d(), b.d()); } };
+	}
+
+	private static CompiledNode mul(final Kind kind, final CompiledNode a,
+		final CompiledNode b)
+	{
+		switch (kind) {
+			case INT: return new IntNode() { @Override public int i() { return a.i() * b.i(); } };
+			case LONG: return new LongNode() { @Override public long l() { return a.l() * b.l(); } };
+			case FLOAT: return new FloatNode() { @Override public float f() { return a.f() * b.f(); } };
+			default: return new DoubleNode() { @Override public double d() { return a.d() * b.d(); } };
+		}
+	}
+
+	private static CompiledNode div(final Kind kind, final CompiledNode a,
+		final CompiledNode b)
+	{
+		switch (kind) {
+			case INT: return new IntNode() { @Override public int i() { return a.i() / b.i(); } };
+			case LONG: return new LongNode() { @Override public long l() { return a.l() / b.l(); } };
+			case FLOAT: return new FloatNode() { @Override public float f() { return a.f() / b.f(); } };
+			default: return new DoubleNode() { @Override public double d() { return a.d() / b.d(); } };
+		}
+	}
+
+	private static CompiledNode mod(final Kind kind, final CompiledNode a,
+		final CompiledNode b)
+	{
+		switch (kind) {
+			case INT: return new IntNode() { @Override public int i() { return a.i() % b.i(); } };
+			case LONG: return new LongNode() { @Override public long l() { return a.l() % b.l(); } };
+			case FLOAT: return new FloatNode() { @Override public float f() { return a.f() % b.f(); } };
+			default: return new DoubleNode() { @Override public double d() { return a.d() % b.d(); } };
+		}
+	}
+
+	// -- additive --
+
+	private static CompiledNode add(final Kind kind, final CompiledNode a,
+		final CompiledNode b)
+	{
+		switch (kind) {
+			case INT: return new IntNode() { @Override public int i() { return a.i() + b.i(); } };
+			case LONG: return new LongNode() { @Override public long l() { return a.l() + b.l(); } };
+			case FLOAT: return new FloatNode() { @Override public float f() { return a.f() + b.f(); } };
+			default: return new DoubleNode() { @Override public double d() { return a.d() + b.d(); } };
+		}
+	}
+
+	private static CompiledNode sub(final Kind kind, final CompiledNode a,
+		final CompiledNode b)
+	{
+		switch (kind) {
+			case INT: return new IntNode() { @Override public int i() { return a.i() - b.i(); } };
+			case LONG: return new LongNode() { @Override public long l() { return a.l() - b.l(); } };
+			case FLOAT: return new FloatNode() { @Override public float f() { return a.f() - b.f(); } };
+			default: return new DoubleNode() { @Override public double d() { return a.d() - b.d(); } };
+		}
+	}
+
+	// -- shift --
+
+	// NB: As in Java, the type of a shift is that of its left operand.
+
+	private static CompiledNode leftShift(final CompiledNode a,
+		final CompiledNode b)
+	{
+		if (a.kind() == Kind.INT) {
+			return new IntNode() { @Override public int i() { return a.i() << b.l(); } };
+		}
+		return new LongNode() { @Override public long l() { return a.l() << b.l(); } };
+	}
+
+	private static CompiledNode rightShift(final CompiledNode a,
+		final CompiledNode b)
+	{
+		if (a.kind() == Kind.INT) {
+			return new IntNode() { @Override public int i() { return a.i() >> b.l(); } };
+		}
+		return new LongNode() { @Override public long l() { return a.l() >> b.l(); } };
+	}
+
+	private static CompiledNode unsignedRightShift(final CompiledNode a,
+		final CompiledNode b)
+	{
+		if (a.kind() == Kind.INT) {
+			return new IntNode() { @Override public int i() { return a.i() >>> b.l(); } };
+		}
+		return new LongNode() { @Override public long l() { return a.l() >>> b.l(); } };
+	}
+
+	// -- relational, equality --
+
+	// NB: int and float operands are compared exactly as longs and doubles.
+
+	private static CompiledNode lessThan(final Kind kind, final CompiledNode a,
+		final CompiledNode b)
+	{
+		if (kind.isIntegral()) {
+			return new BooleanNode() { @Override public boolean z() { return a.l() < b.l(); } };
+		}
+		return new BooleanNode() { @Override public boolean z() { return a.d() < b.d(); } };
+	}
+
+	// NB: Not the negation of lessThan, which would be true for NaN operands,
+	// unlike a <= comparison in Java.
+
+	private static CompiledNode lessOrEqual(final Kind kind, final CompiledNode a,
+		final CompiledNode b)
+	{
+		if (kind.isIntegral()) {
+			return new BooleanNode() { @Override public boolean z() { return a.l() <= b.l(); } };
+		}
+		return new BooleanNode() { @Override public boolean z() { return a.d() <= b.d(); } };
+	}
+
+	private static CompiledNode equal(final Kind kind, final CompiledNode a,
+		final CompiledNode b)
+	{
+		if (kind == Kind.BOOLEAN) {
+			return new BooleanNode() { @Override public boolean z() { return a.z() == b.z(); } };
+		}
+		if (kind.isIntegral()) {
+			return new BooleanNode() { @Override public boolean z() { return a.l() == b.l(); } };
+		}
+		return new BooleanNode() { @Override public boolean z() { return a.d() == b.d(); } };
+	}
+
+	// -- bitwise, logical --
+
+	private static CompiledNode bitwiseAnd(final Kind kind, final CompiledNode a,
+		final CompiledNode b)
+	{
+		switch (kind) {
+			case BOOLEAN: return new BooleanNode() { @Override public boolean z() { return a.z() & b.z(); } };
+			case INT: return new IntNode() { @Override public int i() { return a.i() & b.i(); } };
+			default: return new LongNode() { @Override public long l() { return a.l() & b.l(); } };
+		}
+	}
+
+	private static CompiledNode bitwiseOr(final Kind kind, final CompiledNode a,
+		final CompiledNode b)
+	{
+		switch (kind) {
+			case BOOLEAN: return new BooleanNode() { @Override public boolean z() { return a.z() | b.z(); } };
+			case INT: return new IntNode() { @Override public int i() { return a.i() | b.i(); } };
+			default: return new LongNode() { @Override public long l() { return a.l() | b.l(); } };
+		}
+	}
+
+	private static CompiledNode logicalAnd(final CompiledNode a,
+		final CompiledNode b)
+	{
+		return new BooleanNode() { @Override public boolean z() { return a.z() && b.z(); } };
+	}
+
+	private static CompiledNode logicalOr(final CompiledNode a,
+		final CompiledNode b)
+	{
+		return new BooleanNode() { @Override public boolean z() { return a.z() || b.z(); } };
+	}
+
+	// -- functions --
+
+	private static CompiledNode abs(final CompiledNode a) {
+		switch (a.kind()) {
+			case INT: return new IntNode() { @Override public int i() { return Math.abs(a.i()); } };
+			case LONG: return new LongNode() { @Override public long l() { return Math.abs(a.l()); } };
+			case FLOAT: return new FloatNode() { @Override public float f() { return Math.abs(a.f()); } };
+			default: return new DoubleNode() { @Override public double d() { return Math.abs(a.d()); } };
+		}
+	}
+
+	private static CompiledNode minMax(final boolean max, final CompiledNode a,
+		final CompiledNode b)
+	{
+		switch (Kind.promote(a.kind(), b.kind())) {
+			case INT: return max ? //
+				new IntNode() { @Override public int i() { return Math.max(a.i(), b.i()); } } : //
+				new IntNode() { @Override public int i() { return Math.min(a.i(), b.i()); } };
+			case LONG: return max ? //
+				new LongNode() { @Override public long l() { return Math.max(a.l(), b.l()); } } : //
+				new LongNode() { @Override public long l() { return Math.min(a.l(), b.l()); } };
+			case FLOAT: return max ? //
+				new FloatNode() { @Override public float f() { return Math.max(a.f(), b.f()); } } : //
+				new FloatNode() { @Override public float f() { return Math.min(a.f(), b.f()); } };
+			default: return max ? //
+				new DoubleNode() { @Override public double d() { return Math.max(a.d(), b.d()); } } : //
+				new DoubleNode() { @Override public double d() { return Math.min(a.d(), b.d()); } };
+		}
+	}
+
+	/** A unary {@link Math} function, by index into {@link #UNARY_FUNCTIONS}. */
+	private static class UnaryFunction extends DoubleNode {
+
+		private final int fn;
+		private final CompiledNode a;
+
+		public UnaryFunction(final int fn, final CompiledNode a) {
+			this.fn = fn;
+			this.a = a;
+		}
+
+		@Override
+		public double d() {
+			final double x = a.d();
+			switch (fn) {
+				case 0: return Math.sqrt(x);
+				case 1: return Math.cbrt(x);
+				case 2: return Math.exp(x);
+				case 3: return Math.log(x);
+				case 4: return Math.log10(x);
+				case 5: return Math.sin(x);
+				case 6: return Math.cos(x);
+				case 7: return Math.tan(x);
+				case 8: return Math.asin(x);
+				case 9: return Math.acos(x);
+				case 10: return Math.atan(x);
+				case 11: return Math.sinh(x);
+				case 12: return Math.cosh(x);
+				case 13: return Math.tanh(x);
+				case 14: return Math.floor(x);
+				case 15: return Math.ceil(x);
+				case 16: return Math.rint(x);
+				default: return Math.signum(x);
+			}
+		}
+	}
+
+	/** A binary {@link Math} function, by index into {@link #BINARY_FUNCTIONS}. */
+	private static class BinaryFunction extends DoubleNode {
+
+		private final int fn;
+		private final CompiledNode a, b;
+
+		public BinaryFunction(final int fn, final CompiledNode a,
+			final CompiledNode b)
+		{
+			this.fn = fn;
+			this.a = a;
+			this.b = b;
+		}
+
+		@Override
+		public double d() {
+			switch (fn) {
+				case 0: return Math.atan2(a.d(), b.d());
+				case 1: return Math.hypot(a.d(), b.d());
+				default: return Math.pow(a.d(), b.d());
+			}
+		}
+	}
+
+	// -- Helper methods --
+
+	/** Replaces the given node with a constant, if its operands are constant. */
+	private static CompiledNode fold(final CompiledNode node,
+		final CompiledNode... operands)
+	{
+		for (final CompiledNode operand : operands) {
+			if (!operand.isConstant()) return node;
+		}
+		try {
+			switch (node.kind()) {
+				case BOOLEAN: return new BooleanConstant(node.z());
+				case INT: return new IntConstant(node.i());
+				case LONG: return new LongConstant(node.l());
+				case FLOAT: return new FloatConstant(node.f());
+				default: return new DoubleConstant(node.d());
+			}
+		}
+		catch (final ArithmeticException exc) {
+			// NB: Leave e.g. integer division by zero to fail on evaluation.
+			return node;
+		}
+	}
+
+	private static IllegalArgumentException unsupported(final Operator op,
+		final CompiledNode... operands)
+	{
+		final StringBuilder message = new StringBuilder("Unsupported operator " +
+			op + " for");
+		for (int i = 0; i < operands.length; i++) {
+			message.append(i == 0 ? " " : " and ");
+			message.append(operands[i].kind().type());
+		}
+		return new IllegalArgumentException(message.toString());
+	}
+
+}
@@ -33,11 +33,24 @@ package org.scijava.thread;
 
 import java.awt.EventQueue;
 import java.lang.reflect.InvocationTargetException;
+import java.util.Collections;
+import java.util.Map;
 import java.util.WeakHashMap;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.scijava.log.LogService;
 import org.scijava.plugin.Parameter;
@@ -47,6 +60,12 @@ import org.scijava.service.Service;
 
 /**
  * Default service for managing active threads.
+ * <p>
+ * The executor is created on first use, according to the
+ * {@link ThreadPoolPolicy} given via {@link #setPolicy} or else the
+ * {@value #POLICY_PROPERTY} and {@value #MAX_THREADS_PROPERTY} system
+ * properties. By default, an unbounded cached thread pool is used.
+ * </p>
  * 
  * @author Curtis Rueden
  */
@@ -55,17 +74,38 @@ public final class DefaultThreadService extends AbstractService implements
 	ThreadService
 {
 
+	/** System property specifying the default {@link ThreadPoolPolicy}. */
+	public static final String POLICY_PROPERTY = "scijava.thread.policy";
+
+	/** System property specifying the default maximum number of threads. */
+	public static final String MAX_THREADS_PROPERTY = "scijava.thread.maxThreads";
+
 	private static final String SCIJAVA_THREAD_PREFIX = "SciJava-";
 
-	private static WeakHashMap<Thread, Thread> parents =
-		new WeakHashMap<>();
+	/** How long idle threads of a bounded pool are kept alive. */
+	private static final long KEEP_ALIVE_SECONDS = 60;
+
+	private static final Map<Thread, Thread> parents =
+		Collections.synchronizedMap(new WeakHashMap<Thread, Thread>());
 
 	@Parameter
 	private LogService log;
 
-	private ExecutorService executor;
+	private volatile ExecutorService executor;
+
+	private ThreadPoolPolicy policy;
 
-	private int nextThread = 0;
+	private int maxThreads;
+
+	private final AtomicInteger nextThread = new AtomicInteger();
+
+	private final AtomicLong submitted = new AtomicLong();
+	private final AtomicLong started = new AtomicLong();
+	private final AtomicLong completed = new AtomicLong();
+	private final AtomicLong cancelled = new AtomicLong();
+	private final AtomicLong totalWait = new AtomicLong();
+	private final AtomicLong totalRun = new AtomicLong();
+	private final AtomicLong maxWait = new AtomicLong();
 
 	private boolean disposed;
 
@@ -74,13 +114,21 @@ public final class DefaultThreadService extends AbstractService implements
 	@Override
 	public <V> Future<V> run(final Callable<V> code) {
 		if (disposed) return null;
-		return executor().submit(wrap(code));
+		final TrackedTask<V> task = new TrackedTask<>(code);
+		submitted.incrementAndGet();
+		try {
+			executor().execute(task);
+		}
+		catch (final RejectedExecutionException exc) {
+			submitted.decrementAndGet();
+			throw exc;
+		}
+		return task;
 	}
 
 	@Override
 	public Future<?> run(final Runnable code) {
-		if (disposed) return null;
-		return executor().submit(wrap(code));
+		return run(Executors.callable(code));
 	}
 
 	@Override
@@ -89,8 +137,42 @@ public final class DefaultThreadService extends AbstractService implements
 	}
 
 	@Override
-	public void setExecutorService(final ExecutorService executor) {
+	public synchronized void setExecutorService(final ExecutorService executor) {
 		this.executor = executor;
+		policy = null;
+	}
+
+	@Override
+	public synchronized ThreadPoolPolicy getPolicy() {
+		if (executor == null && policy == null) initPolicy();
+		return policy;
+	}
+
+	@Override
+	public synchronized void setPolicy(final ThreadPoolPolicy policy,
+		final int maxThreads)
+	{
+		if (executor != null) {
+			throw new IllegalStateException("Executor already initialized");
+		}
+		if (policy == null) throw new NullPointerException("policy");
+		if (maxThreads < 1) {
+			throw new IllegalArgumentException("Invalid thread count: " +
+				maxThreads);
+		}
+		this.policy = policy;
+		this.maxThreads = maxThreads;
+	}
+
+	@Override
+	public ThreadStats getStats() {
+		// NB: Read the counters from last to first, so the derived queue depth
+		// and active count can never become negative.
+		final long done = completed.get();
+		final long withdrawn = cancelled.get();
+		final long running = started.get();
+		return new ThreadStats(getPolicy(), submitted.get(), running, done,
+			withdrawn, totalWait.get(), totalRun.get(), maxWait.get());
 	}
 
 	@Override
@@ -150,56 +232,196 @@ public final class DefaultThreadService extends AbstractService implements
 
 	@Override
 	public Thread newThread(final Runnable r) {
-		final String threadName = contextThreadPrefix() + nextThread++;
+		final String threadName = contextThreadPrefix() +
+			nextThread.getAndIncrement();
 		return new Thread(r, threadName);
 	}
 
 	// -- Helper methods --
 
 	private ExecutorService executor() {
-		if (executor == null) {
-			executor = Executors.newCachedThreadPool(this);
-		}
+		final ExecutorService e = executor;
+		return e == null ? initExecutor() : e;
+	}
+
+	private synchronized ExecutorService initExecutor() {
+		if (executor == null) executor = createExecutor(getPolicy());
 		return executor;
 	}
 
+	/** Initializes the policy from the system properties. */
+	private void initPolicy() {
+		policy = ThreadPoolPolicy.CACHED;
+		final String policyProp = System.getProperty(POLICY_PROPERTY);
+		if (policyProp != null) {
+			try {
+				policy = ThreadPoolPolicy.valueOf(policyProp.trim().toUpperCase());
+			}
+			catch (final IllegalArgumentException exc) {
+				if (log != null) log.warn("Invalid thread policy: " + policyProp);
+			}
+		}
+		maxThreads = Runtime.getRuntime().availableProcessors();
+		final String maxProp = System.getProperty(MAX_THREADS_PROPERTY);
+		if (maxProp != null) {
+			try {
+				maxThreads = Math.max(1, Integer.parseInt(maxProp.trim()));
+			}
+			catch (final NumberFormatException exc) {
+				if (log != null) log.warn("Invalid thread count: " + maxProp);
+			}
+		}
+	}
+
+	private ExecutorService createExecutor(final ThreadPoolPolicy p) {
+		switch (p) {
+			case BOUNDED:
+				final ThreadPoolExecutor pool = new ThreadPoolExecutor(maxThreads,
+					maxThreads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<Runnable>(), this);
+				pool.allowCoreThreadTimeOut(true);
+				return pool;
+			case WORK_STEALING:
+				return new ForkJoinPool(maxThreads, new WorkerThreadFactory(), null,
+					true);
+			case PER_TASK:
+				return perTaskExecutor();
+			default:
+				return Executors.newCachedThreadPool(this);
+		}
+	}
+
+	/**
+	 * Creates an executor running each task on a new virtual thread, if the
+	 * Java runtime supports them, or else a cached thread pool.
+	 */
+	private ExecutorService perTaskExecutor() {
+		// NB: Virtual threads are accessed reflectively, since they require
+		// Java 21 or later.
+		try {
+			final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			builder = builderClass.getMethod("name", String.class, long.class)
+				.invoke(builder, contextThreadPrefix(), 0L);
+			final ThreadFactory factory = (ThreadFactory) builderClass.getMethod(
+				"factory").invoke(builder);
+			return (ExecutorService) Executors.class.getMethod(
+				"newThreadPerTaskExecutor", ThreadFactory.class).invoke(null, factory);
+		}
+		catch (final ReflectiveOperationException | RuntimeException exc) {
+			if (log != null) log.debug("Virtual threads are not available", exc);
+			return Executors.newCachedThreadPool(this);
+		}
+	}
+
 	private Runnable wrap(final Runnable r) {
 		final Thread parent = Thread.currentThread();
+		final long submitTime = System.nanoTime();
 		return new Runnable() {
 			@Override
 			public void run() {
 				final Thread thread = Thread.currentThread();
+				final long startTime = taskStarted(submitTime);
 				try {
 					if (parent != thread) parents.put(thread, parent);
 					r.run();
 				}
 				finally {
 					if (parent != thread) parents.remove(thread);
+					taskCompleted(startTime);
 				}
 			}
 		};
 	}
 
-	private <V> Callable<V> wrap(final Callable<V> c) {
+	private <V> Callable<V> wrap(final Callable<V> c,
+		final AtomicBoolean claimed)
+	{
 		final Thread parent = Thread.currentThread();
+		final long submitTime = System.nanoTime();
 		return new Callable<V>() {
 			@Override
 			public V call() throws Exception {
+				// NB: Skip the code if the task was cancelled just before starting.
+				if (!claimed.compareAndSet(false, true)) return null;
 				final Thread thread = Thread.currentThread();
+				final long startTime = taskStarted(submitTime);
 				try {
 					if (parent != thread) parents.put(thread, parent);
 					return c.call();
 				}
 				finally {
 					if (parent != thread) parents.remove(thread);
+					taskCompleted(startTime);
 				}
 			}
 		};
 	}
 
+	/** Records the start of a task; returns the start time. */
+	private long taskStarted(final long submitTime) {
+		final long now = System.nanoTime();
+		final long wait = now - submitTime;
+		started.incrementAndGet();
+		totalWait.addAndGet(wait);
+		long max;
+		while (wait > (max = maxWait.get())) {
+			if (maxWait.compareAndSet(max, wait)) break;
+		}
+		return now;
+	}
+
+	/** Records the completion of a task. */
+	private void taskCompleted(final long startTime) {
+		totalRun.addAndGet(System.nanoTime() - startTime);
+		completed.incrementAndGet();
+	}
+
 	private String contextThreadPrefix() {
 		final String contextHash = Integer.toHexString(context().hashCode());
 		return SCIJAVA_THREAD_PREFIX + contextHash + "-Thread-";
 	}
 
+	// -- Helper classes --
+
+	/**
+	 * A task submitted via {@link #run}, which counts as cancelled rather than
+	 * queued if it is cancelled before it starts.
+	 */
+	private class TrackedTask<V> extends FutureTask<V> {
+
+		/** Set by whichever comes first: the start, or the cancellation. */
+		private final AtomicBoolean claimed;
+
+		public TrackedTask(final Callable<V> code) {
+			this(code, new AtomicBoolean());
+		}
+
+		private TrackedTask(final Callable<V> code, final AtomicBoolean claimed) {
+			super(wrap(code, claimed));
+			this.claimed = claimed;
+		}
+
+		@Override
+		protected void done() {
+			if (isCancelled() && claimed.compareAndSet(false, true)) {
+				cancelled.incrementAndGet();
+			}
+		}
+	}
+
+	/** Names the worker threads of a work-stealing pool like other threads. */
+	private class WorkerThreadFactory implements
+		ForkJoinPool.ForkJoinWorkerThreadFactory
+	{
+
+		@Override
+		public ForkJoinWorkerThread newThread(final ForkJoinPool pool) {
+			final ForkJoinWorkerThread thread =
+				ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+			thread.setName(contextThreadPrefix() + nextThread.getAndIncrement());
+			return thread;
+		}
+	}
+
 }
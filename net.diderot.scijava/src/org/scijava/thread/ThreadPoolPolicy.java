@@ -0,0 +1,66 @@
+/*
+ * #%L
+ * SciJava Common shared library for SciJava software.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.thread;
+
+/**
+ * Policies for the executor with which a {@link ThreadService} runs code.
+ *
+ * @see ThreadService#setPolicy(ThreadPoolPolicy, int)
+ */
+public enum ThreadPoolPolicy {
+
+	/**
+	 * Creates new threads as needed, and reuses idle ones. The number of
+	 * threads is unbounded, so code which blocks on other submitted code can
+	 * never deadlock. This is the default.
+	 */
+	CACHED,
+
+	/**
+	 * Runs code on at most a fixed number of threads, queuing the rest. Idle
+	 * threads are released after a timeout.
+	 */
+	BOUNDED,
+
+	/**
+	 * Runs code on a work-stealing pool with a fixed target parallelism.
+	 */
+	WORK_STEALING,
+
+	/**
+	 * Runs each piece of code on its own new thread. When the Java runtime
+	 * supports virtual threads, they are used; otherwise this behaves like
+	 * {@link #CACHED}.
+	 */
+	PER_TASK
+
+}
@@ -110,6 +110,29 @@ public interface ThreadService extends SciJavaService, ThreadFactory {
 	 */
 	void setExecutorService(ExecutorService executor);
 
+	/**
+	 * Gets the policy of the executor used when {@link #run} is called.
+	 *
+	 * @return the policy, or null if a custom executor was set via
+	 *         {@link #setExecutorService}.
+	 */
+	ThreadPoolPolicy getPolicy();
+
+	/**
+	 * Sets the policy of the executor used when {@link #run} is called. This
+	 * must be done before the executor is first used.
+	 *
+	 * @param policy The executor policy.
+	 * @param maxThreads The maximum number of threads for
+	 *          {@link ThreadPoolPolicy#BOUNDED}, or the target parallelism for
+	 *          {@link ThreadPoolPolicy#WORK_STEALING}; ignored otherwise.
+	 * @throws IllegalStateException if the executor has already been created.
+	 */
+	void setPolicy(ThreadPoolPolicy policy, int maxThreads);
+
+	/** Gets a snapshot of the usage counters of this service. */
+	ThreadStats getStats();
+
 	/**
 	 * Gets whether the current thread is a dispatch thread for use with
 	 * {@link #invoke} and {@link #queue}.
@@ -0,0 +1,126 @@
+/*
+ * #%L
+ * SciJava Common shared library for SciJava software.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.thread;
+
+/**
+ * Immutable snapshot of the usage counters of a {@link ThreadService}. Only
+ * code passed to {@link ThreadService#run} is counted.
+ */
+public class ThreadStats {
+
+	private final ThreadPoolPolicy policy;
+	private final long submittedCount;
+	private final long startedCount;
+	private final long completedCount;
+	private final long cancelledCount;
+	private final long totalWaitNanos;
+	private final long totalRunNanos;
+	private final long maxWaitNanos;
+
+	public ThreadStats(final ThreadPoolPolicy policy, final long submittedCount,
+		final long startedCount, final long completedCount,
+		final long cancelledCount, final long totalWaitNanos,
+		final long totalRunNanos, final long maxWaitNanos)
+	{
+		this.policy = policy;
+		this.submittedCount = submittedCount;
+		this.startedCount = startedCount;
+		this.completedCount = completedCount;
+		this.cancelledCount = cancelledCount;
+		this.totalWaitNanos = totalWaitNanos;
+		this.totalRunNanos = totalRunNanos;
+		this.maxWaitNanos = maxWaitNanos;
+	}
+
+	/**
+	 * Gets the policy of the executor, or null if a custom executor was set.
+	 */
+	public ThreadPoolPolicy getPolicy() {
+		return policy;
+	}
+
+	/** Gets the number of tasks submitted. */
+	public long getSubmittedCount() {
+		return submittedCount;
+	}
+
+	/** Gets the number of tasks which have finished running. */
+	public long getCompletedCount() {
+		return completedCount;
+	}
+
+	/** Gets the number of tasks which were cancelled before they started. */
+	public long getCancelledCount() {
+		return cancelledCount;
+	}
+
+	/** Gets the number of tasks waiting to be started. */
+	public long getQueueDepth() {
+		return submittedCount - startedCount - cancelledCount;
+	}
+
+	/** Gets the number of tasks currently running. */
+	public long getActiveCount() {
+		return startedCount - completedCount;
+	}
+
+	/**
+	 * Gets the mean time in nanoseconds between the submission and the start
+	 * of a task.
+	 */
+	public double getMeanWaitNanos() {
+		return startedCount == 0 ? 0 : (double) totalWaitNanos / startedCount;
+	}
+
+	/** Gets the longest time in nanoseconds any task waited to be started. */
+	public long getMaxWaitNanos() {
+		return maxWaitNanos;
+	}
+
+	/** Gets the mean running time of a task in nanoseconds. */
+	public double getMeanRunNanos() {
+		return completedCount == 0 ? 0 : (double) totalRunNanos / completedCount;
+	}
+
+	// -- Object methods --
+
+	@Override
+	public String toString() {
+		return "policy=" + policy + ", submitted=" + submittedCount +
+			", queued=" + getQueueDepth() + ", active=" + getActiveCount() +
+			", completed=" + completedCount + ", cancelled=" + cancelledCount +
+			", meanWait=" +
+			(long) getMeanWaitNanos() + "ns, maxWait=" + maxWaitNanos +
+			"ns, meanRun=" + (long) getMeanRunNanos() + "ns";
+	}
+
+}